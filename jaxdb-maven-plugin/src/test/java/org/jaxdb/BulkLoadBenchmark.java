@@ -0,0 +1,95 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import org.jaxdb.jsql.Batch;
+import org.jaxdb.jsql.BulkLoader;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.types;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the throughput of a {@link BulkLoader}, relative to a
+ * {@link Batch} of {@code INSERT}s, against in-memory Derby and SQLite
+ * databases.
+ * <p>
+ * This class is not matched by the default test includes, and is run with:
+ * {@code mvn test -Dtest=BulkLoadBenchmark*}
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class BulkLoadBenchmark {
+  @VendorSchemaRunner.Vendor(Derby.class)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends BulkLoadBenchmark {
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkLoadBenchmark.class);
+  private static final int ROWS = 20000;
+
+  private static long batch(final Transaction transaction, final ArrayList<types.Type> entities) throws IOException, SQLException {
+    final long start = System.nanoTime();
+    try (final Batch batch = new Batch(entities.size())) {
+      for (final types.Type entity : entities)
+        batch.addStatement(INSERT(entity));
+
+      batch.execute(transaction);
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static long load(final Transaction transaction, final ArrayList<types.Type> entities) throws IOException, SQLException {
+    final long start = System.nanoTime();
+    assertEquals(entities.size(), BulkLoader.of(transaction.getVendor()).load(transaction, entities.iterator()));
+    return System.nanoTime() - start;
+  }
+
+  @Test
+  public void testThroughput(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final String prefix = "bulkBenchmark";
+    final long batchTime = batch(transaction, BulkLoaderTest.newEntities(prefix, ROWS));
+    assertEquals(ROWS, BulkLoaderTest.count(transaction, prefix));
+    transaction.rollback();
+
+    // The rows of a load are deleted rather than rolled back, because a load on Derby commits
+    final long loadTime;
+    try {
+      loadTime = load(transaction, BulkLoaderTest.newEntities(prefix, ROWS));
+      assertEquals(ROWS, BulkLoaderTest.count(transaction, prefix));
+    }
+    finally {
+      BulkLoaderTest.delete(transaction, prefix);
+    }
+
+    logger.info(transaction.getVendor() + ": Batch: " + ROWS * 1000000000L / batchTime + " rows/s, BulkLoader: " + ROWS * 1000000000L / loadTime + " rows/s");
+  }
+}
@@ -0,0 +1,230 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jaxdb.jsql.BulkLoader;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.type;
+import org.jaxdb.jsql.types;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorRunner;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class BulkLoaderTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends BulkLoaderTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends BulkLoaderTest {
+  }
+
+  private static final class CountingBulkLoader extends BulkLoader {
+    private final BulkLoader loader;
+    private int loads;
+
+    private CountingBulkLoader(final BulkLoader loader) {
+      this.loader = loader;
+    }
+
+    @Override
+    public long load(final Transaction transaction, final Iterator<? extends type.Table> entities) throws IOException, SQLException {
+      ++loads;
+      return loader.load(transaction, entities);
+    }
+  }
+
+  static long count(final Transaction transaction, final String prefix) throws IOException, SQLException {
+    final types.Type t = types.Type();
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(t)).
+      FROM(t).
+      WHERE(LIKE(t.charType, prefix + "%"))
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      return rows.nextEntity().getAsLong();
+    }
+  }
+
+  static ArrayList<types.Type> newEntities(final String prefix, final int size) {
+    final ArrayList<types.Type> entities = new ArrayList<>(size);
+    for (int i = 0; i < size; ++i) {
+      final types.Type t = new types.Type();
+      t.bigintType.set((long)i);
+      t.charType.set(prefix + ", \"" + i + "\"");
+      t.tinyintType.set((byte)(i % 128));
+      // Every third entity has NULLs, which are loaded in the same segment as the other entities
+      if (i % 3 == 1) {
+        t.doubleType.set(type.DOUBLE.NULL);
+        t.timeType.set(type.TIME.NULL);
+      }
+      else {
+        t.doubleType.set(i / 2d);
+        t.timeType.set(LocalTime.of(i % 24, 30, 15));
+      }
+
+      entities.add(t);
+    }
+
+    return entities;
+  }
+
+  static void delete(final Transaction transaction, final String prefix) throws IOException, SQLException {
+    final types.Type t = types.Type();
+    DELETE(t).
+      WHERE(LIKE(t.charType, prefix + "%"))
+        .execute(transaction);
+
+    transaction.commit();
+  }
+
+  private static void assertLoaded(final Transaction transaction, final String prefix, final int size, final int copies) throws IOException, SQLException {
+    final types.Type t = types.Type();
+    try (final RowIterator<types.Type> rows =
+      SELECT(t).
+      FROM(t).
+      WHERE(LIKE(t.charType, prefix + "%")).
+      ORDER_BY(t.bigintType)
+        .execute(transaction)) {
+
+      for (int i = 0; i < size; ++i) {
+        for (int j = 0; j < copies; ++j) {
+          assertTrue(rows.nextRow());
+          final types.Type row = rows.nextEntity();
+          assertEquals(i, row.bigintType.getAsLong());
+          assertEquals(prefix + ", \"" + i + "\"", row.charType.get());
+          assertEquals((byte)(i % 128), row.tinyintType.getAsByte());
+          if (i % 3 == 1) {
+            assertTrue(row.doubleType.isNull());
+            assertTrue(row.timeType.isNull());
+          }
+          else {
+            assertEquals(i / 2d, row.doubleType.getAsDouble(), 0);
+            assertEquals(LocalTime.of(i % 24, 30, 15), row.timeType.get());
+          }
+        }
+      }
+
+      assertFalse(rows.nextRow());
+    }
+  }
+
+  @Test
+  public void testLoad(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final String prefix = "bulkIterator";
+    final ArrayList<types.Type> entities = newEntities(prefix, 10);
+    // An entity with different columns is loaded in a separate segment
+    entities.get(5).intType.set(5);
+
+    try {
+      assertEquals(entities.size(), BulkLoader.of(transaction.getVendor()).load(transaction, entities.iterator()));
+      assertLoaded(transaction, prefix, entities.size(), 1);
+    }
+    finally {
+      delete(transaction, prefix);
+    }
+  }
+
+  @Test
+  public void testLoadRowIterator(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final String prefix = "bulkRowIterator";
+    final BulkLoader loader = BulkLoader.of(transaction.getVendor());
+    try {
+      assertEquals(7, loader.load(transaction, newEntities(prefix, 7).iterator()));
+
+      // The rows are loaded again with the columns as they were selected, other than the auto-generated id
+      final types.Type t = types.Type();
+      try (final RowIterator<types.Type> rows =
+        SELECT(t).
+        FROM(t).
+        WHERE(LIKE(t.charType, prefix + "%")).
+        ORDER_BY(t.bigintType)
+          .execute(transaction)) {
+
+        assertEquals(7, loader.load(transaction, rows));
+      }
+
+      assertLoaded(transaction, prefix, 7, 2);
+    }
+    finally {
+      delete(transaction, prefix);
+    }
+  }
+
+  @Test
+  @VendorRunner.Unsupported({MySQL.class, Oracle.class, PostgreSQL.class, SQLite.class})
+  public void testLoadPendingWrite(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    // Derby commits on each segment of a load, which would commit the pending INSERT
+    final types.Type t = newEntities("bulkPending", 1).get(0);
+    INSERT(t)
+      .execute(transaction);
+
+    try {
+      BulkLoader.of(transaction.getVendor()).load(transaction, newEntities("bulkPending", 1).iterator());
+      fail("Expected IllegalStateException");
+    }
+    catch (final IllegalStateException e) {
+    }
+
+    transaction.rollback();
+    assertEquals(0, count(transaction, "bulkPending"));
+  }
+
+  @Test
+  public void testRegisteredLoader(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final BulkLoader vendorLoader = BulkLoader.of(transaction.getVendor());
+    assertSame(vendorLoader, BulkLoader.of(transaction));
+
+    final String prefix = "bulkRegistered";
+    final CountingBulkLoader loader = new CountingBulkLoader(vendorLoader);
+    Registry.threadLocal().setBulkLoader(types.class, loader);
+    try {
+      assertSame(loader, BulkLoader.of(transaction));
+      assertEquals(3, BulkLoader.of(transaction).load(transaction, newEntities(prefix, 3).iterator()));
+      assertEquals(1, loader.loads);
+      assertLoaded(transaction, prefix, 3, 1);
+    }
+    finally {
+      Registry.threadLocal().setBulkLoader(types.class, null);
+      delete(transaction, prefix);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.CompilationCache;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class CompilationCacheTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends CompilationCacheTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends CompilationCacheTest {
+  }
+
+  @Test
+  public void testDeleteShape(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final CompilationCache cache = CompilationCache.of(transaction.getVendor());
+    final long hitCount = cache.getHitCount();
+
+    final classicmodels.Purchase p1 = new classicmodels.Purchase();
+    p1.purchaseNumber.set(10102);
+    p1.customerNumber.set((short)181);
+    assertEquals(1,
+      DELETE(p1)
+        .execute(transaction));
+
+    final classicmodels.Purchase p2 = new classicmodels.Purchase();
+    p2.purchaseNumber.set(10100);
+    p2.customerNumber.set((short)363);
+    assertEquals(1,
+      DELETE(p2)
+        .execute(transaction));
+
+    assertTrue(hitCount < cache.getHitCount());
+  }
+
+  @Test
+  public void testSelectShape(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final CompilationCache cache = CompilationCache.of(transaction.getVendor());
+    final long hitCount = cache.getHitCount();
+
+    for (final int officeCode : new int[] {1, 2}) {
+      final classicmodels.Office o = new classicmodels.Office();
+      o.officeCode.set(officeCode);
+      try (final RowIterator<classicmodels.Office> rows =
+        SELECT(o)
+          .execute(transaction)) {
+        assertTrue(rows.nextRow());
+        assertEquals(officeCode, rows.nextEntity().officeCode.getAsInt());
+        assertFalse(rows.nextRow());
+      }
+    }
+
+    assertTrue(hitCount < cache.getHitCount());
+  }
+
+  @Test
+  public void testSelectReaderPlan(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    // The SELECTs of a shape share a reader plan, which must not refer to the entities of the SELECT it was built for
+    final classicmodels.Office[] offices = new classicmodels.Office[3];
+    for (int i = 0; i < offices.length; ++i) {
+      final classicmodels.Office o = offices[i] = new classicmodels.Office();
+      o.officeCode.set(i + 1);
+      try (final RowIterator<classicmodels.Office> rows =
+        SELECT(o)
+          .execute(transaction)) {
+        assertTrue(rows.nextRow());
+        final classicmodels.Office office = rows.nextEntity();
+        assertEquals(i + 1, office.officeCode.getAsInt());
+        for (final classicmodels.Office prior : offices)
+          assertNotSame(prior, office);
+
+        assertFalse(rows.nextRow());
+      }
+    }
+
+    // A SELECT of another shape has its own reader plan
+    final classicmodels.Office o = new classicmodels.Office();
+    o.officeCode.set(1);
+    final classicmodels.Customer c = new classicmodels.Customer();
+    c.customerNumber.set((short)103);
+    try (final RowIterator<classicmodels.Address> rows =
+      SELECT(o, c)
+        .execute(transaction)) {
+      assertTrue(rows.nextRow());
+      assertEquals(1, ((classicmodels.Office)rows.nextEntity()).officeCode.getAsInt());
+      assertEquals(103, ((classicmodels.Customer)rows.nextEntity()).customerNumber.getAsShort());
+      assertFalse(rows.nextRow());
+    }
+  }
+}
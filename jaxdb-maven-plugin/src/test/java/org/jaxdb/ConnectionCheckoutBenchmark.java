@@ -0,0 +1,139 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jaxdb.jsql.Connector;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.vendor.DBVendor;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Microbenchmark of the overhead of a connection checkout via
+ * {@link Transaction#getConnection()}, relative to the checkout from the
+ * underlying {@link Connector}, against in-memory Derby and SQLite databases.
+ * The {@link Connector} emulates a pool, returning the same physical
+ * connection, whose {@link Connection#close()} is a no-op. Driver calls that
+ * are made on the connection during the checkout are counted.
+ * <p>
+ * This class is not matched by the default test includes, and is run with:
+ * {@code mvn test -Dtest=ConnectionCheckoutBenchmark}
+ */
+public class ConnectionCheckoutBenchmark {
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionCheckoutBenchmark.class);
+  private static final int WARMUP = 20000;
+  private static final int ITERATIONS = 200000;
+
+  private static final class PooledConnector implements Connector {
+    private final Connection connection;
+    private final AtomicInteger metaDataCalls = new AtomicInteger();
+    private final AtomicInteger autoCommitCalls = new AtomicInteger();
+
+    private PooledConnector(final Connection physical) {
+      this.connection = (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+        final String name = method.getName();
+        if ("close".equals(name))
+          return null;
+
+        if ("isClosed".equals(name))
+          return Boolean.FALSE;
+
+        if ("getMetaData".equals(name))
+          metaDataCalls.incrementAndGet();
+        else if ("setAutoCommit".equals(name))
+          autoCommitCalls.incrementAndGet();
+
+        try {
+          return method.invoke(physical, args);
+        }
+        catch (final InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+    }
+
+    @Override
+    public Connection getConnection() {
+      return connection;
+    }
+  }
+
+  private static long checkoutConnector(final Connector connector, final int iterations) throws SQLException {
+    final long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i)
+      connector.getConnection().close();
+
+    return System.nanoTime() - start;
+  }
+
+  private static long checkoutTransaction(final String dataSourceId, final int iterations) throws SQLException {
+    final long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      try (final Transaction transaction = new Transaction(classicmodels.class, dataSourceId)) {
+        transaction.getConnection();
+      }
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static void benchmark(final DBVendor vendor, final String url) throws ClassNotFoundException, SQLException {
+    vendor.loadDriver();
+    final String dataSourceId = ConnectionCheckoutBenchmark.class.getSimpleName() + "." + vendor;
+    try (final Connection physical = DriverManager.getConnection(url)) {
+      final PooledConnector connector = new PooledConnector(physical);
+      Registry.threadLocal().registerPrepared(classicmodels.class, connector, dataSourceId);
+
+      checkoutConnector(connector, WARMUP);
+      checkoutTransaction(dataSourceId, WARMUP);
+
+      final int metaDataCalls = connector.metaDataCalls.get();
+      final int autoCommitCalls = connector.autoCommitCalls.get();
+      final long connectorTime = checkoutConnector(connector, ITERATIONS);
+      final long transactionTime = checkoutTransaction(dataSourceId, ITERATIONS);
+
+      logger.info(vendor + ": Connector.getConnection(): " + connectorTime / ITERATIONS + "ns/op, Transaction.getConnection(): " + transactionTime / ITERATIONS + "ns/op, overhead: " + (transactionTime - connectorTime) / ITERATIONS + "ns/op");
+      logger.info(vendor + ": getMetaData(): " + (connector.metaDataCalls.get() - metaDataCalls) + ", setAutoCommit(): " + (connector.autoCommitCalls.get() - autoCommitCalls) + " in " + ITERATIONS + " checkouts");
+
+      // Once the data source is initialized, a checkout probes no metadata, and the auto-commit mode is left unchanged
+      assertEquals(metaDataCalls, connector.metaDataCalls.get());
+      assertEquals(autoCommitCalls, connector.autoCommitCalls.get());
+    }
+  }
+
+  @Test
+  public void testDerby() throws ClassNotFoundException, SQLException {
+    benchmark(DBVendor.DERBY, "jdbc:derby:memory:" + ConnectionCheckoutBenchmark.class.getSimpleName() + ";create=true");
+  }
+
+  @Test
+  public void testSQLite() throws ClassNotFoundException, SQLException {
+    benchmark(DBVendor.SQLITE, "jdbc:sqlite::memory:");
+  }
+}
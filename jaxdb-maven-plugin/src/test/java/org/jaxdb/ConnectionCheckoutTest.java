@@ -0,0 +1,130 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.QueryMetrics;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.Routing;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the driver calls that are made on the connections of a
+ * registration when they are checked out. The registration opens connections
+ * from the URL of the test database, and counts the calls, so that this test
+ * is only run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class ConnectionCheckoutTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends ConnectionCheckoutTest {
+  }
+
+  private static void select(final String id) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(id)) {
+
+      assertTrue(rows.nextRow());
+    }
+  }
+
+  @Test
+  public void testProbe(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = CountingConnector.getId(ConnectionCheckoutTest.class, "testProbe", transaction);
+    CountingConnector connector = CountingConnector.register(classicmodels.class, transaction, id);
+    select(id);
+    final int metaDataCalls = connector.getMetaDataCount();
+    assertTrue(metaDataCalls > 0);
+
+    // The URL and vendor are probed from the first connection of the registration only
+    for (int i = 0; i < 10; ++i) {
+      select(id);
+      try (final Transaction t = new Transaction(classicmodels.class, id)) {
+        t.getConnection();
+        assertEquals(transaction.getVendor(), t.getVendor());
+      }
+    }
+
+    assertEquals(21, connector.getConnectionCount());
+    assertEquals(metaDataCalls, connector.getMetaDataCount());
+
+    // A new registration probes its first connection again
+    final String other = CountingConnector.getId(ConnectionCheckoutTest.class, "testProbe.other", transaction);
+    connector = CountingConnector.register(classicmodels.class, transaction, other);
+    select(other);
+    assertEquals(metaDataCalls, connector.getMetaDataCount());
+  }
+
+  @Test
+  public void testAutoCommit(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = CountingConnector.getId(ConnectionCheckoutTest.class, "testAutoCommit", transaction);
+    final CountingConnector connector = CountingConnector.register(classicmodels.class, transaction, id);
+
+    // A read outside of a Transaction is in the auto-commit mode of a new connection, which is not set again
+    for (int i = 0; i < 10; ++i)
+      select(id);
+
+    assertEquals(0, connector.getAutoCommitCount());
+
+    // A Transaction sets the auto-commit mode of a new connection once
+    for (int i = 0; i < 10; ++i) {
+      try (final Transaction t = new Transaction(classicmodels.class, id)) {
+        t.getConnection();
+        t.getConnection();
+      }
+    }
+
+    assertEquals(10, connector.getAutoCommitCount());
+  }
+
+  @Test
+  public void testReplica(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final CountingConnector replica = new CountingConnector(url);
+    final String id = CountingConnector.getId(ConnectionCheckoutTest.class, "testReplica", transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, new Routing.Builder(Routing.Balance.ROUND_ROBIN).withReplica(replica).withReadYourWrites(0).build(), id);
+    final QueryMetrics metrics = new QueryMetrics();
+    Registry.threadLocal().setMetrics(classicmodels.class, id, metrics);
+
+    for (int i = 0; i < 10; ++i)
+      select(id);
+
+    // The checkouts of the replica are measured, and make no redundant calls to set the auto-commit mode
+    assertEquals(10, replica.getConnectionCount());
+    assertEquals(10, metrics.getConnectionHistogram().getCount());
+    assertEquals(0, replica.getAutoCommitCount());
+  }
+}
@@ -0,0 +1,108 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jaxdb.jsql.ConnectionPool;
+import org.jaxdb.vendor.DBVendor;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the contention of {@link ConnectionPool#getConnection()} with 1
+ * to 512 threads against in-memory Derby and SQLite databases, with a pool of
+ * 16 connections. Each borrow executes a trivial query. The throughput, and
+ * the wait time and usage time histograms of the pool are logged for each
+ * number of threads.
+ * <p>
+ * This class is not matched by the default test includes, and is run with:
+ * {@code mvn test -Dtest=ConnectionPoolBenchmark}
+ */
+public class ConnectionPoolBenchmark {
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolBenchmark.class);
+  private static final int MAX_SIZE = 16;
+  private static final int BORROWS = 200000;
+  private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512};
+
+  private static void borrow(final ConnectionPool pool, final String sql, final int borrows) throws SQLException {
+    for (int i = 0; i < borrows; ++i) {
+      try (
+        final Connection connection = pool.getConnection();
+        final Statement statement = connection.createStatement();
+      ) {
+        statement.execute(sql);
+      }
+    }
+  }
+
+  private static void benchmark(final DBVendor vendor, final String url, final String sql) throws ClassNotFoundException, ExecutionException, InterruptedException, SQLException {
+    vendor.loadDriver();
+    try (final ConnectionPool pool = new ConnectionPool.Builder(() -> DriverManager.getConnection(url)).withMaxSize(MAX_SIZE).build()) {
+      borrow(pool, sql, BORROWS / 10);
+      for (final int threads : THREADS) {
+        pool.getWaitTime().reset();
+        pool.getUsageTime().reset();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+          final ArrayList<Future<?>> futures = new ArrayList<>(threads);
+          final long start = System.nanoTime();
+          for (int i = 0; i < threads; ++i)
+            futures.add(executor.submit(() -> {
+              borrow(pool, sql, BORROWS / threads);
+              return null;
+            }));
+
+          for (final Future<?> future : futures)
+            future.get();
+
+          final long time = System.nanoTime() - start;
+          logger.info(vendor + ": " + threads + " threads: " + BORROWS * TimeUnit.SECONDS.toNanos(1) / time + " borrows/s, wait(ns): " + pool.getWaitTime() + ", usage(ns): " + pool.getUsageTime());
+        }
+        finally {
+          executor.shutdown();
+        }
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(0, pool.getTimeoutCount());
+        assertTrue(pool.getSize() <= MAX_SIZE);
+      }
+    }
+  }
+
+  @Test
+  public void testDerby() throws ClassNotFoundException, ExecutionException, InterruptedException, SQLException {
+    benchmark(DBVendor.DERBY, "jdbc:derby:memory:" + ConnectionPoolBenchmark.class.getSimpleName() + ";create=true", "VALUES 1");
+  }
+
+  @Test
+  public void testSQLite() throws ClassNotFoundException, ExecutionException, InterruptedException, SQLException {
+    benchmark(DBVendor.SQLITE, "jdbc:sqlite::memory:", "SELECT 1");
+  }
+}
@@ -0,0 +1,150 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
+import org.jaxdb.jsql.ConnectionPool;
+import org.jaxdb.jsql.Connector;
+import org.jaxdb.vendor.DBVendor;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+  private static Connector connector(final DBVendor vendor) throws ClassNotFoundException {
+    vendor.loadDriver();
+    final String url = vendor == DBVendor.DERBY ? "jdbc:derby:memory:" + ConnectionPoolTest.class.getSimpleName() + ";create=true" : "jdbc:sqlite::memory:";
+    return () -> DriverManager.getConnection(url);
+  }
+
+  private static void testBorrow(final DBVendor vendor) throws ClassNotFoundException, SQLException {
+    try (final ConnectionPool pool = new ConnectionPool.Builder(connector(vendor)).withMaxSize(2).build()) {
+      try (final Connection connection = pool.getConnection()) {
+        connection.setAutoCommit(false);
+        try (final Statement statement = connection.createStatement()) {
+          statement.execute(vendor == DBVendor.DERBY ? "VALUES 1" : "SELECT 1");
+        }
+
+        assertEquals(1, pool.getActiveCount());
+      }
+
+      assertEquals(0, pool.getActiveCount());
+      assertEquals(1, pool.getSize());
+
+      // The connection that was last returned by this thread is borrowed again, with its auto-commit mode
+      try (final Connection connection = pool.getConnection()) {
+        assertFalse(connection.getAutoCommit());
+      }
+
+      final Connection connection = pool.getConnection();
+      connection.close();
+      try {
+        connection.createStatement();
+        fail("Expected SQLException");
+      }
+      catch (final SQLException e) {
+        assertEquals("08003", e.getSQLState());
+      }
+
+      assertEquals(1, pool.getCreatedCount());
+      assertEquals(3, pool.getWaitTime().getCount());
+      assertEquals(3, pool.getUsageTime().getCount());
+    }
+  }
+
+  private static void testMaxWait(final DBVendor vendor) throws ClassNotFoundException, SQLException {
+    try (final ConnectionPool pool = new ConnectionPool.Builder(connector(vendor)).withMaxSize(1).withMaxWait(50).build()) {
+      try (final Connection connection = pool.getConnection()) {
+        try {
+          pool.getConnection();
+          fail("Expected SQLTransientConnectionException");
+        }
+        catch (final SQLTransientConnectionException e) {
+        }
+      }
+
+      assertEquals(1, pool.getTimeoutCount());
+      pool.getConnection().close();
+    }
+  }
+
+  private static void testIdleEviction(final DBVendor vendor) throws ClassNotFoundException, InterruptedException, SQLException {
+    try (final ConnectionPool pool = new ConnectionPool.Builder(connector(vendor)).withMinSize(1).withMaxSize(4).withIdleTimeout(50).build()) {
+      final Connection[] connections = new Connection[4];
+      for (int i = 0; i < connections.length; ++i)
+        connections[i] = pool.getConnection();
+
+      for (final Connection connection : connections)
+        connection.close();
+
+      for (int i = 0; i < 100 && pool.getSize() > 1; ++i)
+        Thread.sleep(10);
+
+      assertEquals(1, pool.getSize());
+      assertEquals(3, pool.getEvictedCount());
+    }
+  }
+
+  private static void testLeakDetection(final DBVendor vendor) throws ClassNotFoundException, InterruptedException, SQLException {
+    try (final ConnectionPool pool = new ConnectionPool.Builder(connector(vendor)).withLeakDetectionThreshold(20).build()) {
+      try (final Connection connection = pool.getConnection()) {
+        for (int i = 0; i < 100 && pool.getLeakCount() == 0; ++i)
+          Thread.sleep(10);
+      }
+
+      assertEquals(1, pool.getLeakCount());
+    }
+  }
+
+  private static void testUnreachable(final DBVendor vendor) throws ClassNotFoundException, InterruptedException, SQLException {
+    // A pool that is not closed is not retained by its housekeeping task, nor by the thread that last returned its connection
+    ConnectionPool pool = new ConnectionPool.Builder(connector(vendor)).build();
+    pool.getConnection().close();
+    final WeakReference<ConnectionPool> reference = new WeakReference<>(pool);
+    pool = null;
+    for (int i = 0; i < 100 && reference.get() != null; ++i) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull(reference.get());
+  }
+
+  @Test
+  public void testDerby() throws ClassNotFoundException, InterruptedException, SQLException {
+    testBorrow(DBVendor.DERBY);
+    testMaxWait(DBVendor.DERBY);
+    testIdleEviction(DBVendor.DERBY);
+    testLeakDetection(DBVendor.DERBY);
+    testUnreachable(DBVendor.DERBY);
+  }
+
+  @Test
+  public void testSQLite() throws ClassNotFoundException, InterruptedException, SQLException {
+    testBorrow(DBVendor.SQLITE);
+    testMaxWait(DBVendor.SQLITE);
+    testIdleEviction(DBVendor.SQLITE);
+    testLeakDetection(DBVendor.SQLITE);
+    testUnreachable(DBVendor.SQLITE);
+  }
+}
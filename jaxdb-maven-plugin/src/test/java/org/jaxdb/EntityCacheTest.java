@@ -0,0 +1,203 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.EntityCache;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link EntityCache} of a registration. The registration opens
+ * connections from the URL of the test database, and counts them, so that
+ * this test is only run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class EntityCacheTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends EntityCacheTest {
+  }
+
+  private CountingConnector connector;
+  private EntityCache cache;
+
+  private String register(final Transaction transaction, final String name) throws SQLException {
+    final String id = CountingConnector.getId(EntityCacheTest.class, name, transaction);
+    connector = CountingConnector.register(classicmodels.class, transaction, id);
+    Registry.threadLocal().setEntityCache(classicmodels.class, id, cache = new EntityCache.Builder().build());
+    return id;
+  }
+
+  private static classicmodels.Office select(final Transaction transaction, final String id, final int officeCode) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    o.officeCode.set(officeCode);
+    try (final RowIterator<classicmodels.Office> rows = transaction != null ?
+      SELECT(o).execute(transaction) :
+      SELECT(o).execute(id)) {
+
+      assertTrue(rows.nextRow());
+      final classicmodels.Office office = rows.nextEntity();
+      assertEquals(officeCode, office.officeCode.getAsInt());
+      assertFalse(rows.nextRow());
+      return office;
+    }
+  }
+
+  @Test
+  public void testLookup(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testLookup");
+    final classicmodels.Office office = select(null, id, 3);
+    assertEquals(1, connector.getConnectionCount());
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getMissCount());
+
+    // The entity is served from the cache as a copy
+    final classicmodels.Office cached = select(null, id, 3);
+    assertEquals(1, connector.getConnectionCount());
+    assertEquals(1, cache.getHitCount());
+    assertNotSame(office, cached);
+    assertEquals(office.territory.get(), cached.territory.get());
+
+    // A query that is not by primary key is not served from the cache
+    final classicmodels.Office o = classicmodels.Office();
+    o.territory.set(office.territory.get());
+    try (final RowIterator<classicmodels.Office> rows = SELECT(o).execute(id)) {
+      assertTrue(rows.nextRow());
+    }
+
+    assertEquals(2, connector.getConnectionCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testInvalidate(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testInvalidate");
+    final classicmodels.Office office = select(null, id, 3);
+    select(null, id, 4);
+    assertEquals(2, cache.size());
+
+    // A modification by primary key invalidates the entity
+    assertEquals(1,
+      UPDATE(office)
+        .execute(id));
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getInvalidationCount());
+
+    // Other modifications invalidate the table
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      UPDATE(o).
+      SET(o.territory, "X").
+      WHERE(EQ(o.officeCode, -1))
+        .execute(id));
+
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getInvalidationCount());
+  }
+
+  @Test
+  public void testTransaction(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testTransaction");
+    final classicmodels.Office office = select(null, id, 4);
+    assertEquals(1, cache.size());
+
+    try (final Transaction t = new Transaction(classicmodels.class, id)) {
+      // A lookup in a transaction is served from the cache
+      select(t, id, 4);
+      assertEquals(1, cache.getHitCount());
+
+      assertEquals(1,
+        UPDATE(office)
+          .execute(t));
+
+      // The uncommitted modification bypasses the cache, and does not invalidate it until commit
+      select(t, id, 4);
+      assertEquals(1, cache.getHitCount());
+      assertEquals(1, cache.size());
+
+      t.rollback();
+      assertEquals(1, cache.size());
+
+      assertEquals(1,
+        UPDATE(office)
+          .execute(t));
+
+      t.commit();
+    }
+
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getInvalidationCount());
+  }
+
+  @Test
+  public void testDisabled(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testDisabled");
+    select(null, id, 3);
+    assertEquals(1, cache.size());
+
+    cache.setEnabled(classicmodels.Office.class, false);
+    assertFalse(cache.isEnabled(classicmodels.Office.class));
+    assertEquals(0, cache.size());
+
+    select(null, id, 3);
+    select(null, id, 3);
+    assertEquals(3, connector.getConnectionCount());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHitCount());
+
+    cache.setEnabled(classicmodels.Office.class, true);
+    select(null, id, 3);
+    select(null, id, 3);
+    assertEquals(4, connector.getConnectionCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testInvalidateAllDuringIterator(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testInvalidateAllDuringIterator");
+    final classicmodels.Office o = classicmodels.Office();
+    o.officeCode.set(3);
+    try (final RowIterator<classicmodels.Office> rows = SELECT(o).execute(id)) {
+      assertTrue(rows.nextRow());
+
+      // The table of the entity was never invalidated, and the entity of the open iterator is nonetheless not cached
+      cache.invalidateAll();
+      assertFalse(rows.nextRow());
+    }
+
+    assertEquals(0, cache.size());
+    select(null, id, 3);
+    assertEquals(2, connector.getConnectionCount());
+    assertEquals(1, cache.size());
+  }
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.jaxdb.jsql.Batch;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.jaxdb.vendor.DBVendor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class ExecuteAsyncTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends ExecuteAsyncTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends ExecuteAsyncTest {
+  }
+
+  @Test
+  public void testQuery(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException, IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    final CompletableFuture<RowIterator<classicmodels.Office>> future =
+      SELECT(o).
+      FROM(o)
+        .executeAsync(transaction);
+
+    try (final RowIterator<classicmodels.Office> rows = future.get()) {
+      int count = 0;
+      while (rows.nextRow()) {
+        assertNotNull(rows.nextEntity());
+        ++count;
+      }
+
+      assertEquals(7, count);
+    }
+  }
+
+  @Test
+  public void testModify(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException, IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    final int count = UPDATE(o).
+      SET(o.territory, "ASYNC")
+        .executeAsync(transaction)
+        .thenCompose(c -> {
+          assertEquals(7, c.intValue());
+          return transaction.rollbackAsync();
+        })
+        .thenApply(rolledBack -> {
+          assertTrue(rolledBack);
+          return 7;
+        })
+        .get();
+
+    assertEquals(7, count);
+  }
+
+  @Test
+  public void testBatch(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException, IOException, SQLException {
+    final boolean isOracle = transaction.getVendor() == DBVendor.ORACLE;
+    final classicmodels.Office o = classicmodels.Office();
+    try (final Batch batch = new Batch()) {
+      batch.addStatement(
+        UPDATE(o).
+        SET(o.territory, "A").
+        WHERE(EQ(o.officeCode, 1)));
+      batch.addStatement(
+        UPDATE(o).
+        SET(o.territory, "B").
+        WHERE(EQ(o.officeCode, 2)));
+
+      assertEquals(isOracle ? 0 : 2, batch.executeAsync(transaction).get().intValue());
+    }
+  }
+}
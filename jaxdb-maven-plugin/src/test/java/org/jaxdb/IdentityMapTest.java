@@ -0,0 +1,147 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import org.jaxdb.jsql.QueryConfig;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class IdentityMapTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends IdentityMapTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends IdentityMapTest {
+  }
+
+  private static classicmodels.Office select(final Transaction transaction, final int officeCode, final QueryConfig config) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    o.officeCode.set(officeCode);
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o)
+        .execute(transaction, config)) {
+
+      assertTrue(rows.nextRow());
+      final classicmodels.Office office = rows.nextEntity();
+      assertEquals(officeCode, office.officeCode.getAsInt());
+      assertFalse(rows.nextRow());
+      return office;
+    }
+  }
+
+  private static classicmodels.Office select(final Transaction transaction, final int officeCode) throws IOException, SQLException {
+    return select(transaction, officeCode, null);
+  }
+
+  @Test
+  public void testLookup(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    transaction.setIdentityMap(true);
+    final HashMap<Integer,classicmodels.Office> offices = new HashMap<>();
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(transaction)) {
+
+      while (rows.nextRow()) {
+        final classicmodels.Office office = rows.nextEntity();
+        offices.put(office.officeCode.get(), office);
+      }
+    }
+
+    // A lookup by primary key returns the instance that was loaded in the transaction
+    assertSame(offices.get(3), select(transaction, 3));
+    assertSame(offices.get(3), select(transaction, 3));
+
+    // Rows of later queries are materialized as the loaded instances
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.officeCode, 4))
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      assertSame(offices.get(4), rows.nextEntity());
+    }
+
+    // A query with IdentityScope.NONE bypasses the identity map
+    assertNotSame(offices.get(3), select(transaction, 3, new QueryConfig.Builder().withIdentityScope(QueryConfig.IdentityScope.NONE).build()));
+  }
+
+  @Test
+  public void testEvict(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    transaction.setIdentityMap(true);
+    final classicmodels.Office office3 = select(transaction, 3);
+    final classicmodels.Office office4 = select(transaction, 4);
+    assertSame(office3, select(transaction, 3));
+
+    // A modification by primary key evicts the entity
+    assertEquals(1,
+      UPDATE(office3)
+        .execute(transaction));
+
+    assertNotSame(office3, select(transaction, 3));
+    assertSame(office4, select(transaction, 4));
+
+    // Other modifications evict all entities of the table
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      UPDATE(o).
+      SET(o.territory, "X").
+      WHERE(EQ(o.officeCode, -1))
+        .execute(transaction));
+
+    assertNotSame(office4, select(transaction, 4));
+  }
+
+  @Test
+  public void testClear(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    assertFalse(transaction.hasIdentityMap());
+    final classicmodels.Office office = select(transaction, 3);
+    assertNotSame(office, select(transaction, 3));
+
+    transaction.setIdentityMap(true);
+    assertTrue(transaction.hasIdentityMap());
+    final classicmodels.Office loaded = select(transaction, 3);
+    assertSame(loaded, select(transaction, 3));
+
+    transaction.rollback();
+    assertNotSame(loaded, select(transaction, 3));
+  }
+}
@@ -135,6 +135,25 @@ public abstract class InsertConflictUpdateTest {
     assertEquals(InsertTest.getMaxId(transaction, t3), t3.id.getAsInt());
   }
 
+  @Test
+  public void testInsertValues(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    assertEquals(2,
+      INSERT(t1, t2).
+        ON_CONFLICT().
+        DO_UPDATE()
+          .execute(transaction));
+
+    t1.doubleType.set(Math.random());
+    t2.doubleType.set(Math.random());
+    assertTrue(0 <
+      INSERT(t1, t2).
+        ON_CONFLICT().
+        DO_UPDATE()
+          .execute(transaction));
+
+    assertEquals(InsertTest.getMaxId(transaction, t1), t2.id.getAsInt());
+  }
+
   @Test
   public void testInsertBatch(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
     try (final Batch batch = new Batch()) {
@@ -30,8 +30,11 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 import org.jaxdb.jsql.Batch;
+import org.jaxdb.jsql.QueryMetrics;
+import org.jaxdb.jsql.Registry;
 import org.jaxdb.jsql.RowIterator;
 import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
 import org.jaxdb.jsql.type;
 import org.jaxdb.jsql.types;
 import org.jaxdb.runner.Derby;
@@ -221,6 +224,189 @@ public abstract class InsertTest {
     assertEquals(id - 0, t3.id.getAsInt());
   }
 
+  @Test
+  public void testInsertValues(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    // t1 and t2 have the same columns, and are inserted in one statement
+    assertEquals(3,
+      INSERT(t1, t2, t3)
+        .execute(transaction));
+
+    final DBVendor vendor = transaction.getVendor();
+    if (vendor == DBVendor.ORACLE || vendor == DBVendor.SQLITE)
+      return;
+
+    final int id = getMaxId(transaction, t1);
+    assertEquals(id - 2, t1.id.getAsInt());
+    assertEquals(id - 1, t2.id.getAsInt());
+    assertEquals(id - 0, t3.id.getAsInt());
+  }
+
+  @Test
+  public void testInsertGroupedBatch(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final DBVendor vendor = transaction.getVendor();
+    final boolean isOracle = vendor == DBVendor.ORACLE;
+    final int[] executed = new int[3];
+    try (final Batch batch = new Batch().withGrouping(true)) {
+      batch.addStatement(INSERT(t1), (e, c) -> executed[0] += c);
+      batch.addStatement(INSERT(t3), (e, c) -> executed[1] += c);
+      batch.addStatement(INSERT(t2), (e, c) -> executed[2] += c);
+      assertEquals(isOracle ? 0 : 3, batch.execute(transaction));
+    }
+
+    if (isOracle)
+      return;
+
+    assertArrayEquals(new int[] {1, 1, 1}, executed);
+    if (vendor == DBVendor.DERBY || vendor == DBVendor.SQLITE)
+      return;
+
+    // t1 and t2 have the same shape, and are inserted before t3
+    final int id = getMaxId(transaction, t1);
+    assertEquals(id - 2, t1.id.getAsInt());
+    assertEquals(id - 1, t2.id.getAsInt());
+    assertEquals(id - 0, t3.id.getAsInt());
+  }
+
+  private static classicmodels.Product newProduct(final String code, final String productLine) {
+    final classicmodels.Product p = new classicmodels.Product();
+    p.code.set(code);
+    p.name.set(code);
+    p.productLine.set(productLine);
+    p.scale.set("1:10");
+    p.vendor.set("Vendor");
+    p.description.set("Description");
+    p.quantityInStock.set((short)1);
+    p.price.set(BigDecimal.ONE);
+    p.msrp.set(BigDecimal.ONE);
+    return p;
+  }
+
+  @Test
+  public void testInsertGroupedBatchForeignKey(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.ProductLine line = new classicmodels.ProductLine();
+    line.productLine.set("Grouped");
+    line.description.set(new ClobStream("Grouped"));
+
+    // The second product refers to the product line that is inserted between the products, which is thus inserted before the grouped products
+    try (final Batch batch = new Batch().withGrouping(true)) {
+      batch.addStatement(INSERT(newProduct("GRP_0001", "Planes")));
+      batch.addStatement(INSERT(line));
+      batch.addStatement(INSERT(newProduct("GRP_0002", "Grouped")));
+      final int count = batch.execute(transaction);
+      assertTrue(count == 3 || count == 0);
+    }
+
+    final classicmodels.Product p = classicmodels.Product();
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(p)).
+      FROM(p).
+      WHERE(EQ(p.productLine, "Grouped"))
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      assertEquals(1, rows.nextEntity().getAsLong());
+    }
+
+    transaction.rollback();
+  }
+
+  private static classicmodels.ProductLine newProductLine(final String productLine) {
+    final classicmodels.ProductLine line = new classicmodels.ProductLine();
+    line.productLine.set(productLine);
+    line.description.set(new ClobStream(productLine));
+    return line;
+  }
+
+  private static classicmodels.Employee newEmployee(final String lastName) {
+    final classicmodels.Employee e = new classicmodels.Employee();
+    e.firstName.set("Grouped");
+    e.lastName.set(lastName);
+    e.extension.set((short)1);
+    e.email.set(lastName + "@example.com");
+    e.officeCode.set(1);
+    e.jobTitle.set("Grouped");
+    return e;
+  }
+
+  /**
+   * Executes a {@link Batch} of the interleaved inserts of 3 product lines,
+   * each followed by a product that refers to it and by an employee, and
+   * returns the number of JDBC batches in which they were executed.
+   */
+  private static long insertInterleaved(final Transaction transaction, final boolean grouping, final String prefix, final classicmodels.Employee[] employees, final int[] counts) throws IOException, SQLException {
+    final QueryMetrics metrics = new QueryMetrics();
+    Registry.threadLocal().setMetrics(classicmodels.class, metrics);
+    try (final Batch batch = new Batch().withGrouping(grouping)) {
+      for (int i = 0; i < employees.length; ++i) {
+        final int p = i * 3;
+        batch.addStatement(INSERT(newProductLine(prefix + i)), (e, c) -> counts[p] += c);
+        batch.addStatement(INSERT(newProduct(prefix + "_000" + i, prefix + i)), (e, c) -> counts[p + 1] += c);
+        batch.addStatement(INSERT(employees[i] = newEmployee(prefix + i)), (e, c) -> counts[p + 2] += c);
+      }
+
+      final int count = batch.execute(transaction);
+      assertTrue(count == counts.length || count == 0);
+    }
+    finally {
+      Registry.threadLocal().setMetrics(classicmodels.class, null);
+    }
+
+    long batches = 0;
+    for (final String fingerprint : metrics.getFingerprints())
+      batches += metrics.getStats(fingerprint).getBatchCount();
+
+    return batches;
+  }
+
+  @Test
+  public void testInsertGroupedBatchInterleaved(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final DBVendor vendor = transaction.getVendor();
+    // Derby executes the batch as one JDBC batch of unprepared statements, regardless of their order
+    final boolean isPrepared = vendor != DBVendor.DERBY;
+    final classicmodels.Employee[] employees = new classicmodels.Employee[3];
+    final int[] counts = new int[9];
+
+    // Ungrouped, each statement is executed in its own JDBC batch, since the SQL of each differs from that of the previous
+    assertEquals(isPrepared ? 9 : 1, insertInterleaved(transaction, false, "GRQ", new classicmodels.Employee[3], new int[9]));
+    transaction.rollback();
+    // Grouped, the product lines are inserted before the products that refer to them, and the statements of each table in one JDBC batch
+    assertEquals(isPrepared ? 3 : 1, insertInterleaved(transaction, true, "GRP", employees, counts));
+
+    // The counts are provided to the listener of each statement, in the original order
+    final int expected = vendor == DBVendor.ORACLE ? 0 : 1;
+    for (int i = 0; i < counts.length; ++i)
+      assertEquals("Statement " + i, expected, counts[i]);
+
+    final classicmodels.Product p = classicmodels.Product();
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(p)).
+      FROM(p).
+      WHERE(LIKE(p.code, "GRP_000%"))
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      assertEquals(3, rows.nextEntity().getAsLong());
+    }
+
+    // The generated keys are provided to the entity of each statement, in the original order
+    if (vendor != DBVendor.DERBY && vendor != DBVendor.ORACLE && vendor != DBVendor.SQLITE) {
+      for (int i = 0; i < employees.length; ++i) {
+        final classicmodels.Employee e = classicmodels.Employee();
+        try (final RowIterator<type.CHAR> rows =
+          SELECT(e.lastName).
+          FROM(e).
+          WHERE(EQ(e.employeeNumber, employees[i].employeeNumber.getAsInt()))
+            .execute(transaction)) {
+
+          assertTrue(rows.nextRow());
+          assertEquals("GRP" + i, rows.nextEntity().get());
+        }
+      }
+    }
+
+    transaction.rollback();
+  }
+
   @Test
   @VendorRunner.Unsupported(Oracle.class) // FIXME: ORA-00933 command not properly ended
   public void testInsertSelectIntoTable(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
@@ -0,0 +1,132 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jaxdb.jsql.QueryConfig;
+import org.jaxdb.jsql.RowPublisher;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class PublishTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends PublishTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends PublishTest {
+  }
+
+  /**
+   * A {@link RowPublisher.Subscriber} that requests rows in steps, and fails if
+   * it receives more rows than it has requested.
+   */
+  private static class StepSubscriber implements RowPublisher.Subscriber<classicmodels.Office[]> {
+    private final int step;
+    private final int cancelAfter;
+    private final AtomicInteger received = new AtomicInteger();
+    private final CompletableFuture<Integer> done = new CompletableFuture<>();
+    private RowPublisher.Subscription subscription;
+    private int requested;
+
+    private StepSubscriber(final int step, final int cancelAfter) {
+      this.step = step;
+      this.cancelAfter = cancelAfter;
+    }
+
+    @Override
+    public void onSubscribe(final RowPublisher.Subscription subscription) {
+      this.subscription = subscription;
+      requested = step;
+      subscription.request(step);
+    }
+
+    @Override
+    public void onNext(final classicmodels.Office[] row) {
+      final int count = received.incrementAndGet();
+      if (count > requested) {
+        done.completeExceptionally(new AssertionError("Received " + count + " rows, but requested " + requested));
+        return;
+      }
+
+      assertEquals(1, row.length);
+      assertNotNull(row[0].officeCode.get());
+      if (count == cancelAfter) {
+        subscription.cancel();
+        done.complete(count);
+      }
+      else if (count == requested) {
+        requested += step;
+        subscription.request(step);
+      }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      done.complete(received.get());
+    }
+  }
+
+  @Test
+  public void testPublish(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException {
+    final classicmodels.Office o = classicmodels.Office();
+    final StepSubscriber subscriber = new StepSubscriber(2, -1);
+    SELECT(o).
+    FROM(o)
+      .publish(transaction, new QueryConfig.Builder().withFetchSize(2).build())
+      .subscribe(subscriber);
+
+    assertEquals(7, subscriber.done.get().intValue());
+  }
+
+  @Test
+  public void testCancel(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException {
+    final classicmodels.Office o = classicmodels.Office();
+    final StepSubscriber subscriber = new StepSubscriber(1, 3);
+    SELECT(o).
+    FROM(o)
+      .publish(transaction)
+      .subscribe(subscriber);
+
+    assertEquals(3, subscriber.done.get().intValue());
+    assertEquals(3, subscriber.received.get());
+  }
+}
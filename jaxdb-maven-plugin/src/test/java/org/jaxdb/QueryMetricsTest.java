@@ -0,0 +1,153 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.Batch;
+import org.jaxdb.jsql.Metrics;
+import org.jaxdb.jsql.QueryMetrics;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link QueryMetrics} of a registration. The registration opens
+ * connections from the URL of the test database, so that this test is only
+ * run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class QueryMetricsTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends QueryMetricsTest {
+  }
+
+  private QueryMetrics metrics;
+
+  private String register(final Transaction transaction, final String name) throws SQLException {
+    final String id = CountingConnector.getId(QueryMetricsTest.class, name, transaction);
+    CountingConnector.register(classicmodels.class, transaction, id);
+    Registry.threadLocal().setMetrics(classicmodels.class, id, metrics = new QueryMetrics());
+    return id;
+  }
+
+  private static int select(final String id, final String territory) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    int count = 0;
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.territory, territory))
+        .execute(id)) {
+
+      while (rows.nextRow())
+        ++count;
+    }
+
+    return count;
+  }
+
+  private QueryMetrics.Stats getStats() {
+    assertEquals(1, metrics.getFingerprints().size());
+    return metrics.getStats(metrics.getFingerprints().iterator().next());
+  }
+
+  @Test
+  public void testFingerprint(@Schema(classicmodels.class) final Transaction transaction) {
+    assertEquals("SELECT a.x FROM \"t 1\" a WHERE a.id IN (?) AND a.y = ? AND a.z = ?", QueryMetrics.fingerprint("SELECT  a.x FROM \"t 1\" a\nWHERE a.id IN (?, ?, ?) AND a.y = 'it''s' AND a.z = 12.5"));
+    assertEquals("INSERT INTO t (a, b) VALUES (?)", QueryMetrics.fingerprint("INSERT INTO t (a, b) VALUES (?, ?), (?, ?), (?, ?)"));
+    assertEquals(QueryMetrics.fingerprint("SELECT * FROM t2 WHERE c = 1"), QueryMetrics.fingerprint("SELECT * FROM t2 WHERE c = 2"));
+  }
+
+  @Test
+  public void testSelect(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testSelect");
+    final int rows = select(id, "NA") + select(id, "EMEA");
+    assertTrue(rows > 0);
+
+    final QueryMetrics.Stats stats = getStats();
+    assertEquals(2, stats.getExecutionCount());
+    assertEquals(rows, stats.getRowCount());
+    for (final Metrics.Phase phase : new Metrics.Phase[] {Metrics.Phase.COMPILE, Metrics.Phase.EXECUTE, Metrics.Phase.FETCH, Metrics.Phase.MATERIALIZE})
+      assertEquals(phase.toString(), 2, stats.getHistogram(phase).getCount());
+
+    assertEquals(2, metrics.getConnectionHistogram().getCount());
+    assertEquals(0, metrics.getDroppedCount());
+
+    metrics.reset();
+    assertTrue(metrics.getFingerprints().isEmpty());
+    assertEquals(0, metrics.getConnectionHistogram().getCount());
+  }
+
+  @Test
+  public void testUpdate(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testUpdate");
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      UPDATE(o).
+      SET(o.territory, "X").
+      WHERE(EQ(o.officeCode, -1))
+        .execute(id));
+
+    QueryMetrics.Stats stats = getStats();
+    assertEquals(1, stats.getExecutionCount());
+    assertEquals(0, stats.getRowCount());
+    assertEquals(0, stats.getBatchCount());
+
+    metrics.reset();
+    try (final Batch batch = new Batch()) {
+      batch.addStatement(
+        UPDATE(o).
+        SET(o.territory, "X").
+        WHERE(EQ(o.officeCode, -1)));
+      batch.addStatement(
+        UPDATE(o).
+        SET(o.territory, "Y").
+        WHERE(EQ(o.officeCode, -2)));
+
+      batch.execute(id);
+    }
+
+    stats = getStats();
+    assertEquals(1, stats.getBatchCount());
+    assertEquals(2, stats.getBatchStatementCount());
+    assertEquals(1, stats.getExecutionCount());
+    assertEquals(2, stats.getHistogram(Metrics.Phase.COMPILE).getCount());
+  }
+
+  @Test
+  public void testDisabled(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testDisabled");
+    Registry.threadLocal().setMetrics(classicmodels.class, id, null);
+    select(id, "NA");
+    assertTrue(metrics.getFingerprints().isEmpty());
+    assertEquals(0, metrics.getConnectionHistogram().getCount());
+  }
+}
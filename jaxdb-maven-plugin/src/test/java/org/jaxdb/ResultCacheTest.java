@@ -0,0 +1,229 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.Batch;
+import org.jaxdb.jsql.QueryConfig;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.ResultCache;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link ResultCache} of a registration. The registration opens
+ * connections from the URL of the test database, and counts them, so that
+ * this test is only run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class ResultCacheTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends ResultCacheTest {
+  }
+
+  private CountingConnector connector;
+  private ResultCache cache;
+
+  private String register(final Transaction transaction, final String name) throws SQLException {
+    final String id = CountingConnector.getId(ResultCacheTest.class, name, transaction);
+    connector = CountingConnector.register(classicmodels.class, transaction, id);
+    Registry.threadLocal().setResultCache(classicmodels.class, id, cache = new ResultCache.Builder().withMaxSize(2).build());
+    return id;
+  }
+
+  private static void select(final String id, final int officeCode) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.officeCode, officeCode))
+        .execute(id)) {
+
+      assertTrue(rows.nextRow());
+      assertEquals(officeCode, rows.nextEntity().officeCode.getAsInt());
+      assertFalse(rows.nextRow());
+    }
+  }
+
+  @Test
+  public void testHitAndInvalidate(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testHitAndInvalidate");
+    select(id, 3);
+    assertEquals(1, connector.getConnectionCount());
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getMissCount());
+
+    // The result is replayed without a connection
+    select(id, 3);
+    assertEquals(1, connector.getConnectionCount());
+    assertEquals(1, cache.getHitCount());
+
+    // Results are keyed by the values of the parameters
+    select(id, 4);
+    assertEquals(2, connector.getConnectionCount());
+    assertEquals(2, cache.size());
+
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      UPDATE(o).
+      SET(o.territory, "X").
+      WHERE(EQ(o.officeCode, -1))
+        .execute(id));
+
+    assertEquals(3, connector.getConnectionCount());
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getInvalidationCount());
+
+    select(id, 3);
+    assertEquals(4, connector.getConnectionCount());
+  }
+
+  @Test
+  public void testEviction(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testEviction");
+    for (int i = 1; i <= 3; ++i)
+      select(id, i);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+
+    // The least recently used result was evicted
+    select(id, 1);
+    assertEquals(4, connector.getConnectionCount());
+  }
+
+  @Test
+  public void testTransaction(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testTransaction");
+    select(id, 3);
+    assertEquals(1, cache.size());
+
+    try (final Transaction t = new Transaction(classicmodels.class, id)) {
+      final classicmodels.Office o = classicmodels.Office();
+      assertEquals(0,
+        UPDATE(o).
+        SET(o.territory, "X").
+        WHERE(EQ(o.officeCode, -1))
+          .execute(t));
+
+      // A table that is modified by the transaction bypasses the cache until the transaction is committed
+      try (final RowIterator<classicmodels.Office> rows =
+        SELECT(o).
+        FROM(o).
+        WHERE(EQ(o.officeCode, 3))
+          .execute(t)) {
+
+        assertTrue(rows.nextRow());
+        assertFalse(rows.nextRow());
+      }
+
+      assertEquals(0, cache.getHitCount());
+      assertEquals(1, cache.size());
+
+      t.commit();
+    }
+
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getInvalidationCount());
+  }
+
+  @Test
+  public void testBatchCommitInterval(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testBatchCommitInterval");
+    select(id, 3);
+    assertEquals(1, cache.size());
+
+    try (final Transaction t = new Transaction(classicmodels.class, id)) {
+      final classicmodels.Office o = classicmodels.Office();
+      try (final Batch batch = new Batch().withMaxSize(1).withCommitInterval(1)) {
+        batch.addStatement(
+          UPDATE(o).
+          SET(o.territory, "X").
+          WHERE(EQ(o.officeCode, -1)));
+        batch.addStatement(
+          UPDATE(o).
+          SET(o.territory, "Y").
+          WHERE(EQ(o.officeCode, -2)));
+        batch.execute(t);
+      }
+
+      // The writes of the batch were committed by its intermediate commits, and are thus invalidated regardless of the rollback of the rest of the transaction
+      t.rollback();
+    }
+
+    assertEquals(0, cache.size());
+    final int connections = connector.getConnectionCount();
+    select(id, 3);
+    assertEquals(connections + 1, connector.getConnectionCount());
+  }
+
+  @Test
+  public void testInvalidateAllDuringIterator(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testInvalidateAllDuringIterator");
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(id)) {
+
+      assertTrue(rows.nextRow());
+
+      // The table of the SELECT was never invalidated, and the result of the open iterator is nonetheless not cached
+      cache.invalidateAll();
+      while (rows.nextRow());
+    }
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEqualConfigs(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = register(transaction, "testEqualConfigs");
+    final classicmodels.Office o = classicmodels.Office();
+    for (int i = 0; i < 2; ++i) {
+      // Each execution has a distinct, but equal QueryConfig
+      final QueryConfig config = new QueryConfig.Builder().withFetchSize(10).withLookBack(1).build();
+      try (final RowIterator<classicmodels.Office> rows =
+        SELECT(o).
+        FROM(o).
+        WHERE(EQ(o.officeCode, 3))
+          .execute(id, config)) {
+
+        assertTrue(rows.nextRow());
+        assertFalse(rows.nextRow());
+      }
+    }
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, connector.getConnectionCount());
+  }
+}
@@ -0,0 +1,221 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.ResultCache;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Routing;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link Routing} of reads to replicas. The primary and the
+ * replicas are connections that are opened from the URL of the test database,
+ * and thus this test is only run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class RoutingTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends RoutingTest {
+  }
+
+  private static String getId(final Transaction transaction) throws SQLException {
+    return RoutingTest.class.getSimpleName() + "." + transaction.getVendor();
+  }
+
+  private static int select(final String dataSourceId) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(dataSourceId)) {
+
+      int count = 0;
+      while (rows.nextRow())
+        ++count;
+
+      return count;
+    }
+  }
+
+  @Test
+  public void testRoundRobin(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final CountingConnector replica0 = new CountingConnector(url);
+    final CountingConnector replica1 = new CountingConnector(url);
+    final Routing routing = new Routing.Builder(Routing.Balance.ROUND_ROBIN).withReplica(replica0).withReplica(replica1).withReadYourWrites(0).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, routing, id);
+
+    for (int i = 0; i < 4; ++i)
+      assertEquals(7, select(id));
+
+    assertEquals(0, primary.getConnectionCount());
+    assertEquals(2, replica0.getConnectionCount());
+    assertEquals(2, replica1.getConnectionCount());
+    assertEquals(2, routing.getRoutedCount(0));
+    assertEquals(2, routing.getRoutedCount(1));
+    assertEquals(0, routing.getOutstanding(0));
+    assertTrue(routing.getLatency(0) > 0);
+  }
+
+  @Test
+  public void testLeastOutstanding(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final Routing routing = new Routing.Builder(Routing.Balance.LEAST_OUTSTANDING).withReplica(new CountingConnector(url)).withReplica(new CountingConnector(url)).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, new CountingConnector(url), routing, id);
+
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(id)) {
+
+      assertEquals(1, routing.getOutstanding(0) + routing.getOutstanding(1));
+      // The replica with the open read is not chosen
+      final int open = routing.getOutstanding(0) == 1 ? 0 : 1;
+      assertEquals(7, select(id));
+      assertEquals(1, routing.getRoutedCount(open));
+      assertEquals(1, routing.getRoutedCount(1 - open));
+    }
+
+    assertEquals(0, routing.getOutstanding(0) + routing.getOutstanding(1));
+  }
+
+  @Test
+  public void testReadYourWrites(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final CountingConnector replica = new CountingConnector(url);
+    final Routing routing = new Routing.Builder(Routing.Balance.LATENCY_WEIGHTED).withReplica(replica).withReadYourWrites(60000).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, routing, id);
+
+    assertEquals(7, select(id));
+    assertEquals(1, replica.getConnectionCount());
+
+    // A write that affects no rows opens the read-your-writes window of this thread
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      UPDATE(o).
+      SET(o.territory, "X").
+      WHERE(EQ(o.officeCode, -1))
+        .execute(id));
+
+    final int connections = primary.getConnectionCount();
+    assertEquals(7, select(id));
+    assertEquals(1, replica.getConnectionCount());
+    assertEquals(connections + 1, primary.getConnectionCount());
+    assertEquals(1, routing.getPrimaryCount());
+  }
+
+  @Test
+  public void testReadOnlyCommit(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final CountingConnector replica = new CountingConnector(url);
+    final Routing routing = new Routing.Builder(Routing.Balance.ROUND_ROBIN).withReplica(replica).withReadYourWrites(60000).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, routing, id);
+
+    // The commit of a transaction that only reads does not open the read-your-writes window of this thread
+    try (final Transaction readOnly = new Transaction(classicmodels.class, id)) {
+      final classicmodels.Office o = classicmodels.Office();
+      try (final RowIterator<classicmodels.Office> rows =
+        SELECT(o).
+        FROM(o)
+          .execute(readOnly)) {
+
+        assertTrue(rows.nextRow());
+      }
+
+      assertTrue(readOnly.commit());
+    }
+
+    assertEquals(7, select(id));
+    assertEquals(1, replica.getConnectionCount());
+    assertEquals(0, routing.getPrimaryCount());
+
+    // The commit of a transaction that writes opens the window
+    try (final Transaction write = new Transaction(classicmodels.class, id)) {
+      final classicmodels.Office o = classicmodels.Office();
+      assertEquals(0,
+        UPDATE(o).
+        SET(o.territory, "X").
+        WHERE(EQ(o.officeCode, -1))
+          .execute(write));
+
+      assertTrue(write.commit());
+    }
+
+    assertEquals(7, select(id));
+    assertEquals(1, replica.getConnectionCount());
+    assertEquals(1, routing.getPrimaryCount());
+  }
+
+  @Test
+  public void testCache(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final CountingConnector replica = new CountingConnector(url);
+    final Routing routing = new Routing.Builder(Routing.Balance.ROUND_ROBIN).withReplica(replica).withReadYourWrites(0).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, routing, id);
+    final ResultCache cache = new ResultCache.Builder().build();
+    Registry.threadLocal().setResultCache(classicmodels.class, id, cache);
+
+    // A result that is read from a replica, which may lag the primary, is not cached
+    assertEquals(7, select(id));
+    assertEquals(7, select(id));
+    assertEquals(2, replica.getConnectionCount());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testFallback(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final CountingConnector primary = new CountingConnector(url);
+    final Routing routing = new Routing.Builder(Routing.Balance.ROUND_ROBIN).withReplica(() -> {
+      throw new SQLException("Replica is down");
+    }).build();
+    final String id = getId(transaction);
+    Registry.threadLocal().registerPrepared(classicmodels.class, primary, routing, id);
+
+    assertEquals(7, select(id));
+    assertEquals(1, primary.getConnectionCount());
+    assertEquals(1, routing.getFallbackCount());
+    assertEquals(1, routing.getFailedCount(0));
+  }
+}
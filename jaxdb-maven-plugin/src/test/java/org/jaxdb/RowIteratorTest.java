@@ -0,0 +1,237 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+import org.jaxdb.jsql.QueryConfig;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.jsql.type;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class RowIteratorTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends RowIteratorTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends RowIteratorTest {
+  }
+
+  @Test
+  public void testForwardOnly(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      ORDER_BY(o.officeCode)
+        .execute(transaction)) {
+
+      assertEquals(0, rows.getLookBack());
+      assertFalse(rows.previousRow());
+
+      int count = 0;
+      while (rows.nextRow()) {
+        assertNotNull(rows.nextEntity());
+        ++count;
+      }
+
+      assertEquals(7, count);
+      try {
+        rows.previousRow();
+        fail("Expected IllegalStateException");
+      }
+      catch (final IllegalStateException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testLookBack(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      ORDER_BY(o.officeCode)
+        .execute(transaction, new QueryConfig.Builder().withLookBack(2).build())) {
+
+      assertEquals(2, rows.getLookBack());
+      for (int i = 0; i < 5; ++i)
+        assertTrue(rows.nextRow());
+
+      assertTrue(rows.previousRow());
+      assertTrue(rows.previousRow());
+      assertEquals(3, rows.nextEntity().officeCode.getAsInt());
+      try {
+        rows.previousRow();
+        fail("Expected IllegalStateException");
+      }
+      catch (final IllegalStateException e) {
+      }
+
+      assertTrue(rows.nextRow());
+      assertTrue(rows.nextRow());
+      assertTrue(rows.nextRow());
+      assertEquals(6, rows.nextEntity().officeCode.getAsInt());
+    }
+  }
+
+  @Test
+  public void testUnboundedLookBack(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      ORDER_BY(o.officeCode)
+        .execute(transaction, new QueryConfig.Builder().withUnboundedLookBack().build())) {
+
+      while (rows.nextRow());
+      while (rows.previousRow());
+      assertEquals(1, rows.nextEntity().officeCode.getAsInt());
+    }
+  }
+
+  private static void assertIdentity(final Transaction transaction, final QueryConfig config, final boolean same) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    final classicmodels.Customer c = classicmodels.Customer();
+    try (final RowIterator<classicmodels.Address> rows =
+      SELECT(o, c).
+      FROM(o, c).
+      WHERE(EQ(o.officeCode, 1))
+        .execute(transaction, config)) {
+
+      assertTrue(rows.nextRow());
+      final classicmodels.Address office = rows.nextEntity();
+      for (int i = 0; i < 3; ++i) {
+        assertTrue(rows.nextRow());
+        final classicmodels.Address next = rows.nextEntity();
+        assertEquals(office, next);
+        assertEquals(same, office == next);
+      }
+    }
+  }
+
+  @Test
+  public void testIdentityScope(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    assertIdentity(transaction, null, true);
+    assertIdentity(transaction, new QueryConfig.Builder().withIdentityScope(QueryConfig.IdentityScope.RESULT).build(), true);
+    assertIdentity(transaction, new QueryConfig.Builder().withBoundedIdentityScope(2).build(), true);
+    assertIdentity(transaction, new QueryConfig.Builder().withIdentityScope(QueryConfig.IdentityScope.ROW).build(), false);
+    assertIdentity(transaction, new QueryConfig.Builder().withIdentityScope(QueryConfig.IdentityScope.NONE).build(), false);
+  }
+
+  private static boolean isRetained(final Transaction transaction, final QueryConfig config) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      ORDER_BY(o.officeCode)
+        .execute(transaction, config)) {
+
+      assertTrue(rows.nextRow());
+      final WeakReference<classicmodels.Office> first = new WeakReference<>(rows.nextEntity());
+      while (rows.nextRow());
+
+      // The first entity is retained only if it is reachable from the iterator, which is still open
+      for (int i = 0; i < 10 && first.get() != null; ++i) {
+        System.gc();
+        try {
+          Thread.sleep(10);
+        }
+        catch (final InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      return first.get() != null;
+    }
+  }
+
+  @Test
+  public void testIdentityRetention(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    assertFalse(isRetained(transaction, null));
+    assertFalse(isRetained(transaction, new QueryConfig.Builder().withLookBack(2).build()));
+    assertTrue(isRetained(transaction, new QueryConfig.Builder().withIdentityScope(QueryConfig.IdentityScope.RESULT).build()));
+    assertTrue(isRetained(transaction, new QueryConfig.Builder().withUnboundedLookBack().build()));
+  }
+
+  @Test
+  public void testStream(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final Stream<classicmodels.Office> stream =
+      SELECT(o).
+      FROM(o)
+        .execute(transaction, new QueryConfig.Builder().withFetchSize(2).build()).streamEntities()) {
+
+      assertEquals(28, stream.parallel().mapToInt(office -> office.officeCode.getAsInt()).sum());
+    }
+
+    final classicmodels.Customer c = classicmodels.Customer();
+    try (final Stream<classicmodels.Address[]> stream =
+      SELECT(o, c).
+      FROM(o, c).
+      WHERE(EQ(o.officeCode, 1))
+        .execute(transaction).stream()) {
+
+      assertTrue(stream.allMatch(row -> row.length == 2 && ((classicmodels.Office)row[0]).officeCode.getAsInt() == 1));
+    }
+  }
+
+  @Test
+  public void testParallelStream(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Customer c = classicmodels.Customer();
+    final long count;
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(c)).
+      FROM(c)
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      count = rows.nextEntity().getAsLong();
+    }
+
+    // With a batch of 1 row, the splits are exhausted before the end of the result, after which the remaining rows are read without splitting
+    try (final Stream<classicmodels.Customer> stream =
+      SELECT(c).
+      FROM(c)
+        .execute(transaction, new QueryConfig.Builder().withFetchSize(1).build()).streamEntities()) {
+
+      assertEquals(count, stream.parallel().filter(customer -> customer.customerNumber.get() != null).count());
+    }
+  }
+}
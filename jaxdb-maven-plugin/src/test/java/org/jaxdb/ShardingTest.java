@@ -0,0 +1,178 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Sharding;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.jsql.type;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link Sharding} of statements across shards. The shards are
+ * connections that are opened from the URL of the test database, so that
+ * each shard holds all rows, and thus this test is only run against the
+ * embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class ShardingTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends ShardingTest {
+  }
+
+  private CountingConnector[] connectors;
+
+  private Sharding newSharding(final Transaction transaction) throws SQLException {
+    final String url = transaction.getConnection().getMetaData().getURL();
+    final Sharding.Builder builder = new Sharding.Builder(Sharding.PRIMARY_KEY_HASH).withShardFunction(classicmodels.Office.class, (table, shards) -> {
+      final classicmodels.Office office = (classicmodels.Office)table;
+      return office.officeCode.isNull() ? -1 : Math.floorMod(office.officeCode.getAsInt(), shards);
+    });
+
+    connectors = new CountingConnector[2];
+    for (int i = 0; i < connectors.length; ++i) {
+      final String id = ShardingTest.class.getSimpleName() + "." + transaction.getVendor() + "." + i;
+      Registry.threadLocal().registerPrepared(classicmodels.class, connectors[i] = new CountingConnector(url), id);
+      builder.withShard(id);
+    }
+
+    return builder.build();
+  }
+
+  @Test
+  public void testKeyed(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final Sharding sharding = newSharding(transaction);
+    final classicmodels.Office o = classicmodels.Office();
+    o.officeCode.set(3);
+    assertEquals(1, sharding.shard(o));
+    try (final RowIterator<classicmodels.Office> rows =
+      sharding.execute(
+        SELECT(o))) {
+
+      assertTrue(rows.nextRow());
+      assertEquals(3, rows.nextEntity().officeCode.getAsInt());
+      assertFalse(rows.nextRow());
+    }
+
+    assertEquals(0, connectors[0].getConnectionCount());
+    assertEquals(1, connectors[1].getConnectionCount());
+
+    final classicmodels.Office d = classicmodels.Office();
+    d.officeCode.set(100);
+    assertEquals(0, sharding.execute(DELETE(d)));
+    assertEquals(1, connectors[0].getConnectionCount());
+    assertEquals(1, connectors[1].getConnectionCount());
+  }
+
+  @Test
+  public void testFanOut(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final Sharding sharding = newSharding(transaction);
+    final classicmodels.Office o = classicmodels.Office();
+    assertEquals(0,
+      sharding.execute(
+        UPDATE(o).
+        SET(o.territory, "X").
+        WHERE(EQ(o.officeCode, -1))));
+
+    assertEquals(1, connectors[0].getConnectionCount());
+    assertEquals(1, connectors[1].getConnectionCount());
+
+    try (final RowIterator<classicmodels.Office> rows =
+      sharding.execute(
+        SELECT(o).
+        FROM(o))) {
+
+      int count = 0;
+      while (rows.nextRow())
+        ++count;
+
+      assertEquals(14, count);
+    }
+
+    assertEquals(2, connectors[0].getConnectionCount());
+    assertEquals(2, connectors[1].getConnectionCount());
+  }
+
+  @Test
+  public void testOrderByLimit(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final Sharding sharding = newSharding(transaction);
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      sharding.execute(
+        SELECT(o).
+        FROM(o).
+        ORDER_BY(DESC(o.officeCode)).
+        LIMIT(3).
+        OFFSET(2))) {
+
+      // Each shard holds all 7 offices, so the merged rows are 7, 7, 6, 6, 5, 5, ...
+      for (final int expected : new int[] {6, 6, 5}) {
+        assertTrue(rows.nextRow());
+        assertEquals(expected, rows.nextEntity().officeCode.getAsInt());
+      }
+
+      assertFalse(rows.nextRow());
+    }
+  }
+
+  @Test
+  public void testAggregate(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final Sharding sharding = newSharding(transaction);
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<? extends type.Numeric<?>> rows =
+      sharding.execute(
+        SELECT(
+          COUNT(o),
+          SUM(o.officeCode),
+          MIN(o.officeCode),
+          MAX(o.officeCode)).
+        FROM(o))) {
+
+      assertTrue(rows.nextRow());
+      assertEquals(14, rows.nextEntity().get().intValue());
+      assertEquals(56, rows.nextEntity().get().intValue());
+      assertEquals(1, rows.nextEntity().get().intValue());
+      assertEquals(7, rows.nextEntity().get().intValue());
+      assertFalse(rows.nextRow());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnsupported(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final Sharding sharding = newSharding(transaction);
+    final classicmodels.Office o = classicmodels.Office();
+    sharding.execute(
+      SELECT(o.territory, COUNT(o)).
+      FROM(o).
+      GROUP_BY(o.territory));
+  }
+}
@@ -0,0 +1,100 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalTime;
+
+import org.jaxdb.jsql.QueryConfig;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.jsql.types;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the {@link org.jaxdb.jsql.StatementCache} of a {@link Transaction}.
+ * The registration opens connections from the URL of the test database, and
+ * counts the statements that are prepared on them, so that this test is only
+ * run against the embedded databases.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class StatementCacheTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends StatementCacheTest {
+  }
+
+  @Test
+  public void testInsert(@Schema(types.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = CountingConnector.getId(StatementCacheTest.class, "testInsert", transaction);
+    final CountingConnector connector = CountingConnector.register(types.class, transaction, id);
+    try (final Transaction cached = new Transaction(types.class, id)) {
+      for (int i = 0; i < 50; ++i) {
+        final types.Type t = new types.Type();
+        t.id.set(100000 + i);
+        t.bigintType.set(8493L);
+        t.charType.set("hello");
+        t.doubleType.set(32d);
+        t.tinyintType.set((byte)127);
+        t.timeType.set(LocalTime.now());
+        assertEquals(1,
+          INSERT(t.id, t.bigintType, t.charType, t.doubleType, t.tinyintType, t.timeType)
+            .execute(cached));
+      }
+
+      // 50 identical inserts prepare once
+      assertEquals(1, connector.getPrepareStatementCount());
+      assertEquals(49, cached.getStatementCache().getHitCount());
+      cached.rollback();
+    }
+  }
+
+  @Test
+  public void testConfig(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final String id = CountingConnector.getId(StatementCacheTest.class, "testConfig", transaction);
+    final CountingConnector connector = CountingConnector.register(classicmodels.class, transaction, id);
+    try (final Transaction cached = new Transaction(classicmodels.class, id)) {
+      final classicmodels.Office o = classicmodels.Office();
+      // The settings of the RowIterator do not apply to the statement, which is thus reused
+      for (final QueryConfig config : new QueryConfig[] {
+        new QueryConfig.Builder().withLookBack(1).build(),
+        new QueryConfig.Builder().withLookBack(2).withIdentityScope(QueryConfig.IdentityScope.NONE).build()}) {
+        try (final RowIterator<classicmodels.Office> rows =
+          SELECT(o).
+          FROM(o)
+            .execute(cached, config)) {
+
+          assertTrue(rows.nextRow());
+        }
+      }
+
+      assertEquals(1, connector.getPrepareStatementCount());
+      cached.rollback();
+    }
+  }
+}
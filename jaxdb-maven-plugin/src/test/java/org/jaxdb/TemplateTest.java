@@ -0,0 +1,224 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jaxdb.jsql.Executable;
+import org.jaxdb.jsql.Metrics;
+import org.jaxdb.jsql.QueryMetrics;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Template;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.jsql.type;
+import org.jaxdb.runner.CountingConnector;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorRunner;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class TemplateTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends TemplateTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends TemplateTest {
+  }
+
+  @Test
+  public void testQuery(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final type.INT officeCode = new type.INT();
+    final classicmodels.Office o = classicmodels.Office();
+    final Template.Query<classicmodels.Office> query = Template.of(
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.officeCode, officeCode)), officeCode);
+
+    for (int i = 1; i <= 3; ++i) {
+      try (final RowIterator<classicmodels.Office> rows =
+        query.bind().set(officeCode, i)
+          .execute(transaction)) {
+        assertTrue(rows.nextRow());
+        assertEquals(i, rows.nextEntity().officeCode.getAsInt());
+        assertFalse(rows.nextRow());
+      }
+    }
+  }
+
+  @Test
+  public void testModify(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final type.CHAR code = new type.CHAR(8);
+    final type.SMALLINT quantityInStock = new type.SMALLINT();
+    final classicmodels.Product p = classicmodels.Product();
+    final Template.Modify update = Template.of(
+      UPDATE(p).
+      SET(p.quantityInStock, quantityInStock).
+      WHERE(EQ(p.code, code)), code, quantityInStock);
+
+    assertEquals(1,
+      update.bind().set(code, "S18_1749").set(quantityInStock, (short)300)
+        .execute(transaction));
+
+    assertEquals(1,
+      update.bind().set(code, "S18_2248").set(quantityInStock, (short)400)
+        .execute(transaction));
+  }
+
+  @Test
+  public void testSnapshot(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final type.INT officeCode = new type.INT();
+    final type.CHAR territory = new type.CHAR(32);
+    territory.set("NA");
+    final classicmodels.Office o = classicmodels.Office();
+    final Template.Query<classicmodels.Office> query = Template.of(
+      SELECT(o).
+      FROM(o).
+      WHERE(AND(
+        EQ(o.officeCode, officeCode),
+        EQ(o.territory, territory))), officeCode);
+
+    try (final RowIterator<classicmodels.Office> rows = query.bind().set(officeCode, 1).execute(transaction)) {
+      assertTrue(rows.nextRow());
+    }
+
+    // A value that is not a parameter is bound with the value it held when the Template was compiled
+    territory.set("APAC");
+    try (final RowIterator<classicmodels.Office> rows = query.bind().set(officeCode, 1).execute(transaction)) {
+      assertTrue(rows.nextRow());
+      assertEquals("NA", rows.nextEntity().territory.get());
+    }
+  }
+
+  @Test
+  public void testModifyAsync(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException {
+    final type.CHAR code = new type.CHAR(8);
+    final type.SMALLINT quantityInStock = new type.SMALLINT();
+    final classicmodels.Product p = classicmodels.Product();
+    final Template.Modify update = Template.of(
+      UPDATE(p).
+      SET(p.quantityInStock, quantityInStock).
+      WHERE(EQ(p.code, code)), code, quantityInStock);
+
+    final Executable.Modify binding = update.bind().set(code, "S18_1749").set(quantityInStock, (short)300);
+    assertEquals(1, binding.executeAsync(transaction).get().intValue());
+  }
+
+  @Test
+  @VendorRunner.Unsupported({MySQL.class, Oracle.class, PostgreSQL.class})
+  public void testConcurrentBindings(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException, SQLException {
+    // The connections of the registration are opened from the URL of the test database, which is only supported for the embedded databases
+    final String id = CountingConnector.getId(TemplateTest.class, "testConcurrentBindings", transaction);
+    final CountingConnector connector = new CountingConnector(transaction);
+    final type.INT officeCode = new type.INT();
+    final classicmodels.Office o = classicmodels.Office();
+    final Template.Query<classicmodels.Office> query = Template.of(
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.officeCode, officeCode)), officeCode);
+
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final ArrayList<Future<?>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; ++i) {
+        final int thread = i;
+        futures.add(executor.submit(() -> {
+          Registry.threadLocal().registerPrepared(classicmodels.class, connector, id);
+          start.await();
+          // Each thread executes its own bindings of the one Template, and reads only the rows of its own bindings
+          for (int j = 0; j < 25; ++j) {
+            final int code = (thread + j) % 7 + 1;
+            try (final RowIterator<classicmodels.Office> rows =
+              query.bind().set(officeCode, code)
+                .execute(id)) {
+              assertTrue(rows.nextRow());
+              assertEquals(code, rows.nextEntity().officeCode.getAsInt());
+              assertFalse(rows.nextRow());
+            }
+          }
+
+          return null;
+        }));
+      }
+
+      start.countDown();
+      for (final Future<?> future : futures)
+        future.get();
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testMetrics(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final QueryMetrics metrics = new QueryMetrics();
+    Registry.threadLocal().setMetrics(classicmodels.class, metrics);
+    try {
+      final type.INT officeCode = new type.INT();
+      final classicmodels.Office o = classicmodels.Office();
+      final Template.Query<classicmodels.Office> query = Template.of(
+        SELECT(o).
+        FROM(o).
+        WHERE(EQ(o.officeCode, officeCode)), officeCode);
+
+      for (int i = 1; i <= 2; ++i) {
+        try (final RowIterator<classicmodels.Office> rows =
+          query.bind().set(officeCode, i)
+            .execute(transaction)) {
+          while (rows.nextRow());
+        }
+      }
+
+      // The executions of a Template are recorded, other than its compilation, which is done once per vendor
+      assertEquals(1, metrics.getFingerprints().size());
+      final QueryMetrics.Stats stats = metrics.getStats(metrics.getFingerprints().iterator().next());
+      assertEquals(2, stats.getExecutionCount());
+      for (final Metrics.Phase phase : new Metrics.Phase[] {Metrics.Phase.PREPARE, Metrics.Phase.BIND, Metrics.Phase.EXECUTE})
+        assertEquals(phase.toString(), 2, stats.getHistogram(phase).getCount());
+
+      assertNull(stats.getHistogram(Metrics.Phase.COMPILE));
+    }
+    finally {
+      Registry.threadLocal().setMetrics(classicmodels.class, null);
+    }
+  }
+}
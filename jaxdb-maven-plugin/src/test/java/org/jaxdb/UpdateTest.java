@@ -24,6 +24,8 @@ import java.io.StringReader;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jaxdb.jsql.Batch;
 import org.jaxdb.jsql.RowIterator;
@@ -150,4 +152,36 @@ public abstract class UpdateTest {
           .execute(transaction));
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testUpdateChunkedBatch(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final ArrayList<classicmodels.Office> offices = new ArrayList<>();
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(transaction)) {
+
+      while (rows.nextRow())
+        offices.add(rows.nextEntity());
+    }
+
+    final boolean isOracle = transaction.getVendor() == DBVendor.ORACLE;
+    final AtomicInteger executed = new AtomicInteger();
+    try (final Batch batch = new Batch().withMaxSize(3)) {
+      for (final classicmodels.Office office : offices) {
+        office.territory.set("CHUNK");
+        batch.addStatement(UPDATE(office), (e, c) -> {
+          if (e == Transaction.Event.EXECUTE) {
+            executed.incrementAndGet();
+            assertEquals(isOracle ? 0 : 1, c);
+          }
+        });
+      }
+
+      assertEquals(isOracle ? 0 : offices.size(), batch.execute(transaction));
+    }
+
+    assertEquals(offices.size(), executed.get());
+  }
+}
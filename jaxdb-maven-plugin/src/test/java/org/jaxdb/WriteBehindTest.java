@@ -0,0 +1,158 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import org.jaxdb.jsql.Executable;
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.jsql.type;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.MySQL;
+import org.jaxdb.runner.Oracle;
+import org.jaxdb.runner.PostgreSQL;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class WriteBehindTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends WriteBehindTest {
+  }
+
+  @VendorSchemaRunner.Vendor(MySQL.class)
+  @VendorSchemaRunner.Vendor(PostgreSQL.class)
+  @VendorSchemaRunner.Vendor(Oracle.class)
+  public static class RegressionTest extends WriteBehindTest {
+  }
+
+  private static long countTerritory(final Transaction transaction, final String territory) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(o)).
+      FROM(o).
+      WHERE(EQ(o.territory, territory))
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+      return rows.nextEntity().getAsLong();
+    }
+  }
+
+  @Test
+  public void testUpdate(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final ArrayList<classicmodels.Office> offices = new ArrayList<>();
+    final classicmodels.Office o = classicmodels.Office();
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o)
+        .execute(transaction)) {
+
+      while (rows.nextRow())
+        offices.add(rows.nextEntity());
+    }
+
+    transaction.setWriteBehind(true);
+    assertTrue(transaction.isWriteBehind());
+    for (final classicmodels.Office office : offices) {
+      office.territory.set("WB");
+      assertEquals(Statement.SUCCESS_NO_INFO,
+        UPDATE(office)
+          .execute(transaction));
+    }
+
+    // The SELECT reads the modified table, so the buffer is flushed before it
+    assertEquals(offices.size(), countTerritory(transaction, "WB"));
+    assertEquals(0, transaction.flush());
+
+    for (final classicmodels.Office office : offices) {
+      office.territory.set("WB2");
+      UPDATE(office)
+        .execute(transaction);
+    }
+
+    final int count = transaction.flush();
+    assertTrue(count == offices.size() || count == Statement.SUCCESS_NO_INFO);
+    transaction.setWriteBehind(false);
+    assertEquals(offices.size(), countTerritory(transaction, "WB2"));
+  }
+
+  @Test
+  public void testListener(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final ArrayList<classicmodels.Product> products = new ArrayList<>();
+    final classicmodels.Product p = classicmodels.Product();
+    try (final RowIterator<classicmodels.Product> rows =
+      SELECT(p).
+      FROM(p).
+      WHERE(EQ(p.productLine, "Planes"))
+        .execute(transaction)) {
+
+      while (rows.nextRow())
+        products.add(rows.nextEntity());
+    }
+
+    assertTrue(products.size() > 0);
+    final ArrayList<Executable.Modify> commands = new ArrayList<>();
+    final ArrayList<Integer> counts = new ArrayList<>();
+    transaction.setWriteBehind(true, (command, count) -> {
+      commands.add(command);
+      counts.add(count);
+    });
+
+    final ArrayList<Executable.Modify> updates = new ArrayList<>();
+    for (final classicmodels.Product product : products) {
+      product.scale.set("1:1");
+      final Executable.Modify update = UPDATE(product);
+      assertEquals(Statement.SUCCESS_NO_INFO, update.execute(transaction));
+      updates.add(update);
+    }
+
+    // The name of the "product" table is a part of the name of the "product_line" table, which is not modified, so the buffer is not flushed
+    final classicmodels.ProductLine pl = classicmodels.ProductLine();
+    try (final RowIterator<type.BIGINT> rows =
+      SELECT(COUNT(pl)).
+      FROM(pl)
+        .execute(transaction)) {
+
+      assertTrue(rows.nextRow());
+    }
+
+    assertEquals(0, counts.size());
+
+    // The count of each buffered command is reported when the buffer is flushed
+    transaction.flush();
+    assertEquals(updates, commands);
+    for (final int count : counts)
+      assertTrue(count == 1 || count == Statement.SUCCESS_NO_INFO);
+
+    transaction.setWriteBehind(false);
+    transaction.rollback();
+  }
+}
@@ -0,0 +1,122 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.runner;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jaxdb.jsql.Connector;
+import org.jaxdb.jsql.Registry;
+import org.jaxdb.jsql.Schema;
+import org.jaxdb.jsql.Transaction;
+
+/**
+ * A {@link Connector} of new connections to the URL of a test database, which
+ * counts the connections it opens, and the calls of the methods of the
+ * connections that are checked by the tests of connection checkout. Since the
+ * connections are opened from the URL of the test database, the tests that use
+ * this {@link Connector} are only run against the embedded databases.
+ */
+public class CountingConnector implements Connector {
+  /**
+   * Returns the id of a registration that is unique to the specified test and
+   * the vendor of the specified {@link Transaction}.
+   *
+   * @param test The class of the test.
+   * @param name The name of the registration in the test.
+   * @param transaction The {@link Transaction} of the test.
+   * @return The id of a registration that is unique to the specified test and
+   *         the vendor of the specified {@link Transaction}.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  public static String getId(final Class<?> test, final String name, final Transaction transaction) throws SQLException {
+    return test.getSimpleName() + "." + name + "." + transaction.getVendor();
+  }
+
+  /**
+   * Registers a new {@link CountingConnector} of the database of the specified
+   * {@link Transaction} with the specified id, in the thread-local
+   * {@link Registry}.
+   *
+   * @param schema The {@link Schema}.
+   * @param transaction The {@link Transaction} of the test.
+   * @param id The id of the registration.
+   * @return The new {@link CountingConnector}.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  public static CountingConnector register(final Class<? extends Schema> schema, final Transaction transaction, final String id) throws SQLException {
+    final CountingConnector connector = new CountingConnector(transaction);
+    Registry.threadLocal().registerPrepared(schema, connector, id);
+    return connector;
+  }
+
+  private final String url;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger metaDataCalls = new AtomicInteger();
+  private final AtomicInteger autoCommitCalls = new AtomicInteger();
+  private final AtomicInteger prepareStatementCalls = new AtomicInteger();
+
+  public CountingConnector(final String url) {
+    this.url = url;
+  }
+
+  public CountingConnector(final Transaction transaction) throws SQLException {
+    this(transaction.getConnection().getMetaData().getURL());
+  }
+
+  public int getConnectionCount() {
+    return connections.get();
+  }
+
+  public int getMetaDataCount() {
+    return metaDataCalls.get();
+  }
+
+  public int getAutoCommitCount() {
+    return autoCommitCalls.get();
+  }
+
+  public int getPrepareStatementCount() {
+    return prepareStatementCalls.get();
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    connections.incrementAndGet();
+    final Connection connection = DriverManager.getConnection(url);
+    return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+      final String name = method.getName();
+      if ("getMetaData".equals(name))
+        metaDataCalls.incrementAndGet();
+      else if ("setAutoCommit".equals(name))
+        autoCommitCalls.incrementAndGet();
+      else if ("prepareStatement".equals(name))
+        prepareStatementCalls.incrementAndGet();
+
+      try {
+        return method.invoke(connection, args);
+      }
+      catch (final InvocationTargetException e) {
+        throw e.getCause();
+      }
+    });
+  }
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.jaxdb.jsql.RowIterator;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests of the Java Flight Recorder events of the compilation, execution and
+ * fetch of statements.
+ */
+@RunWith(VendorSchemaRunner.class)
+public abstract class FlightRecorderTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends FlightRecorderTest {
+  }
+
+  private static int select(final Transaction transaction) throws IOException, SQLException {
+    final classicmodels.Office o = classicmodels.Office();
+    int count = 0;
+    try (final RowIterator<classicmodels.Office> rows =
+      SELECT(o).
+      FROM(o).
+      WHERE(EQ(o.territory, "NA"))
+        .execute(transaction)) {
+
+      while (rows.nextRow())
+        ++count;
+    }
+
+    return count;
+  }
+
+  private static List<RecordedEvent> record(final Transaction transaction) throws IOException, SQLException {
+    final Path path = Files.createTempFile(FlightRecorderTest.class.getSimpleName(), ".jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable("org.jaxdb.jsql.Compile");
+      recording.enable("org.jaxdb.jsql.Execute");
+      recording.enable("org.jaxdb.jsql.Fetch");
+      recording.start();
+      assertEquals(3, select(transaction));
+      recording.stop();
+      recording.dump(path);
+      return RecordingFile.readAllEvents(path);
+    }
+    finally {
+      Files.delete(path);
+    }
+  }
+
+  private static RecordedEvent getEvent(final List<RecordedEvent> events, final String name, final Transaction transaction) {
+    // The recording includes the events of the tests that run in parallel
+    for (final RecordedEvent event : events)
+      if (name.equals(event.getEventType().getName()) && event.getInt("transaction") == System.identityHashCode(transaction))
+        return event;
+
+    fail("Expected event: " + name);
+    return null;
+  }
+
+  @Test
+  public void testEvents(@Schema(classicmodels.class) final Transaction transaction) throws IOException, SQLException {
+    final List<RecordedEvent> events = record(transaction);
+    final RecordedEvent compile = getEvent(events, "org.jaxdb.jsql.Compile", transaction);
+    final RecordedEvent execute = getEvent(events, "org.jaxdb.jsql.Execute", transaction);
+    final RecordedEvent fetch = getEvent(events, "org.jaxdb.jsql.Fetch", transaction);
+    for (final RecordedEvent event : new RecordedEvent[] {compile, execute, fetch}) {
+      assertEquals(compile.getString("fingerprint"), event.getString("fingerprint"));
+      assertEquals(transaction.getVendor().toString(), event.getString("vendor"));
+      assertEquals(transaction.getDataSourceId(), event.getString("dataSourceId"));
+    }
+
+    assertTrue(compile.getString("fingerprint").startsWith("SELECT "));
+    assertEquals(3, fetch.getLong("rowCount"));
+  }
+}
@@ -0,0 +1,82 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb;
+
+import static org.jaxdb.jsql.DML.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import org.jaxdb.jsql.FlowAdapters;
+import org.jaxdb.jsql.Transaction;
+import org.jaxdb.jsql.classicmodels;
+import org.jaxdb.runner.Derby;
+import org.jaxdb.runner.SQLite;
+import org.jaxdb.runner.VendorSchemaRunner;
+import org.jaxdb.runner.VendorSchemaRunner.Schema;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VendorSchemaRunner.class)
+public abstract class FlowAdaptersTest {
+  @VendorSchemaRunner.Vendor(value=Derby.class, parallel=2)
+  @VendorSchemaRunner.Vendor(SQLite.class)
+  public static class IntegrationTest extends FlowAdaptersTest {
+  }
+
+  @Test
+  public void testFlowPublisher(@Schema(classicmodels.class) final Transaction transaction) throws ExecutionException, InterruptedException {
+    final classicmodels.Office o = classicmodels.Office();
+    final Flow.Publisher<classicmodels.Office[]> publisher = FlowAdapters.toFlowPublisher(
+      SELECT(o).
+      FROM(o)
+        .publish(transaction));
+
+    final CompletableFuture<Integer> done = new CompletableFuture<>();
+    publisher.subscribe(new Flow.Subscriber<classicmodels.Office[]>() {
+      private Flow.Subscription subscription;
+      private int received;
+
+      @Override
+      public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(final classicmodels.Office[] row) {
+        assertNotNull(row[0].officeCode.get());
+        ++received;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(final Throwable throwable) {
+        done.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        done.complete(received);
+      }
+    });
+
+    assertEquals(7, done.get().intValue());
+  }
+}
@@ -0,0 +1,168 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb.jsql;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.libj.sql.AuditStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link CompletableFuture} of an execution on the {@link Executor} of a
+ * {@link Registry}. The {@link Statement}s that are created during the
+ * execution are tracked, so that {@link #cancel(boolean)} cancels the
+ * {@link Statement} that is executing. If the execution completes after the
+ * future is cancelled, its result is closed if it is {@link AutoCloseable}.
+ *
+ * @param <T> The type of the result of the execution.
+ */
+final class AsyncExecution<T> extends CompletableFuture<T> {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncExecution.class);
+  private static final ThreadLocal<AsyncExecution<?>> current = new ThreadLocal<>();
+
+  private static final class DefaultExecutor {
+    private static final Executor INSTANCE = newDefaultExecutor();
+
+    private static Executor newDefaultExecutor() {
+      try {
+        // Virtual threads are used where available (JDK 21+)
+        return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (final ReflectiveOperationException e) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+          final Thread thread = new Thread(r, "jaxdb-async-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+  }
+
+  /**
+   * Returns the default {@link Executor} of asynchronous executions, which
+   * runs each execution on a virtual thread where available, and otherwise on
+   * a cached pool of daemon threads.
+   *
+   * @return The default {@link Executor} of asynchronous executions.
+   */
+  static Executor getDefaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Submits the specified task to the {@link Executor} of the {@link Registry}
+   * of the calling thread. The {@link Registry} of the calling thread is the
+   * {@link Registry} of the task while it executes.
+   *
+   * @param <T> The type of the result of the task.
+   * @param task The task.
+   * @return A {@link CompletableFuture} of the result of the task.
+   */
+  static <T>CompletableFuture<T> submit(final Callable<T> task) {
+    final Registry registry = Registry.getRegistry();
+    final AsyncExecution<T> execution = new AsyncExecution<>();
+    (registry != null ? registry.getExecutor() : getDefaultExecutor()).execute(() -> execution.run(registry, task));
+    return execution;
+  }
+
+  /**
+   * Tracks the specified {@link Statement} as the executing statement of the
+   * {@link AsyncExecution} of the current thread, if any.
+   *
+   * @param <S> The type of the {@link Statement}.
+   * @param statement The {@link Statement}.
+   * @return The specified {@link Statement}.
+   * @throws SQLException If the {@link AsyncExecution} of the current thread
+   *           was cancelled, in which case the {@link Statement} is closed.
+   */
+  static <S extends Statement>S track(final S statement) throws SQLException {
+    final AsyncExecution<?> execution = current.get();
+    if (execution == null)
+      return statement;
+
+    // The statement is set before the check, so that a concurrent cancel() either sees the statement, or is seen here
+    execution.statement = statement;
+    if (execution.isCancelled()) {
+      final SQLException e = new SQLException("Execution was cancelled");
+      final SQLException suppressed = AuditStatement.close(statement);
+      if (suppressed != null)
+        e.addSuppressed(suppressed);
+
+      throw e;
+    }
+
+    return statement;
+  }
+
+  private volatile Statement statement;
+
+  private AsyncExecution() {
+  }
+
+  private void run(final Registry registry, final Callable<T> task) {
+    if (isDone())
+      return;
+
+    final AsyncExecution<?> previous = current.get();
+    final Registry previousRegistry = Registry.bind(registry);
+    current.set(this);
+    try {
+      final T result = task.call();
+      if (!complete(result) && result instanceof AutoCloseable)
+        ((AutoCloseable)result).close();
+    }
+    catch (final Throwable t) {
+      completeExceptionally(t);
+    }
+    finally {
+      statement = null;
+      if (previous != null)
+        current.set(previous);
+      else
+        current.remove();
+
+      Registry.bind(previousRegistry);
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterruptIfRunning) {
+    if (!super.cancel(mayInterruptIfRunning))
+      return false;
+
+    final Statement statement = this.statement;
+    if (statement != null) {
+      try {
+        statement.cancel();
+      }
+      catch (final SQLException e) {
+        logger.warn("Failed to cancel statement", e);
+      }
+    }
+
+    return true;
+  }
+}
@@ -25,14 +25,16 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 import org.jaxdb.vendor.DBVendor;
 import org.libj.lang.Throwables;
 import org.libj.sql.AuditConnection;
-import org.libj.sql.AuditStatement;
 import org.libj.sql.exception.SQLExceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +43,10 @@ public class Batch implements Executable.Modify.Delete, Executable.Modify.Insert
   private static final Logger logger = LoggerFactory.getLogger(Batch.class);
   private static final int DEFAULT_CAPACITY = 10;
   private final int initialCapacity;
+  private int maxSize = Integer.MAX_VALUE;
+  private long maxBytes = Long.MAX_VALUE;
+  private int commitInterval;
+  private boolean grouping;
   private int listenerOffset;
   private ArrayList<Executable.Modify> statements;
   private ArrayList<ObjIntConsumer<Transaction.Event>> listeners;
@@ -112,62 +118,386 @@ public class Batch implements Executable.Modify.Delete, Executable.Modify.Insert
 
       listeners.add(onEvent);
     }
+    else if (listeners != null) {
+      listeners.add(null);
+    }
 
     return this;
   }
 
   public Batch addStatements(final Executable.Modify.Update ... statements) {
     Collections.addAll(getStatements(Math.max(initialCapacity, statements.length)), statements);
+    padListeners();
     return this;
   }
 
   public Batch addStatements(final Collection<Executable.Modify.Update> statements) {
     getStatements(Math.max(initialCapacity, statements.size())).addAll(statements);
+    padListeners();
     return this;
   }
 
+  private void padListeners() {
+    if (listeners != null)
+      for (int i = listenerOffset + listeners.size(); i < statements.size(); ++i)
+        listeners.add(null);
+  }
+
   public int size() {
     return statements == null ? 0 : statements.size();
   }
 
-  private static int aggregate(final int[] counts, final int[] allCounts, final Statement statement, final InsertImpl<?>[] generatedKeys, final int index, int total) throws SQLException {
-    ResultSet resultSet = null;
-    for (int i = index, leni = index + counts.length; i < leni; ++i) {
-      if (generatedKeys[i] != null) {
-        if (resultSet == null)
-          resultSet = statement.getGeneratedKeys();
-
-        if (resultSet.next()) {
-          final type.DataType<?>[] autos = generatedKeys[i].autos;
-          for (int j = 0, lenj = autos.length; j < lenj;)
-            autos[j].set(resultSet, ++j);
-        }
+  /**
+   * Partitions the statements of this {@link Batch} into a {@link Batch} per
+   * partition, with the settings of this {@link Batch}. A statement is added,
+   * together with its listener, to the {@link Batch} of the partition that is
+   * returned by the specified function, or to the {@link Batch} of each
+   * partition if the function returns {@code -1}.
+   *
+   * @param partitions The number of partitions.
+   * @param partitioner The function that returns the partition of a
+   *          statement, or {@code -1} for all partitions.
+   * @return An array of the {@link Batch} of each partition, which is
+   *         {@code null} for a partition without statements.
+   */
+  Batch[] partition(final int partitions, final ToIntFunction<Executable.Modify> partitioner) {
+    final Batch[] batches = new Batch[partitions];
+    if (statements == null)
+      return batches;
+
+    for (int i = 0, len = statements.size(); i < len; ++i) {
+      final Executable.Modify statement = statements.get(i);
+      final int index = i - listenerOffset;
+      final ObjIntConsumer<Transaction.Event> listener = listeners == null || index < 0 || index >= listeners.size() ? null : listeners.get(index);
+      final int partition = partitioner.applyAsInt(statement);
+      if (partition != -1) {
+        partition(batches, partition).addStatementAndListener(statement, listener);
+      }
+      else {
+        for (int p = 0; p < partitions; ++p)
+          partition(batches, p).addStatementAndListener(statement, listener);
       }
     }
 
-    if (total == Statement.EXECUTE_FAILED)
-      return Statement.EXECUTE_FAILED;
+    return batches;
+  }
+
+  private Batch partition(final Batch[] batches, final int partition) {
+    Batch batch = batches[partition];
+    if (batch == null) {
+      batches[partition] = batch = new Batch(initialCapacity);
+      batch.maxSize = maxSize;
+      batch.maxBytes = maxBytes;
+      batch.commitInterval = commitInterval;
+      batch.grouping = grouping;
+    }
 
-    boolean hasInfo = total != Statement.SUCCESS_NO_INFO;
-    if (!hasInfo)
-      total = 0;
+    return batch;
+  }
 
-    for (int i = 0; i < counts.length; ++i) {
-      final int count = counts[i];
-      if (count == Statement.EXECUTE_FAILED)
-        return Statement.EXECUTE_FAILED;
+  /**
+   * Sets the maximum number of statements in a JDBC batch. When the limit is
+   * reached, the batch is executed, and the following statements are added to
+   * a new batch.
+   *
+   * @param maxSize The maximum number of statements in a JDBC batch.
+   * @return {@code this} {@link Batch}.
+   * @throws IllegalArgumentException If {@code maxSize} is not greater than 0.
+   */
+  public Batch withMaxSize(final int maxSize) {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("maxSize (" + maxSize + ") must be greater than 0");
+
+    this.maxSize = maxSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum estimated number of bytes of the SQL and parameters of
+   * the statements in a JDBC batch. When the next statement would exceed the
+   * limit, the batch is executed, and the statement is added to a new batch.
+   * The size of a parameter is estimated from its value, and a parameter
+   * whose value is a stream is estimated at 8 bytes.
+   *
+   * @param maxBytes The maximum estimated number of bytes of the statements
+   *          in a JDBC batch.
+   * @return {@code this} {@link Batch}.
+   * @throws IllegalArgumentException If {@code maxBytes} is not greater than 0.
+   */
+  public Batch withMaxBytes(final long maxBytes) {
+    if (maxBytes <= 0)
+      throw new IllegalArgumentException("maxBytes (" + maxBytes + ") must be greater than 0");
+
+    this.maxBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * Sets the number of JDBC batches after which the {@link Transaction} in
+   * which this {@link Batch} is executed is committed. A value of {@code 0}
+   * disables intermediate commits. This setting has no effect if this
+   * {@link Batch} is not executed in a {@link Transaction}, in which case each
+   * JDBC batch is committed by the driver.
+   *
+   * @param commitInterval The number of JDBC batches after which the
+   *          {@link Transaction} is committed.
+   * @return {@code this} {@link Batch}.
+   * @throws IllegalArgumentException If {@code commitInterval} is negative.
+   */
+  public Batch withCommitInterval(final int commitInterval) {
+    if (commitInterval < 0)
+      throw new IllegalArgumentException("commitInterval (" + commitInterval + ") must be non-negative");
+
+    this.commitInterval = commitInterval;
+    return this;
+  }
+
+  /**
+   * Sets whether the statements of this {@link Batch} are grouped by the shape
+   * of their SQL before execution, so that statements with the same SQL are
+   * executed in the same JDBC batch. Only runs of adjacent {@code INSERT}s of
+   * values, or of adjacent {@code DELETE}s of entities, are reordered; all
+   * other statements keep their position, and bound the runs. Within a run,
+   * the statements are ordered by the rank of their table in the graph of the
+   * foreign keys of the schema, so that the rows of a parent table are
+   * inserted before, and deleted after, the rows of the tables that refer to
+   * it. Statements of tables of the same rank, which do not refer to each
+   * other, are ordered by their shape, in the order in which each shape first
+   * appears in the run. The counts and generated keys of each statement are
+   * provided to its listener as if no reordering had occurred.
+   * <p>
+   * Grouping is not to be enabled if rows of the same table that are inserted
+   * or deleted in the same run of differently shaped statements refer to each
+   * other (i.e. by a self-referencing foreign key).
+   *
+   * @param grouping Whether the statements of this {@link Batch} are grouped
+   *          by the shape of their SQL.
+   * @return {@code this} {@link Batch}.
+   */
+  public Batch withGrouping(final boolean grouping) {
+    this.grouping = grouping;
+    return this;
+  }
+
+  /**
+   * The indexes of the statements of a run that have the same shape, and the
+   * rank of their table.
+   */
+  private static final class Group extends ArrayList<Integer> {
+    private static final long serialVersionUID = 2785284806318271423L;
 
-      if (count != Statement.SUCCESS_NO_INFO) {
-        hasInfo = true;
-        total += count;
+    private final int rank;
+
+    private Group(final int rank) {
+      this.rank = rank;
+    }
+  }
+
+  private static final Comparator<Group> parentsFirst = (o1, o2) -> Integer.compare(o1.rank, o2.rank);
+  private static final Comparator<Group> childrenFirst = (o1, o2) -> Integer.compare(o2.rank, o1.rank);
+
+  /**
+   * Returns the order of execution of {@link #statements}, as the indexes of
+   * the statements in the order in which they are to be executed.
+   *
+   * @return The order of execution of {@link #statements}.
+   */
+  private int[] order() {
+    final int noStatements = statements.size();
+    final int[] order = new int[noStatements];
+    final LinkedHashMap<Object,Group> run = new LinkedHashMap<>();
+    Class<?> kind = null;
+    int index = 0;
+    for (int i = 0; i < noStatements; ++i) {
+      final Command<?> command = (Command<?>)statements.get(i);
+      final Class<?> nextKind = command.isCommutative() ? command.getClass() : null;
+      if (nextKind == null || nextKind != kind)
+        index = drain(run, order, index, kind == DeleteImpl.class);
+
+      kind = nextKind;
+      if (nextKind == null) {
+        order[index++] = i;
       }
       else {
-        counts[i] = 0;
+        final CompilationCache.Shape shape = CompilationCache.Shape.of(command, command.shapeTables());
+        run.computeIfAbsent(shape != null ? shape : command, k -> new Group(command.table().rank())).add(i);
+      }
+    }
+
+    drain(run, order, index, kind == DeleteImpl.class);
+    return order;
+  }
+
+  private static int drain(final LinkedHashMap<Object,Group> run, final int[] order, int index, final boolean isDelete) {
+    if (run.size() == 0)
+      return index;
+
+    // The sort is stable, so the groups of the same rank keep the order in which their shapes first appear
+    final ArrayList<Group> groups = new ArrayList<>(run.values());
+    groups.sort(isDelete ? childrenFirst : parentsFirst);
+    for (int g = 0, leng = groups.size(); g < leng; ++g) {
+      final Group group = groups.get(g);
+      for (int i = 0, len = group.size(); i < len; ++i)
+        order[index++] = group.get(i);
+    }
+
+    run.clear();
+    return index;
+  }
+
+  private static long estimateBytes(final String sql, final List<type.DataType<?>> parameters, final boolean isPrepared) {
+    if (!isPrepared)
+      return sql.length();
+
+    if (parameters == null)
+      return 0;
+
+    long bytes = 0;
+    for (int i = 0, len = parameters.size(); i < len; ++i) {
+      final Object value = parameters.get(i).get();
+      if (value instanceof CharSequence)
+        bytes += ((CharSequence)value).length();
+      else if (value instanceof byte[])
+        bytes += ((byte[])value).length;
+      else
+        bytes += 8;
+    }
+
+    return bytes;
+  }
+
+  /**
+   * The state of an execution of a {@link Batch}, which executes the
+   * statements in JDBC batches of at most {@link #maxSize} statements and
+   * {@link #maxBytes} estimated bytes.
+   */
+  private final class Execution {
+    private final Transaction transaction;
+    private final int[] order;
+    private final InsertImpl<?>[] generatedKeys;
+    private Statement statement;
+    private Registry.Registration registration;
+    private Metrics metrics;
+    private DBVendor vendor;
+    private String dataSourceId;
+    // The SQL of the first statement of the current batch, for the Metrics and the FlightRecorder events
+    private String sql;
+    private int index;
+    private int size;
+    private long bytes;
+    private int noChunks;
+    private int total;
+
+    private Execution(final Transaction transaction, final int[] order, final int noStatements) {
+      this.transaction = transaction;
+      this.order = order;
+      this.generatedKeys = new InsertImpl<?>[Math.min(noStatements, maxSize)];
+    }
+
+    private boolean isFull(final long bytes) {
+      return size > 0 && (size == maxSize || this.bytes + bytes > maxBytes);
+    }
+
+    private void add(final InsertImpl<?> generatedKey, final long bytes, final String sql) {
+      if (size == 0)
+        this.sql = sql;
+
+      generatedKeys[size++] = generatedKey;
+      this.bytes += bytes;
+    }
+
+    private void executeBatch() throws SQLException {
+      if (size == 0)
+        return;
+
+      final Object event = FlightRecorder.beginExecute();
+      final long start = metrics == null ? 0 : System.nanoTime();
+      final int[] counts;
+      try {
+        counts = statement.executeBatch();
+      }
+      finally {
+        // The writes are recorded before an intermediate commit, and also if the batch fails, since a failed batch outside of a transaction may have been partially applied
+        onWrite();
       }
+
+      if (metrics != null) {
+        Compilation.record(metrics, Metrics.Phase.EXECUTE, sql, start);
+        metrics.recordBatch(sql, size);
+      }
+
+      FlightRecorder.commit(event, sql, vendor, dataSourceId, transaction, size);
+
+      aggregate(counts);
+      index += size;
+      size = 0;
+      bytes = 0;
+      if (commitInterval > 0 && transaction != null && ++noChunks % commitInterval == 0)
+        transaction.commit();
     }
 
-    System.arraycopy(counts, 0, allCounts, index, counts.length);
-    return hasInfo ? total : Statement.SUCCESS_NO_INFO;
+    /**
+     * Records the writes of the statements of the current batch in the
+     * {@link Transaction}, which invalidates the modified tables and entities
+     * in the caches of the {@link Registry.Registration} on commit, or, outside
+     * of a transaction, in the {@link Registry.Registration} directly.
+     */
+    private void onWrite() {
+      if (registration == null)
+        return;
+
+      for (int i = index, end = index + size; i < end; ++i) {
+        final Command<?> command = (Command<?>)statements.get(order == null ? i : order[i]);
+        if (transaction != null)
+          transaction.onWrite(command);
+        else
+          registration.onWrite(command);
+      }
+    }
+
+    private void aggregate(final int[] counts) throws SQLException {
+      ResultSet resultSet = null;
+      for (int i = 0; i < counts.length; ++i) {
+        final InsertImpl<?> generatedKey = generatedKeys[i];
+        if (generatedKey != null) {
+          generatedKeys[i] = null;
+          if (resultSet == null)
+            resultSet = statement.getGeneratedKeys();
+
+          if (resultSet.next()) {
+            final type.DataType<?>[] autos = generatedKey.autos;
+            for (int j = 0, lenj = autos.length; j < lenj;)
+              autos[j].set(resultSet, ++j);
+          }
+        }
+      }
+
+      boolean failed = total == Statement.EXECUTE_FAILED;
+      boolean hasInfo = total != Statement.SUCCESS_NO_INFO;
+      int total = hasInfo && !failed ? this.total : 0;
+      for (int i = 0; i < counts.length; ++i) {
+        final int count = counts[i];
+        if (count == Statement.EXECUTE_FAILED) {
+          failed = true;
+        }
+        else if (count != Statement.SUCCESS_NO_INFO) {
+          hasInfo = true;
+          total += count;
+        }
+        else {
+          counts[i] = 0;
+        }
+      }
+
+      this.total = failed ? Statement.EXECUTE_FAILED : hasInfo ? total : Statement.SUCCESS_NO_INFO;
+      if (listeners != null) {
+        final int offset = index;
+        if (transaction != null)
+          transaction.addListener(p -> onEvent(p, counts, order, offset));
+
+        onEvent(Transaction.Event.EXECUTE, counts, order, offset);
+      }
+    }
   }
 
   @SuppressWarnings({"null"})
@@ -175,44 +505,55 @@ public class Batch implements Executable.Modify.Delete, Executable.Modify.Insert
     if (statements == null)
       return 0;
 
+    // The write-behind buffer of the transaction is flushed, so that the listeners of this batch receive the counts of its own statements
+    if (transaction != null)
+      transaction.flush();
+
     try {
       String last = null;
-      Statement statement = null;
       final int noStatements = statements.size();
-      final int[] allCounts = new int[noStatements];
-      final InsertImpl<?>[] insertsWithGeneratedKeys = new InsertImpl<?>[noStatements];
-      int total = 0;
-      int index = 0;
+      final int[] order = grouping ? order() : null;
+      final Execution execution = new Execution(transaction, order, noStatements);
       Class<? extends Schema> schema = null;
+      Registry.Registration registration = null;
       Connection connection = null;
+      DBVendor vendor = null;
+      Compiler compiler = null;
+      boolean isPrepared = false;
       SQLException suppressed = null;
       try {
         for (int i = 0; i < noStatements; ++i) {
-          final Command<?> command = (Command<?>)statements.get(i);
-          if (connection == null)
-            connection = transaction != null ? transaction.getConnection() : Schema.getConnection(schema = command.schema(), dataSourceId, true);
-          else if (schema != null && schema != command.schema())
-            throw new IllegalArgumentException("Cannot execute batch across different schemas: " + schema.getSimpleName() + " and " + command.schema().getSimpleName());
-
-          final DBVendor vendor = DBVendor.valueOf(connection.getMetaData());
-          final boolean isPrepared;
-          final Compiler compiler = Compiler.getCompiler(vendor);
-          if (compiler.supportsPreparedBatch()) {
-            isPrepared = Registry.isPrepared(command.schema(), dataSourceId);
+          final Command<?> command = (Command<?>)statements.get(order == null ? i : order[i]);
+          if (connection == null) {
+            registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(schema = command.schema(), dataSourceId);
+            connection = transaction != null ? transaction.getConnection() : Schema.getConnection(registration, schema, true);
+            vendor = registration.getVendor(connection);
+            compiler = Compiler.getCompiler(vendor);
+            execution.registration = registration;
+            execution.metrics = registration.metrics;
+            execution.vendor = vendor;
+            execution.dataSourceId = dataSourceId;
+            if (compiler.supportsPreparedBatch()) {
+              isPrepared = registration.isPrepared;
+            }
+            else {
+              logger.warn(vendor + " does not support prepared statement batch execution");
+              isPrepared = false;
+            }
           }
-          else {
-            logger.warn(vendor + " does not support prepared statement batch execution");
-            isPrepared = false;
+          else if (schema != null && schema != command.schema()) {
+            throw new IllegalArgumentException("Cannot execute batch across different schemas: " + schema.getSimpleName() + " and " + command.schema().getSimpleName());
           }
 
           final boolean returnGeneratedKeys;
+          InsertImpl<?> generatedKey = null;
           if (command instanceof InsertImpl && ((InsertImpl<?>)command).autos.length > 0) {
             if (!compiler.supportsReturnGeneratedKeysBatch()) {
               logger.warn(vendor + " does not support return of generated keys during batch execution");
               returnGeneratedKeys = false;
             }
             else if (returnGeneratedKeys = isPrepared) {
-              insertsWithGeneratedKeys[i] = (InsertImpl<?>)command;
+              generatedKey = (InsertImpl<?>)command;
             }
             else {
               logger.warn("Generated keys can only be provided with prepared statement batch execution");
@@ -222,75 +563,71 @@ public class Batch implements Executable.Modify.Delete, Executable.Modify.Insert
             returnGeneratedKeys = false;
           }
 
-          try (final Compilation compilation = new Compilation(command, vendor, isPrepared)) {
-            command.compile(compilation, false);
-
+          final Metrics metrics = execution.metrics;
+          long start = metrics == null ? 0 : System.nanoTime();
+          try (final Compilation compilation = Compilation.compile(command, vendor, isPrepared)) {
             final String sql = compilation.toString();
+            if (metrics != null)
+              start = Compilation.record(metrics, Metrics.Phase.COMPILE, sql, start);
+
+            final long bytes = maxBytes == Long.MAX_VALUE ? 0 : estimateBytes(sql, compilation.getParameters(), isPrepared);
+            if (execution.isFull(bytes))
+              execution.executeBatch();
+
             if (isPrepared) {
-              if (!(statement instanceof PreparedStatement) || !sql.equals(last)) {
-                if (statement != null) {
-                  try {
-                    final int[] counts = statement.executeBatch();
-                    if (listeners != null) {
-                      total = aggregate(counts, allCounts, statement, insertsWithGeneratedKeys, index, total);
-                      index += counts.length;
-                    }
-                  }
-                  finally {
-                    suppressed = Throwables.addSuppressed(suppressed, AuditStatement.close(statement));
-                  }
+              if (!(execution.statement instanceof PreparedStatement) || !sql.equals(last)) {
+                if (execution.statement != null) {
+                  execution.executeBatch();
+                  suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, execution.statement));
+                  execution.statement = null;
                 }
 
-                statement = returnGeneratedKeys ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(sql);
+                if (metrics != null)
+                  start = System.nanoTime();
+
+                execution.statement = returnGeneratedKeys ? AsyncExecution.track(connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) : Compilation.prepareStatement(transaction, connection, null, sql);
                 last = sql;
+                if (metrics != null)
+                  start = Compilation.record(metrics, Metrics.Phase.PREPARE, sql, start);
+              }
+              else if (metrics != null) {
+                start = System.nanoTime();
               }
 
               final List<type.DataType<?>> parameters = compilation.getParameters();
               if (parameters != null)
                 for (int j = 0, len = parameters.size(); j < len;)
-                  parameters.get(j).get((PreparedStatement)statement, ++j);
+                  parameters.get(j).get((PreparedStatement)execution.statement, ++j);
 
-              ((PreparedStatement)statement).addBatch();
+              ((PreparedStatement)execution.statement).addBatch();
+              if (metrics != null)
+                Compilation.record(metrics, Metrics.Phase.BIND, sql, start);
             }
             else {
-              if (statement == null) {
-                statement = connection.createStatement();
+              if (execution.statement == null) {
+                execution.statement = AsyncExecution.track(connection.createStatement());
               }
-              else if (statement instanceof PreparedStatement) {
-                try {
-                  final int[] counts = statement.executeBatch();
-                  if (listeners != null) {
-                    total = aggregate(counts, allCounts, statement, insertsWithGeneratedKeys, index, total);
-                    index += counts.length;
-                  }
-                }
-                finally {
-                  suppressed = Throwables.addSuppressed(suppressed, AuditStatement.close(statement));
-                }
-
-                statement = connection.createStatement();
+              else if (execution.statement instanceof PreparedStatement) {
+                execution.executeBatch();
+                suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, execution.statement));
+                execution.statement = null;
+                execution.statement = AsyncExecution.track(connection.createStatement());
               }
 
-              statement.addBatch(sql);
+              execution.statement.addBatch(sql);
             }
-          }
-        }
-
-        final int[] counts = statement.executeBatch();
-        if (listeners != null) {
-          total = aggregate(counts, allCounts, statement, insertsWithGeneratedKeys, index, total);
-          index += counts.length;
-
-          if (transaction != null)
-            transaction.addListener(p -> onEvent(p, allCounts));
 
-          onEvent(Transaction.Event.EXECUTE, allCounts);
+            execution.add(generatedKey, bytes, sql);
+          }
         }
 
-        return total;
+        execution.executeBatch();
+        return execution.total;
       }
       finally {
-        SQLException e = Throwables.addSuppressed(statement == null ? null : AuditStatement.close(statement), suppressed);
+        // A statement whose batch did not execute may still hold queued commands, so it is not given back to the StatementCache
+        final Statement statement = execution.statement;
+        SQLException e = Throwables.addSuppressed(statement == null ? null : execution.size == 0 ? Compilation.close(transaction, statement) : Compilation.discard(transaction, statement), suppressed);
         if (transaction == null && connection != null)
           e = Throwables.addSuppressed(e, AuditConnection.close(connection));
 
@@ -303,9 +640,13 @@ public class Batch implements Executable.Modify.Delete, Executable.Modify.Insert
     }
   }
 
-  private void onEvent(final Transaction.Event event, final int[] counts) {
-    for (int i = listenerOffset; i < counts.length; ++i) {
-      final ObjIntConsumer<Transaction.Event> listener = listeners.get(i - listenerOffset);
+  private void onEvent(final Transaction.Event event, final int[] counts, final int[] order, final int offset) {
+    for (int i = 0; i < counts.length; ++i) {
+      final int index = (order == null ? offset + i : order[offset + i]) - listenerOffset;
+      if (index < 0 || index >= listeners.size())
+        continue;
+
+      final ObjIntConsumer<Transaction.Event> listener = listeners.get(index);
       if (listener != null)
         listener.accept(event, counts[i]);
     }
@@ -0,0 +1,331 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb.jsql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.jaxdb.jsql.Insert.CONFLICT_ACTION;
+import org.jaxdb.jsql.Insert.INSERT;
+import org.jaxdb.jsql.Insert.ON_CONFLICT;
+import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
+import org.libj.sql.AuditConnection;
+import org.libj.sql.exception.SQLExceptions;
+
+/**
+ * An {@code INSERT} of multiple entities of the same {@link type.Table},
+ * which are compiled into {@code INSERT} statements of multiple rows. Adjacent
+ * entities with the same columns to be inserted are inserted in the same
+ * statement, up to the maximum number of values in a statement of the vendor.
+ * For a vendor that does not support the insert of multiple rows in a single
+ * statement, each entity is inserted in its own execution of a reused
+ * statement.
+ * <p>
+ * With {@link #ON_CONFLICT()}, the entities are upserted by their primary key.
+ * A statement does not contain two entities with the same primary key, since
+ * some vendors do not allow a statement to affect the same row twice.
+ *
+ * @param <T> The type of the {@link type.Table}.
+ */
+final class BulkInsertImpl<T extends type.Table> extends Command<T> implements INSERT<T>, ON_CONFLICT {
+  private type.Table[] inserts;
+  private boolean onConflict;
+  private boolean doUpdate;
+  private int from;
+  private int to;
+
+  BulkInsertImpl(final type.Table[] inserts) {
+    if (inserts.length == 0)
+      throw new IllegalArgumentException("inserts is empty");
+
+    final Class<?> type = inserts[0].getClass();
+    for (int i = 1; i < inserts.length; ++i)
+      if (inserts[i].getClass() != type)
+        throw new IllegalArgumentException("All entities must be instances of " + type.getName());
+
+    this.inserts = inserts;
+  }
+
+  @Override
+  public ON_CONFLICT ON_CONFLICT() {
+    if (inserts[0]._primary$.length == 0)
+      throw new IllegalArgumentException("ON CONFLICT requires primary columns");
+
+    this.onConflict = true;
+    return this;
+  }
+
+  @Override
+  public CONFLICT_ACTION DO_UPDATE() {
+    this.doUpdate = true;
+    return this;
+  }
+
+  @Override
+  public CONFLICT_ACTION DO_NOTHING() {
+    this.doUpdate = false;
+    return this;
+  }
+
+  @Override
+  final type.Table table() {
+    return inserts[0];
+  }
+
+  type.Table[] inserts() {
+    return inserts;
+  }
+
+  /**
+   * Partitions the entities of this {@code INSERT} into an {@code INSERT} per
+   * partition, with the {@code ON CONFLICT} action of this {@code INSERT}.
+   *
+   * @param partitions The number of partitions.
+   * @param partitioner The function that returns the partition of an entity.
+   * @return An array of the {@code INSERT} of each partition, which is
+   *         {@code null} for a partition without entities.
+   */
+  @SuppressWarnings("unchecked")
+  BulkInsertImpl<T>[] partition(final int partitions, final ToIntFunction<type.Table> partitioner) {
+    final ArrayList<type.Table>[] tables = new ArrayList[partitions];
+    for (final type.Table insert : inserts) {
+      final int partition = partitioner.applyAsInt(insert);
+      if (tables[partition] == null)
+        tables[partition] = new ArrayList<>();
+
+      tables[partition].add(insert);
+    }
+
+    final BulkInsertImpl<T>[] partitioned = new BulkInsertImpl[partitions];
+    for (int i = 0; i < partitions; ++i) {
+      if (tables[i] != null) {
+        final BulkInsertImpl<T> insert = partitioned[i] = new BulkInsertImpl<>(tables[i].toArray(new type.Table[tables[i].size()]));
+        insert.onConflict = onConflict;
+        insert.doUpdate = doUpdate;
+      }
+    }
+
+    return partitioned;
+  }
+
+  static boolean isInserted(final type.DataType<?> column) {
+    return column.wasSet() || column.generateOnInsert != null && column.generateOnInsert != GenerateOn.AUTO_GENERATED;
+  }
+
+  private static int getNoInserted(final type.Table insert) {
+    int count = 0;
+    for (final type.DataType<?> column : insert._column$)
+      if (isInserted(column))
+        ++count;
+
+    return count;
+  }
+
+  static boolean hasSameInserted(final type.Table a, final type.Table b) {
+    final type.DataType<?>[] columns = b._column$;
+    for (int i = 0; i < columns.length; ++i)
+      if (isInserted(a._column$[i]) != isInserted(columns[i]))
+        return false;
+
+    return true;
+  }
+
+  private static List<Object> getKey(final type.Table insert) {
+    final type.DataType<?>[] primaries = insert._primary$;
+    final Object[] key = new Object[primaries.length];
+    for (int i = 0; i < primaries.length; ++i)
+      key[i] = primaries[i].get();
+
+    return Arrays.asList(key);
+  }
+
+  private static type.DataType<?>[] getAutos(final type.Table insert) {
+    int count = 0;
+    for (final type.DataType<?> auto : insert._auto$)
+      if (!auto.wasSet())
+        ++count;
+
+    if (count == 0)
+      return null;
+
+    final type.DataType<?>[] autos = new type.DataType<?>[count];
+    for (final type.DataType<?> auto : insert._auto$)
+      if (!auto.wasSet())
+        autos[autos.length - count--] = auto;
+
+    return autos;
+  }
+
+  /**
+   * Sets {@link #to} to the end of the chunk of rows that starts at
+   * {@link #from}, and returns the auto-generated columns of each row of the
+   * chunk, or {@code null} if the keys of the chunk are not to be returned.
+   */
+  private type.DataType<?>[][] nextChunk(final Compiler compiler, final int maxValues) {
+    final int noInserted = getNoInserted(inserts[from]);
+    final int maxRows = noInserted == 0 ? 1 : Math.max(1, maxValues / noInserted);
+    final HashSet<List<Object>> keys;
+    if (onConflict && maxRows > 1) {
+      keys = new HashSet<>();
+      keys.add(getKey(inserts[from]));
+    }
+    else {
+      keys = null;
+    }
+
+    to = from + 1;
+    while (to < inserts.length && to - from < maxRows && hasSameInserted(inserts[from], inserts[to]) && (keys == null || keys.add(getKey(inserts[to]))))
+      ++to;
+
+    // The keys of the rows of a multi-row upsert are not returned in the order of the rows
+    if (to - from > 1 && (onConflict || !compiler.supportsReturnGeneratedKeysBatch()))
+      return null;
+
+    final type.DataType<?>[] autos = getAutos(inserts[from]);
+    if (autos == null)
+      return null;
+
+    final type.DataType<?>[][] chunk = new type.DataType<?>[to - from][];
+    chunk[0] = autos;
+    for (int i = from + 1; i < to; ++i)
+      chunk[i - from] = getAutos(inserts[i]);
+
+    return chunk;
+  }
+
+  @Override
+  void compile(final Compilation compilation, final boolean isExpression) throws IOException, SQLException {
+    if (onConflict)
+      compilation.compiler.compileInsertValuesOnConflict(inserts, from, to, doUpdate, compilation);
+    else
+      compilation.compiler.compileInsertValues(inserts, from, to, false, compilation);
+  }
+
+  private int execute(final Transaction transaction, final String dataSourceId) throws IOException, SQLException {
+    // The write-behind buffer of the transaction is flushed, so that the rows are inserted in the order of execution
+    if (transaction != null)
+      transaction.flush();
+
+    Connection connection = null;
+    Statement statement = null;
+    SQLException suppressed = null;
+    try {
+      final Registry.Registration registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(schema(), dataSourceId);
+      connection = transaction != null ? transaction.getConnection() : Schema.getConnection(registration, schema(), true);
+      final DBVendor vendor = registration.getVendor(connection);
+      final Compiler compiler = Compiler.getCompiler(vendor);
+      final int maxValues = compiler.supportsInsertValues() ? compiler.getMaxInsertValues(connection) : 0;
+      String last = null;
+      int total = 0;
+      try {
+        for (from = 0; from < inserts.length; from = to) {
+          final type.DataType<?>[][] autos = nextChunk(compiler, maxValues);
+          try (final Compilation compilation = Compilation.compile(this, vendor, registration.isPrepared)) {
+            final String sql = compilation.toString();
+            final int count;
+            if (compilation.isPrepared()) {
+              if (!sql.equals(last)) {
+                if (statement != null) {
+                  suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, statement));
+                  statement = null;
+                }
+
+                statement = autos == null ? Compilation.prepareStatement(transaction, connection, null, sql) : AsyncExecution.track(compiler.prepareStatementReturning(connection, sql, autos[0]));
+                last = sql;
+              }
+
+              final PreparedStatement preparedStatement = (PreparedStatement)statement;
+              final List<type.DataType<?>> parameters = compilation.getParameters();
+              if (parameters != null)
+                for (int i = 0, len = parameters.size(); i < len;)
+                  parameters.get(i).get(preparedStatement, ++i);
+
+              count = preparedStatement.executeUpdate();
+            }
+            else {
+              if (statement == null)
+                statement = AsyncExecution.track(connection.createStatement());
+
+              count = autos == null ? statement.executeUpdate(sql) : compiler.executeUpdateReturning(statement, sql, autos[0]);
+            }
+
+            compilation.afterExecute(true);
+            if (autos != null) {
+              final ResultSet resultSet = statement.getGeneratedKeys();
+              for (int i = 0; i < autos.length && resultSet.next(); ++i)
+                for (int j = 0, len = autos[i].length; j < len;)
+                  autos[i][j].set(resultSet, ++j);
+            }
+
+            total += count;
+          }
+        }
+
+        if (transaction == null)
+          registration.onWrite(this);
+        else
+          transaction.onWrite(this);
+
+        return total;
+      }
+      finally {
+        if (statement != null)
+          suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, statement));
+
+        if (transaction == null && connection != null)
+          suppressed = Throwables.addSuppressed(suppressed, AuditConnection.close(connection));
+
+        if (suppressed != null)
+          throw suppressed;
+      }
+    }
+    catch (final SQLException e) {
+      throw SQLExceptions.toStrongType(e);
+    }
+  }
+
+  @Override
+  public int execute(final String dataSourceId) throws IOException, SQLException {
+    return execute(null, dataSourceId);
+  }
+
+  @Override
+  public int execute(final Transaction transaction) throws IOException, SQLException {
+    return execute(transaction, transaction != null ? transaction.getDataSourceId() : null);
+  }
+
+  @Override
+  public int execute() throws IOException, SQLException {
+    return execute(null, null);
+  }
+
+  @Override
+  public void close() {
+    inserts = null;
+  }
+}
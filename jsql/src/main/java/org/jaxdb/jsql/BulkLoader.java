@@ -0,0 +1,166 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb.jsql;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jaxdb.vendor.DBVendor;
+
+/**
+ * Loads entities into their tables through the native bulk-load path of a
+ * {@link DBVendor}. A vendor without a native bulk-load path inserts the
+ * entities with {@code INSERT} statements of multiple rows.
+ * <p>
+ * The {@link BulkLoader} of a {@link DBVendor} is returned by
+ * {@link #of(DBVendor)}. A custom {@link BulkLoader} (i.e. for a native
+ * bulk-load path that is not provided by jSQL) is a subclass that overrides
+ * {@link #load(Transaction,Iterator)}, and is set for a registration with
+ * {@link Registry#setBulkLoader(Class,String,BulkLoader)}, whereafter it is
+ * returned by {@link #of(Transaction)} for the transactions of the
+ * registration.
+ */
+public class BulkLoader {
+  static final int DEFAULT_CHUNK_SIZE = 1000;
+  static final BulkLoader INSERT = new BulkLoader();
+
+  /**
+   * Returns the {@link BulkLoader} for the specified {@link DBVendor}.
+   *
+   * @param vendor The {@link DBVendor}.
+   * @return The {@link BulkLoader} for the specified {@link DBVendor}.
+   * @throws UnsupportedOperationException If the specified {@link DBVendor} is
+   *           not supported.
+   */
+  public static BulkLoader of(final DBVendor vendor) {
+    return Compiler.getCompiler(vendor).getBulkLoader();
+  }
+
+  /**
+   * Returns the {@link BulkLoader} of the registration of the specified
+   * {@link Transaction}, or the {@link BulkLoader} of its {@link DBVendor} if
+   * none was set for the registration.
+   *
+   * @param transaction The {@link Transaction}.
+   * @return The {@link BulkLoader} of the registration of the specified
+   *         {@link Transaction}.
+   * @throws SQLException If a SQL error has occurred.
+   * @throws UnsupportedOperationException If the {@link DBVendor} of the
+   *           {@link Transaction} is not supported.
+   * @see Registry#setBulkLoader(Class,String,BulkLoader)
+   */
+  public static BulkLoader of(final Transaction transaction) throws SQLException {
+    final BulkLoader bulkLoader = transaction.getRegistration().bulkLoader;
+    return bulkLoader != null ? bulkLoader : of(transaction.getVendor());
+  }
+
+  /**
+   * Records a load into the table of the specified entity in the specified
+   * {@link Transaction}, of which the table in the {@link ResultCache}, and
+   * the entities in the {@link EntityCache} of the registration are
+   * invalidated on commit. A {@link BulkLoader} that loads rows other than
+   * with jSQL statements (i.e. on the {@link java.sql.Connection} of the
+   * {@link Transaction}) is to record each table that it loads into.
+   *
+   * @param transaction The {@link Transaction}.
+   * @param table An entity of the table.
+   */
+  protected static void onLoad(final Transaction transaction, final type.Table table) {
+    transaction.onWrite(table, false);
+  }
+
+  protected BulkLoader() {
+  }
+
+  /**
+   * Loads the entities of the provided {@link Iterator} into their tables, on
+   * the {@link java.sql.Connection} of the specified {@link Transaction}.
+   * Columns that are not set are assigned their default values, and
+   * auto-generated keys are not provided back to the entities.
+   * <p>
+   * The rows are committed or rolled back with the {@link Transaction},
+   * unless the native bulk-load path of the {@link DBVendor} commits by
+   * itself (i.e. Derby), in which case the load is not atomic, and a
+   * {@link Transaction} with a pending write is rejected.
+   *
+   * @param transaction The {@link Transaction}.
+   * @param entities The {@link Iterator} of entities to load.
+   * @return The number of loaded rows.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   * @throws IllegalStateException If the native bulk-load path of the
+   *           {@link DBVendor} commits by itself, and the specified
+   *           {@link Transaction} has a pending write.
+   */
+  public long load(final Transaction transaction, final Iterator<? extends type.Table> entities) throws IOException, SQLException {
+    final ArrayList<type.Table> chunk = new ArrayList<>(DEFAULT_CHUNK_SIZE);
+    long count = 0;
+    while (entities.hasNext()) {
+      final type.Table entity = entities.next();
+      if (chunk.size() == DEFAULT_CHUNK_SIZE || chunk.size() > 0 && chunk.get(0).getClass() != entity.getClass())
+        count += insert(transaction, chunk);
+
+      chunk.add(entity);
+    }
+
+    if (chunk.size() > 0)
+      count += insert(transaction, chunk);
+
+    return count;
+  }
+
+  private static int insert(final Transaction transaction, final ArrayList<type.Table> chunk) throws IOException, SQLException {
+    try (final BulkInsertImpl<type.Table> insert = new BulkInsertImpl<>(chunk.toArray(new type.Table[chunk.size()]))) {
+      chunk.clear();
+      return insert.execute(transaction);
+    }
+  }
+
+  /**
+   * Loads the entities of the provided {@link RowIterator} into their tables,
+   * on the {@link java.sql.Connection} of the specified {@link Transaction}.
+   * Each row of the {@link RowIterator} is expected to have one entity, of
+   * which every column is loaded as it was selected, other than an
+   * auto-generated column, which is generated anew. The entities of the
+   * {@link RowIterator} are not modified. The {@link RowIterator} may be open
+   * on another {@link Transaction}, and is not closed by this method.
+   *
+   * @param transaction The {@link Transaction}.
+   * @param rows The {@link RowIterator} of entities to load.
+   * @return The number of loaded rows.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   * @throws IllegalStateException If a row of the {@link RowIterator} does
+   *           not have exactly one entity.
+   */
+  public final long load(final Transaction transaction, final RowIterator<? extends type.Table> rows) throws IOException, SQLException {
+    return load(transaction, rows.streamEntities().map(BulkLoader::toInsert).iterator());
+  }
+
+  private static type.Table toInsert(final type.Table entity) {
+    // The values of a selected entity are not set, and would otherwise not be inserted
+    final type.Table insert = entity.clone();
+    for (final type.DataType<?> column : insert._column$)
+      if (column.generateOnInsert != GenerateOn.AUTO_GENERATED)
+        column.wasSet = true;
+
+    return insert;
+  }
+}
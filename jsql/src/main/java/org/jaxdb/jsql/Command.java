@@ -17,4 +17,79 @@
 package org.jaxdb.jsql;
 
 abstract class Command<T extends type.Entity<?>> extends Keyword<T> {
-}
\ No newline at end of file
+  /**
+   * Returns the {@link type.Table}s whose column state alone determines the
+   * SQL of this command, or {@code null} if the SQL of this command cannot be
+   * reused from the {@link CompilationCache}.
+   *
+   * @return The {@link type.Table}s whose column state alone determines the
+   *         SQL of this command, or {@code null} if the SQL of this command
+   *         cannot be reused from the {@link CompilationCache}.
+   */
+  type.Table[] shapeTables() {
+    return null;
+  }
+
+  /**
+   * Returns the flags that distinguish the shape of this command from other
+   * commands of the same class over the same {@link #shapeTables()}.
+   *
+   * @return The flags that distinguish the shape of this command.
+   */
+  int shapeFlags() {
+    return 0;
+  }
+
+  /**
+   * Returns the columns of {@link #shapeTables()} that are expected to be the
+   * parameters of the compiled SQL of this command, in order, or {@code null}
+   * if the parameters of this command are not known from its shape, in which
+   * case the SQL of this command is not cached in the
+   * {@link CompilationCache}.
+   *
+   * @return The columns of {@link #shapeTables()} that are expected to be the
+   *         parameters of the compiled SQL of this command, in order, or
+   *         {@code null} if the parameters of this command are not known from
+   *         its shape.
+   */
+  type.DataType<?>[] shapeParameters() {
+    return null;
+  }
+
+  /**
+   * Performs the side-effects of compilation that are not captured in the SQL
+   * (i.e. the generation of column values), when the SQL of this command is
+   * reused from the {@link CompilationCache}.
+   *
+   * @param compilation The {@link Compilation}.
+   */
+  void onShapeHit(final Compilation compilation) {
+  }
+
+  /**
+   * Returns whether this command can be reordered with adjacent commands of
+   * the same class in a {@link Batch} without changing the outcome of the
+   * {@link Batch} (i.e. its effect does not depend on the rows written by
+   * those commands).
+   *
+   * @return Whether this command can be reordered with adjacent commands of
+   *         the same class in a {@link Batch}.
+   */
+  boolean isCommutative() {
+    return false;
+  }
+
+  /**
+   * Returns the {@link type.Table} whose column values identify the single row
+   * of this command, or {@code null} if this command is not bound to the row
+   * of a single entity (i.e. it has a {@code WHERE} condition, or it inserts
+   * the rows of a {@code SELECT}).
+   *
+   * @return The {@link type.Table} whose column values identify the single row
+   *         of this command, or {@code null} if this command is not bound to
+   *         the row of a single entity.
+   */
+  type.Table keyTable() {
+    return null;
+  }
+}
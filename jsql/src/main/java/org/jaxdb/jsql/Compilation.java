@@ -23,14 +23,18 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import org.jaxdb.jsql.SelectImpl.untyped;
 import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
+import org.libj.sql.AuditStatement;
 
 final class Compilation implements AutoCloseable {
   static enum Token {
@@ -61,6 +65,8 @@ final class Compilation implements AutoCloseable {
   private final Compilation parent;
 
   private boolean skipFirstColumn;
+  // The entry of the CompilationCache of the shape of the command, or null if the command has no cached shape
+  CompilationCache.Entry cacheEntry;
 
   private Map<Keyword<?>,Compilation> subCompilations;
 
@@ -78,6 +84,46 @@ final class Compilation implements AutoCloseable {
       this.parameters = parent.parameters;
   }
 
+  /**
+   * Returns a new {@link Compilation} of the specified {@link Command}. If the
+   * compilation is prepared and the shape of the command is cacheable, the SQL
+   * and the parameter slot layout are reused from the
+   * {@link CompilationCache} of the {@link Compiler} for the given
+   * {@link DBVendor}.
+   *
+   * @param command The {@link Command} to compile.
+   * @param vendor The {@link DBVendor}.
+   * @param prepared Whether the compilation is for a
+   *          {@link PreparedStatement}.
+   * @return A new {@link Compilation} of the specified {@link Command}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  static Compilation compile(final Command<?> command, final DBVendor vendor, final boolean prepared) throws IOException, SQLException {
+    final Compilation compilation = new Compilation(command, vendor, prepared);
+    final type.Table[] tables;
+    final CompilationCache.Shape shape;
+    if (!prepared || (tables = command.shapeTables()) == null || (shape = CompilationCache.Shape.of(command, tables)) == null) {
+      command.compile(compilation, false);
+      return compilation;
+    }
+
+    final CompilationCache cache = compilation.compiler.compilationCache;
+    final CompilationCache.Entry entry = cache.get(shape);
+    if (entry != null) {
+      command.onShapeHit(compilation);
+      compilation.tokens.add(entry.sql);
+      compilation.parameters = new ArrayList<>(Arrays.asList(entry.getParameters(tables)));
+      compilation.skipFirstColumn = entry.skipFirstColumn;
+      compilation.cacheEntry = entry;
+      return compilation;
+    }
+
+    command.compile(compilation, false);
+    compilation.cacheEntry = cache.put(shape, compilation, tables, command.shapeParameters());
+    return compilation;
+  }
+
   public List<String> getColumnTokens() {
     return this.columnTokens == null ? columnTokens = new ArrayList<>() : columnTokens;
   }
@@ -138,6 +184,22 @@ final class Compilation implements AutoCloseable {
     return aliases.get(subject);
   }
 
+  /**
+   * Adds the classes of the tables that are aliased in this
+   * {@link Compilation} and its sub-compilations to the specified set.
+   *
+   * @param tables The set to which the classes of the tables are to be added.
+   */
+  void addTables(final Set<Class<? extends type.Table>> tables) {
+    for (final Subject subject : aliases.keySet())
+      if (subject instanceof type.Table)
+        tables.add(((type.Table)subject).getClass());
+
+    if (subCompilations != null)
+      for (final Compilation compilation : subCompilations.values())
+        compilation.addTables(tables);
+  }
+
   Compilation append(final Object object) {
     return append(object.toString());
   }
@@ -217,6 +279,10 @@ final class Compilation implements AutoCloseable {
     this.afterExecute = this.afterExecute == null ? consumer : this.afterExecute.andThen(consumer);
   }
 
+  boolean hasAfterExecute() {
+    return afterExecute != null;
+  }
+
   void afterExecute(final boolean success) {
     if (this.afterExecute != null)
       this.afterExecute.accept(success);
@@ -242,18 +308,109 @@ final class Compilation implements AutoCloseable {
     return config.apply(connection.createStatement(config.getType().index, config.getConcurrency().index, config.getHoldability().index));
   }
 
-  ResultSet executeQuery(final Connection connection, final QueryConfig config) throws IOException, SQLException {
-    final String sql = toString();
+  /**
+   * Returns a {@link PreparedStatement} for the specified SQL and
+   * {@link QueryConfig}. If a {@link Transaction} is provided, the statement
+   * is obtained from its {@link StatementCache}, and must be given back with
+   * {@link #close(Transaction,Statement)} or
+   * {@link #discard(Transaction,Statement)}.
+   *
+   * @param transaction The {@link Transaction}, or {@code null}.
+   * @param connection The {@link Connection}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @param sql The SQL.
+   * @return A {@link PreparedStatement} for the specified SQL and
+   *         {@link QueryConfig}.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  static PreparedStatement prepareStatement(final Transaction transaction, final Connection connection, final QueryConfig config, final String sql) throws SQLException {
+    if (transaction == null)
+      return AsyncExecution.track(configure(connection, config, sql));
+
+    final StatementCache cache = transaction.getStatementCache();
+    final PreparedStatement statement = cache.prepareStatement(connection, config, sql);
+    try {
+      return AsyncExecution.track(statement);
+    }
+    catch (final SQLException e) {
+      // The statement of a cancelled execution is not in use anymore
+      throw Throwables.addSuppressed(e, cache.discard(statement));
+    }
+  }
+
+  static SQLException close(final Transaction transaction, final Statement statement) {
+    return transaction != null ? transaction.getStatementCache().release(statement) : AuditStatement.close(statement);
+  }
+
+  static SQLException discard(final Transaction transaction, final Statement statement) {
+    return transaction != null ? transaction.getStatementCache().discard(statement) : AuditStatement.close(statement);
+  }
+
+  /**
+   * Executes the SQL of this {@link Compilation} as a query on the specified
+   * {@link Connection}. If {@link Metrics} are provided, the
+   * {@link Metrics.Phase#PREPARE PREPARE}, {@link Metrics.Phase#BIND BIND} and
+   * {@link Metrics.Phase#EXECUTE EXECUTE} phases are recorded.
+   *
+   * @param transaction The {@link Transaction}, or {@code null}.
+   * @param connection The {@link Connection}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @param metrics The {@link Metrics}, or {@code null}.
+   * @param sql The SQL of this {@link Compilation}.
+   * @return The {@link ResultSet} of the query.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  ResultSet executeQuery(final Transaction transaction, final Connection connection, final QueryConfig config, final Metrics metrics, final String sql) throws IOException, SQLException {
+    if (metrics == null) {
+      if (prepared) {
+        final PreparedStatement statement = prepareStatement(transaction, connection, config, sql);
+        if (parameters != null)
+          for (int i = 0, len = parameters.size(); i < len;)
+            parameters.get(i++).get(statement, i);
+
+        return statement.executeQuery();
+      }
+
+      return AsyncExecution.track(configure(connection, config)).executeQuery(sql);
+    }
+
+    long start = System.nanoTime();
+    final ResultSet resultSet;
     if (prepared) {
-      final PreparedStatement statement = configure(connection, config, sql);
+      final PreparedStatement statement = prepareStatement(transaction, connection, config, sql);
+      start = record(metrics, Metrics.Phase.PREPARE, sql, start);
       if (parameters != null)
         for (int i = 0, len = parameters.size(); i < len;)
           parameters.get(i++).get(statement, i);
 
-      return statement.executeQuery();
+      start = record(metrics, Metrics.Phase.BIND, sql, start);
+      resultSet = statement.executeQuery();
+    }
+    else {
+      final Statement statement = AsyncExecution.track(configure(connection, config));
+      start = record(metrics, Metrics.Phase.PREPARE, sql, start);
+      resultSet = statement.executeQuery(sql);
     }
 
-    return configure(connection, config).executeQuery(sql);
+    record(metrics, Metrics.Phase.EXECUTE, sql, start);
+    return resultSet;
+  }
+
+  /**
+   * Records the duration of the specified {@link Metrics.Phase} from the
+   * provided start time to now, and returns now.
+   *
+   * @param metrics The {@link Metrics}.
+   * @param phase The {@link Metrics.Phase}.
+   * @param sql The SQL.
+   * @param start The start time of the phase, in nanoseconds.
+   * @return The end time of the phase, in nanoseconds.
+   */
+  static long record(final Metrics metrics, final Metrics.Phase phase, final String sql, final long start) {
+    final long end = System.nanoTime();
+    metrics.record(phase, sql, end - start);
+    return end;
   }
 
   boolean subCompile(final type.Entity<?> compilable) {
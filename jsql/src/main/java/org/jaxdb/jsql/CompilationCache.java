@@ -0,0 +1,321 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jaxdb.vendor.DBVendor;
+
+/**
+ * A bounded LRU cache of prepared SQL, keyed by the shape of a {@link Command}
+ * (its kind, the classes of its {@link type.Table}s, and which columns are set
+ * or {@code NULL}). On a hit, the SQL text and the layout of its parameter
+ * slots are reused, so that only the values of the command have to be bound.
+ * <p>
+ * One {@link CompilationCache} exists per {@link DBVendor}.
+ */
+public final class CompilationCache {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Returns the {@link CompilationCache} for the specified {@link DBVendor}.
+   *
+   * @param vendor The {@link DBVendor}.
+   * @return The {@link CompilationCache} for the specified {@link DBVendor}.
+   * @throws UnsupportedOperationException If the specified {@link DBVendor} is
+   *           not supported.
+   */
+  public static CompilationCache of(final DBVendor vendor) {
+    return Compiler.getCompiler(vendor).compilationCache;
+  }
+
+  static final class Shape {
+    private static final byte UNSET = 0;
+    private static final byte SET = 1;
+    private static final byte NULL = 2;
+
+    /**
+     * Returns the {@link Shape} of the specified {@link Command}, or
+     * {@code null} if a column of the provided tables has an indirection, in
+     * which case the compiled SQL depends on more than the column state.
+     *
+     * @param command The {@link Command}.
+     * @param tables The {@link type.Table}s of the {@link Command}.
+     * @return The {@link Shape} of the specified {@link Command}, or
+     *         {@code null} if the command cannot be cached.
+     */
+    static Shape of(final Command<?> command, final type.Table[] tables) {
+      int size = 0;
+      for (final type.Table table : tables)
+        size += table._column$.length;
+
+      final Class<?>[] classes = new Class<?>[tables.length];
+      final byte[] states = new byte[size];
+      for (int i = 0, s = 0; i < tables.length; ++i) {
+        final type.Table table = tables[i];
+        classes[i] = table.getClass();
+        for (final type.DataType<?> column : table._column$) {
+          if (column.indirection != null)
+            return null;
+
+          states[s++] = !column.wasSet() ? UNSET : column.isNull() ? NULL : SET;
+        }
+      }
+
+      return new Shape(command.getClass(), command.shapeFlags(), classes, states);
+    }
+
+    private final Class<?> command;
+    private final int flags;
+    private final Class<?>[] tables;
+    private final byte[] states;
+    private final int hashCode;
+
+    private Shape(final Class<?> command, final int flags, final Class<?>[] tables, final byte[] states) {
+      this.command = command;
+      this.flags = flags;
+      this.tables = tables;
+      this.states = states;
+      int hashCode = 31 * command.hashCode() + flags;
+      hashCode = 31 * hashCode + Arrays.hashCode(tables);
+      this.hashCode = 31 * hashCode + Arrays.hashCode(states);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof Shape))
+        return false;
+
+      final Shape that = (Shape)obj;
+      return hashCode == that.hashCode && command == that.command && flags == that.flags && Arrays.equals(tables, that.tables) && Arrays.equals(states, that.states);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  static final class Entry {
+    final String sql;
+    final int[] slots;
+    final boolean skipFirstColumn;
+    /** The {@link SelectImpl.ReaderPlan} of a {@code SELECT} of the shape, which is built on first use. */
+    volatile SelectImpl.ReaderPlan readerPlan;
+
+    private Entry(final String sql, final int[] slots, final boolean skipFirstColumn) {
+      this.sql = sql;
+      this.slots = slots;
+      this.skipFirstColumn = skipFirstColumn;
+    }
+
+    /**
+     * Returns the parameters of this entry, as resolved against the columns of
+     * the specified tables.
+     *
+     * @param tables The {@link type.Table}s against which to resolve the
+     *          parameter slots.
+     * @return The parameters of this entry.
+     */
+    type.DataType<?>[] getParameters(final type.Table[] tables) {
+      final type.DataType<?>[] parameters = new type.DataType<?>[slots.length];
+      for (int i = 0, t = 0, offset = 0; i < slots.length; ++i) {
+        final int slot = slots[i];
+        while (slot >= offset + tables[t]._column$.length)
+          offset += tables[t++]._column$.length;
+
+        parameters[i] = tables[t]._column$[slot - offset];
+      }
+
+      return parameters;
+    }
+  }
+
+  private final LinkedHashMap<Shape,Entry> entries = new LinkedHashMap<Shape,Entry>(16, .75f, true) {
+    private static final long serialVersionUID = -2093860716390384581L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Shape,CompilationCache.Entry> eldest) {
+      if (size() <= capacity)
+        return false;
+
+      ++evictionCount;
+      return true;
+    }
+  };
+
+  private int capacity = DEFAULT_CAPACITY;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  CompilationCache() {
+  }
+
+  synchronized Entry get(final Shape shape) {
+    final Entry entry = entries.get(shape);
+    if (entry != null)
+      ++hitCount;
+    else
+      ++missCount;
+
+    return entry;
+  }
+
+  /**
+   * Puts an {@link Entry} for the specified {@link Shape}, if the parameters
+   * of the provided {@link Compilation} exactly match the expected parameters
+   * of the command. If the parameters do not match (i.e. the SQL of the
+   * command depends on more than its shape), no entry is put.
+   *
+   * @param shape The {@link Shape}.
+   * @param compilation The {@link Compilation} of the command.
+   * @param tables The {@link type.Table}s of the command.
+   * @param expected The expected parameters of the command, or {@code null}
+   *          if the command is not cacheable.
+   * @return The {@link Entry} that was put, or {@code null} if no entry was
+   *         put.
+   */
+  Entry put(final Shape shape, final Compilation compilation, final type.Table[] tables, final type.DataType<?>[] expected) {
+    if (expected == null || compilation.hasAfterExecute())
+      return null;
+
+    final List<type.DataType<?>> parameters = compilation.getParameters();
+    final int size = parameters == null ? 0 : parameters.size();
+    if (size != expected.length)
+      return null;
+
+    final int[] slots = new int[size];
+    for (int i = 0; i < size; ++i) {
+      final type.DataType<?> parameter = parameters.get(i);
+      final type.DataType<?> column = expected[i];
+      if (parameter != column && (parameter.table != null || parameter.getClass() != column.getClass()))
+        return null;
+
+      final int slot = slotOf(tables, column);
+      if (slot == -1)
+        return null;
+
+      slots[i] = slot;
+    }
+
+    for (final type.Table table : tables)
+      for (final type.DataType<?> column : table._column$)
+        if (column.indirection != null)
+          return null;
+
+    final Entry entry = new Entry(compilation.toString(), slots, compilation.skipFirstColumn());
+    synchronized (this) {
+      entries.put(shape, entry);
+    }
+
+    return entry;
+  }
+
+  private static int slotOf(final type.Table[] tables, final type.DataType<?> column) {
+    for (int t = 0, offset = 0; t < tables.length; offset += tables[t++]._column$.length) {
+      final type.DataType<?>[] columns = tables[t]._column$;
+      for (int c = 0; c < columns.length; ++c)
+        if (columns[c] == column)
+          return offset + c;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the maximum number of entries in this cache.
+   *
+   * @return The maximum number of entries in this cache.
+   */
+  public synchronized int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Sets the maximum number of entries in this cache. If the cache holds more
+   * entries than the new capacity, the least recently used entries are
+   * evicted.
+   *
+   * @param capacity The maximum number of entries in this cache.
+   * @throws IllegalArgumentException If {@code capacity} is negative.
+   */
+  public synchronized void setCapacity(final int capacity) {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity (" + capacity + ") must be non-negative");
+
+    this.capacity = capacity;
+    for (final Iterator<Shape> iterator = entries.keySet().iterator(); entries.size() > capacity && iterator.hasNext();) {
+      iterator.next();
+      iterator.remove();
+      ++evictionCount;
+    }
+  }
+
+  /**
+   * Returns the number of entries in this cache.
+   *
+   * @return The number of entries in this cache.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of lookups that were served from this cache.
+   *
+   * @return The number of lookups that were served from this cache.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that were not served from this cache.
+   *
+   * @return The number of lookups that were not served from this cache.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the number of entries that were evicted from this cache.
+   *
+   * @return The number of entries that were evicted from this cache.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Removes all entries from this cache, and resets its counters.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    hitCount = 0;
+    missCount = 0;
+    evictionCount = 0;
+  }
+}
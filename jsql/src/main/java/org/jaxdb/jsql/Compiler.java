@@ -86,6 +86,8 @@ abstract class Compiler extends DBVendorBase {
     return compiler;
   }
 
+  final CompilationCache compilationCache = new CompilationCache();
+
   protected Compiler(final DBVendor vendor) {
     super(vendor);
   }
@@ -477,6 +479,137 @@ abstract class Compiler extends DBVendorBase {
     compileInsert(insert != null ? insert._column$ : columns, ignore, compilation);
   }
 
+  /**
+   * Compiles a multi-row {@code INSERT} of the rows of {@code inserts} from
+   * index {@code from} (inclusive) to {@code to} (exclusive). The rows are
+   * expected to be instances of the same {@link type.Table} with the same
+   * columns to be inserted. A single row is compiled with
+   * {@link #compileInsert(type.DataType[],boolean,Compilation)}.
+   *
+   * @param inserts The {@link type.Table}s to insert.
+   * @param from The index of the first row to insert (inclusive).
+   * @param to The index of the last row to insert (exclusive).
+   * @param ignore Whether rows that conflict with existing rows are to be
+   *          ignored.
+   * @param compilation The {@link Compilation}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  void compileInsertValues(final type.Table[] inserts, final int from, final int to, final boolean ignore, final Compilation compilation) throws IOException, SQLException {
+    if (to - from == 1) {
+      compileInsert(inserts[from]._column$, ignore, compilation);
+      return;
+    }
+
+    compilation.append("INSERT ");
+    if (ignore)
+      compilation.append("IGNORE ");
+
+    compilation.append("INTO ");
+    compilation.append(q(inserts[from].name())).append(" (");
+    compileInsertColumns(inserts[from]._column$, compilation);
+    compilation.append(") VALUES ");
+    for (int i = from; i < to; ++i) {
+      if (i > from)
+        compilation.comma();
+
+      compileInsertRow(inserts[i]._column$, compilation);
+    }
+  }
+
+  /**
+   * Compiles a multi-row {@code INSERT} of the rows of {@code inserts} from
+   * index {@code from} (inclusive) to {@code to} (exclusive), which updates
+   * (or ignores) the existing rows with the same primary key. The existing
+   * rows are updated with the values of the columns of the rows to be
+   * inserted.
+   *
+   * @param inserts The {@link type.Table}s to insert.
+   * @param from The index of the first row to insert (inclusive).
+   * @param to The index of the last row to insert (exclusive).
+   * @param doUpdate Whether the existing rows are to be updated, or ignored.
+   * @param compilation The {@link Compilation}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  void compileInsertValuesOnConflict(final type.Table[] inserts, final int from, final int to, final boolean doUpdate, final Compilation compilation) throws IOException, SQLException {
+    final type.Table insert = inserts[from];
+    compileInsertValues(inserts, from, to, false, compilation);
+    compilation.append(" ON CONFLICT (");
+    final type.DataType<?>[] primaries = insert._primary$;
+    for (int i = 0; i < primaries.length; ++i) {
+      if (i > 0)
+        compilation.comma();
+
+      compilation.append(q(primaries[i].name));
+    }
+
+    compilation.append(')');
+    if (doUpdate && hasUpdateOnConflict(insert._column$)) {
+      compilation.append(" DO UPDATE SET ");
+      boolean modified = false;
+      for (final type.DataType<?> column : insert._column$) {
+        if (!shouldUpdateOnConflict(column))
+          continue;
+
+        if (modified)
+          compilation.comma();
+
+        final String name = q(column.name);
+        compilation.append(name).append(" = EXCLUDED.").append(name);
+        modified = true;
+      }
+    }
+    else {
+      compilation.append(" DO NOTHING");
+    }
+  }
+
+  static boolean shouldUpdateOnConflict(final type.DataType<?> column) {
+    return !column.primary && (column.wasSet() || column.generateOnInsert != null && column.generateOnInsert != GenerateOn.AUTO_GENERATED);
+  }
+
+  static boolean hasUpdateOnConflict(final type.DataType<?>[] columns) {
+    for (final type.DataType<?> column : columns)
+      if (shouldUpdateOnConflict(column))
+        return true;
+
+    return false;
+  }
+
+  final void compileInsertColumns(final type.DataType<?>[] columns, final Compilation compilation) {
+    boolean modified = false;
+    for (int i = 0; i < columns.length; ++i) {
+      final type.DataType<?> column = columns[i];
+      if (!shouldInsert(column, false, compilation))
+        continue;
+
+      if (modified)
+        compilation.comma();
+
+      compilation.append(q(column.name));
+      modified = true;
+    }
+  }
+
+  final void compileInsertRow(final type.DataType<?>[] columns, final Compilation compilation) throws IOException, SQLException {
+    compilation.append('(');
+    boolean modified = false;
+    for (int i = 0; i < columns.length; ++i) {
+      final type.DataType<?> column = columns[i];
+      if (!shouldInsert(column, true, compilation))
+        continue;
+
+      if (modified)
+        compilation.comma();
+
+      compilation.addParameter(column, false);
+      modified = true;
+    }
+
+    compilation.append(')');
+  }
+
   Compilation compileInsertSelect(final type.DataType<?>[] columns, final Select.untyped.SELECT<?> select, final boolean ignore, final Compilation compilation) throws IOException, SQLException {
     final HashMap<Integer,type.ENUM<?>> translateTypes = new HashMap<>();
     compilation.append("INSERT ");
@@ -1695,6 +1828,39 @@ abstract class Compiler extends DBVendorBase {
     return true;
   }
 
+  /**
+   * Returns the {@link BulkLoader} of this vendor.
+   *
+   * @return The {@link BulkLoader} of this vendor.
+   */
+  BulkLoader getBulkLoader() {
+    return BulkLoader.INSERT;
+  }
+
+  /**
+   * Returns whether this vendor supports the insert of multiple rows in a
+   * single {@code INSERT} statement.
+   *
+   * @return Whether this vendor supports the insert of multiple rows in a
+   *         single {@code INSERT} statement.
+   */
+  boolean supportsInsertValues() {
+    return true;
+  }
+
+  /**
+   * Returns the maximum number of values in a single {@code INSERT} statement
+   * of multiple rows.
+   *
+   * @param connection The {@link Connection}.
+   * @return The maximum number of values in a single {@code INSERT} statement
+   *         of multiple rows.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  int getMaxInsertValues(final Connection connection) throws SQLException {
+    return Short.MAX_VALUE;
+  }
+
   String prepareSqlReturning(final String sql, final type.DataType<?>[] autos) {
     return sql;
   }
@@ -0,0 +1,682 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.libj.sql.AuditConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Connector} that pools the physical connections of a source
+ * {@link Connector} or {@link DataSource}.
+ * <p>
+ * A borrow first tries the connection that was last returned by the calling
+ * thread, and then the shared queue of idle connections, claiming a
+ * connection with a single compare-and-set of its state, without locks. If no
+ * connection is idle, a new connection is opened while the pool is below its
+ * maximum size, and otherwise the calling thread parks until a connection is
+ * returned, or the maximum wait time elapses.
+ * <p>
+ * A connection that has been idle longer than the validation threshold is
+ * validated with {@link Connection#isValid(int)} before it is handed out. A
+ * background task closes connections that have been idle longer than the
+ * idle timeout (down to the minimum size), opens connections up to the
+ * minimum size, and reports connections that have been borrowed longer than
+ * the leak detection threshold.
+ * <p>
+ * The wait time of each borrow, and the usage time of each borrowed
+ * connection are recorded in {@link Histogram}s, in nanoseconds.
+ */
+public final class ConnectionPool implements Connector, AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+  private static final int IDLE = 0;
+  private static final int IN_USE = 1;
+  private static final int REMOVED = -1;
+
+  private static final class Housekeeper {
+    private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, r -> {
+      final Thread thread = new Thread(r, "jaxdb-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    static {
+      // A task that is cancelled on close() is removed from the queue, rather than retained until its next run
+      INSTANCE.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  /**
+   * The housekeeping task of a {@link ConnectionPool}, which references the
+   * pool weakly, so that the shared {@link Housekeeper} does not retain a pool
+   * that was not closed, and which cancels itself once the pool is collected.
+   */
+  private static final class Housekeeping implements Runnable {
+    private final WeakReference<ConnectionPool> pool;
+    private volatile ScheduledFuture<?> future;
+
+    private Housekeeping(final ConnectionPool pool) {
+      this.pool = new WeakReference<>(pool);
+    }
+
+    @Override
+    public void run() {
+      final ConnectionPool pool = this.pool.get();
+      if (pool != null) {
+        pool.housekeep();
+      }
+      else {
+        final ScheduledFuture<?> future = this.future;
+        if (future != null)
+          future.cancel(false);
+      }
+    }
+  }
+
+  public static final class Builder {
+    private final Connector connector;
+    private int minSize = 0;
+    private int maxSize = 10;
+    private long maxWait = 30000;
+    private long idleTimeout = 600000;
+    private long validationThreshold = 500;
+    private int validationTimeout = 5;
+    private long leakDetectionThreshold = 0;
+
+    /**
+     * Creates a new {@link Builder} of a {@link ConnectionPool} of the
+     * connections of the specified {@link Connector}.
+     *
+     * @param connector The {@link Connector} of the physical connections.
+     * @throws IllegalArgumentException If {@code connector} is null.
+     */
+    public Builder(final Connector connector) {
+      if (connector == null)
+        throw new IllegalArgumentException("connector == null");
+
+      this.connector = connector;
+    }
+
+    /**
+     * Creates a new {@link Builder} of a {@link ConnectionPool} of the
+     * connections of the specified {@link DataSource}.
+     *
+     * @param dataSource The {@link DataSource} of the physical connections.
+     * @throws IllegalArgumentException If {@code dataSource} is null.
+     */
+    public Builder(final DataSource dataSource) {
+      if (dataSource == null)
+        throw new IllegalArgumentException("dataSource == null");
+
+      this.connector = () -> new AuditConnection(dataSource.getConnection());
+    }
+
+    public Builder withMinSize(final int minSize) {
+      if (minSize < 0)
+        throw new IllegalArgumentException("minSize (" + minSize + ") must be non-negative");
+
+      this.minSize = minSize;
+      return this;
+    }
+
+    public Builder withMaxSize(final int maxSize) {
+      if (maxSize <= 0)
+        throw new IllegalArgumentException("maxSize (" + maxSize + ") must be greater than 0");
+
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets the time that a borrow waits for a connection when the pool is at
+     * its maximum size, after which {@link ConnectionPool#getConnection()}
+     * throws a {@link SQLTransientConnectionException}.
+     *
+     * @param millis The maximum wait time in milliseconds.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code millis} is negative.
+     */
+    public Builder withMaxWait(final long millis) {
+      if (millis < 0)
+        throw new IllegalArgumentException("maxWait (" + millis + ") must be non-negative");
+
+      this.maxWait = millis;
+      return this;
+    }
+
+    /**
+     * Sets the time after which an idle connection is closed, if the pool is
+     * above its minimum size. A time of {@code 0} disables idle eviction.
+     *
+     * @param millis The idle timeout in milliseconds.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code millis} is negative.
+     */
+    public Builder withIdleTimeout(final long millis) {
+      if (millis < 0)
+        throw new IllegalArgumentException("idleTimeout (" + millis + ") must be non-negative");
+
+      this.idleTimeout = millis;
+      return this;
+    }
+
+    /**
+     * Sets the time after which an idle connection is validated with
+     * {@link Connection#isValid(int)} before it is borrowed. A connection that
+     * was returned more recently is handed out without a round trip.
+     *
+     * @param millis The validation threshold in milliseconds.
+     * @param timeout The timeout of {@link Connection#isValid(int)} in
+     *          seconds.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code millis} or {@code timeout} is
+     *           negative.
+     */
+    public Builder withValidation(final long millis, final int timeout) {
+      if (millis < 0)
+        throw new IllegalArgumentException("validationThreshold (" + millis + ") must be non-negative");
+
+      if (timeout < 0)
+        throw new IllegalArgumentException("validationTimeout (" + timeout + ") must be non-negative");
+
+      this.validationThreshold = millis;
+      this.validationTimeout = timeout;
+      return this;
+    }
+
+    /**
+     * Sets the time after which a borrowed connection that has not been
+     * returned is reported as a possible leak, together with the stack trace
+     * of its borrow. A time of {@code 0} disables leak detection, and the
+     * capture of stack traces.
+     *
+     * @param millis The leak detection threshold in milliseconds.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code millis} is negative.
+     */
+    public Builder withLeakDetectionThreshold(final long millis) {
+      if (millis < 0)
+        throw new IllegalArgumentException("leakDetectionThreshold (" + millis + ") must be non-negative");
+
+      this.leakDetectionThreshold = millis;
+      return this;
+    }
+
+    /**
+     * Returns a new {@link ConnectionPool} with the configuration of this
+     * builder.
+     *
+     * @return A new {@link ConnectionPool}.
+     * @throws IllegalArgumentException If the minimum size is greater than the
+     *           maximum size.
+     */
+    public ConnectionPool build() {
+      if (minSize > maxSize)
+        throw new IllegalArgumentException("minSize (" + minSize + ") must not be greater than maxSize (" + maxSize + ")");
+
+      return new ConnectionPool(this);
+    }
+  }
+
+  /**
+   * A physical {@link Connection} of the pool, which is claimed by a borrow
+   * with a compare-and-set of its state from {@code IDLE} to {@code IN_USE}.
+   */
+  static final class Entry {
+    final Connection connection;
+    final AtomicInteger state = new AtomicInteger(IN_USE);
+    final AtomicBoolean queued = new AtomicBoolean();
+    volatile long returned;
+    volatile long borrowed;
+    volatile Throwable borrowTrace;
+    volatile boolean leakReported;
+    volatile boolean autoCommit;
+
+    private Entry(final Connection connection) throws SQLException {
+      this.connection = connection;
+      this.autoCommit = connection.getAutoCommit();
+    }
+  }
+
+  private final Connector connector;
+  private final int minSize;
+  private final int maxSize;
+  private final long maxWait;
+  private final long idleTimeout;
+  private final long validationThreshold;
+  private final int validationTimeout;
+  private final long leakDetectionThreshold;
+
+  // The affine entry is referenced weakly, so that an entry that was discarded on another thread is not retained by the threads that last returned it
+  private final ThreadLocal<WeakReference<Entry>> affinity = new ThreadLocal<>();
+  private final CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<>();
+  private final ConcurrentLinkedDeque<Entry> idle = new ConcurrentLinkedDeque<>();
+  private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final ScheduledFuture<?> housekeeping;
+  private volatile boolean closed;
+
+  private final Histogram waitTime = new Histogram();
+  private final Histogram usageTime = new Histogram();
+  private final LongAdder createdCount = new LongAdder();
+  private final LongAdder evictedCount = new LongAdder();
+  private final LongAdder invalidCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
+  private final LongAdder leakCount = new LongAdder();
+
+  private ConnectionPool(final Builder builder) {
+    this.connector = builder.connector;
+    this.minSize = builder.minSize;
+    this.maxSize = builder.maxSize;
+    this.maxWait = TimeUnit.MILLISECONDS.toNanos(builder.maxWait);
+    this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(builder.idleTimeout);
+    this.validationThreshold = TimeUnit.MILLISECONDS.toNanos(builder.validationThreshold);
+    this.validationTimeout = builder.validationTimeout;
+    this.leakDetectionThreshold = TimeUnit.MILLISECONDS.toNanos(builder.leakDetectionThreshold);
+
+    long period = TimeUnit.SECONDS.toNanos(30);
+    if (idleTimeout > 0)
+      period = Math.min(period, idleTimeout / 2);
+
+    if (leakDetectionThreshold > 0)
+      period = Math.min(period, leakDetectionThreshold / 2);
+
+    final Housekeeping housekeeping = new Housekeeping(this);
+    this.housekeeping = housekeeping.future = Housekeeper.INSTANCE.scheduleWithFixedDelay(housekeeping, 0, Math.max(period, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Borrows a {@link Connection} from this pool. The returned
+   * {@link Connection} is returned to the pool when it is closed.
+   *
+   * @return A {@link Connection} from this pool.
+   * @throws SQLTransientConnectionException If no connection became available
+   *           within the maximum wait time.
+   * @throws SQLException If this pool is closed, or if a SQL error has
+   *           occurred while opening a connection.
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    final long start = System.nanoTime();
+    final WeakReference<Entry> affine = affinity.get();
+    for (Entry entry = affine == null ? null : affine.get();;) {
+      if (entry == null || !entry.state.compareAndSet(IDLE, IN_USE)) {
+        entry = poll();
+        if (entry == null && (entry = create()) == null)
+          entry = await(start);
+      }
+
+      final long now = System.nanoTime();
+      if (validationThreshold != 0 && entry.returned != 0 && now - entry.returned > validationThreshold && !isValid(entry)) {
+        invalidCount.increment();
+        discard(entry);
+        entry = null;
+        continue;
+      }
+
+      waitTime.record(now - start);
+      entry.borrowed = now;
+      if (leakDetectionThreshold != 0) {
+        entry.leakReported = false;
+        entry.borrowTrace = new Exception("Borrowed by " + Thread.currentThread().getName());
+      }
+
+      return new PooledConnection(this, entry, now);
+    }
+  }
+
+  private boolean isValid(final Entry entry) {
+    try {
+      return entry.connection.isValid(validationTimeout);
+    }
+    catch (final SQLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Claims an idle {@link Entry} from the shared queue. An {@link Entry} that
+   * was claimed by the thread-affine path while it was in the queue is
+   * skipped.
+   *
+   * @return An {@link Entry} in the {@code IN_USE} state, or {@code null} if
+   *         no {@link Entry} is idle.
+   */
+  private Entry poll() {
+    for (Entry entry; (entry = idle.pollFirst()) != null;) {
+      entry.queued.set(false);
+      if (entry.state.compareAndSet(IDLE, IN_USE))
+        return entry;
+    }
+
+    return null;
+  }
+
+  /**
+   * Opens a new {@link Entry} if this pool is below its maximum size.
+   *
+   * @return An {@link Entry} in the {@code IN_USE} state, or {@code null} if
+   *         this pool is at its maximum size.
+   * @throws SQLException If this pool is closed, or if a SQL error has
+   *           occurred while opening the connection.
+   */
+  private Entry create() throws SQLException {
+    if (closed)
+      throw new SQLNonTransientConnectionException("ConnectionPool is closed", "08003");
+
+    for (int size; (size = this.size.get()) < maxSize;) {
+      if (this.size.compareAndSet(size, size + 1)) {
+        Connection connection = null;
+        try {
+          final Entry entry = new Entry(connection = connector.getConnection());
+          entries.add(entry);
+          createdCount.increment();
+          return entry;
+        }
+        catch (final SQLException | RuntimeException e) {
+          this.size.decrementAndGet();
+          if (connection != null)
+            close(connection);
+
+          signal();
+          throw e;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private Entry await(final long start) throws SQLException {
+    final Thread thread = Thread.currentThread();
+    final long deadline = start + maxWait;
+    waiters.add(thread);
+    try {
+      for (Entry entry;;) {
+        if ((entry = poll()) != null || (entry = create()) != null)
+          return entry;
+
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          timeoutCount.increment();
+          throw new SQLTransientConnectionException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms waiting for a connection: size=" + size.get() + ", idle=" + idle.size() + ", waiting=" + waiters.size(), "08001");
+        }
+
+        LockSupport.parkNanos(this, remaining);
+        if (Thread.interrupted()) {
+          thread.interrupt();
+          throw new SQLTransientConnectionException("Interrupted while waiting for a connection", "08001");
+        }
+      }
+    }
+    finally {
+      waiters.remove(thread);
+      // Pass on the signal of a connection that is still idle to the next waiter
+      if (!idle.isEmpty())
+        signal();
+    }
+  }
+
+  private void signal() {
+    final Thread waiter = waiters.peek();
+    if (waiter != null)
+      LockSupport.unpark(waiter);
+  }
+
+  /**
+   * Returns the specified {@link Entry} to this pool, or discards it if it
+   * could not be reset, or if this pool is closed.
+   *
+   * @param entry The {@link Entry}.
+   * @param borrowed The {@link System#nanoTime()} of the borrow.
+   * @param reset Whether the state of the connection was reset.
+   */
+  void release(final Entry entry, final long borrowed, final boolean reset) {
+    final long now = System.nanoTime();
+    usageTime.record(now - borrowed);
+    entry.borrowTrace = null;
+    if (!reset || closed) {
+      discard(entry);
+      return;
+    }
+
+    entry.returned = now;
+    final WeakReference<Entry> affine = affinity.get();
+    if (affine == null || affine.get() != entry)
+      affinity.set(new WeakReference<>(entry));
+
+    offer(entry);
+  }
+
+  /**
+   * Makes the specified {@link Entry} idle, and signals a waiting thread.
+   *
+   * @param entry The {@link Entry}.
+   */
+  private void offer(final Entry entry) {
+    entry.state.set(IDLE);
+    if (entry.queued.compareAndSet(false, true))
+      idle.offerFirst(entry);
+
+    // An entry that became idle while this pool was being closed is discarded here
+    if (closed && entry.state.compareAndSet(IDLE, REMOVED))
+      discard(entry);
+    else
+      signal();
+  }
+
+  private void discard(final Entry entry) {
+    entry.state.set(REMOVED);
+    if (entries.remove(entry))
+      size.decrementAndGet();
+
+    final WeakReference<Entry> affine = affinity.get();
+    if (affine != null && affine.get() == entry)
+      affinity.remove();
+
+    close(entry.connection);
+    signal();
+  }
+
+  private static void close(final Connection connection) {
+    try {
+      connection.close();
+    }
+    catch (final SQLException e) {
+      logger.warn("Failed to close connection", e);
+    }
+  }
+
+  /**
+   * Closes the connections that have been idle longer than the idle timeout,
+   * reports the connections that have been borrowed longer than the leak
+   * detection threshold, and opens connections up to the minimum size.
+   */
+  private void housekeep() {
+    if (closed)
+      return;
+
+    final long now = System.nanoTime();
+    for (final Entry entry : entries) {
+      final int state = entry.state.get();
+      if (state == IN_USE) {
+        if (leakDetectionThreshold != 0 && !entry.leakReported && now - entry.borrowed > leakDetectionThreshold) {
+          final Throwable borrowTrace = entry.borrowTrace;
+          if (borrowTrace != null) {
+            entry.leakReported = true;
+            leakCount.increment();
+            logger.warn("Possible connection leak: connection borrowed " + TimeUnit.NANOSECONDS.toMillis(now - entry.borrowed) + "ms ago has not been returned", borrowTrace);
+          }
+        }
+      }
+      else if (state == IDLE && idleTimeout != 0 && size.get() > minSize && now - entry.returned > idleTimeout && entry.state.compareAndSet(IDLE, REMOVED)) {
+        evictedCount.increment();
+        discard(entry);
+      }
+    }
+
+    try {
+      for (Entry entry; size.get() < minSize && !closed && (entry = create()) != null;) {
+        entry.returned = System.nanoTime();
+        offer(entry);
+      }
+    }
+    catch (final SQLException e) {
+      logger.warn("Failed to open connection to minimum size of " + minSize, e);
+    }
+  }
+
+  /**
+   * Closes this pool, and its idle connections. Borrowed connections are
+   * closed when they are returned. Threads that are waiting for a connection
+   * fail with an exception.
+   */
+  @Override
+  public void close() {
+    if (closed)
+      return;
+
+    closed = true;
+    housekeeping.cancel(false);
+    for (final Entry entry : entries)
+      if (entry.state.compareAndSet(IDLE, REMOVED))
+        discard(entry);
+
+    for (final Thread waiter : waiters)
+      LockSupport.unpark(waiter);
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public int getMinSize() {
+    return this.minSize;
+  }
+
+  public int getMaxSize() {
+    return this.maxSize;
+  }
+
+  /**
+   * Returns the number of open connections of this pool.
+   *
+   * @return The number of open connections of this pool.
+   */
+  public int getSize() {
+    return size.get();
+  }
+
+  /**
+   * Returns the number of borrowed connections of this pool.
+   *
+   * @return The number of borrowed connections of this pool.
+   */
+  public int getActiveCount() {
+    int count = 0;
+    for (final Entry entry : entries)
+      if (entry.state.get() == IN_USE)
+        ++count;
+
+    return count;
+  }
+
+  /**
+   * Returns the number of threads that are waiting for a connection.
+   *
+   * @return The number of threads that are waiting for a connection.
+   */
+  public int getWaitingCount() {
+    return waiters.size();
+  }
+
+  /**
+   * Returns the {@link Histogram} of the time in nanoseconds that borrows
+   * waited for a connection, including the time to open or validate it.
+   *
+   * @return The {@link Histogram} of the wait time of borrows.
+   */
+  public Histogram getWaitTime() {
+    return this.waitTime;
+  }
+
+  /**
+   * Returns the {@link Histogram} of the time in nanoseconds that
+   * connections were borrowed.
+   *
+   * @return The {@link Histogram} of the usage time of connections.
+   */
+  public Histogram getUsageTime() {
+    return this.usageTime;
+  }
+
+  public long getCreatedCount() {
+    return createdCount.sum();
+  }
+
+  /**
+   * Returns the number of connections that were closed because they were
+   * idle longer than the idle timeout.
+   *
+   * @return The number of connections that were evicted.
+   */
+  public long getEvictedCount() {
+    return evictedCount.sum();
+  }
+
+  /**
+   * Returns the number of connections that were closed because they failed
+   * validation.
+   *
+   * @return The number of connections that failed validation.
+   */
+  public long getInvalidCount() {
+    return invalidCount.sum();
+  }
+
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  public long getLeakCount() {
+    return leakCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPool{size=" + getSize() + ", active=" + getActiveCount() + ", waiting=" + getWaitingCount() + ", wait=" + waitTime + ", usage=" + usageTime + "}";
+  }
+}
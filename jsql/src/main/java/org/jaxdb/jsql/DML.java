@@ -287,6 +287,8 @@ public final class DML {
 
   @SafeVarargs @SuppressWarnings("unchecked") public static <DataType extends type.DataType<?>>Insert._INSERT<DataType> INSERT(final DataType column, final DataType ... columns) { return new InsertImpl<>(ArrayUtil.splice(columns, 0, 0, column)); }
   public static <E extends type.Table>Insert._INSERT<E> INSERT(final E entity) { return new InsertImpl<>(entity); }
+  @SafeVarargs public static <E extends type.Table>Insert.INSERT<E> INSERT(final E entity, final E ... entities) { return new BulkInsertImpl<>(ArrayUtil.splice(entities, 0, 0, entity)); }
+  public static <E extends type.Table>Insert.INSERT<E> INSERT(final Collection<E> entities) { return new BulkInsertImpl<>(entities.toArray(new type.Table[entities.size()])); }
 
   /* String Functions */
 
@@ -0,0 +1,329 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Connection} that delegates to the {@link Connection} that is
+ * returned by {@link #connection()}, which throws a {@link SQLException} once
+ * this connection is closed. Subclasses define the semantics of
+ * {@link #close()}.
+ */
+abstract class DelegatingConnection implements Connection {
+  /**
+   * Returns the {@link Connection} to which this connection delegates.
+   *
+   * @return The {@link Connection} to which this connection delegates.
+   * @throws SQLException If this connection is closed.
+   */
+  abstract Connection connection() throws SQLException;
+
+  @Override
+  public void setAutoCommit(final boolean autoCommit) throws SQLException {
+    connection().setAutoCommit(autoCommit);
+  }
+
+  @Override
+  public boolean getAutoCommit() throws SQLException {
+    return connection().getAutoCommit();
+  }
+
+  @Override
+  public void setReadOnly(final boolean readOnly) throws SQLException {
+    connection().setReadOnly(readOnly);
+  }
+
+  @Override
+  public void setTransactionIsolation(final int level) throws SQLException {
+    connection().setTransactionIsolation(level);
+  }
+
+  @Override
+  public void setCatalog(final String catalog) throws SQLException {
+    connection().setCatalog(catalog);
+  }
+
+  @Override
+  public void setSchema(final String schema) throws SQLException {
+    connection().setSchema(schema);
+  }
+
+  @Override
+  public void abort(final Executor executor) throws SQLException {
+    connection().abort(executor);
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+    return connection().createStatement();
+  }
+
+  @Override
+  public Statement createStatement(final int resultSetType, final int resultSetConcurrency) throws SQLException {
+    return connection().createStatement(resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public Statement createStatement(final int resultSetType, final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+    return connection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql) throws SQLException {
+    return connection().prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int resultSetType, final int resultSetConcurrency) throws SQLException {
+    return connection().prepareStatement(sql, resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int resultSetType, final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+    return connection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int autoGeneratedKeys) throws SQLException {
+    return connection().prepareStatement(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int[] columnIndexes) throws SQLException {
+    return connection().prepareStatement(sql, columnIndexes);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final String[] columnNames) throws SQLException {
+    return connection().prepareStatement(sql, columnNames);
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql) throws SQLException {
+    return connection().prepareCall(sql);
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency) throws SQLException {
+    return connection().prepareCall(sql, resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+    return connection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+  }
+
+  @Override
+  public String nativeSQL(final String sql) throws SQLException {
+    return connection().nativeSQL(sql);
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    connection().commit();
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    connection().rollback();
+  }
+
+  @Override
+  public void rollback(final Savepoint savepoint) throws SQLException {
+    connection().rollback(savepoint);
+  }
+
+  @Override
+  public Savepoint setSavepoint() throws SQLException {
+    return connection().setSavepoint();
+  }
+
+  @Override
+  public Savepoint setSavepoint(final String name) throws SQLException {
+    return connection().setSavepoint(name);
+  }
+
+  @Override
+  public void releaseSavepoint(final Savepoint savepoint) throws SQLException {
+    connection().releaseSavepoint(savepoint);
+  }
+
+  @Override
+  public DatabaseMetaData getMetaData() throws SQLException {
+    return connection().getMetaData();
+  }
+
+  @Override
+  public boolean isReadOnly() throws SQLException {
+    return connection().isReadOnly();
+  }
+
+  @Override
+  public String getCatalog() throws SQLException {
+    return connection().getCatalog();
+  }
+
+  @Override
+  public int getTransactionIsolation() throws SQLException {
+    return connection().getTransactionIsolation();
+  }
+
+  @Override
+  public String getSchema() throws SQLException {
+    return connection().getSchema();
+  }
+
+  @Override
+  public SQLWarning getWarnings() throws SQLException {
+    return connection().getWarnings();
+  }
+
+  @Override
+  public void clearWarnings() throws SQLException {
+    connection().clearWarnings();
+  }
+
+  @Override
+  public Map<String,Class<?>> getTypeMap() throws SQLException {
+    return connection().getTypeMap();
+  }
+
+  @Override
+  public void setTypeMap(final Map<String,Class<?>> map) throws SQLException {
+    connection().setTypeMap(map);
+  }
+
+  @Override
+  public void setHoldability(final int holdability) throws SQLException {
+    connection().setHoldability(holdability);
+  }
+
+  @Override
+  public int getHoldability() throws SQLException {
+    return connection().getHoldability();
+  }
+
+  @Override
+  public Clob createClob() throws SQLException {
+    return connection().createClob();
+  }
+
+  @Override
+  public Blob createBlob() throws SQLException {
+    return connection().createBlob();
+  }
+
+  @Override
+  public NClob createNClob() throws SQLException {
+    return connection().createNClob();
+  }
+
+  @Override
+  public SQLXML createSQLXML() throws SQLException {
+    return connection().createSQLXML();
+  }
+
+  @Override
+  public Array createArrayOf(final String typeName, final Object[] elements) throws SQLException {
+    return connection().createArrayOf(typeName, elements);
+  }
+
+  @Override
+  public Struct createStruct(final String typeName, final Object[] attributes) throws SQLException {
+    return connection().createStruct(typeName, attributes);
+  }
+
+  @Override
+  public boolean isValid(final int timeout) throws SQLException {
+    final Connection connection;
+    try {
+      connection = connection();
+    }
+    catch (final SQLException e) {
+      return false;
+    }
+
+    return connection.isValid(timeout);
+  }
+
+  private Connection clientInfoConnection() throws SQLClientInfoException {
+    try {
+      return connection();
+    }
+    catch (final SQLException e) {
+      throw new SQLClientInfoException(e.getMessage(), e.getSQLState(), e.getErrorCode(), null, e);
+    }
+  }
+
+  @Override
+  public void setClientInfo(final String name, final String value) throws SQLClientInfoException {
+    clientInfoConnection().setClientInfo(name, value);
+  }
+
+  @Override
+  public void setClientInfo(final Properties properties) throws SQLClientInfoException {
+    clientInfoConnection().setClientInfo(properties);
+  }
+
+  @Override
+  public String getClientInfo(final String name) throws SQLException {
+    return connection().getClientInfo(name);
+  }
+
+  @Override
+  public Properties getClientInfo() throws SQLException {
+    return connection().getClientInfo();
+  }
+
+  @Override
+  public void setNetworkTimeout(final Executor executor, final int milliseconds) throws SQLException {
+    connection().setNetworkTimeout(executor, milliseconds);
+  }
+
+  @Override
+  public int getNetworkTimeout() throws SQLException {
+    return connection().getNetworkTimeout();
+  }
+
+  @Override
+  public <T>T unwrap(final Class<T> iface) throws SQLException {
+    return iface.isInstance(this) ? iface.cast(this) : connection().unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+    return iface.isInstance(this) || connection().isWrapperFor(iface);
+  }
+}
@@ -18,6 +18,7 @@ package org.jaxdb.jsql;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 
 import org.jaxdb.jsql.Delete._DELETE;
 import org.jaxdb.jsql.type.Table;
@@ -41,6 +42,31 @@ final class DeleteImpl extends Command<type.DataType<?>> implements _DELETE {
     return table;
   }
 
+  @Override
+  boolean isCommutative() {
+    return where == null;
+  }
+
+  @Override
+  type.Table keyTable() {
+    return where == null ? table : null;
+  }
+
+  @Override
+  type.Table[] shapeTables() {
+    return where == null ? new type.Table[] {table} : null;
+  }
+
+  @Override
+  type.DataType<?>[] shapeParameters() {
+    final ArrayList<type.DataType<?>> parameters = new ArrayList<>();
+    for (final type.DataType<?> column : table._column$)
+      if (column.wasSet() && !column.isNull())
+        parameters.add(column);
+
+    return parameters.toArray(new type.DataType<?>[parameters.size()]);
+  }
+
   @Override
   void compile(final Compilation compilation, final boolean isExpression) throws IOException, SQLException {
     final Compiler compiler = compilation.compiler;
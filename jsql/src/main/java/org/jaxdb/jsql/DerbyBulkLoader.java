@@ -0,0 +1,218 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb.jsql;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Iterator;
+
+import org.jaxdb.vendor.DBVendor;
+import org.jaxdb.vendor.Dialect;
+import org.libj.io.Readers;
+import org.libj.io.Streams;
+import org.libj.lang.Hexadecimal;
+import org.libj.sql.exception.SQLExceptions;
+
+/**
+ * A {@link BulkLoader} for Derby, which writes the entities to a temporary
+ * file in Derby's delimited format, and loads the file with the
+ * {@code SYSCS_UTIL.SYSCS_IMPORT_DATA} system procedure. Adjacent entities of
+ * the same {@link type.Table} with the same columns to be inserted are loaded
+ * with one call of the procedure.
+ * <p>
+ * Derby commits the transaction after each call of the procedure, so a load
+ * is not atomic: each segment of adjacent entities is committed as it is
+ * loaded, and a {@link Transaction#rollback()} after the load does not undo
+ * the loaded rows. For this reason, a load into a {@link Transaction} that
+ * has a pending write is rejected, rather than to commit the write of the
+ * caller implicitly. A load that is to be atomic is to be performed with
+ * {@link BulkLoader#INSERT}, or with a {@link Batch}.
+ */
+final class DerbyBulkLoader extends BulkLoader {
+  static final DerbyBulkLoader INSTANCE = new DerbyBulkLoader();
+
+  private static final String IMPORT_DATA = "CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(NULL, ?, ?, NULL, ?, NULL, NULL, 'UTF-8', 0)";
+
+  private DerbyBulkLoader() {
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Each segment of adjacent entities of the same {@link type.Table} with the
+   * same columns to be inserted is committed as it is loaded.
+   *
+   * @throws IllegalStateException If the specified {@link Transaction} has a
+   *           pending write, which would be committed by the load.
+   */
+  @Override
+  public long load(final Transaction transaction, final Iterator<? extends type.Table> entities) throws IOException, SQLException {
+    if (transaction.hasPendingWrites())
+      throw new IllegalStateException("Transaction has a pending write, which would be committed by SYSCS_UTIL.SYSCS_IMPORT_DATA: commit or roll back the transaction before the load");
+
+    final Connection connection = transaction.getConnection();
+    final Path file = Files.createTempFile("jaxdb", ".del");
+    try {
+      long count = 0;
+      type.Table first = null;
+      int size = 0;
+      Writer out = null;
+      try {
+        while (entities.hasNext()) {
+          final type.Table entity = entities.next();
+          if (first == null || first.getClass() != entity.getClass() || !BulkInsertImpl.hasSameInserted(first, entity)) {
+            if (out != null) {
+              out.close();
+              out = null;
+              importData(transaction, connection, first, file);
+              count += size;
+            }
+
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            first = entity;
+            size = 0;
+          }
+
+          writeRow(out, entity);
+          ++size;
+        }
+      }
+      finally {
+        if (out != null)
+          out.close();
+      }
+
+      if (first != null) {
+        importData(transaction, connection, first, file);
+        count += size;
+      }
+
+      return count;
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static void importData(final Transaction transaction, final Connection connection, final type.Table table, final Path file) throws SQLException {
+    final Dialect dialect = DBVendor.DERBY.getDialect();
+    final StringBuilder columns = new StringBuilder();
+    for (final type.DataType<?> column : table._column$) {
+      if (!BulkInsertImpl.isInserted(column))
+        continue;
+
+      if (columns.length() > 0)
+        columns.append(',');
+
+      columns.append(dialect.quoteIdentifier(column.name));
+    }
+
+    try (final CallableStatement statement = AsyncExecution.track(connection.prepareCall(IMPORT_DATA))) {
+      statement.setString(1, table.name());
+      statement.setString(2, columns.toString());
+      statement.setString(3, file.toAbsolutePath().toString());
+      statement.execute();
+    }
+    catch (final SQLException e) {
+      throw SQLExceptions.toStrongType(e);
+    }
+
+    // The procedure has committed the segment, which the transaction is to reflect, so that the caches of the table are invalidated
+    onLoad(transaction, table);
+    transaction.commit();
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static void writeRow(final Writer out, final type.Table entity) throws IOException {
+    boolean modified = false;
+    for (final type.DataType column : entity._column$) {
+      if (!column.wasSet()) {
+        if (column.generateOnInsert == null || column.generateOnInsert == GenerateOn.AUTO_GENERATED)
+          continue;
+
+        column.generateOnInsert.generate(column, DBVendor.DERBY);
+      }
+
+      if (modified)
+        out.write(',');
+
+      writeValue(out, column);
+      modified = true;
+    }
+
+    out.write('\n');
+  }
+
+  private static void writeValue(final Writer out, final type.DataType<?> column) throws IOException {
+    // An empty field is loaded as NULL
+    final Object value = column.get();
+    if (value == null)
+      return;
+
+    if (column instanceof type.BLOB) {
+      try (final InputStream in = (InputStream)value) {
+        out.write(new Hexadecimal(Streams.readBytes(in)).toString());
+      }
+    }
+    else if (value instanceof byte[]) {
+      out.write(new Hexadecimal((byte[])value).toString());
+    }
+    else if (column instanceof type.CLOB) {
+      try (final Reader in = (Reader)value) {
+        writeString(out, Readers.readFully(in));
+      }
+    }
+    else if (value instanceof CharSequence || column instanceof type.ENUM) {
+      writeString(out, value.toString());
+    }
+    else if (value instanceof LocalDateTime) {
+      out.write(Dialect.dateTimeToString((LocalDateTime)value));
+    }
+    else if (value instanceof LocalDate) {
+      out.write(Dialect.dateToString((LocalDate)value));
+    }
+    else if (value instanceof LocalTime) {
+      out.write(DerbyCompiler.TIME_FORMAT.format((LocalTime)value));
+    }
+    else if (value instanceof BigDecimal) {
+      out.write(((BigDecimal)value).toPlainString());
+    }
+    else {
+      out.write(value.toString());
+    }
+  }
+
+  private static void writeString(final Writer out, final String value) throws IOException {
+    out.write('"');
+    out.write(value.replace("\"", "\"\""));
+    out.write('"');
+  }
+}
@@ -140,7 +140,7 @@ final class DerbyCompiler extends Compiler {
     return "CAST (" + super.compile(dataType) + " AS BLOB)";
   }
 
-  private static final DateTimeFormatter TIME_FORMAT = new DateTimeFormatterBuilder().appendPattern("HH:mm:ss").toFormatter();
+  static final DateTimeFormatter TIME_FORMAT = new DateTimeFormatterBuilder().appendPattern("HH:mm:ss").toFormatter();
 
   @Override
   String compile(final type.TIME dataType) {
@@ -157,6 +157,23 @@ final class DerbyCompiler extends Compiler {
     return false;
   }
 
+  @Override
+  BulkLoader getBulkLoader() {
+    return DerbyBulkLoader.INSTANCE;
+  }
+
+  @Override
+  void compileInsertValuesOnConflict(final type.Table[] inserts, final int from, final int to, final boolean doUpdate, final Compilation compilation) throws IOException, SQLException {
+    // The source of a MERGE in Derby cannot be a VALUES clause, so each row is merged by its own statement
+    final type.Table insert = inserts[from];
+    compileInsertOnConflict(insert._column$, null, insert._primary$, doUpdate, compilation);
+  }
+
+  @Override
+  boolean supportsInsertValues() {
+    return false;
+  }
+
   @Override
   void compileFrom(final SelectImpl.untyped.SELECT<?> select, final boolean useAliases, final Compilation compilation) throws IOException, SQLException {
     if (select.from() != null)
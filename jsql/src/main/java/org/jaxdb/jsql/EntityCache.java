@@ -0,0 +1,491 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A bounded LRU cache of the entities of a registration of the
+ * {@link Registry}, keyed by the class of the {@link type.Table} and the
+ * values of its primary columns. An object query of a single entity whose set
+ * columns are its primary columns (i.e. {@code SELECT(entity)}) is served from
+ * this cache with a copy of the cached entity, without a round trip to the
+ * database.
+ * <p>
+ * An entity is cached when it is read by a primary key lookup outside of a
+ * {@link Transaction} from the primary, and not from a replica of a
+ * {@link Routing}, which may lag the primary. A lookup in a
+ * {@link Transaction} is served from this cache, unless the
+ * {@link Transaction} has modified the table of the entity.
+ * Entities are invalidated when a modification is committed through jSQL: a
+ * modification that is executed outside of a {@link Transaction} invalidates
+ * on execution, and a modification in a {@link Transaction} invalidates on
+ * its {@link Transaction.Event#COMMIT COMMIT}, and is discarded on its
+ * {@link Transaction.Event#ROLLBACK ROLLBACK}. Thus, uncommitted changes are
+ * never visible to other transactions. A modification of an entity by its
+ * primary key invalidates the entity, and other modifications invalidate all
+ * entities of the table.
+ *
+ * @see Registry#setEntityCache(Class,String,EntityCache)
+ */
+public final class EntityCache {
+  public static final class Builder {
+    private int maxSize = 10000;
+    private HashSet<Class<? extends type.Table>> tables;
+
+    /**
+     * Sets the maximum number of entities in the cache. The default is
+     * {@code 10000}.
+     *
+     * @param maxSize The maximum number of entities in the cache.
+     * @return {@code this} {@link Builder}.
+     * @throws IllegalArgumentException If {@code maxSize} is not greater than
+     *           0.
+     */
+    public Builder withMaxSize(final int maxSize) {
+      if (maxSize <= 0)
+        throw new IllegalArgumentException("maxSize (" + maxSize + ") must be greater than 0");
+
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Restricts the cache to the entities of only the specified tables. If no
+     * tables are specified, the entities of all tables are cached.
+     *
+     * @param tables The classes of the tables.
+     * @return {@code this} {@link Builder}.
+     */
+    @SafeVarargs
+    public final Builder withTables(final Class<? extends type.Table> ... tables) {
+      if (this.tables == null)
+        this.tables = new HashSet<>();
+
+      Collections.addAll(this.tables, tables);
+      return this;
+    }
+
+    public EntityCache build() {
+      return new EntityCache(maxSize, tables == null ? null : new HashSet<>(tables));
+    }
+  }
+
+  /**
+   * The key of an entity, which is the class of its {@link type.Table} and the
+   * values of its primary columns.
+   */
+  static final class Key {
+    private final Class<? extends type.Table> table;
+    private final Object[] values;
+    private final int hashCode;
+
+    private Key(final Class<? extends type.Table> table, final Object[] values) {
+      this.table = table;
+      this.values = values;
+      this.hashCode = 31 * table.hashCode() + Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof Key))
+        return false;
+
+      final Key that = (Key)obj;
+      return hashCode == that.hashCode && table == that.table && Arrays.deepEquals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The modifications of a {@link Transaction}, which are invalidated in the
+   * {@link EntityCache} on {@link Transaction.Event#COMMIT COMMIT}, and are
+   * discarded on {@link Transaction.Event#ROLLBACK ROLLBACK}.
+   */
+  final class Pending implements Consumer<Transaction.Event> {
+    private final HashSet<Key> keys = new HashSet<>();
+    private final HashSet<Class<? extends type.Table>> tables = new HashSet<>();
+
+    private Pending() {
+    }
+
+    void add(final type.Table table, final boolean keyed) {
+      final Key key = keyed ? newKey(table) : null;
+      if (key != null)
+        keys.add(key);
+      else
+        tables.add(table.getClass());
+    }
+
+    @Override
+    public void accept(final Transaction.Event event) {
+      if (event != Transaction.Event.COMMIT)
+        return;
+
+      for (final Class<? extends type.Table> table : tables)
+        invalidate(table);
+
+      for (final Key key : keys)
+        if (!tables.contains(key.table))
+          invalidate(key);
+    }
+  }
+
+  private final int maxSize;
+  private final Set<Class<? extends type.Table>> tables;
+  private final HashSet<Class<? extends type.Table>> disabled = new HashSet<>();
+
+  private final LinkedHashMap<Key,type.Table> entities = new LinkedHashMap<>(16, .75f, true);
+  private final HashMap<Class<? extends type.Table>,Set<Key>> keysOfTable = new HashMap<>();
+  private final HashMap<Class<? extends type.Table>,long[]> versions = new HashMap<>();
+  private long epoch;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long invalidationCount;
+
+  private EntityCache(final int maxSize, final Set<Class<? extends type.Table>> tables) {
+    this.maxSize = maxSize;
+    this.tables = tables;
+  }
+
+  /**
+   * Returns whether the entities of the specified table are cached.
+   *
+   * @param table The class of the table.
+   * @return Whether the entities of the specified table are cached.
+   */
+  public synchronized boolean isEnabled(final Class<? extends type.Table> table) {
+    return !disabled.contains(table) && (tables == null || tables.contains(table));
+  }
+
+  /**
+   * Enables or disables the caching of the entities of the specified table.
+   * The cached entities of a disabled table are evicted.
+   *
+   * @param table The class of the table.
+   * @param enabled Whether the entities of the table are to be cached.
+   */
+  public synchronized void setEnabled(final Class<? extends type.Table> table, final boolean enabled) {
+    if (enabled) {
+      disabled.remove(table);
+      if (tables != null)
+        tables.add(table);
+    }
+    else {
+      disabled.add(table);
+      invalidate(table);
+    }
+  }
+
+  /**
+   * Returns the {@link Key} of the specified entity, or {@code null} if a
+   * primary column of the entity is null, or if the entities of its table are
+   * not cached.
+   *
+   * @param table The entity.
+   * @return The {@link Key} of the specified entity, or {@code null} if a
+   *         primary column of the entity is null, or if the entities of its
+   *         table are not cached.
+   */
+  Key newKey(final type.Table table) {
+    final Class<? extends type.Table> type = table.getClass();
+    if (!isEnabled(type))
+      return null;
+
+    final type.DataType<?>[] primaries = table._primary$;
+    if (primaries.length == 0)
+      return null;
+
+    final Object[] values = new Object[primaries.length];
+    for (int i = 0; i < values.length; ++i)
+      if ((values[i] = primaries[i].get()) == null)
+        return null;
+
+    return new Key(type, values);
+  }
+
+  /**
+   * Returns a new {@link Pending} of the modifications of a
+   * {@link Transaction}, which is to be added as a listener of the
+   * {@link Transaction}.
+   *
+   * @return A new {@link Pending}.
+   */
+  Pending newPending() {
+    return new Pending();
+  }
+
+  /**
+   * Returns the version of the entities of the specified table, which changes
+   * when an entity of the table is invalidated, or when all entities are
+   * invalidated.
+   *
+   * @param table The class of the table.
+   * @return The version of the entities of the specified table.
+   */
+  synchronized long getVersion(final Class<? extends type.Table> table) {
+    // The epoch is counted in, so that invalidateAll() changes the version of tables that were never invalidated
+    final long[] version = versions.get(table);
+    return version == null ? epoch : epoch + version[0];
+  }
+
+  private void increment(final Class<? extends type.Table> table) {
+    final long[] version = versions.get(table);
+    if (version != null)
+      ++version[0];
+    else
+      versions.put(table, new long[] {1});
+  }
+
+  /**
+   * Returns a {@link RowIterator} of a copy of the cached entity of the
+   * specified {@link Key}, or {@code null} if the entity is not cached.
+   *
+   * @param <T> The type of the entity.
+   * @param key The {@link Key}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @param identityMap The identity map of the {@link Transaction} in which
+   *          the copy is to be registered, or {@code null}.
+   * @return A {@link RowIterator} of a copy of the cached entity of the
+   *         specified {@link Key}, or {@code null} if the entity is not
+   *         cached.
+   */
+  <T extends type.Entity<?>>RowIterator<T> get(final Key key, final QueryConfig config, final Map<type.Table,type.Table> identityMap) {
+    final type.Table entity;
+    synchronized (this) {
+      entity = entities.get(key);
+      if (entity == null) {
+        ++missCount;
+        return null;
+      }
+
+      ++hitCount;
+    }
+
+    final type.Table copy = entity.clone();
+    if (identityMap != null)
+      identityMap.put(copy, copy);
+
+    return SelectImpl.newRowIterator(copy, config);
+  }
+
+  /**
+   * Returns a {@link RowIterator} of the rows of the specified
+   * {@link RowIterator} of a primary key lookup, which caches the entity of
+   * the specified {@link Key} once the rows are read to the end, unless the
+   * table of the entity was invalidated since the specified version.
+   *
+   * @param <T> The type of the entity.
+   * @param key The {@link Key}.
+   * @param version The version of the table of the {@link Key} before the
+   *          execution of the query.
+   * @param rows The {@link RowIterator} of the primary key lookup.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return A {@link RowIterator} of the rows of the specified
+   *         {@link RowIterator}.
+   */
+  <T extends type.Entity<?>>RowIterator<T> cache(final Key key, final long version, final RowIterator<T> rows, final QueryConfig config) {
+    return new RowIterator<T>(rows.resultSet, config) {
+      private type.Table entity;
+      private int count;
+
+      @Override
+      public boolean nextRow() throws SQLException {
+        if (super.nextRow())
+          return true;
+
+        if (endReached)
+          return false;
+
+        if (!rows.nextRow()) {
+          endReached = true;
+          if (count == 1)
+            put(key, version, entity);
+
+          entity = null;
+          return false;
+        }
+
+        final T[] row = rows.getRow();
+        if (++count == 1)
+          entity = ((type.Table)row[0]).clone();
+
+        addRow(row);
+        return true;
+      }
+
+      @Override
+      public void close() throws SQLException {
+        entity = null;
+        clearRows();
+        rows.close();
+      }
+    };
+  }
+
+  private synchronized void put(final Key key, final long version, final type.Table entity) {
+    if (getVersion(key.table) != version || !isEnabled(key.table))
+      return;
+
+    if (entities.put(key, entity) != null)
+      return;
+
+    Set<Key> keys = keysOfTable.get(key.table);
+    if (keys == null)
+      keysOfTable.put(key.table, keys = new HashSet<>());
+
+    keys.add(key);
+    while (entities.size() > maxSize) {
+      remove(entities.keySet().iterator().next());
+      ++evictionCount;
+    }
+  }
+
+  private void remove(final Key key) {
+    entities.remove(key);
+    final Set<Key> keys = keysOfTable.get(key.table);
+    if (keys != null && keys.remove(key) && keys.size() == 0)
+      keysOfTable.remove(key.table);
+  }
+
+  private synchronized void invalidate(final Key key) {
+    increment(key.table);
+    if (entities.containsKey(key)) {
+      remove(key);
+      ++invalidationCount;
+    }
+  }
+
+  /**
+   * Invalidates the cached entities that are modified by a committed
+   * modification of the specified entity.
+   *
+   * @param table The modified entity.
+   * @param keyed Whether the modification is by the primary key of the
+   *          entity, whereby only the entity is invalidated, and otherwise all
+   *          entities of its table are invalidated.
+   */
+  void invalidate(final type.Table table, final boolean keyed) {
+    final Key key = keyed ? newKey(table) : null;
+    if (key != null)
+      invalidate(key);
+    else
+      invalidate(table.getClass());
+  }
+
+  /**
+   * Evicts the cached entities of the specified table.
+   *
+   * @param table The class of the table.
+   */
+  public synchronized void invalidate(final Class<? extends type.Table> table) {
+    increment(table);
+    final Set<Key> keys = keysOfTable.remove(table);
+    if (keys == null)
+      return;
+
+    for (final Key key : keys)
+      entities.remove(key);
+
+    invalidationCount += keys.size();
+  }
+
+  /**
+   * Evicts all cached entities.
+   */
+  public synchronized void invalidateAll() {
+    ++epoch;
+    invalidationCount += entities.size();
+    entities.clear();
+    keysOfTable.clear();
+  }
+
+  /**
+   * Returns the number of entities in this cache.
+   *
+   * @return The number of entities in this cache.
+   */
+  public synchronized int size() {
+    return entities.size();
+  }
+
+  /**
+   * Returns the number of primary key lookups that were served from this
+   * cache.
+   *
+   * @return The number of primary key lookups that were served from this
+   *         cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of cacheable primary key lookups that were not in this
+   * cache.
+   *
+   * @return The number of cacheable primary key lookups that were not in this
+   *         cache.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of entities that were evicted from this cache because
+   * the cache was full.
+   *
+   * @return The number of entities that were evicted from this cache because
+   *         the cache was full.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Returns the number of entities that were evicted from this cache because
+   * they were modified.
+   *
+   * @return The number of entities that were evicted from this cache because
+   *         they were modified.
+   */
+  public synchronized long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  @Override
+  public String toString() {
+    return "EntityCache[size=" + size() + ",hits=" + getHitCount() + ",misses=" + getMissCount() + "]";
+  }
+}
@@ -22,11 +22,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.jaxdb.vendor.DBVendor;
 import org.libj.lang.Throwables;
 import org.libj.sql.AuditConnection;
-import org.libj.sql.AuditStatement;
 import org.libj.sql.exception.SQLExceptions;
 
 public final class Executable {
@@ -38,49 +38,50 @@ public final class Executable {
     SQLException suppressed = null;
     final type.DataType<?>[] autos = command instanceof InsertImpl && ((InsertImpl<?>)command).autos.length > 0 ? ((InsertImpl<?>)command).autos : null;
     try {
-      connection = transaction != null ? transaction.getConnection() : Schema.getConnection(command.schema(), dataSourceId, true);
-      compilation = new Compilation(command, DBVendor.valueOf(connection.getMetaData()), Registry.isPrepared(command.schema(), dataSourceId));
-      command.compile(compilation, false);
+      final Registry.Registration registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(command.schema(), dataSourceId);
+      connection = transaction != null ? transaction.getConnection() : Schema.getConnection(registration, command.schema(), true);
+      final Metrics metrics = registration.metrics;
+      final DBVendor vendor = registration.getVendor(connection);
+      Object event = FlightRecorder.beginCompile();
+      final long compileStart = metrics == null ? 0 : System.nanoTime();
+      compilation = Compilation.compile(command, vendor, registration.isPrepared);
+      if (metrics != null)
+        Compilation.record(metrics, Metrics.Phase.COMPILE, compilation.toString(), compileStart);
+
+      if (event != null)
+        FlightRecorder.commit(event, compilation.toString(), vendor, dataSourceId, transaction, -1);
+
+      final WriteBehind writeBehind = transaction != null ? transaction.getWriteBehind() : null;
+      if (writeBehind != null) {
+        if (autos == null && writeBehind.add(command, compilation)) {
+          transaction.onWrite(command);
+          return java.sql.Statement.SUCCESS_NO_INFO;
+        }
+
+        writeBehind.flush();
+      }
+
 //      final type.DataType<?>[] returning = getReturning();
       try {
         final int count;
         final ResultSet resultSet;
+        final String sql = compilation.toString();
+        event = FlightRecorder.beginExecute();
+        long start = metrics == null ? 0 : System.nanoTime();
         if (compilation.isPrepared()) {
-          // FIXME: Implement batching.
-          // if (batching) {
-          // final IntArrayList results = new IntArrayList(statements.size());
-          // PreparedStatement jdbcStatement = null;
-          // String last = null;
-          // for (int i = 0, len = statements.size(); i < len; ++i) {
-          // final Statement statement = statements.get(i);
-          // if (!statement.sql.equals(last)) {
-          // if (jdbcStatement != null)
-          // results.addAll(jdbcStatement.executeBatch());
-          //
-          // jdbcStatement = connection.prepareStatement(statement.sql);
-          // last = statement.sql;
-          // }
-          //
-          // for (int j = 0, len = statement.parameters.size(); j < len; ++j)
-          // statement.parameters.get(j).get(jdbcStatement, j + 1);
-          //
-          // jdbcStatement.addBatch();
-          // }
-          //
-          // if (jdbcStatement != null)
-          // results.addAll(jdbcStatement.executeBatch());
-          //
-          // return results.toArray();
-          // }
-
-          final String sql = compilation.toString();
-          final PreparedStatement preparedStatement = autos == null ? connection.prepareStatement(sql) : compilation.compiler.prepareStatementReturning(connection, sql, autos);
+          final PreparedStatement preparedStatement = autos == null ? Compilation.prepareStatement(transaction, connection, null, sql) : AsyncExecution.track(compilation.compiler.prepareStatementReturning(connection, sql, autos));
           statement = preparedStatement;
+          if (metrics != null)
+            start = Compilation.record(metrics, Metrics.Phase.PREPARE, sql, start);
+
           final List<type.DataType<?>> parameters = compilation.getParameters();
           if (parameters != null)
             for (int i = 0, len = parameters.size(); i < len;)
               parameters.get(i).get(preparedStatement, ++i);
 
+          if (metrics != null)
+            start = Compilation.record(metrics, Metrics.Phase.BIND, sql, start);
+
           try {
             count = preparedStatement.executeUpdate();
             resultSet = autos == null ? null : preparedStatement.getGeneratedKeys();
@@ -98,21 +99,10 @@ public final class Executable {
           }
         }
         else {
-          // FIXME: Implement batching.
-          // if (batching) {
-          // final java.sql.Statement jdbcStatement =
-          // connection.createStatement();
-          // for (int i = 0, len = statements.size(); i < len; ++i) {
-          // final Statement statement = statements.get(i);
-          // jdbcStatement.addBatch(statement.sql.toString());
-          // }
-          //
-          // return jdbcStatement.executeBatch();
-          // }
-
-          // final Statement batch = statements.get(i);
-          statement = connection.createStatement();
-          final String sql = compilation.toString();
+          statement = AsyncExecution.track(connection.createStatement());
+          if (metrics != null)
+            start = Compilation.record(metrics, Metrics.Phase.PREPARE, sql, start);
+
           if (autos == null) {
             count = statement.executeUpdate(sql);
             resultSet = null;
@@ -121,12 +111,21 @@ public final class Executable {
             count = compilation.compiler.executeUpdateReturning(statement, sql, autos);
             resultSet = statement.getGeneratedKeys();
           }
-          // }
-          //
-          // return results;
         }
 
+        if (metrics != null) {
+          Compilation.record(metrics, Metrics.Phase.EXECUTE, sql, start);
+          metrics.recordRows(sql, count);
+        }
+
+        FlightRecorder.commit(event, sql, vendor, dataSourceId, transaction, count);
+
         compilation.afterExecute(true);
+        if (transaction == null)
+          registration.onWrite(command);
+        else
+          transaction.onWrite(command);
+
         if (resultSet != null) {
           while (resultSet.next()) {
             for (int i = 0, len = autos.length; i < len;) {
@@ -139,7 +138,7 @@ public final class Executable {
       }
       finally {
         if (statement != null)
-          suppressed = Throwables.addSuppressed(suppressed, AuditStatement.close(statement));
+          suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, statement));
 
         if (transaction == null)
           suppressed = Throwables.addSuppressed(suppressed, AuditConnection.close(connection));
@@ -164,6 +163,103 @@ public final class Executable {
     RowIterator<T> execute(String dataSourceId, QueryConfig config) throws IOException, SQLException;
     RowIterator<T> execute(Transaction transaction, QueryConfig config) throws IOException, SQLException;
     RowIterator<T> execute(QueryConfig config) throws IOException, SQLException;
+
+    /**
+     * Executes this query asynchronously on the {@link Registry#getExecutor()
+     * Executor} of the {@link Registry}. Cancelling the returned
+     * {@link CompletableFuture} cancels the executing {@link java.sql.Statement}.
+     *
+     * @param dataSourceId The data source id.
+     * @return A {@link CompletableFuture} of the {@link RowIterator} of the
+     *         results of this query.
+     */
+    default CompletableFuture<RowIterator<T>> executeAsync(final String dataSourceId) {
+      return AsyncExecution.submit(() -> execute(dataSourceId));
+    }
+
+    /**
+     * Executes this query asynchronously in the specified {@link Transaction}
+     * on the {@link Registry#getExecutor() Executor} of the {@link Registry}.
+     * The {@link Transaction} is not to be used until the returned
+     * {@link CompletableFuture} completes. Cancelling the returned
+     * {@link CompletableFuture} cancels the executing {@link java.sql.Statement}.
+     *
+     * @param transaction The {@link Transaction}.
+     * @return A {@link CompletableFuture} of the {@link RowIterator} of the
+     *         results of this query.
+     */
+    default CompletableFuture<RowIterator<T>> executeAsync(final Transaction transaction) {
+      return AsyncExecution.submit(() -> execute(transaction));
+    }
+
+    default CompletableFuture<RowIterator<T>> executeAsync() {
+      return AsyncExecution.submit(() -> execute());
+    }
+
+    default CompletableFuture<RowIterator<T>> executeAsync(final String dataSourceId, final QueryConfig config) {
+      return AsyncExecution.submit(() -> execute(dataSourceId, config));
+    }
+
+    default CompletableFuture<RowIterator<T>> executeAsync(final Transaction transaction, final QueryConfig config) {
+      return AsyncExecution.submit(() -> execute(transaction, config));
+    }
+
+    default CompletableFuture<RowIterator<T>> executeAsync(final QueryConfig config) {
+      return AsyncExecution.submit(() -> execute(config));
+    }
+
+    /**
+     * Returns a {@link RowPublisher} of the rows of this query, which is
+     * executed for each {@link RowPublisher.Subscription} upon its first
+     * request. Rows are read from the cursor as they are requested.
+     *
+     * @param dataSourceId The data source id.
+     * @return A {@link RowPublisher} of the rows of this query.
+     */
+    default RowPublisher<T> publish(final String dataSourceId) {
+      return new RowPublisher<>(() -> execute(dataSourceId));
+    }
+
+    /**
+     * Returns a {@link RowPublisher} of the rows of this query in the specified
+     * {@link Transaction}, which is executed for each
+     * {@link RowPublisher.Subscription} upon its first request. Rows are read
+     * from the cursor as they are requested. The {@link Transaction} is not to
+     * be used until the {@link RowPublisher.Subscription} is terminated.
+     *
+     * @param transaction The {@link Transaction}.
+     * @return A {@link RowPublisher} of the rows of this query.
+     */
+    default RowPublisher<T> publish(final Transaction transaction) {
+      return new RowPublisher<>(() -> execute(transaction));
+    }
+
+    default RowPublisher<T> publish() {
+      return new RowPublisher<>(() -> execute());
+    }
+
+    /**
+     * Returns a {@link RowPublisher} of the rows of this query, which is
+     * executed for each {@link RowPublisher.Subscription} upon its first
+     * request. The driver prefetches rows in windows of the
+     * {@link QueryConfig#getFetchSize() fetch size} of the specified
+     * {@link QueryConfig}.
+     *
+     * @param dataSourceId The data source id.
+     * @param config The {@link QueryConfig}.
+     * @return A {@link RowPublisher} of the rows of this query.
+     */
+    default RowPublisher<T> publish(final String dataSourceId, final QueryConfig config) {
+      return new RowPublisher<>(() -> execute(dataSourceId, config));
+    }
+
+    default RowPublisher<T> publish(final Transaction transaction, final QueryConfig config) {
+      return new RowPublisher<>(() -> execute(transaction, config));
+    }
+
+    default RowPublisher<T> publish(final QueryConfig config) {
+      return new RowPublisher<>(() -> execute(config));
+    }
   }
 
   public interface Modify extends AutoCloseable {
@@ -179,6 +275,37 @@ public final class Executable {
       return Executable.execute((org.jaxdb.jsql.Command<?>)this, null, null);
     }
 
+    /**
+     * Executes this modification asynchronously on the
+     * {@link Registry#getExecutor() Executor} of the {@link Registry}.
+     * Cancelling the returned {@link CompletableFuture} cancels the executing
+     * {@link java.sql.Statement}.
+     *
+     * @param dataSourceId The data source id.
+     * @return A {@link CompletableFuture} of the number of affected rows.
+     */
+    default CompletableFuture<Integer> executeAsync(final String dataSourceId) {
+      return AsyncExecution.submit(() -> execute(dataSourceId));
+    }
+
+    /**
+     * Executes this modification asynchronously in the specified
+     * {@link Transaction} on the {@link Registry#getExecutor() Executor} of
+     * the {@link Registry}. The {@link Transaction} is not to be used until the
+     * returned {@link CompletableFuture} completes. Cancelling the returned
+     * {@link CompletableFuture} cancels the executing {@link java.sql.Statement}.
+     *
+     * @param transaction The {@link Transaction}.
+     * @return A {@link CompletableFuture} of the number of affected rows.
+     */
+    default CompletableFuture<Integer> executeAsync(final Transaction transaction) {
+      return AsyncExecution.submit(() -> execute(transaction));
+    }
+
+    default CompletableFuture<Integer> executeAsync() {
+      return AsyncExecution.submit(() -> execute());
+    }
+
     @Override
     void close();
 
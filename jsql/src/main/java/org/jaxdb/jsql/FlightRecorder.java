@@ -0,0 +1,115 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import org.jaxdb.vendor.DBVendor;
+
+/**
+ * The Java Flight Recorder events of the compilation and execution of
+ * statements, and of the fetch of the rows of queries. The events are
+ * disabled by default, and are enabled in the settings of a recording by
+ * their names: {@value #COMPILE}, {@value #EXECUTE} and {@value #FETCH}.
+ * <p>
+ * This class does not link the {@code jdk.jfr} API, so that jSQL compiles and
+ * runs on Java 8. The events are declared in {@code FlightRecorderEvents},
+ * which is compiled from the {@code src/main/java11} source set, and is loaded
+ * reflectively if the {@code jdk.jfr} API is available. The {@code begin}
+ * methods return {@code null}, without allocation, if the events are not
+ * available, or if the event is not enabled in a running recording.
+ */
+final class FlightRecorder {
+  static final String COMPILE = "org.jaxdb.jsql.Compile";
+  static final String EXECUTE = "org.jaxdb.jsql.Execute";
+  static final String FETCH = "org.jaxdb.jsql.Fetch";
+
+  /**
+   * The implementation of the events, which links the {@code jdk.jfr} API.
+   */
+  interface Recorder {
+    Object beginCompile();
+    Object beginExecute();
+    Object beginFetch();
+    void commit(Object event, String sql, DBVendor vendor, String dataSourceId, Transaction transaction, long count);
+  }
+
+  private static final Recorder recorder = newRecorder();
+
+  private static Recorder newRecorder() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return (Recorder)Class.forName(FlightRecorder.class.getName() + "Events").getDeclaredConstructor().newInstance();
+    }
+    catch (final ReflectiveOperationException | LinkageError e) {
+      // The jdk.jfr API is not available, or jSQL was built without the java11 source set
+      return null;
+    }
+  }
+
+  /**
+   * Returns a new {@value #COMPILE} event that has begun, or {@code null} if
+   * the event is not enabled.
+   *
+   * @return A new {@value #COMPILE} event that has begun, or {@code null} if
+   *         the event is not enabled.
+   */
+  static Object beginCompile() {
+    return recorder == null ? null : recorder.beginCompile();
+  }
+
+  /**
+   * Returns a new {@value #EXECUTE} event that has begun, or {@code null} if
+   * the event is not enabled.
+   *
+   * @return A new {@value #EXECUTE} event that has begun, or {@code null} if
+   *         the event is not enabled.
+   */
+  static Object beginExecute() {
+    return recorder == null ? null : recorder.beginExecute();
+  }
+
+  /**
+   * Returns a new {@value #FETCH} event that has begun, or {@code null} if
+   * the event is not enabled.
+   *
+   * @return A new {@value #FETCH} event that has begun, or {@code null} if
+   *         the event is not enabled.
+   */
+  static Object beginFetch() {
+    return recorder == null ? null : recorder.beginFetch();
+  }
+
+  /**
+   * Ends the specified event, and commits it if its duration is above the
+   * threshold of the recording.
+   *
+   * @param event The event that was returned by a {@code begin} method, or
+   *          {@code null}.
+   * @param sql The SQL of the statement.
+   * @param vendor The {@link DBVendor}.
+   * @param dataSourceId The data source id, or {@code null}.
+   * @param transaction The {@link Transaction}, or {@code null}.
+   * @param count The number of rows that were modified or fetched, or the
+   *          number of statements of a batch, or {@code -1}.
+   */
+  static void commit(final Object event, final String sql, final DBVendor vendor, final String dataSourceId, final Transaction transaction, final long count) {
+    if (event != null)
+      recorder.commit(event, sql, vendor, dataSourceId, transaction, count);
+  }
+
+  private FlightRecorder() {
+  }
+}
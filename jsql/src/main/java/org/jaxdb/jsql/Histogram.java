@@ -0,0 +1,162 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative {@code long} values, such as
+ * latencies in nanoseconds. Values are counted in log-linear buckets: each
+ * power of two is divided into 16 linear sub-buckets, so that a value is
+ * reported with a relative error of at most 1/16 (6.25%), in a fixed 7.5KB
+ * of counters regardless of the range of values.
+ * <p>
+ * {@link #record(long)} is wait-free, and can be called concurrently with
+ * the query methods, which return a consistent snapshot only when no values
+ * are recorded concurrently.
+ */
+public final class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private static int indexOf(final long value) {
+    if (value < SUB_BUCKETS)
+      return (int)value;
+
+    final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int)((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  private static long highestValueOf(final int index) {
+    if (index < SUB_BUCKETS)
+      return index;
+
+    final int shift = index / SUB_BUCKETS - 1;
+    final long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records the specified value. A negative value is recorded as {@code 0}.
+   *
+   * @param value The value.
+   */
+  public void record(long value) {
+    if (value < 0)
+      value = 0;
+
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    for (long max; value > (max = this.max.get()) && !this.max.compareAndSet(max, value););
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return The number of recorded values.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   *
+   * @return The sum of the recorded values.
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * Returns the largest recorded value, or {@code 0} if no values were
+   * recorded.
+   *
+   * @return The largest recorded value.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the mean of the recorded values, or {@code 0} if no values were
+   * recorded.
+   *
+   * @return The mean of the recorded values.
+   */
+  public double getMean() {
+    final long count = getCount();
+    return count == 0 ? 0 : (double)getSum() / count;
+  }
+
+  /**
+   * Returns the value at the specified percentile of the recorded values,
+   * which is the highest value of the bucket of that percentile, or {@code 0}
+   * if no values were recorded.
+   *
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The value at the specified percentile of the recorded values.
+   * @throws IllegalArgumentException If {@code percentile} is not between
+   *           {@code 0} and {@code 100}.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100)
+      throw new IllegalArgumentException("percentile (" + percentile + ") must be between 0 and 100");
+
+    long total = 0;
+    for (int i = 0; i < BUCKETS; ++i)
+      total += counts.get(i);
+
+    if (total == 0)
+      return 0;
+
+    final long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; ++i)
+      if ((seen += counts.get(i)) >= rank)
+        return Math.min(highestValueOf(i), getMax());
+
+    return getMax();
+  }
+
+  /**
+   * Clears the recorded values of this histogram. Values that are recorded
+   * concurrently with this method may be partially cleared.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; ++i)
+      counts.set(i, 0);
+
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "{count=" + getCount() + ", mean=" + (long)getMean() + ", p50=" + getValueAtPercentile(50) + ", p90=" + getValueAtPercentile(90) + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + "}";
+  }
+}
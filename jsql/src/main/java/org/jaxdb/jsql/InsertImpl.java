@@ -113,6 +113,32 @@ final class InsertImpl<T extends type.Entity<?>> extends Command<T> implements _
     throw new UnsupportedOperationException("Expected insert.entities != null || insert.select != null");
   }
 
+  @Override
+  boolean isCommutative() {
+    return table != null && select == null && onConflict == null;
+  }
+
+  @Override
+  type.Table keyTable() {
+    return select == null ? table() : null;
+  }
+
+  @Override
+  type.Table[] shapeTables() {
+    return table != null && select == null && onConflict == null ? new type.Table[] {table} : null;
+  }
+
+  @Override
+  type.DataType<?>[] shapeParameters() {
+    return recurseColumns(table._column$, c -> c.wasSet() || c.generateOnInsert != null && c.generateOnInsert != GenerateOn.AUTO_GENERATED, 0, 0);
+  }
+
+  @Override
+  void onShapeHit(final Compilation compilation) {
+    for (final type.DataType<?> column : table._column$)
+      Compiler.shouldInsert(column, true, compilation);
+  }
+
   @Override
   void compile(final Compilation compilation, final boolean isExpression) throws IOException, SQLException {
     final type.DataType<?>[] columns = this.columns != null ? this.columns : table._column$;
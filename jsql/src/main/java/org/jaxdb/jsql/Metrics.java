@@ -0,0 +1,82 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+/**
+ * A service provider interface for the metrics of the executions of the
+ * statements of a registration of the {@link Registry}. The {@link Phase}s of
+ * an execution are timed, and are recorded with the SQL of the statement.
+ * <p>
+ * Metrics are disabled by default, in which case the phases are not timed.
+ * The methods of this interface are called concurrently from the threads that
+ * execute statements, and are thus to be thread-safe and non-blocking.
+ *
+ * @see QueryMetrics
+ * @see Registry#setMetrics(Class,String,Metrics)
+ */
+public interface Metrics {
+  /**
+   * A phase of the execution of a statement.
+   */
+  public enum Phase {
+    /** The acquisition of a connection from the {@link Connector}. */
+    CONNECT,
+    /** The construction and compilation of the {@link Compilation} of the statement. */
+    COMPILE,
+    /** The preparation of the statement on the connection. */
+    PREPARE,
+    /** The binding of the parameters of the statement. */
+    BIND,
+    /** The execution of the statement, or of a batch of statements. */
+    EXECUTE,
+    /** The calls to {@link java.sql.ResultSet#next()} of a query. */
+    FETCH,
+    /** The materialization of the rows of a query into entities. */
+    MATERIALIZE
+  }
+
+  /**
+   * Records the duration of a {@link Phase} of the execution of a statement.
+   * The duration of the {@link Phase#FETCH FETCH} and
+   * {@link Phase#MATERIALIZE MATERIALIZE} phases is the total for all rows of
+   * a query, and is recorded once the rows are read to the end, or the
+   * {@link RowIterator} is closed.
+   *
+   * @param phase The {@link Phase}.
+   * @param sql The SQL of the statement, or {@code null} for
+   *          {@link Phase#CONNECT CONNECT}.
+   * @param nanos The duration of the {@link Phase} in nanoseconds.
+   */
+  void record(Phase phase, String sql, long nanos);
+
+  /**
+   * Records the number of rows that were read by a query, or that were
+   * modified by a statement.
+   *
+   * @param sql The SQL of the statement.
+   * @param rows The number of rows.
+   */
+  void recordRows(String sql, long rows);
+
+  /**
+   * Records the execution of a JDBC batch of statements.
+   *
+   * @param sql The SQL of the first statement of the batch.
+   * @param statements The number of statements in the batch.
+   */
+  void recordBatch(String sql, int statements);
+}
@@ -191,6 +191,33 @@ class MySQLCompiler extends Compiler {
     // FIXME: It seems MySQL 8+? supports this?
   }
 
+  @Override
+  void compileInsertValuesOnConflict(final type.Table[] inserts, final int from, final int to, final boolean doUpdate, final Compilation compilation) throws IOException, SQLException {
+    final type.DataType<?>[] columns = inserts[from]._column$;
+    final boolean hasUpdate = doUpdate && hasUpdateOnConflict(columns);
+    compileInsertValues(inserts, from, to, !hasUpdate, compilation);
+    if (hasUpdate) {
+      compilation.append(" ON DUPLICATE KEY UPDATE ");
+      boolean modified = false;
+      for (final type.DataType<?> column : columns) {
+        if (!shouldUpdateOnConflict(column))
+          continue;
+
+        if (modified)
+          compilation.comma();
+
+        final String name = q(column.name);
+        compilation.append(name).append(" = VALUES(").append(name).append(')');
+        modified = true;
+      }
+    }
+  }
+
+  @Override
+  int getMaxInsertValues(final Connection connection) {
+    return 65535;
+  }
+
   @Override
   @SuppressWarnings("rawtypes")
   void compileInsertOnConflict(final type.DataType<?>[] columns, final Select.untyped.SELECT<?> select, final type.DataType<?>[] onConflict, final boolean doUpdate, final Compilation compilation) throws IOException, SQLException {
@@ -392,6 +392,103 @@ final class OracleCompiler extends Compiler {
     compilation.append(" WHEN NOT MATCHED THEN INSERT (").append(insertNames).append(") VALUES (").append(insertValues).append(')');
   }
 
+  @Override
+  void compileInsertValues(final type.Table[] inserts, final int from, final int to, final boolean ignore, final Compilation compilation) throws IOException, SQLException {
+    if (to - from == 1) {
+      super.compileInsertValues(inserts, from, to, ignore, compilation);
+      return;
+    }
+
+    compilation.append("INSERT ALL");
+    for (int i = from; i < to; ++i) {
+      compilation.append(" INTO ").append(q(inserts[i].name())).append(" (");
+      compileInsertColumns(inserts[i]._column$, compilation);
+      compilation.append(") VALUES ");
+      compileInsertRow(inserts[i]._column$, compilation);
+    }
+
+    compilation.append(" SELECT 1 FROM DUAL");
+  }
+
+  @Override
+  void compileInsertValuesOnConflict(final type.Table[] inserts, final int from, final int to, final boolean doUpdate, final Compilation compilation) throws IOException, SQLException {
+    final type.Table insert = inserts[from];
+    compilation.append("MERGE INTO ").append(q(insert.name())).append(" a USING (");
+    for (int i = from; i < to; ++i) {
+      if (i > from)
+        compilation.append(" UNION ALL ");
+
+      compilation.append("SELECT ");
+      boolean modified = false;
+      for (final type.DataType<?> column : inserts[i]._column$) {
+        if (!shouldInsert(column, true, compilation))
+          continue;
+
+        if (modified)
+          compilation.comma();
+
+        compilation.addParameter(column, false);
+        if (i == from)
+          compilation.concat(" AS " + q(column.name));
+
+        modified = true;
+      }
+
+      compilation.append(" FROM dual");
+    }
+
+    compilation.append(") b ON (");
+    final type.DataType<?>[] primaries = insert._primary$;
+    for (int i = 0; i < primaries.length; ++i) {
+      if (i > 0)
+        compilation.append(" AND ");
+
+      final String name = q(primaries[i].name);
+      compilation.append("a.").append(name).append(" = b.").append(name);
+    }
+
+    compilation.append(')');
+    if (doUpdate && hasUpdateOnConflict(insert._column$)) {
+      compilation.append(" WHEN MATCHED THEN UPDATE SET ");
+      boolean modified = false;
+      for (final type.DataType<?> column : insert._column$) {
+        if (!shouldUpdateOnConflict(column))
+          continue;
+
+        if (modified)
+          compilation.comma();
+
+        final String name = q(column.name);
+        compilation.append("a.").append(name).append(" = b.").append(name);
+        modified = true;
+      }
+    }
+
+    final StringBuilder insertNames = new StringBuilder();
+    final StringBuilder insertValues = new StringBuilder();
+    for (final type.DataType<?> column : insert._column$) {
+      if (!shouldInsert(column, false, compilation))
+        continue;
+
+      if (insertNames.length() > 0) {
+        insertNames.append(COMMA);
+        insertValues.append(COMMA);
+      }
+
+      final String name = q(column.name);
+      insertNames.append(name);
+      insertValues.append("b.").append(name);
+    }
+
+    compilation.append(" WHEN NOT MATCHED THEN INSERT (").append(insertNames).append(") VALUES (").append(insertValues).append(')');
+  }
+
+  @Override
+  int getMaxInsertValues(final Connection connection) {
+    // The columns of all INTO clauses of INSERT ALL cannot exceed 999, and the same limit keeps the UNION ALL of a MERGE short
+    return 999;
+  }
+
   @Override
   boolean supportsReturnGeneratedKeysBatch() {
     return false;
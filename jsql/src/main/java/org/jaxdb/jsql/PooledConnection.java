@@ -0,0 +1,185 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The {@link Connection} handle of a borrow from a {@link ConnectionPool},
+ * which delegates to the physical {@link Connection} of a
+ * {@link ConnectionPool.Entry}. {@link #close()} returns the physical
+ * {@link Connection} to the pool, after which this handle is unusable. The
+ * auto-commit mode is cached, and the read-only mode, transaction isolation,
+ * catalog and schema are restored on return if they were changed through
+ * this handle.
+ */
+final class PooledConnection extends DelegatingConnection {
+  private static final int READ_ONLY = 1;
+  private static final int ISOLATION = 1 << 1;
+  private static final int CATALOG = 1 << 2;
+  private static final int SCHEMA = 1 << 3;
+
+  private final ConnectionPool pool;
+  private final ConnectionPool.Entry entry;
+  private final long borrowed;
+  private Connection connection;
+
+  private int dirty;
+  private boolean readOnly;
+  private int isolation;
+  private String catalog;
+  private String schema;
+
+  PooledConnection(final ConnectionPool pool, final ConnectionPool.Entry entry, final long borrowed) {
+    this.pool = pool;
+    this.entry = entry;
+    this.borrowed = borrowed;
+    this.connection = entry.connection;
+  }
+
+  @Override
+  Connection connection() throws SQLException {
+    final Connection connection = this.connection;
+    if (connection == null)
+      throw new SQLNonTransientConnectionException("Connection is closed", "08003");
+
+    return connection;
+  }
+
+  /**
+   * Discards uncommitted work, and restores the state of the physical
+   * {@link Connection} that was changed through this handle.
+   *
+   * @throws SQLException If a SQL error has occurred.
+   */
+  private void reset() throws SQLException {
+    if (!entry.autoCommit)
+      connection.rollback();
+
+    if (dirty == 0)
+      return;
+
+    if ((dirty & READ_ONLY) != 0)
+      connection.setReadOnly(readOnly);
+
+    if ((dirty & ISOLATION) != 0)
+      connection.setTransactionIsolation(isolation);
+
+    if ((dirty & CATALOG) != 0)
+      connection.setCatalog(catalog);
+
+    if ((dirty & SCHEMA) != 0)
+      connection.setSchema(schema);
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (connection == null)
+      return;
+
+    boolean reset = false;
+    try {
+      reset();
+      reset = true;
+    }
+    finally {
+      connection = null;
+      pool.release(entry, borrowed, reset);
+    }
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+    return connection == null || connection.isClosed();
+  }
+
+  @Override
+  public void abort(final Executor executor) throws SQLException {
+    final Connection connection = connection();
+    this.connection = null;
+    try {
+      connection.abort(executor);
+    }
+    finally {
+      pool.release(entry, borrowed, false);
+    }
+  }
+
+  @Override
+  public void setAutoCommit(final boolean autoCommit) throws SQLException {
+    connection().setAutoCommit(autoCommit);
+    entry.autoCommit = autoCommit;
+  }
+
+  @Override
+  public boolean getAutoCommit() throws SQLException {
+    connection();
+    return entry.autoCommit;
+  }
+
+  @Override
+  public void setReadOnly(final boolean readOnly) throws SQLException {
+    final Connection connection = connection();
+    if ((dirty & READ_ONLY) == 0) {
+      this.readOnly = connection.isReadOnly();
+      dirty |= READ_ONLY;
+    }
+
+    connection.setReadOnly(readOnly);
+  }
+
+  @Override
+  public void setTransactionIsolation(final int level) throws SQLException {
+    final Connection connection = connection();
+    if ((dirty & ISOLATION) == 0) {
+      this.isolation = connection.getTransactionIsolation();
+      dirty |= ISOLATION;
+    }
+
+    connection.setTransactionIsolation(level);
+  }
+
+  @Override
+  public void setCatalog(final String catalog) throws SQLException {
+    final Connection connection = connection();
+    if ((dirty & CATALOG) == 0) {
+      this.catalog = connection.getCatalog();
+      dirty |= CATALOG;
+    }
+
+    connection.setCatalog(catalog);
+  }
+
+  @Override
+  public void setSchema(final String schema) throws SQLException {
+    final Connection connection = connection();
+    if ((dirty & SCHEMA) == 0) {
+      this.schema = connection.getSchema();
+      dirty |= SCHEMA;
+    }
+
+    connection.setSchema(schema);
+  }
+
+  @Override
+  public String toString() {
+    return "PooledConnection[" + connection + "]";
+  }
+}
@@ -36,6 +36,9 @@ public class QueryConfig {
     private Boolean poolable;
     private int queryTimeout = -1;
     private int fetchSize = -1;
+    private int lookBack = -1;
+    private IdentityScope identityScope;
+    private int identityCapacity = -1;
 
     private RowIterator.Type type = Type.FORWARD_ONLY;
     private RowIterator.Concurrency concurrency = Concurrency.READ_ONLY;
@@ -101,6 +104,85 @@ public class QueryConfig {
       return this;
     }
 
+    /**
+     * Sets the number of rows preceding the current row that are retained by
+     * the {@link RowIterator}, and are thus reachable with
+     * {@link RowIterator#previousRow()}. Rows beyond this window are released
+     * as the iterator advances, so that a result set of any size is streamed
+     * in constant memory.
+     * <p>
+     * If the look-back is not set, a {@link Type#FORWARD_ONLY} iterator retains
+     * only the current row, and a scrollable iterator retains all rows.
+     *
+     * @param rows The number of rows preceding the current row to retain.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code rows} is negative.
+     */
+    public Builder withLookBack(final int rows) {
+      if (rows < 0)
+        throw new IllegalArgumentException("lookBack (" + rows + ") must be non-negative");
+
+      this.lookBack = rows;
+      return this;
+    }
+
+    /**
+     * Specifies that the {@link RowIterator} retains all rows it has read.
+     *
+     * @return {@code this} builder.
+     */
+    public Builder withUnboundedLookBack() {
+      this.lookBack = Integer.MAX_VALUE;
+      return this;
+    }
+
+    /**
+     * Sets the scope within which the {@link type.Table} entities of a
+     * {@link RowIterator} are deduplicated, such that equal entities are
+     * represented by the same instance.
+     * <p>
+     * If the scope is not set, an iterator that retains all rows deduplicates
+     * its entities across the whole result, and an iterator with a bounded
+     * look-back deduplicates its entities among those of the rows of its
+     * look-back, so that a {@link Type#FORWARD_ONLY} iterator
+     * streams a result set of any size in constant memory.
+     *
+     * @param scope The {@link IdentityScope}.
+     * @return {@code this} builder.
+     * @throws NullPointerException If {@code scope} is null.
+     * @throws IllegalArgumentException If {@code scope} is
+     *           {@link IdentityScope#BOUNDED}, for which
+     *           {@link #withBoundedIdentityScope(int)} is to be used.
+     */
+    public Builder withIdentityScope(final IdentityScope scope) {
+      if (Objects.requireNonNull(scope) == IdentityScope.BOUNDED)
+        throw new IllegalArgumentException("IdentityScope.BOUNDED requires a capacity");
+
+      this.identityScope = scope;
+      this.identityCapacity = -1;
+      return this;
+    }
+
+    /**
+     * Sets the scope within which the {@link type.Table} entities of a
+     * {@link RowIterator} are deduplicated to the specified number of most
+     * recently seen entities.
+     *
+     * @param capacity The maximum number of entities that are retained for
+     *          deduplication.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code capacity} is not greater than
+     *           0.
+     */
+    public Builder withBoundedIdentityScope(final int capacity) {
+      if (capacity <= 0)
+        throw new IllegalArgumentException("identityCapacity (" + capacity + ") must be greater than 0");
+
+      this.identityScope = IdentityScope.BOUNDED;
+      this.identityCapacity = capacity;
+      return this;
+    }
+
     public Builder withType(final RowIterator.Type type) {
       this.type = Objects.requireNonNull(type);
       return this;
@@ -117,10 +199,25 @@ public class QueryConfig {
     }
 
     public QueryConfig build() {
-      return new QueryConfig(cursorName, escapeProcessing, fetchDirection, fetchSize, largeMaxRows, maxFieldSize, maxRows, poolable, queryTimeout, type, concurrency, holdability);
+      return new QueryConfig(cursorName, escapeProcessing, fetchDirection, fetchSize, largeMaxRows, maxFieldSize, maxRows, poolable, queryTimeout, lookBack, identityScope, identityCapacity, type, concurrency, holdability);
     }
   }
 
+  /**
+   * The scope within which equal {@link type.Table} entities of a
+   * {@link RowIterator} are represented by the same instance.
+   */
+  public enum IdentityScope {
+    /** Entities are not deduplicated, and are not hashed. */
+    NONE,
+    /** Entities are deduplicated within each row. */
+    ROW,
+    /** Entities are deduplicated among a bounded number of the most recently seen entities. */
+    BOUNDED,
+    /** Entities are deduplicated across the whole result. */
+    RESULT
+  }
+
   public enum FetchDirection {
     FORWARD(ResultSet.FETCH_FORWARD),
     REVERSE(ResultSet.FETCH_REVERSE),
@@ -142,12 +239,15 @@ public class QueryConfig {
   private int maxRows = -1;
   private Boolean poolable;
   private int queryTimeout = -1;
+  private int lookBack = -1;
+  private IdentityScope identityScope;
+  private int identityCapacity = -1;
 
   private RowIterator.Type type;
   private RowIterator.Concurrency concurrency;
   private RowIterator.Holdability holdability;
 
-  private QueryConfig(final String cursorName, final Boolean escapeProcessing, final FetchDirection fetchDirection, final int fetchSize, final long largeMaxRows, final int maxFieldSize, final int maxRows, final Boolean poolable, final int queryTimeout, final RowIterator.Type type, final RowIterator.Concurrency concurrency, final RowIterator.Holdability holdability) {
+  private QueryConfig(final String cursorName, final Boolean escapeProcessing, final FetchDirection fetchDirection, final int fetchSize, final long largeMaxRows, final int maxFieldSize, final int maxRows, final Boolean poolable, final int queryTimeout, final int lookBack, final IdentityScope identityScope, final int identityCapacity, final RowIterator.Type type, final RowIterator.Concurrency concurrency, final RowIterator.Holdability holdability) {
     this.cursorName = cursorName;
     this.escapeProcessing = escapeProcessing;
     this.fetchDirection = fetchDirection;
@@ -157,6 +257,9 @@ public class QueryConfig {
     this.maxRows = maxRows;
     this.poolable = poolable;
     this.queryTimeout = queryTimeout;
+    this.lookBack = lookBack;
+    this.identityScope = identityScope;
+    this.identityCapacity = identityCapacity;
     this.type = type;
     this.concurrency = concurrency;
     this.holdability = holdability;
@@ -198,6 +301,36 @@ public class QueryConfig {
     return this.queryTimeout;
   }
 
+  /**
+   * Returns the number of rows preceding the current row that are retained by
+   * the {@link RowIterator}, {@link Integer#MAX_VALUE} if all rows are
+   * retained, or {@code -1} if the look-back is determined by the
+   * {@link Type} of the iterator.
+   *
+   * @return The number of rows preceding the current row that are retained by
+   *         the {@link RowIterator}.
+   */
+  public int getLookBack() {
+    return this.lookBack;
+  }
+
+  /**
+   * Returns the scope within which the {@link type.Table} entities of a
+   * {@link RowIterator} are deduplicated, or {@code null} if the scope is
+   * determined by the look-back of the iterator.
+   *
+   * @return The scope within which the {@link type.Table} entities of a
+   *         {@link RowIterator} are deduplicated, or {@code null} if the scope
+   *         is determined by the look-back of the iterator.
+   */
+  public IdentityScope getIdentityScope() {
+    return this.identityScope;
+  }
+
+  public int getIdentityCapacity() {
+    return this.identityCapacity;
+  }
+
   public Type getType() {
     return this.type;
   }
@@ -240,4 +373,66 @@ public class QueryConfig {
 
     return statement;
   }
+
+  /**
+   * Returns whether the settings of this {@link QueryConfig} that apply to the
+   * {@link Statement} (i.e. its type, concurrency and holdability, and the
+   * settings of {@link #apply(Statement)}) are equal to those of the specified
+   * {@link QueryConfig}. The settings of the {@link RowIterator} (i.e. the
+   * look-back and the identity scope) are not compared.
+   *
+   * @param that The {@link QueryConfig}.
+   * @return Whether the settings of this {@link QueryConfig} that apply to the
+   *         {@link Statement} are equal to those of the specified
+   *         {@link QueryConfig}.
+   */
+  boolean equalsStatement(final QueryConfig that) {
+    return fetchSize == that.fetchSize && largeMaxRows == that.largeMaxRows && maxFieldSize == that.maxFieldSize && maxRows == that.maxRows && queryTimeout == that.queryTimeout && fetchDirection == that.fetchDirection && type == that.type && concurrency == that.concurrency && holdability == that.holdability && Objects.equals(cursorName, that.cursorName) && Objects.equals(escapeProcessing, that.escapeProcessing) && Objects.equals(poolable, that.poolable);
+  }
+
+  /**
+   * Returns the hash code of the settings of this {@link QueryConfig} that
+   * apply to the {@link Statement}, consistent with
+   * {@link #equalsStatement(QueryConfig)}.
+   *
+   * @return The hash code of the settings of this {@link QueryConfig} that
+   *         apply to the {@link Statement}.
+   */
+  int hashCodeStatement() {
+    int hashCode = 1;
+    hashCode = 31 * hashCode + Objects.hashCode(cursorName);
+    hashCode = 31 * hashCode + Objects.hashCode(escapeProcessing);
+    hashCode = 31 * hashCode + Objects.hashCode(fetchDirection);
+    hashCode = 31 * hashCode + fetchSize;
+    hashCode = 31 * hashCode + Long.hashCode(largeMaxRows);
+    hashCode = 31 * hashCode + maxFieldSize;
+    hashCode = 31 * hashCode + maxRows;
+    hashCode = 31 * hashCode + Objects.hashCode(poolable);
+    hashCode = 31 * hashCode + queryTimeout;
+    hashCode = 31 * hashCode + Objects.hashCode(type);
+    hashCode = 31 * hashCode + Objects.hashCode(concurrency);
+    hashCode = 31 * hashCode + Objects.hashCode(holdability);
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (obj == this)
+      return true;
+
+    if (!(obj instanceof QueryConfig))
+      return false;
+
+    final QueryConfig that = (QueryConfig)obj;
+    return lookBack == that.lookBack && identityScope == that.identityScope && identityCapacity == that.identityCapacity && equalsStatement(that);
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = hashCodeStatement();
+    hashCode = 31 * hashCode + lookBack;
+    hashCode = 31 * hashCode + Objects.hashCode(identityScope);
+    hashCode = 31 * hashCode + identityCapacity;
+    return hashCode;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,363 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process {@link Metrics} that aggregates the measurements of the
+ * executions of statements per {@linkplain #fingerprint(String) fingerprint}
+ * of their SQL, into a {@link Histogram} of the latency of each
+ * {@link Metrics.Phase}, and counts of rows and batches.
+ * <p>
+ * Recording is lock-free. The number of fingerprints is bounded, and the
+ * measurements of new fingerprints beyond the bound are dropped and counted.
+ */
+public final class QueryMetrics implements Metrics {
+  public static final int DEFAULT_MAX_FINGERPRINTS = 1000;
+
+  private static final Phase[] phases = Phase.values();
+
+  /**
+   * The aggregated measurements of the statements of a fingerprint.
+   */
+  public static final class Stats {
+    private final String fingerprint;
+    private final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>(phases.length);
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchStatements = new LongAdder();
+
+    private Stats(final String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the statements of this {@link Stats}.
+     *
+     * @return The fingerprint of the statements of this {@link Stats}.
+     */
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    private void record(final Phase phase, final long nanos) {
+      final int index = phase.ordinal();
+      Histogram histogram = histograms.get(index);
+      if (histogram == null && !histograms.compareAndSet(index, null, histogram = new Histogram()))
+        histogram = histograms.get(index);
+
+      histogram.record(nanos);
+    }
+
+    /**
+     * Returns the {@link Histogram} of the latency in nanoseconds of the
+     * specified {@link Metrics.Phase}, or {@code null} if the phase was not
+     * recorded.
+     *
+     * @param phase The {@link Metrics.Phase}.
+     * @return The {@link Histogram} of the latency of the specified
+     *         {@link Metrics.Phase}, or {@code null} if the phase was not
+     *         recorded.
+     */
+    public Histogram getHistogram(final Phase phase) {
+      return histograms.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the number of executions of the statements of this
+     * {@link Stats}, which is the number of recorded
+     * {@link Metrics.Phase#EXECUTE EXECUTE} phases.
+     *
+     * @return The number of executions of the statements of this
+     *         {@link Stats}.
+     */
+    public long getExecutionCount() {
+      final Histogram histogram = getHistogram(Phase.EXECUTE);
+      return histogram == null ? 0 : histogram.getCount();
+    }
+
+    /**
+     * Returns the number of rows that were read or modified by the statements
+     * of this {@link Stats}.
+     *
+     * @return The number of rows that were read or modified by the
+     *         statements of this {@link Stats}.
+     */
+    public long getRowCount() {
+      return rows.sum();
+    }
+
+    /**
+     * Returns the number of JDBC batches of the statements of this
+     * {@link Stats}.
+     *
+     * @return The number of JDBC batches of the statements of this
+     *         {@link Stats}.
+     */
+    public long getBatchCount() {
+      return batches.sum();
+    }
+
+    /**
+     * Returns the number of statements in the JDBC batches of this
+     * {@link Stats}.
+     *
+     * @return The number of statements in the JDBC batches of this
+     *         {@link Stats}.
+     */
+    public long getBatchStatementCount() {
+      return batchStatements.sum();
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder builder = new StringBuilder(fingerprint).append(": {rows=").append(getRowCount()).append(", batches=").append(getBatchCount());
+      for (final Phase phase : phases) {
+        final Histogram histogram = getHistogram(phase);
+        if (histogram != null)
+          builder.append(", ").append(phase).append('=').append(histogram);
+      }
+
+      return builder.append('}').toString();
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the specified SQL, in which literals and
+   * parameters are replaced with {@code ?}, lists of parameters (i.e. of an
+   * {@code IN} predicate) are collapsed into a single {@code ?}, rows of
+   * parameters (i.e. of a multi-row {@code INSERT}) are collapsed into a
+   * single row, and whitespace is collapsed into a single space.
+   *
+   * @param sql The SQL.
+   * @return The fingerprint of the specified SQL.
+   */
+  public static String fingerprint(final String sql) {
+    final int len = sql.length();
+    final StringBuilder builder = new StringBuilder(len);
+    for (int i = 0; i < len;) {
+      final char ch = sql.charAt(i);
+      if (ch == '\'') {
+        for (++i; i < len; ++i) {
+          if (sql.charAt(i) == '\'') {
+            if (i + 1 == len || sql.charAt(i + 1) != '\'') {
+              ++i;
+              break;
+            }
+
+            ++i;
+          }
+        }
+
+        appendParameter(builder);
+      }
+      else if (ch == '?' || Character.isDigit(ch) && (builder.length() == 0 || !Character.isJavaIdentifierPart(builder.charAt(builder.length() - 1)))) {
+        for (++i; ch != '?' && i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'); ++i);
+        appendParameter(builder);
+      }
+      else if (ch == '"' || ch == '`') {
+        final int end = sql.indexOf(ch, i + 1);
+        final int to = end < 0 ? len : end + 1;
+        builder.append(sql, i, to);
+        i = to;
+      }
+      else if (Character.isWhitespace(ch)) {
+        for (++i; i < len && Character.isWhitespace(sql.charAt(i)); ++i);
+        if (builder.length() > 0 && i < len)
+          builder.append(' ');
+      }
+      else {
+        builder.append(ch);
+        ++i;
+        if (ch == ')' && endsWith(builder, "(?), (?)"))
+          builder.setLength(builder.length() - 5);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static void appendParameter(final StringBuilder builder) {
+    if (endsWith(builder, "?, "))
+      builder.setLength(builder.length() - 2);
+    else if (endsWith(builder, "?,"))
+      builder.setLength(builder.length() - 1);
+    else
+      builder.append('?');
+  }
+
+  private static boolean endsWith(final StringBuilder builder, final String suffix) {
+    final int offset = builder.length() - suffix.length();
+    if (offset < 0)
+      return false;
+
+    for (int i = 0; i < suffix.length(); ++i)
+      if (builder.charAt(offset + i) != suffix.charAt(i))
+        return false;
+
+    return true;
+  }
+
+  private final int maxFingerprints;
+  private final ConcurrentHashMap<String,Stats> stats = new ConcurrentHashMap<>();
+  // The Stats of each SQL, so that a SQL that is executed repeatedly is fingerprinted once
+  private final ConcurrentHashMap<String,Stats> statsOfSql = new ConcurrentHashMap<>();
+  private final Histogram connections = new Histogram();
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * Creates a new {@link QueryMetrics} of at most
+   * {@link #DEFAULT_MAX_FINGERPRINTS} fingerprints.
+   */
+  public QueryMetrics() {
+    this(DEFAULT_MAX_FINGERPRINTS);
+  }
+
+  /**
+   * Creates a new {@link QueryMetrics} of at most the specified number of
+   * fingerprints.
+   *
+   * @param maxFingerprints The maximum number of fingerprints.
+   * @throws IllegalArgumentException If {@code maxFingerprints} is not
+   *           greater than 0.
+   */
+  public QueryMetrics(final int maxFingerprints) {
+    if (maxFingerprints <= 0)
+      throw new IllegalArgumentException("maxFingerprints (" + maxFingerprints + ") must be greater than 0");
+
+    this.maxFingerprints = maxFingerprints;
+  }
+
+  private Stats getStatsOfSql(final String sql) {
+    Stats stats = statsOfSql.get(sql);
+    if (stats != null)
+      return stats;
+
+    final String fingerprint = fingerprint(sql);
+    stats = this.stats.get(fingerprint);
+    if (stats == null) {
+      if (this.stats.size() >= maxFingerprints) {
+        dropped.increment();
+        return null;
+      }
+
+      final Stats previous = this.stats.putIfAbsent(fingerprint, stats = new Stats(fingerprint));
+      if (previous != null)
+        stats = previous;
+    }
+
+    // SQL with inlined literals is not memoized beyond the bound, as its variants are unbounded
+    if (statsOfSql.size() < maxFingerprints * 4)
+      statsOfSql.put(sql, stats);
+
+    return stats;
+  }
+
+  @Override
+  public void record(final Phase phase, final String sql, final long nanos) {
+    if (phase == Phase.CONNECT) {
+      connections.record(nanos);
+    }
+    else {
+      final Stats stats = getStatsOfSql(sql);
+      if (stats != null)
+        stats.record(phase, nanos);
+    }
+  }
+
+  @Override
+  public void recordRows(final String sql, final long rows) {
+    final Stats stats = getStatsOfSql(sql);
+    if (stats != null)
+      stats.rows.add(rows);
+  }
+
+  @Override
+  public void recordBatch(final String sql, final int statements) {
+    final Stats stats = getStatsOfSql(sql);
+    if (stats != null) {
+      stats.batches.increment();
+      stats.batchStatements.add(statements);
+    }
+  }
+
+  /**
+   * Returns the fingerprints of the recorded statements.
+   *
+   * @return The fingerprints of the recorded statements.
+   */
+  public Set<String> getFingerprints() {
+    return Collections.unmodifiableSet(stats.keySet());
+  }
+
+  /**
+   * Returns the {@link Stats} of the specified fingerprint, or {@code null}
+   * if no statement of the fingerprint was recorded.
+   *
+   * @param fingerprint The fingerprint.
+   * @return The {@link Stats} of the specified fingerprint, or {@code null}
+   *         if no statement of the fingerprint was recorded.
+   */
+  public Stats getStats(final String fingerprint) {
+    return stats.get(fingerprint);
+  }
+
+  /**
+   * Returns the {@link Histogram} of the latency in nanoseconds of the
+   * acquisition of connections.
+   *
+   * @return The {@link Histogram} of the latency of the acquisition of
+   *         connections.
+   */
+  public Histogram getConnectionHistogram() {
+    return connections;
+  }
+
+  /**
+   * Returns the number of measurements that were dropped because the maximum
+   * number of fingerprints was reached.
+   *
+   * @return The number of measurements that were dropped.
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Clears the recorded measurements.
+   */
+  public void reset() {
+    statsOfSql.clear();
+    stats.clear();
+    connections.reset();
+    dropped.reset();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("QueryMetrics{connections=").append(connections);
+    for (final Stats stats : this.stats.values())
+      builder.append("\n  ").append(stats);
+
+    return builder.append("\n}").toString();
+  }
+}
@@ -16,8 +16,13 @@
 
 package org.jaxdb.jsql;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+
 import javax.sql.DataSource;
 
+import org.jaxdb.vendor.DBVendor;
 import org.libj.lang.ObjectUtil;
 import org.libj.sql.AuditConnection;
 import org.libj.util.ConcurrentNullHashMap;
@@ -34,101 +39,408 @@ public final class Registry {
     return () -> new AuditConnection(dataSource.getConnection());
   }
 
-  private class Registration {
-    private final Connector connector;
-    private final boolean isPrepared;
-
-    private Registration(final Connector connector, final boolean isPrepared) {
+  /**
+   * A registered {@link Connector}, together with the {@link DBVendor} and
+   * {@link Compiler} of its connections, which are resolved from the first
+   * {@link Connection} of the {@link Connector}, and cached thereafter. The
+   * connections of a {@link Connector} are expected to be to a single
+   * database. The {@link Routing} of a {@link Registration}, if any, holds the
+   * read replicas of that database.
+   */
+  static final class Registration {
+    final Connector connector;
+    final Routing routing;
+    final boolean isPrepared;
+    private volatile DBVendor vendor;
+    volatile boolean initialized;
+    volatile ResultCache resultCache;
+    volatile EntityCache entityCache;
+    volatile Metrics metrics;
+    volatile BulkLoader bulkLoader;
+
+    private Registration(final Connector connector, final Routing routing, final boolean isPrepared) {
       this.connector = connector;
+      this.routing = routing;
       this.isPrepared = isPrepared;
     }
+
+    /**
+     * Records a committed write of the current thread to the primary, which
+     * opens the read-your-writes window of the {@link Routing} of this
+     * {@link Registration}, if any.
+     */
+    void onWrite() {
+      if (routing != null)
+        routing.onWrite();
+    }
+
+    /**
+     * Records a committed write of the current thread by the specified
+     * {@link Command}, which opens the read-your-writes window of the
+     * {@link Routing} of this {@link Registration}, and invalidates the
+     * modified tables and entities in the {@link ResultCache} and
+     * {@link EntityCache} of this {@link Registration}, if any.
+     *
+     * @param command The {@link Command}.
+     */
+    void onWrite(final Command<?> command) {
+      if (command instanceof BulkInsertImpl) {
+        for (final type.Table table : ((BulkInsertImpl<?>)command).inserts())
+          onWrite(table, true);
+      }
+      else {
+        onWrite(command.table(), command.keyTable() != null);
+      }
+    }
+
+    /**
+     * Records a committed write of the current thread to the specified
+     * entity, which opens the read-your-writes window of the {@link Routing}
+     * of this {@link Registration}, and invalidates the table of the entity
+     * in the {@link ResultCache}, and the entity in the {@link EntityCache}
+     * of this {@link Registration}, if any.
+     *
+     * @param table The entity.
+     * @param keyed Whether the entity was modified by its primary key, and
+     *          otherwise all entities of its table are invalidated.
+     */
+    void onWrite(final type.Table table, final boolean keyed) {
+      onWrite();
+      final ResultCache resultCache = this.resultCache;
+      if (resultCache != null)
+        resultCache.invalidate(table.getClass());
+
+      final EntityCache entityCache = this.entityCache;
+      if (entityCache != null)
+        entityCache.invalidate(table, keyed);
+    }
+
+    /**
+     * Returns the {@link DBVendor} of the connections of this
+     * {@link Registration}, or {@code null} if it has not yet been resolved.
+     *
+     * @return The {@link DBVendor} of the connections of this
+     *         {@link Registration}, or {@code null} if it has not yet been
+     *         resolved.
+     */
+    DBVendor getVendor() {
+      return vendor;
+    }
+
+    /**
+     * Returns the {@link DBVendor} of the connections of this
+     * {@link Registration}, resolving it from the metadata of the specified
+     * {@link Connection} on first use.
+     *
+     * @param connection A {@link Connection} of this {@link Registration}.
+     * @return The {@link DBVendor} of the connections of this
+     *         {@link Registration}.
+     * @throws SQLException If a SQL error has occurred.
+     */
+    DBVendor getVendor(final Connection connection) throws SQLException {
+      final DBVendor vendor = this.vendor;
+      return vendor != null ? vendor : (this.vendor = DBVendor.valueOf(connection.getMetaData()));
+    }
+
+    /**
+     * Returns the {@link Compiler} of the connections of this
+     * {@link Registration}, resolving the {@link DBVendor} from the metadata
+     * of the specified {@link Connection} on first use.
+     *
+     * @param connection A {@link Connection} of this {@link Registration}.
+     * @return The {@link Compiler} of the connections of this
+     *         {@link Registration}.
+     * @throws SQLException If a SQL error has occurred.
+     */
+    Compiler getCompiler(final Connection connection) throws SQLException {
+      return Compiler.getCompiler(getVendor(connection));
+    }
   }
 
+  private static final ThreadLocal<Registry> bound = new ThreadLocal<>();
+
   private final ConcurrentNullHashMap<Class<? extends Schema>,ConcurrentNullHashMap<String,Registration>> registrations = new ConcurrentNullHashMap<>();
+  private volatile Executor executor;
+
+  static Registry getRegistry() {
+    if (global != null)
+      return global;
 
-  private static Registry getRegistry() {
-    return global != null ? global : threadLocal != null ? threadLocal.get() : null;
+    final Registry registry = bound.get();
+    return registry != null ? registry : threadLocal != null ? threadLocal.get() : null;
   }
 
-  static Connector getConnector(final Class<? extends Schema> schema, final String id) {
-    final Registry registry = getRegistry();
-    if (registry == null)
-      return null;
+  /**
+   * Binds the specified {@link Registry} to the current thread, in place of
+   * the {@link #threadLocal()} {@link Registry}, so that an asynchronous
+   * execution resolves the registrations of the thread that submitted it.
+   *
+   * @param registry The {@link Registry} to bind, or {@code null} to unbind.
+   * @return The previously bound {@link Registry}, or {@code null} if none was
+   *         bound.
+   */
+  static Registry bind(final Registry registry) {
+    final Registry previous = bound.get();
+    if (registry != null)
+      bound.set(registry);
+    else
+      bound.remove();
+
+    return previous;
+  }
 
-    final ConcurrentNullHashMap<String,Registration> registrations = registry.registrations.get(schema);
-    if (registrations == null)
-      return null;
+  /**
+   * Returns the {@link Executor} of the asynchronous executions that are
+   * submitted on a thread of this {@link Registry}. If no {@link Executor}
+   * was set, the executions run on virtual threads where available, and
+   * otherwise on a cached pool of daemon threads.
+   *
+   * @return The {@link Executor} of the asynchronous executions of this
+   *         {@link Registry}.
+   */
+  public Executor getExecutor() {
+    final Executor executor = this.executor;
+    return executor != null ? executor : AsyncExecution.getDefaultExecutor();
+  }
 
-    final Registration registration = registrations.get(id);
-    return registration == null ? null : registration.connector;
+  /**
+   * Sets the {@link Executor} of the asynchronous executions that are
+   * submitted on a thread of this {@link Registry}.
+   *
+   * @param executor The {@link Executor}, or {@code null} for the default
+   *          {@link Executor}.
+   */
+  public void setExecutor(final Executor executor) {
+    this.executor = executor;
   }
 
-  static boolean isPrepared(final Class<? extends Schema> schema, final String id) {
+  static Registration getRegistration(final Class<? extends Schema> schema, final String id) {
     final Registry registry = getRegistry();
     if (registry == null)
-      return false;
+      return null;
 
     final ConcurrentNullHashMap<String,Registration> registrations = registry.registrations.get(schema);
-    if (registrations == null)
-      return false;
-
-    final Registration registration = registrations.get(id);
-    return registration != null && registration.isPrepared;
+    return registrations == null ? null : registrations.get(id);
   }
 
-  private void register(final Class<? extends Schema> schema, final Connector connector, final boolean prepared, final String id) {
+  private void register(final Class<? extends Schema> schema, final Connector connector, final Routing routing, final boolean prepared, final String id) {
     if (logger.isDebugEnabled())
-      logger.debug("register(" + (schema == null ? "null" : schema.getName()) + "," + ObjectUtil.simpleIdentityString(connector) + "," + prepared + ",\"" + id + "\")");
+      logger.debug("register(" + (schema == null ? "null" : schema.getName()) + "," + ObjectUtil.simpleIdentityString(connector) + "," + routing + "," + prepared + ",\"" + id + "\")");
 
     ConcurrentNullHashMap<String,Registration> registrations = this.registrations.get(schema);
     if (registrations == null)
       this.registrations.put(schema, registrations = new ConcurrentNullHashMap<>(2));
 
-    registrations.put(id, new Registration(connector, prepared));
+    registrations.put(id, new Registration(connector, routing, prepared));
   }
 
   public void register(final Class<? extends Schema> schema, final Connector connector) {
     if (connector == null)
       throw new IllegalArgumentException("connector == null");
 
-    register(schema, connector, false, null);
+    register(schema, connector, null, false, null);
   }
 
   public void register(final Class<? extends Schema> schema, final Connector connector, final String id) {
     if (connector == null)
       throw new IllegalArgumentException("connector == null");
 
-    register(schema, connector, false, id);
+    register(schema, connector, null, false, id);
   }
 
   public void register(final Class<? extends Schema> schema, final DataSource dataSource) {
-    register(schema, makeConnector(dataSource), false, null);
+    register(schema, makeConnector(dataSource), null, false, null);
   }
 
   public void register(final Class<? extends Schema> schema, final DataSource dataSource, final String id) {
-    register(schema, makeConnector(dataSource), false, id);
+    register(schema, makeConnector(dataSource), null, false, id);
+  }
+
+  /**
+   * Registers the specified primary {@link Connector} of the specified
+   * {@link Schema}, together with the {@link Routing} of its read replicas.
+   *
+   * @param schema The {@link Schema} class.
+   * @param connector The {@link Connector} of the primary.
+   * @param routing The {@link Routing} of the read replicas.
+   * @throws IllegalArgumentException If {@code connector} or {@code routing}
+   *           is null.
+   */
+  public void register(final Class<? extends Schema> schema, final Connector connector, final Routing routing) {
+    register(schema, connector, routing, null);
+  }
+
+  public void register(final Class<? extends Schema> schema, final Connector connector, final Routing routing, final String id) {
+    if (connector == null)
+      throw new IllegalArgumentException("connector == null");
+
+    if (routing == null)
+      throw new IllegalArgumentException("routing == null");
+
+    register(schema, connector, routing, false, id);
   }
 
   public void registerPrepared(final Class<? extends Schema> schema, final Connector connector) {
     if (connector == null)
       throw new IllegalArgumentException("connector == null");
 
-    register(schema, connector, true, null);
+    register(schema, connector, null, true, null);
   }
 
   public void registerPrepared(final Class<? extends Schema> schema, final Connector connector, final String id) {
     if (connector == null)
       throw new IllegalArgumentException("connector == null");
 
-    register(schema, connector, true, id);
+    register(schema, connector, null, true, id);
   }
 
   public void registerPrepared(final Class<? extends Schema> schema, final DataSource dataSource) {
-    register(schema, makeConnector(dataSource), true, null);
+    register(schema, makeConnector(dataSource), null, true, null);
   }
 
   public void registerPrepared(final Class<? extends Schema> schema, final DataSource dataSource, final String id) {
-    register(schema, makeConnector(dataSource), true, id);
+    register(schema, makeConnector(dataSource), null, true, id);
+  }
+
+  public void registerPrepared(final Class<? extends Schema> schema, final Connector connector, final Routing routing) {
+    registerPrepared(schema, connector, routing, null);
+  }
+
+  public void registerPrepared(final Class<? extends Schema> schema, final Connector connector, final Routing routing, final String id) {
+    if (connector == null)
+      throw new IllegalArgumentException("connector == null");
+
+    if (routing == null)
+      throw new IllegalArgumentException("routing == null");
+
+    register(schema, connector, routing, true, id);
+  }
+
+  /**
+   * Sets the {@link ResultCache} of the {@code SELECT}s of the default
+   * registration of the specified {@link Schema}.
+   *
+   * @param schema The {@link Schema} class.
+   * @param resultCache The {@link ResultCache}, or {@code null} to disable the
+   *          caching of results.
+   * @throws IllegalStateException If the {@link Schema} is not registered.
+   */
+  public void setResultCache(final Class<? extends Schema> schema, final ResultCache resultCache) {
+    setResultCache(schema, null, resultCache);
+  }
+
+  /**
+   * Sets the {@link ResultCache} of the {@code SELECT}s of the registration of
+   * the specified {@link Schema} with the provided id. The
+   * {@link ResultCache} is dropped if the {@link Schema} is registered again.
+   *
+   * @param schema The {@link Schema} class.
+   * @param id The id of the registration.
+   * @param resultCache The {@link ResultCache}, or {@code null} to disable the
+   *          caching of results.
+   * @throws IllegalStateException If the {@link Schema} is not registered with
+   *           the provided id.
+   */
+  public void setResultCache(final Class<? extends Schema> schema, final String id, final ResultCache resultCache) {
+    getRegistered(schema, id).resultCache = resultCache;
+  }
+
+  /**
+   * Sets the {@link EntityCache} of the primary key lookups of the default
+   * registration of the specified {@link Schema}.
+   *
+   * @param schema The {@link Schema} class.
+   * @param entityCache The {@link EntityCache}, or {@code null} to disable the
+   *          caching of entities.
+   * @throws IllegalStateException If the {@link Schema} is not registered.
+   */
+  public void setEntityCache(final Class<? extends Schema> schema, final EntityCache entityCache) {
+    setEntityCache(schema, null, entityCache);
+  }
+
+  /**
+   * Sets the {@link EntityCache} of the primary key lookups of the
+   * registration of the specified {@link Schema} with the provided id. The
+   * {@link EntityCache} is dropped if the {@link Schema} is registered again.
+   *
+   * @param schema The {@link Schema} class.
+   * @param id The id of the registration.
+   * @param entityCache The {@link EntityCache}, or {@code null} to disable the
+   *          caching of entities.
+   * @throws IllegalStateException If the {@link Schema} is not registered with
+   *           the provided id.
+   */
+  public void setEntityCache(final Class<? extends Schema> schema, final String id, final EntityCache entityCache) {
+    getRegistered(schema, id).entityCache = entityCache;
+  }
+
+  /**
+   * Sets the {@link Metrics} of the executions of the statements of the
+   * default registration of the specified {@link Schema}.
+   *
+   * @param schema The {@link Schema} class.
+   * @param metrics The {@link Metrics}, or {@code null} to disable the
+   *          recording of metrics.
+   * @throws IllegalStateException If the {@link Schema} is not registered.
+   */
+  public void setMetrics(final Class<? extends Schema> schema, final Metrics metrics) {
+    setMetrics(schema, null, metrics);
+  }
+
+  /**
+   * Sets the {@link Metrics} of the executions of the statements of the
+   * registration of the specified {@link Schema} with the provided id. The
+   * {@link Metrics} are dropped if the {@link Schema} is registered again.
+   *
+   * @param schema The {@link Schema} class.
+   * @param id The id of the registration.
+   * @param metrics The {@link Metrics}, or {@code null} to disable the
+   *          recording of metrics.
+   * @throws IllegalStateException If the {@link Schema} is not registered with
+   *           the provided id.
+   */
+  public void setMetrics(final Class<? extends Schema> schema, final String id, final Metrics metrics) {
+    getRegistered(schema, id).metrics = metrics;
+  }
+
+  /**
+   * Sets the {@link BulkLoader} of the default registration of the specified
+   * {@link Schema}.
+   *
+   * @param schema The {@link Schema} class.
+   * @param bulkLoader The {@link BulkLoader}, or {@code null} to use the
+   *          {@link BulkLoader} of the {@link DBVendor} of the registration.
+   * @throws IllegalStateException If the {@link Schema} is not registered.
+   */
+  public void setBulkLoader(final Class<? extends Schema> schema, final BulkLoader bulkLoader) {
+    setBulkLoader(schema, null, bulkLoader);
+  }
+
+  /**
+   * Sets the {@link BulkLoader} of the registration of the specified
+   * {@link Schema} with the provided id, which is returned by
+   * {@link BulkLoader#of(Transaction)} for the transactions of the
+   * registration. The {@link BulkLoader} is dropped if the {@link Schema} is
+   * registered again.
+   *
+   * @param schema The {@link Schema} class.
+   * @param id The id of the registration.
+   * @param bulkLoader The {@link BulkLoader}, or {@code null} to use the
+   *          {@link BulkLoader} of the {@link DBVendor} of the registration.
+   * @throws IllegalStateException If the {@link Schema} is not registered with
+   *           the provided id.
+   */
+  public void setBulkLoader(final Class<? extends Schema> schema, final String id, final BulkLoader bulkLoader) {
+    getRegistered(schema, id).bulkLoader = bulkLoader;
+  }
+
+  private Registration getRegistered(final Class<? extends Schema> schema, final String id) {
+    final ConcurrentNullHashMap<String,Registration> registrations = this.registrations.get(schema);
+    final Registration registration = registrations == null ? null : registrations.get(id);
+    if (registration == null)
+      throw new IllegalStateException("No " + Connector.class.getName() + " registered for " + (schema == null ? null : schema.getName()) + ", id: " + id);
+
+    return registration;
   }
 
   private static volatile ThreadLocal<Registry> threadLocal;
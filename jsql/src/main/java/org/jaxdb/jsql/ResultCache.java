@@ -0,0 +1,620 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A bounded cache of the results of {@code SELECT}s of a registration of the
+ * {@link Registry}, keyed by the compiled SQL, the values of its parameters,
+ * and the {@link QueryConfig} of the execution. A cached result is replayed
+ * as a {@link RowIterator} of copies of the cached entities, without a
+ * round trip to the database.
+ * <p>
+ * A result is cached once its {@link RowIterator} has been read to the end,
+ * and is evicted when it expires, when the cache exceeds its maximum size, or
+ * when a table of the {@code SELECT} is modified. The tables of a
+ * {@code SELECT} are the tables of its {@code FROM} and {@code JOIN} clauses,
+ * and of its subqueries. A table is invalidated when an
+ * {@link Executable.Modify} or {@link Batch} that modifies it is committed
+ * through jSQL. Modifications that are made directly on a
+ * {@link java.sql.Connection} are to be invalidated with
+ * {@link #invalidate(Class)}.
+ * <p>
+ * A {@code SELECT} in a {@link Transaction} that has modified a table of the
+ * {@code SELECT} bypasses the cache, so that uncommitted rows are neither
+ * read from, nor written to the cache. A result that is read from a replica
+ * of a {@link Routing} is not written to the cache, since the replica may lag
+ * the primary.
+ *
+ * @see Registry#setResultCache(Class,String,ResultCache)
+ */
+public final class ResultCache {
+  /** The policy by which entries are evicted when the cache is full. */
+  public enum Eviction {
+    /** The least recently used entry is evicted. */
+    LRU,
+    /** The least frequently used entry is evicted, and of those, the least recently used. */
+    LFU
+  }
+
+  public static final class Builder {
+    private int maxSize = 1000;
+    private int maxRows = 1000;
+    private long timeToLive;
+    private Eviction eviction = Eviction.LRU;
+    private HashSet<Class<? extends type.Table>> tables;
+
+    /**
+     * Sets the maximum number of results in the cache. The default is
+     * {@code 1000}.
+     *
+     * @param maxSize The maximum number of results in the cache.
+     * @return {@code this} {@link Builder}.
+     * @throws IllegalArgumentException If {@code maxSize} is not greater than
+     *           0.
+     */
+    public Builder withMaxSize(final int maxSize) {
+      if (maxSize <= 0)
+        throw new IllegalArgumentException("maxSize (" + maxSize + ") must be greater than 0");
+
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows of a result that is cached. A result
+     * with more rows is not cached. The default is {@code 1000}.
+     *
+     * @param maxRows The maximum number of rows of a result that is cached.
+     * @return {@code this} {@link Builder}.
+     * @throws IllegalArgumentException If {@code maxRows} is negative.
+     */
+    public Builder withMaxRows(final int maxRows) {
+      if (maxRows < 0)
+        throw new IllegalArgumentException("maxRows (" + maxRows + ") must be non-negative");
+
+      this.maxRows = maxRows;
+      return this;
+    }
+
+    /**
+     * Sets the time after which a cached result expires. The default is
+     * {@code 0}, whereby results expire only by eviction or invalidation.
+     *
+     * @param millis The time to live of a cached result, in milliseconds.
+     * @return {@code this} {@link Builder}.
+     * @throws IllegalArgumentException If {@code millis} is negative.
+     */
+    public Builder withTimeToLive(final long millis) {
+      if (millis < 0)
+        throw new IllegalArgumentException("timeToLive (" + millis + ") must be non-negative");
+
+      this.timeToLive = millis;
+      return this;
+    }
+
+    /**
+     * Sets the {@link Eviction} policy of the cache. The default is
+     * {@link Eviction#LRU}.
+     *
+     * @param eviction The {@link Eviction} policy.
+     * @return {@code this} {@link Builder}.
+     * @throws NullPointerException If {@code eviction} is null.
+     */
+    public Builder withEviction(final Eviction eviction) {
+      this.eviction = Objects.requireNonNull(eviction);
+      return this;
+    }
+
+    /**
+     * Restricts the cache to the results of {@code SELECT}s of only the
+     * specified tables (i.e. reference tables). If no tables are specified,
+     * the results of all {@code SELECT}s are cached.
+     *
+     * @param tables The classes of the tables.
+     * @return {@code this} {@link Builder}.
+     */
+    @SafeVarargs
+    public final Builder withTables(final Class<? extends type.Table> ... tables) {
+      if (this.tables == null)
+        this.tables = new HashSet<>();
+
+      Collections.addAll(this.tables, tables);
+      return this;
+    }
+
+    public ResultCache build() {
+      return new ResultCache(maxSize, maxRows, timeToLive, eviction, tables == null ? null : new HashSet<>(tables));
+    }
+  }
+
+  /**
+   * The key of a result, and the tables of its {@code SELECT}. The
+   * {@link QueryConfig} of the key is compared by its settings that apply to
+   * the {@link java.sql.Statement}, and by its look-back and identity scope.
+   */
+  static final class Key {
+    private final String sql;
+    private final Object[] values;
+    private final QueryConfig config;
+    private final Set<Class<? extends type.Table>> tables;
+    private final int hashCode;
+
+    private Key(final String sql, final Object[] values, final QueryConfig config, final Set<Class<? extends type.Table>> tables) {
+      this.sql = sql;
+      this.values = values;
+      this.config = config;
+      this.tables = tables;
+      this.hashCode = (31 * sql.hashCode() + Arrays.deepHashCode(values)) * 31 + hashCode(config);
+    }
+
+    private static int hashCode(final QueryConfig config) {
+      if (config == null)
+        return 0;
+
+      int hashCode = config.hashCodeStatement();
+      hashCode = 31 * hashCode + config.getLookBack();
+      hashCode = 31 * hashCode + Objects.hashCode(config.getIdentityScope());
+      return hashCode;
+    }
+
+    private static boolean equals(final QueryConfig a, final QueryConfig b) {
+      if (a == b)
+        return true;
+
+      if (a == null || b == null)
+        return false;
+
+      return a.getLookBack() == b.getLookBack() && a.getIdentityScope() == b.getIdentityScope() && a.equalsStatement(b);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof Key))
+        return false;
+
+      final Key that = (Key)obj;
+      return hashCode == that.hashCode && sql.equals(that.sql) && Arrays.deepEquals(values, that.values) && equals(config, that.config);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private static final class Entry implements Comparable<Entry> {
+    private final Key key;
+    private final type.Entity<?>[][] rows;
+    private final long expiresAt;
+    private long hits;
+    private long accessed;
+
+    private Entry(final Key key, final type.Entity<?>[][] rows, final long expiresAt) {
+      this.key = key;
+      this.rows = rows;
+      this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public int compareTo(final Entry o) {
+      final int c = Long.compare(hits, o.hits);
+      return c != 0 ? c : Long.compare(accessed, o.accessed);
+    }
+  }
+
+  private final int maxSize;
+  private final int maxRows;
+  private final long timeToLive;
+  private final Eviction eviction;
+  private final Set<Class<? extends type.Table>> cacheableTables;
+
+  private final LinkedHashMap<Key,Entry> entries = new LinkedHashMap<>(16, .75f, true);
+  private final TreeSet<Entry> frequencies;
+  private final HashMap<Class<? extends type.Table>,Set<Key>> keysOfTable = new HashMap<>();
+  private final HashMap<Class<? extends type.Table>,long[]> versions = new HashMap<>();
+  private long epoch;
+  private long clock;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long invalidationCount;
+
+  private ResultCache(final int maxSize, final int maxRows, final long timeToLive, final Eviction eviction, final Set<Class<? extends type.Table>> cacheableTables) {
+    this.maxSize = maxSize;
+    this.maxRows = maxRows;
+    this.timeToLive = timeToLive;
+    this.eviction = eviction;
+    this.cacheableTables = cacheableTables;
+    this.frequencies = eviction == Eviction.LFU ? new TreeSet<>() : null;
+  }
+
+  /**
+   * Returns the {@link Key} of the result of the specified {@code SELECT} and
+   * its {@link Compilation}, or {@code null} if the result is not to be
+   * cached.
+   *
+   * @param select The {@code SELECT}.
+   * @param compilation The {@link Compilation} of the {@code SELECT}.
+   * @param transaction The {@link Transaction}, or {@code null}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return The {@link Key} of the result of the specified {@code SELECT}, or
+   *         {@code null} if the result is not to be cached.
+   */
+  Key newKey(final SelectImpl.untyped.SELECT<?> select, final Compilation compilation, final Transaction transaction, final QueryConfig config) {
+    if (select.forLockStrength != null || config != null && (config.getConcurrency() != RowIterator.Concurrency.READ_ONLY || config.getType() != RowIterator.Type.FORWARD_ONLY))
+      return null;
+
+    final HashSet<Class<? extends type.Table>> tables = new HashSet<>();
+    compilation.addTables(tables);
+    final List<type.Table> from = select.from();
+    if (from != null)
+      for (final type.Table table : from)
+        tables.add(table.getClass());
+
+    final List<Object> joins = select.joins;
+    if (joins != null) {
+      for (int i = 1, len = joins.size(); i < len; i += 2) {
+        final Object join = joins.get(i);
+        if (join instanceof type.Table)
+          tables.add(((type.Table)join).getClass());
+      }
+    }
+
+    if (tables.size() == 0 || cacheableTables != null && !cacheableTables.containsAll(tables) || transaction != null && transaction.hasWritten(tables))
+      return null;
+
+    final List<type.DataType<?>> parameters = compilation.getParameters();
+    final Object[] values;
+    if (parameters == null) {
+      values = null;
+    }
+    else {
+      values = new Object[parameters.size()];
+      for (int i = 0; i < values.length; ++i) {
+        final Object value = values[i] = parameters.get(i).get();
+        if (value instanceof InputStream || value instanceof Reader)
+          return null;
+      }
+    }
+
+    return new Key(compilation.toString(), values, config, tables);
+  }
+
+  /**
+   * Returns the version of the tables of the specified {@link Key}, which
+   * changes when any of the tables is invalidated, or when all results are
+   * invalidated.
+   *
+   * @param key The {@link Key}.
+   * @return The version of the tables of the specified {@link Key}.
+   */
+  synchronized long getVersion(final Key key) {
+    // The epoch is counted in, so that invalidateAll() changes the version of tables that were never invalidated
+    long version = epoch;
+    for (final Class<? extends type.Table> table : key.tables) {
+      final long[] v = versions.get(table);
+      if (v != null)
+        version += v[0];
+    }
+
+    return version;
+  }
+
+  /**
+   * Returns a {@link RowIterator} that replays the cached result of the
+   * specified {@link Key}, or {@code null} if the result is not cached.
+   *
+   * @param <T> The type of the entities of the result.
+   * @param key The {@link Key}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return A {@link RowIterator} that replays the cached result of the
+   *         specified {@link Key}, or {@code null} if the result is not
+   *         cached.
+   */
+  <T extends type.Entity<?>>RowIterator<T> get(final Key key, final QueryConfig config) {
+    final type.Entity<?>[][] rows;
+    synchronized (this) {
+      final Entry entry = entries.get(key);
+      if (entry == null) {
+        ++missCount;
+        return null;
+      }
+
+      if (entry.expiresAt != 0 && entry.expiresAt - System.nanoTime() <= 0) {
+        remove(entry);
+        ++evictionCount;
+        ++missCount;
+        return null;
+      }
+
+      if (frequencies != null) {
+        frequencies.remove(entry);
+        ++entry.hits;
+        entry.accessed = ++clock;
+        frequencies.add(entry);
+      }
+
+      ++hitCount;
+      rows = entry.rows;
+    }
+
+    return new RowIterator<T>(null, config) {
+      private final HashMap<type.Table,type.Table> cache = SelectImpl.newIdentityMap(config, getLookBack(), rows.length == 0 ? 1 : rows[0].length);
+      private final boolean clearCachePerRow = config != null && config.getIdentityScope() == QueryConfig.IdentityScope.ROW;
+      private int index;
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public boolean nextRow() throws SQLException {
+        if (super.nextRow())
+          return true;
+
+        if (endReached)
+          return false;
+
+        if (index == rows.length) {
+          endReached = true;
+          return false;
+        }
+
+        final type.Entity<?>[] snapshot = rows[index++];
+        final type.Entity<?>[] row = new type.Entity<?>[snapshot.length];
+        for (int i = 0; i < snapshot.length; ++i) {
+          final type.Entity<?> entity = snapshot[i];
+          if (entity instanceof type.Table) {
+            final type.Table table = ((type.Table)entity).clone();
+            final type.Table cached = cache == null ? null : cache.putIfAbsent(table, table);
+            row[i] = cached != null ? cached : table;
+          }
+          else {
+            row[i] = ((type.DataType<?>)entity).clone();
+          }
+        }
+
+        addRow((T[])row);
+        if (clearCachePerRow)
+          cache.clear();
+
+        return true;
+      }
+
+      @Override
+      public void close() {
+        endReached = true;
+        if (cache != null)
+          cache.clear();
+
+        clearRows();
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link RowIterator} of the rows of the specified
+   * {@link RowIterator}, which caches the result of the specified {@link Key}
+   * once the rows are read to the end, unless a table of the result was
+   * invalidated since the specified version.
+   *
+   * @param <T> The type of the entities of the result.
+   * @param key The {@link Key}.
+   * @param version The version of the tables of the {@link Key} before the
+   *          execution of the query.
+   * @param rows The {@link RowIterator} of the result.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return A {@link RowIterator} of the rows of the specified
+   *         {@link RowIterator}.
+   */
+  <T extends type.Entity<?>>RowIterator<T> cache(final Key key, final long version, final RowIterator<T> rows, final QueryConfig config) {
+    return new RowIterator<T>(rows.resultSet, config) {
+      private ArrayList<type.Entity<?>[]> snapshots = new ArrayList<>();
+
+      @Override
+      public boolean nextRow() throws SQLException {
+        if (super.nextRow())
+          return true;
+
+        if (endReached)
+          return false;
+
+        if (!rows.nextRow()) {
+          endReached = true;
+          if (snapshots != null)
+            put(key, version, snapshots.toArray(new type.Entity<?>[snapshots.size()][]));
+
+          snapshots = null;
+          return false;
+        }
+
+        final T[] row = rows.getRow();
+        if (snapshots != null) {
+          if (snapshots.size() == maxRows) {
+            snapshots = null;
+          }
+          else {
+            final type.Entity<?>[] snapshot = new type.Entity<?>[row.length];
+            for (int i = 0; i < row.length; ++i)
+              snapshot[i] = row[i] instanceof type.Table ? ((type.Table)row[i]).clone() : ((type.DataType<?>)row[i]).clone();
+
+            snapshots.add(snapshot);
+          }
+        }
+
+        addRow(row);
+        return true;
+      }
+
+      @Override
+      public void close() throws SQLException {
+        snapshots = null;
+        clearRows();
+        rows.close();
+      }
+    };
+  }
+
+  private synchronized void put(final Key key, final long version, final type.Entity<?>[][] rows) {
+    if (getVersion(key) != version)
+      return;
+
+    final Entry entry = new Entry(key, rows, timeToLive == 0 ? 0 : System.nanoTime() + timeToLive * 1000000);
+    final Entry previous = entries.get(key);
+    if (previous != null)
+      remove(previous);
+
+    entries.put(key, entry);
+    if (frequencies != null) {
+      entry.accessed = ++clock;
+      frequencies.add(entry);
+    }
+
+    for (final Class<? extends type.Table> table : key.tables) {
+      Set<Key> keys = keysOfTable.get(table);
+      if (keys == null)
+        keysOfTable.put(table, keys = new HashSet<>());
+
+      keys.add(key);
+    }
+
+    while (entries.size() > maxSize) {
+      remove(frequencies != null ? frequencies.first() : entries.values().iterator().next());
+      ++evictionCount;
+    }
+  }
+
+  private void remove(final Entry entry) {
+    entries.remove(entry.key);
+    if (frequencies != null)
+      frequencies.remove(entry);
+
+    for (final Class<? extends type.Table> table : entry.key.tables) {
+      final Set<Key> keys = keysOfTable.get(table);
+      if (keys != null && keys.remove(entry.key) && keys.size() == 0)
+        keysOfTable.remove(table);
+    }
+  }
+
+  /**
+   * Evicts the cached results of the {@code SELECT}s of the specified table.
+   *
+   * @param table The class of the table.
+   */
+  public synchronized void invalidate(final Class<? extends type.Table> table) {
+    final long[] version = versions.get(table);
+    if (version != null)
+      ++version[0];
+    else
+      versions.put(table, new long[] {1});
+
+    final Set<Key> keys = keysOfTable.get(table);
+    if (keys == null)
+      return;
+
+    for (final Iterator<Key> iterator = new ArrayList<>(keys).iterator(); iterator.hasNext();) {
+      final Entry entry = entries.get(iterator.next());
+      if (entry != null) {
+        remove(entry);
+        ++invalidationCount;
+      }
+    }
+  }
+
+  /**
+   * Evicts all cached results.
+   */
+  public synchronized void invalidateAll() {
+    ++epoch;
+    invalidationCount += entries.size();
+    entries.clear();
+    keysOfTable.clear();
+    if (frequencies != null)
+      frequencies.clear();
+  }
+
+  /**
+   * Returns the number of results in this cache.
+   *
+   * @return The number of results in this cache.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of {@code SELECT}s that were served from this cache.
+   *
+   * @return The number of {@code SELECT}s that were served from this cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of cacheable {@code SELECT}s that were not in this
+   * cache.
+   *
+   * @return The number of cacheable {@code SELECT}s that were not in this
+   *         cache.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of results that were evicted from this cache because
+   * they expired, or because the cache was full.
+   *
+   * @return The number of results that were evicted from this cache.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Returns the number of results that were evicted from this cache because a
+   * table of their {@code SELECT} was modified.
+   *
+   * @return The number of results that were evicted from this cache because a
+   *         table of their {@code SELECT} was modified.
+   */
+  public synchronized long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  @Override
+  public String toString() {
+    return "ResultCache[eviction=" + eviction + ",size=" + size() + ",hits=" + getHitCount() + ",misses=" + getMissCount() + "]";
+  }
+}
@@ -0,0 +1,442 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.libj.sql.AuditConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The read replicas of a primary {@link Connector} that is registered in a
+ * {@link Registry}, and the policy by which reads are routed to them.
+ * <p>
+ * A {@code SELECT} that is executed outside of a {@link Transaction}, and
+ * that does not lock rows ({@code FOR SHARE} or {@code FOR UPDATE}), is
+ * routed to a replica that is chosen by the {@link Balance} of this
+ * {@link Routing}. All other statements, and all statements of a
+ * {@link Transaction}, are executed on the primary. For the read-your-writes
+ * window after a thread has committed a write, the reads of that thread are
+ * kept on the primary. If a connection cannot be obtained from a replica, the
+ * read falls back to the primary.
+ * <p>
+ * The routing decisions are counted, and are available from the methods of
+ * this class.
+ */
+public final class Routing {
+  private static final Logger logger = LoggerFactory.getLogger(Routing.class);
+
+  /**
+   * The policy by which a replica is chosen for a read.
+   */
+  public enum Balance {
+    /** Replicas are chosen in turn. */
+    ROUND_ROBIN,
+    /** The replica with the fewest open reads is chosen. */
+    LEAST_OUTSTANDING,
+    /**
+     * A replica is chosen at random, weighted by the inverse of the moving
+     * average of the duration of its reads.
+     */
+    LATENCY_WEIGHTED
+  }
+
+  public static final class Builder {
+    private final Balance balance;
+    private final ArrayList<Connector> replicas = new ArrayList<>();
+    private long readYourWrites = 1000;
+
+    public Builder(final Balance balance) {
+      if (balance == null)
+        throw new IllegalArgumentException("balance == null");
+
+      this.balance = balance;
+    }
+
+    public Builder withReplica(final Connector replica) {
+      if (replica == null)
+        throw new IllegalArgumentException("replica == null");
+
+      replicas.add(replica);
+      return this;
+    }
+
+    public Builder withReplica(final DataSource replica) {
+      if (replica == null)
+        throw new IllegalArgumentException("replica == null");
+
+      replicas.add(() -> new AuditConnection(replica.getConnection()));
+      return this;
+    }
+
+    /**
+     * Sets the time after a thread has committed a write, during which the
+     * reads of that thread are routed to the primary, so that they observe
+     * the write regardless of replication lag. A time of {@code 0} disables
+     * the read-your-writes window.
+     * <p>
+     * The window is opened by a commit of a {@link Transaction} that executed
+     * an {@code INSERT}, {@code UPDATE} or {@code DELETE}, or by a modification
+     * outside of a transaction. It is held per thread, and thus does not
+     * follow a continuation onto another thread: a write or commit by
+     * {@code executeAsync} or {@link Transaction#commitAsync()} opens the
+     * window of the thread of the {@link Registry#getExecutor() Executor} on
+     * which it ran, and not of the thread that awaits it. A read that is to
+     * observe such a write is to be executed in a {@link Transaction}, which
+     * reads from the primary.
+     *
+     * @param millis The read-your-writes window in milliseconds.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException If {@code millis} is negative.
+     */
+    public Builder withReadYourWrites(final long millis) {
+      if (millis < 0)
+        throw new IllegalArgumentException("readYourWrites (" + millis + ") must be non-negative");
+
+      this.readYourWrites = millis;
+      return this;
+    }
+
+    public Routing build() {
+      return new Routing(this);
+    }
+  }
+
+  static final class Replica {
+    final Connector connector;
+    final AtomicInteger outstanding = new AtomicInteger();
+    final LongAdder routed = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    volatile long latency;
+
+    private Replica(final Connector connector) {
+      this.connector = connector;
+    }
+
+    /**
+     * Records the duration of a read into the exponentially weighted moving
+     * average of the latency of this replica. Concurrent updates may be lost,
+     * which only skews the average.
+     *
+     * @param nanos The duration of the read in nanoseconds.
+     */
+    void record(final long nanos) {
+      final long latency = this.latency;
+      this.latency = latency == 0 ? Math.max(1, nanos) : Math.max(1, latency + (nanos - latency) / 8);
+    }
+  }
+
+  /**
+   * Returns whether the specified {@link Connection} is a connection to a
+   * replica of a {@link Routing}.
+   *
+   * @param connection The {@link Connection}.
+   * @return Whether the specified {@link Connection} is a connection to a
+   *         replica of a {@link Routing}.
+   */
+  static boolean isReplica(final Connection connection) {
+    return connection instanceof ReplicaConnection;
+  }
+
+  /**
+   * A {@link Connection} of a {@link Replica}, which is counted as an
+   * outstanding read of the {@link Replica} until it is closed.
+   */
+  private static final class ReplicaConnection extends DelegatingConnection {
+    private final Replica replica;
+    private final long start;
+    private Connection connection;
+
+    private ReplicaConnection(final Replica replica, final Connection connection, final long start) {
+      this.replica = replica;
+      this.connection = connection;
+      this.start = start;
+    }
+
+    @Override
+    Connection connection() throws SQLException {
+      final Connection connection = this.connection;
+      if (connection == null)
+        throw new SQLException("Connection is closed", "08003");
+
+      return connection;
+    }
+
+    @Override
+    public void close() throws SQLException {
+      final Connection connection = this.connection;
+      if (connection == null)
+        return;
+
+      this.connection = null;
+      try {
+        connection.close();
+      }
+      finally {
+        replica.outstanding.decrementAndGet();
+        replica.record(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+      return connection == null || connection.isClosed();
+    }
+
+    @Override
+    public String toString() {
+      return "ReplicaConnection[" + connection + "]";
+    }
+  }
+
+  private final Balance balance;
+  private final Replica[] replicas;
+  private final long readYourWrites;
+  private final ThreadLocal<long[]> lastWrite = new ThreadLocal<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final LongAdder primaryCount = new LongAdder();
+  private final LongAdder fallbackCount = new LongAdder();
+
+  private Routing(final Builder builder) {
+    this.balance = builder.balance;
+    this.replicas = new Replica[builder.replicas.size()];
+    for (int i = 0; i < replicas.length; ++i)
+      replicas[i] = new Replica(builder.replicas.get(i));
+
+    this.readYourWrites = TimeUnit.MILLISECONDS.toNanos(builder.readYourWrites);
+  }
+
+  /**
+   * Records a committed write of the current thread, which opens its
+   * read-your-writes window.
+   */
+  void onWrite() {
+    if (readYourWrites == 0)
+      return;
+
+    final long[] lastWrite = this.lastWrite.get();
+    if (lastWrite != null)
+      lastWrite[0] = System.nanoTime();
+    else
+      this.lastWrite.set(new long[] {System.nanoTime()});
+  }
+
+  private boolean isReadYourWrites() {
+    if (readYourWrites == 0)
+      return false;
+
+    final long[] lastWrite = this.lastWrite.get();
+    return lastWrite != null && System.nanoTime() - lastWrite[0] < readYourWrites;
+  }
+
+  private int start() {
+    return (next.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+  }
+
+  private Replica choose() {
+    final int start = start();
+    if (balance == Balance.ROUND_ROBIN)
+      return replicas[start];
+
+    if (balance == Balance.LEAST_OUTSTANDING) {
+      Replica least = null;
+      int min = Integer.MAX_VALUE;
+      for (int i = 0; i < replicas.length; ++i) {
+        final Replica replica = replicas[(start + i) % replicas.length];
+        final int outstanding = replica.outstanding.get();
+        if (outstanding < min) {
+          min = outstanding;
+          least = replica;
+        }
+      }
+
+      return least;
+    }
+
+    // A replica without a measured latency is chosen first, to measure it
+    double total = 0;
+    for (int i = 0; i < replicas.length; ++i) {
+      final Replica replica = replicas[(start + i) % replicas.length];
+      final long latency = replica.latency;
+      if (latency == 0)
+        return replica;
+
+      total += 1d / latency;
+    }
+
+    double r = ThreadLocalRandom.current().nextDouble(total);
+    for (final Replica replica : replicas)
+      if ((r -= 1d / replica.latency) < 0)
+        return replica;
+
+    return replicas[start];
+  }
+
+  /**
+   * Returns a {@link Connection} to a replica for a read, or {@code null} if
+   * the read is to be executed on the primary.
+   *
+   * @return A {@link Connection} to a replica, or {@code null} if the read is
+   *         to be executed on the primary.
+   */
+  Connection getReadConnection() {
+    if (replicas.length == 0 || isReadYourWrites()) {
+      primaryCount.increment();
+      return null;
+    }
+
+    final Replica replica = choose();
+    replica.outstanding.incrementAndGet();
+    final long start = System.nanoTime();
+    try {
+      final Connection connection = replica.connector.getConnection();
+      replica.routed.increment();
+      return new ReplicaConnection(replica, connection, start);
+    }
+    catch (final SQLException | RuntimeException e) {
+      replica.outstanding.decrementAndGet();
+      replica.failed.increment();
+      fallbackCount.increment();
+      logger.warn("Failed to connect to replica " + indexOf(replica) + ", falling back to primary", e);
+      return null;
+    }
+  }
+
+  private int indexOf(final Replica replica) {
+    for (int i = 0; i < replicas.length; ++i)
+      if (replicas[i] == replica)
+        return i;
+
+    return -1;
+  }
+
+  private Replica replica(final int index) {
+    if (index < 0 || index >= replicas.length)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + replicas.length);
+
+    return replicas[index];
+  }
+
+  public Balance getBalance() {
+    return this.balance;
+  }
+
+  public int getReplicaCount() {
+    return replicas.length;
+  }
+
+  /**
+   * Returns the read-your-writes window in milliseconds.
+   *
+   * @return The read-your-writes window in milliseconds.
+   */
+  public long getReadYourWrites() {
+    return TimeUnit.NANOSECONDS.toMillis(readYourWrites);
+  }
+
+  /**
+   * Returns the number of reads that were routed to the replica at the
+   * specified index.
+   *
+   * @param index The index of the replica.
+   * @return The number of reads that were routed to the replica.
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public long getRoutedCount(final int index) {
+    return replica(index).routed.sum();
+  }
+
+  /**
+   * Returns the number of reads that failed to connect to the replica at the
+   * specified index, and fell back to the primary.
+   *
+   * @param index The index of the replica.
+   * @return The number of failed connections to the replica.
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public long getFailedCount(final int index) {
+    return replica(index).failed.sum();
+  }
+
+  /**
+   * Returns the number of open reads of the replica at the specified index.
+   *
+   * @param index The index of the replica.
+   * @return The number of open reads of the replica.
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public int getOutstanding(final int index) {
+    return replica(index).outstanding.get();
+  }
+
+  /**
+   * Returns the moving average of the duration of the reads of the replica at
+   * the specified index in nanoseconds, or {@code 0} if no read has
+   * completed.
+   *
+   * @param index The index of the replica.
+   * @return The moving average of the duration of the reads of the replica.
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public long getLatency(final int index) {
+    return replica(index).latency;
+  }
+
+  /**
+   * Returns the number of reads that were routed to the primary, because
+   * there are no replicas, or because they were within the read-your-writes
+   * window of their thread.
+   *
+   * @return The number of reads that were routed to the primary.
+   */
+  public long getPrimaryCount() {
+    return primaryCount.sum();
+  }
+
+  /**
+   * Returns the number of reads that fell back to the primary, because a
+   * connection to the chosen replica could not be obtained.
+   *
+   * @return The number of reads that fell back to the primary.
+   */
+  public long getFallbackCount() {
+    return fallbackCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("Routing{balance=").append(balance).append(", primary=").append(getPrimaryCount()).append(", fallback=").append(getFallbackCount()).append(", replicas=[");
+    for (int i = 0; i < replicas.length; ++i) {
+      if (i > 0)
+        builder.append(", ");
+
+      final Replica replica = replicas[i];
+      builder.append("{routed=").append(replica.routed.sum()).append(", outstanding=").append(replica.outstanding.get()).append(", latency=").append(replica.latency).append('}');
+    }
+
+    return builder.append("]}").toString();
+  }
+}
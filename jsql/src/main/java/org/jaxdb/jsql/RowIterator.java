@@ -19,6 +19,13 @@ package org.jaxdb.jsql;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.libj.sql.exception.SQLExceptions;
 
@@ -67,11 +74,90 @@ public abstract class RowIterator<T extends type.Entity<?>> implements AutoClose
     }
   }
 
+  private static final int DEFAULT_BATCH_SIZE = 1024;
+
+  /**
+   * A {@link Spliterator} of the rows of this iterator, which advances the
+   * cursor from {@link #tryAdvance(Consumer)}, {@link #forEachRemaining(Consumer)}
+   * and {@link #trySplit()}. The cursor is accessed sequentially: the methods
+   * that advance it are synchronized, so that the worker threads of a parallel
+   * stream that split this spliterator read the cursor one at a time. A split
+   * is a batch of rows that is read from the cursor into memory, and is
+   * processed in parallel by downstream stages. Since the number of remaining
+   * rows is unknown, the number of splits is bounded, so that a parallel stream
+   * does not read the whole result into memory ahead of its consumers, and the
+   * rows that remain after the last split are processed by the thread that
+   * holds this spliterator.
+   */
+  private final class RowSpliterator implements Spliterator<T[]> {
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+    private final int maxSplits = Math.max(1, ForkJoinPool.getCommonPoolParallelism()) * 4;
+    private int splits;
+
+    private boolean advance() {
+      try {
+        return nextRow();
+      }
+      catch (final SQLException e) {
+        throw new UncheckedSQLException(e);
+      }
+    }
+
+    @Override
+    public synchronized boolean tryAdvance(final Consumer<? super T[]> action) {
+      if (!advance())
+        return false;
+
+      action.accept(entities);
+      return true;
+    }
+
+    @Override
+    public synchronized void forEachRemaining(final Consumer<? super T[]> action) {
+      while (advance())
+        action.accept(entities);
+    }
+
+    @Override
+    public synchronized Spliterator<T[]> trySplit() {
+      if (splits == maxSplits)
+        return null;
+
+      final Object[] batch = new Object[batchSize];
+      int size = 0;
+      while (size < batchSize && advance())
+        batch[size++] = entities;
+
+      if (size == 0)
+        return null;
+
+      ++splits;
+      return Spliterators.spliterator(batch, 0, size, CHARACTERISTICS);
+    }
+
+    @Override
+    public synchronized long estimateSize() {
+      // The estimate is of the rows that remain to be split, which decreases with each split, so that the framework stops splitting at the bound
+      return endReached ? 0 : (long)(maxSplits - splits + 1) * batchSize;
+    }
+
+    @Override
+    public int characteristics() {
+      return CHARACTERISTICS;
+    }
+  }
+
   final ResultSet resultSet;
   private final Type type;
   private final Concurrency concurrency;
 
-  final ArrayList<T[]> rows = new ArrayList<>();
+  // Rows of a bounded look-back are held in a ring buffer of lookBack + 1 slots, otherwise in a list
+  private final ArrayList<T[]> rows;
+  private final T[][] window;
+  private final int lookBack;
+  private final int batchSize;
+  private int rowCount;
 
   int rowIndex = -1;
   boolean endReached;
@@ -80,22 +166,36 @@ public abstract class RowIterator<T extends type.Entity<?>> implements AutoClose
   private T[] entities;
   private int entityIndex = -1;
 
+  @SuppressWarnings("unchecked")
   public RowIterator(final ResultSet resultSet, final QueryConfig config) {
     this.resultSet = resultSet;
+    final int lookBack;
     if (config != null) {
       this.type = config.getType();
       this.concurrency = config.getConcurrency();
+      this.batchSize = config.getFetchSize() > 0 ? config.getFetchSize() : DEFAULT_BATCH_SIZE;
+      lookBack = config.getLookBack();
     }
     else {
       this.type = Type.FORWARD_ONLY;
       this.concurrency = Concurrency.READ_ONLY;
+      this.batchSize = DEFAULT_BATCH_SIZE;
+      lookBack = -1;
+    }
+
+    this.lookBack = lookBack != -1 ? lookBack : type == Type.FORWARD_ONLY ? 0 : Integer.MAX_VALUE;
+    if (this.lookBack == Integer.MAX_VALUE) {
+      this.rows = new ArrayList<>();
+      this.window = null;
+    }
+    else {
+      this.rows = null;
+      this.window = (T[][])new type.Entity<?>[this.lookBack + 1][];
     }
   }
 
   public RowIterator(final ResultSet resultSet) {
-    this.resultSet = resultSet;
-    this.type = Type.FORWARD_ONLY;
-    this.concurrency = Concurrency.READ_ONLY;
+    this(resultSet, null);
   }
 
   public Type getType() {
@@ -110,22 +210,45 @@ public abstract class RowIterator<T extends type.Entity<?>> implements AutoClose
     return Holdability.fromInt(resultSet.getHoldability());
   }
 
+  /**
+   * Returns the number of rows preceding the current row that are retained by
+   * this iterator, or {@link Integer#MAX_VALUE} if all rows are retained.
+   *
+   * @return The number of rows preceding the current row that are retained by
+   *         this iterator.
+   * @see QueryConfig.Builder#withLookBack(int)
+   */
+  public int getLookBack() {
+    return this.lookBack;
+  }
+
+  /**
+   * Moves this iterator to the previous row.
+   *
+   * @return {@code true} if the iterator was moved to the previous row, or
+   *         {@code false} if the current row is the first row.
+   * @throws IllegalStateException If the previous row is beyond the look-back
+   *           of this iterator, and has thus been released.
+   */
   public boolean previousRow() {
     if (rowIndex <= 0)
       return false;
 
+    if (rowCount - rowIndex > lookBack)
+      throw new IllegalStateException("Row " + (rowIndex - 1) + " is beyond the look-back of " + lookBack + " rows from row " + (rowCount - 1));
+
     --rowIndex;
     resetEntities();
     return true;
   }
 
   public boolean nextRow() throws SQLException {
-    if (++rowIndex < rows.size()) {
+    if (rowIndex + 1 < rowCount) {
+      ++rowIndex;
       resetEntities();
       return true;
     }
 
-    --rowIndex;
     return false;
   }
 
@@ -138,11 +261,46 @@ public abstract class RowIterator<T extends type.Entity<?>> implements AutoClose
     }
   }
 
+  /**
+   * Appends the specified row, which becomes the current row. If the
+   * look-back of this iterator is bounded, the row that falls beyond it is
+   * released.
+   *
+   * @param row The row.
+   */
+  final void addRow(final T[] row) {
+    if (window != null)
+      window[rowCount % window.length] = row;
+    else
+      rows.add(row);
+
+    rowIndex = rowCount++;
+    resetEntities();
+  }
+
+  final void clearRows() {
+    if (window != null)
+      Arrays.fill(window, null);
+    else
+      rows.clear();
+
+    entities = null;
+  }
+
   void resetEntities() {
-    entities = rows.get(rowIndex);
+    entities = window != null ? window[rowIndex % window.length] : rows.get(rowIndex);
     entityIndex = -1;
   }
 
+  /**
+   * Returns the entities of the current row.
+   *
+   * @return The entities of the current row.
+   */
+  final T[] getRow() {
+    return entities;
+  }
+
   public T previousEntity() {
     return --entityIndex > -1 ? entities[entityIndex] : null;
   }
@@ -151,6 +309,52 @@ public abstract class RowIterator<T extends type.Entity<?>> implements AutoClose
     return ++entityIndex < entities.length ? entities[entityIndex] : null;
   }
 
+  /**
+   * Returns a sequential {@link Stream} of the remaining rows of this iterator,
+   * which closes this iterator when the stream is closed. The stream can be
+   * made parallel, in which case rows are read from the cursor by one thread at
+   * a time in batches of the fetch size of the {@link QueryConfig} (or 1024 rows
+   * if not set), and the batches are processed in parallel by downstream
+   * stages.
+   * <p>
+   * A {@link SQLException} thrown while reading a row is thrown from the
+   * terminal operation of the stream as the cause of an
+   * {@link UncheckedSQLException}, and a {@link SQLException} thrown while
+   * closing this iterator is thrown from {@link Stream#close()} likewise.
+   *
+   * @return A sequential {@link Stream} of the remaining rows of this iterator.
+   */
+  public Stream<T[]> stream() {
+    return StreamSupport.stream(new RowSpliterator(), false).onClose(() -> {
+      try {
+        close();
+      }
+      catch (final SQLException e) {
+        throw new UncheckedSQLException(e);
+      }
+    });
+  }
+
+  /**
+   * Returns a sequential {@link Stream} of the entities of the remaining rows
+   * of this iterator, for a {@code SELECT} of a single entity. The stream
+   * closes this iterator when it is closed.
+   *
+   * @return A sequential {@link Stream} of the entities of the remaining rows
+   *         of this iterator.
+   * @throws IllegalStateException From the terminal operation of the stream,
+   *           if a row does not have exactly one entity.
+   * @see #stream()
+   */
+  public Stream<T> streamEntities() {
+    return stream().map(row -> {
+      if (row.length != 1)
+        throw new IllegalStateException("Expected 1 entity, but got " + row.length);
+
+      return row[0];
+    });
+  }
+
   @Override
   public abstract void close() throws SQLException;
 }
\ No newline at end of file
@@ -0,0 +1,290 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libj.sql.exception.SQLExceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A publisher of the rows of a query, whose {@link Subscriber}s drive the
+ * reading of the cursor with the demand they signal via
+ * {@link Subscription#request(long)}. The query is executed on the first
+ * request of a {@link Subscription}, and a row is read from the
+ * {@link java.sql.ResultSet} only when there is outstanding demand for it.
+ * The publisher itself holds no rows: apart from the rows that are prefetched
+ * by the driver in a window of the fetch size of the {@link QueryConfig}, no
+ * row is read before it is requested.
+ * <p>
+ * This is the Java 8 baseline API, so its {@link Subscriber} and
+ * {@link Subscription} interfaces are declared here, with the same methods and
+ * contracts as {@code java.util.concurrent.Flow}. On JDK 11+,
+ * {@code FlowAdapters.toFlowPublisher(RowPublisher)} adapts a
+ * {@link RowPublisher} to a {@code java.util.concurrent.Flow.Publisher}.
+ * <p>
+ * Signals are delivered serially on the {@link Registry#getExecutor()
+ * Executor} of the {@link Registry} of the thread that created the publisher.
+ * {@link Subscription#cancel()} cancels the executing statement, or closes the
+ * {@link RowIterator} as soon as the {@link Subscriber#onNext(Object)} that is
+ * in progress (if any) returns.
+ *
+ * @param <T> The type of the entities of the rows.
+ */
+public final class RowPublisher<T extends type.Entity<?>> {
+  private static final Logger logger = LoggerFactory.getLogger(RowPublisher.class);
+
+  /**
+   * A receiver of the rows of a {@link RowPublisher}.
+   *
+   * @param <T> The type of the items.
+   * @see java.util.concurrent.Flow.Subscriber
+   */
+  public interface Subscriber<T> {
+    void onSubscribe(Subscription subscription);
+    void onNext(T item);
+    void onError(Throwable throwable);
+    void onComplete();
+  }
+
+  /**
+   * The link between a {@link RowPublisher} and a {@link Subscriber}.
+   *
+   * @see java.util.concurrent.Flow.Subscription
+   */
+  public interface Subscription {
+    void request(long n);
+    void cancel();
+  }
+
+  private final class RowSubscription implements Subscription, Runnable {
+    private final Subscriber<? super T[]> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException illegalRequest;
+    private volatile CompletableFuture<RowIterator<T>> execution;
+
+    // Accessed only by the thread that drains this subscription
+    private RowIterator<T> rows;
+    private boolean done;
+
+    private RowSubscription(final Subscriber<? super T[]> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(final long n) {
+      if (n <= 0) {
+        if (illegalRequest == null)
+          illegalRequest = new IllegalArgumentException("n (" + n + ") must be greater than 0");
+      }
+      else {
+        long d, next;
+        do {
+          d = demand.get();
+          next = d + n;
+          if (next < 0)
+            next = Long.MAX_VALUE;
+        }
+        while (!demand.compareAndSet(d, next));
+      }
+
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      final CompletableFuture<RowIterator<T>> execution = this.execution;
+      if (execution != null)
+        execution.cancel(true);
+
+      schedule();
+    }
+
+    private void schedule() {
+      if (pending.getAndIncrement() == 0)
+        executor.execute(this);
+    }
+
+    @Override
+    public void run() {
+      final Registry previous = Registry.bind(registry);
+      try {
+        int missed = 1;
+        do
+          drain();
+        while ((missed = pending.addAndGet(-missed)) != 0);
+      }
+      finally {
+        Registry.bind(previous);
+      }
+    }
+
+    /**
+     * Delivers rows to the {@link Subscriber} while there is outstanding
+     * demand, and delivers the terminal signal.
+     */
+    private void drain() {
+      if (done)
+        return;
+
+      if (cancelled) {
+        terminate(null, false);
+        return;
+      }
+
+      if (illegalRequest != null) {
+        terminate(illegalRequest, false);
+        return;
+      }
+
+      if (rows == null) {
+        if (demand.get() == 0)
+          return;
+
+        final CompletableFuture<RowIterator<T>> execution = this.execution;
+        if (execution == null) {
+          (this.execution = AsyncExecution.submit(query)).whenComplete((r, t) -> schedule());
+          return;
+        }
+
+        if (!execution.isDone())
+          return;
+
+        try {
+          rows = execution.join();
+        }
+        catch (final CompletionException e) {
+          terminate(e.getCause(), false);
+          return;
+        }
+        catch (final RuntimeException e) {
+          terminate(cancelled ? null : e, false);
+          return;
+        }
+      }
+
+      try {
+        for (long requested = demand.get(), emitted = 0; !cancelled;) {
+          if (emitted == requested) {
+            if (requested != Long.MAX_VALUE && (requested = demand.addAndGet(-emitted)) == 0)
+              return;
+
+            emitted = 0;
+          }
+
+          if (!rows.nextRow()) {
+            terminate(null, true);
+            return;
+          }
+
+          try {
+            subscriber.onNext(rows.getRow());
+          }
+          catch (final Throwable t) {
+            // A Subscriber that throws from onNext() is considered to have cancelled its subscription (Reactive Streams 2.13)
+            cancelled = true;
+            terminate(null, false);
+            logger.warn("Subscriber threw from onNext(); subscription cancelled", t);
+            return;
+          }
+
+          ++emitted;
+        }
+
+        terminate(null, false);
+      }
+      catch (final SQLException e) {
+        terminate(SQLExceptions.toStrongType(e), false);
+      }
+    }
+
+    private void terminate(final Throwable t, final boolean complete) {
+      done = true;
+      final CompletableFuture<RowIterator<T>> execution = this.execution;
+      if (rows == null && execution != null) {
+        // A result that arrives after the execution is cancelled is closed by the execution
+        if (!execution.isDone())
+          execution.cancel(true);
+        else if (!execution.isCompletedExceptionally())
+          rows = execution.join();
+      }
+
+      Throwable e = t;
+      if (rows != null) {
+        try {
+          rows.close();
+        }
+        catch (final SQLException se) {
+          if (e != null)
+            e.addSuppressed(se);
+          else if (!cancelled)
+            e = se;
+          else
+            logger.warn("Failed to close RowIterator of cancelled subscription", se);
+        }
+
+        rows = null;
+      }
+
+      if (cancelled)
+        return;
+
+      if (e != null)
+        subscriber.onError(e);
+      else if (complete)
+        subscriber.onComplete();
+    }
+  }
+
+  private final Callable<RowIterator<T>> query;
+  private final Registry registry;
+  private final Executor executor;
+
+  /**
+   * Creates a new {@link RowPublisher} of the {@link RowIterator}s that are
+   * returned by the specified query, which is called once per
+   * {@link Subscription}.
+   *
+   * @param query The query.
+   */
+  RowPublisher(final Callable<RowIterator<T>> query) {
+    this.query = query;
+    this.registry = Registry.getRegistry();
+    this.executor = registry != null ? registry.getExecutor() : AsyncExecution.getDefaultExecutor();
+  }
+
+  /**
+   * Subscribes the specified {@link Subscriber} to this publisher. Each
+   * subscription executes the query anew, upon its first request.
+   *
+   * @param subscriber The {@link Subscriber}.
+   * @throws NullPointerException If {@code subscriber} is null.
+   */
+  public void subscribe(final Subscriber<? super T[]> subscriber) {
+    subscriber.onSubscribe(new RowSubscription(subscriber));
+  }
+}
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -355,6 +356,14 @@ final class SQLiteCompiler extends Compiler {
     }
   }
 
+  @Override
+  int getMaxInsertValues(final Connection connection) throws SQLException {
+    // SQLITE_MAX_VARIABLE_NUMBER defaults to 999 prior to SQLite 3.32.0, and to 32766 thereafter
+    final DatabaseMetaData metaData = connection.getMetaData();
+    final int major = metaData.getDatabaseMajorVersion();
+    return major > 3 || major == 3 && metaData.getDatabaseMinorVersion() >= 32 ? 32766 : 999;
+  }
+
   @Override
   boolean supportsReturnGeneratedKeysBatch() {
     return false;
@@ -17,11 +17,11 @@
 package org.jaxdb.jsql;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
+import org.libj.sql.AuditConnection;
 import org.libj.sql.exception.SQLExceptions;
 import org.libj.sql.exception.SQLInvalidSchemaNameException;
 import org.libj.util.ConcurrentHashSet;
@@ -29,37 +29,125 @@ import org.libj.util.ConcurrentHashSet;
 public abstract class Schema {
   private static final ConcurrentHashMap<String,ConcurrentHashSet<Class<? extends Schema>>> initialized = new ConcurrentHashMap<>();
 
-  static Connection getConnection(final Class<? extends Schema> schema, final String dataSourceId, final boolean autoCommit) throws SQLException {
-    final Connector connector = Registry.getConnector(schema, dataSourceId);
-    if (connector == null)
+  static Registry.Registration getRegistration(final Class<? extends Schema> schema, final String dataSourceId) throws SQLInvalidSchemaNameException {
+    final Registry.Registration registration = Registry.getRegistration(schema, dataSourceId);
+    if (registration == null)
       throw new SQLInvalidSchemaNameException("No " + Connector.class.getName() + " registered for " + (schema == null ? null : schema.getName()) + ", id: " + dataSourceId);
 
+    return registration;
+  }
+
+  /**
+   * Returns a {@link Connection} of the specified {@link Registry.Registration}
+   * in the provided auto-commit mode. The database of the registration is
+   * probed on its first connection only. The auto-commit mode of the
+   * connection is read on each checkout, because a {@link Connector} can
+   * return connections in either mode. A {@link ConnectionPool} answers that
+   * read from its own state, without a call to the driver. The mode is only
+   * set if it differs.
+   *
+   * @param registration The {@link Registry.Registration}.
+   * @param schema The {@link Schema} class.
+   * @param autoCommit The auto-commit mode.
+   * @return A {@link Connection} in the provided auto-commit mode.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  static Connection getConnection(final Registry.Registration registration, final Class<? extends Schema> schema, final boolean autoCommit) throws SQLException {
     try {
-      final Connection connection = connector.getConnection();
-      final String url = connection.getMetaData().getURL();
-      ConcurrentHashSet<Class<? extends Schema>> schemas = initialized.get(url);
-      final DatabaseMetaData metaData = connection.getMetaData();
-      if (schemas == null) {
-        initialized.put(url, schemas = new ConcurrentHashSet<>());
-        schemas.add(schema);
-        final Compiler compiler = Compiler.getCompiler(DBVendor.valueOf(metaData));
-        compiler.onConnect(connection);
-        compiler.onRegister(connection);
-        if (!connection.getAutoCommit())
-          connection.commit();
+      final Metrics metrics = registration.metrics;
+      final Connection connection;
+      if (metrics == null) {
+        connection = registration.connector.getConnection();
       }
-      else if (schemas.add(schema)) {
-        final Compiler compiler = Compiler.getCompiler(DBVendor.valueOf(metaData));
-        compiler.onRegister(connection);
-        if (!connection.getAutoCommit())
-          connection.commit();
+      else {
+        final long start = System.nanoTime();
+        connection = registration.connector.getConnection();
+        metrics.record(Metrics.Phase.CONNECT, null, System.nanoTime() - start);
       }
 
-      connection.setAutoCommit(autoCommit);
+      if (!registration.initialized)
+        initialize(registration, schema, connection);
+
+      if (connection.getAutoCommit() != autoCommit)
+        connection.setAutoCommit(autoCommit);
+
       return connection;
     }
     catch (final SQLException e) {
       throw SQLExceptions.toStrongType(e);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns a {@link Connection} in auto-commit mode for a read that is
+   * executed outside of a {@link Transaction}, which is a connection to a
+   * replica if the {@link Registry.Registration} has a {@link Routing} that
+   * routes the read to a replica, and otherwise a connection to the primary.
+   * Connections to replicas are not initialized, as the functions that are
+   * created on the primary are expected to be replicated.
+   *
+   * @param registration The {@link Registry.Registration}.
+   * @param schema The {@link Schema} class.
+   * @return A {@link Connection} in auto-commit mode for a read.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  static Connection getReadConnection(final Registry.Registration registration, final Class<? extends Schema> schema) throws SQLException {
+    final Routing routing = registration.routing;
+    if (routing == null)
+      return getConnection(registration, schema, true);
+
+    final Metrics metrics = registration.metrics;
+    final long start = metrics == null ? 0 : System.nanoTime();
+    final Connection connection = routing.getReadConnection();
+    if (connection == null)
+      return getConnection(registration, schema, true);
+
+    if (metrics != null)
+      metrics.record(Metrics.Phase.CONNECT, null, System.nanoTime() - start);
+
+    try {
+      if (!connection.getAutoCommit())
+        connection.setAutoCommit(true);
+
+      return connection;
+    }
+    catch (final SQLException e) {
+      throw SQLExceptions.toStrongType(Throwables.addSuppressed(e, AuditConnection.close(connection)));
+    }
+  }
+
+  /**
+   * Calls {@link Compiler#onConnect(Connection)} for the first connection to
+   * the database of the specified {@link Connection}, and
+   * {@link Compiler#onRegister(Connection)} for the first connection of the
+   * provided schema to that database. Once done, the registration is
+   * marked as initialized, so that its subsequent connections skip the probe
+   * of the database URL.
+   *
+   * @param registration The {@link Registry.Registration}.
+   * @param schema The {@link Schema} class.
+   * @param connection The {@link Connection}.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  private static void initialize(final Registry.Registration registration, final Class<? extends Schema> schema, final Connection connection) throws SQLException {
+    final String url = connection.getMetaData().getURL();
+    ConcurrentHashSet<Class<? extends Schema>> schemas = initialized.get(url);
+    if (schemas == null) {
+      initialized.put(url, schemas = new ConcurrentHashSet<>());
+      schemas.add(schema);
+      final Compiler compiler = registration.getCompiler(connection);
+      compiler.onConnect(connection);
+      compiler.onRegister(connection);
+      if (!connection.getAutoCommit())
+        connection.commit();
+    }
+    else if (schemas.add(schema)) {
+      final Compiler compiler = registration.getCompiler(connection);
+      compiler.onRegister(connection);
+      if (!connection.getAutoCommit())
+        connection.commit();
+    }
+
+    registration.initialized = true;
+  }
+}
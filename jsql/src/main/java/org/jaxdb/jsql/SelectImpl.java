@@ -24,6 +24,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -31,7 +32,6 @@ import java.util.function.Predicate;
 import org.jaxdb.vendor.DBVendor;
 import org.libj.lang.Throwables;
 import org.libj.sql.AuditConnection;
-import org.libj.sql.AuditStatement;
 import org.libj.sql.ResultSets;
 import org.libj.sql.exception.SQLExceptions;
 
@@ -39,49 +39,145 @@ import org.libj.sql.exception.SQLExceptions;
 final class SelectImpl {
   private static final Predicate<kind.Entity<?>> entitiesWithOwnerPredicate = t -> !(t instanceof type.DataType) || ((type.DataType<?>)t).table != null;
 
-  private static Object[][] compile(final kind.Entity<?>[] entities, final int index, final int depth) {
-    if (index == entities.length)
-      return new Object[depth][2];
+  /**
+   * A plan of the materialization of the rows of a {@code SELECT}, with one
+   * slot per selected entity. A slot of a {@link type.Table} entity reads the
+   * consecutive columns of the table into an instance of the table, and a
+   * slot of a {@link type.DataType} entity reads one column into a clone of
+   * the data type.
+   * <p>
+   * The plan of a {@code SELECT} that has a {@link CompilationCache.Shape} is
+   * shared by all {@code SELECT}s of the shape, and therefore does not refer
+   * to the {@link type.Table} entities of the {@code SELECT} it was built for.
+   */
+  static final class ReaderPlan {
+    /** An instance of the {@link type.Table} of each slot, or {@code null} for a {@link type.DataType} slot. */
+    final type.Table[] tables;
+    /** The {@link type.DataType} entity of each slot, or {@code null} for a {@link type.Table} slot. */
+    final type.DataType<?>[] dataTypes;
+    /** Whether all slots are {@link type.Table} slots. */
+    final boolean tablesOnly;
+
+    private ReaderPlan(final kind.Entity<?>[] entities) {
+      final int noSlots = entities.length;
+      this.tables = new type.Table[noSlots];
+      this.dataTypes = new type.DataType<?>[noSlots];
+      boolean tablesOnly = true;
+      for (int i = 0; i < noSlots; ++i) {
+        final kind.Entity<?> entity = entities[i];
+        if (entity instanceof type.Table) {
+          tables[i] = ((type.Table)entity).newInstance();
+          continue;
+        }
+
+        tablesOnly = false;
+        if (entity instanceof type.DataType) {
+          dataTypes[i] = (type.DataType<?>)entity;
+        }
+        else if (entity instanceof Keyword) {
+          final untyped.SELECT<?> select = (untyped.SELECT<?>)entity;
+          if (select.entities.length != 1)
+            throw new IllegalStateException("Expected 1 entity, but got " + select.entities.length);
 
-    final kind.Entity<?> entity = entities[index];
-    if (entity instanceof type.Table) {
-      final type.Table table = (type.Table)entity;
-      final Object[][] dataTypes = compile(entities, index + 1, depth + table._column$.length);
-      for (int i = 0; i < table._column$.length; ++i) {
-        final Object[] array = dataTypes[depth + i];
-        array[0] = table._column$[i];
-        array[1] = i;
+          final kind.Entity<?> selectEntity = select.entities[0];
+          if (!(selectEntity instanceof type.DataType))
+            throw new IllegalStateException("Expected DataType, but got: " + selectEntity.getClass().getName());
+
+          dataTypes[i] = (type.DataType<?>)selectEntity;
+        }
+        else {
+          throw new IllegalStateException("Unknown entity type: " + entity.getClass().getName());
+        }
       }
 
-      return dataTypes;
+      this.tablesOnly = tablesOnly;
     }
+  }
 
-    if (entity instanceof type.DataType) {
-      final type.DataType<?> dataType = (type.DataType<?>)entity;
-      final Object[][] dataTypes = compile(entities, index + 1, depth + 1);
-      final Object[] array = dataTypes[depth];
-      array[0] = dataType;
-      array[1] = -1;
-      return dataTypes;
-    }
+  /**
+   * Returns a new {@link RowIterator} of a single row of the specified
+   * entity.
+   *
+   * @param <T> The type of the entity.
+   * @param entity The entity.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return A new {@link RowIterator} of a single row of the specified entity.
+   */
+  static <T extends type.Entity<?>>RowIterator<T> newRowIterator(final type.Table entity, final QueryConfig config) {
+    return new RowIterator<T>(null, config) {
+      @Override
+      @SuppressWarnings("unchecked")
+      public boolean nextRow() throws SQLException {
+        if (super.nextRow())
+          return true;
 
-    if (entity instanceof Keyword) {
-      final untyped.SELECT<?> select = (untyped.SELECT<?>)entity;
-      if (select.entities.length != 1)
-        throw new IllegalStateException("Expected 1 entity, but got " + select.entities.length);
+        if (endReached)
+          return false;
 
-      final kind.Entity<?> selectEntity = select.entities[0];
-      if (!(selectEntity instanceof type.DataType))
-        throw new IllegalStateException("Expected DataType, but got: " + selectEntity.getClass().getName());
+        endReached = true;
+        addRow((T[])new type.Entity<?>[] {entity});
+        return true;
+      }
 
-      final Object[][] dataTypes = compile(entities, index + 1, depth + 1);
-      final Object[] array = dataTypes[depth];
-      array[0] = selectEntity;
-      array[1] = -1;
-      return dataTypes;
-    }
+      @Override
+      public void close() {
+        endReached = true;
+        clearRows();
+      }
+    };
+  }
 
-    throw new IllegalStateException("Unknown entity type: " + entity.getClass().getName());
+  /**
+   * Returns whether the specified entity has primary columns, and whether
+   * none of its primary columns are null.
+   *
+   * @param table The entity.
+   * @return Whether the specified entity has primary columns, and whether
+   *         none of its primary columns are null.
+   */
+  static boolean hasPrimaryKey(final type.Table table) {
+    final type.DataType<?>[] primaries = table._primary$;
+    if (primaries.length == 0)
+      return false;
+
+    for (final type.DataType<?> primary : primaries)
+      if (primary.isNull())
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Returns a new identity map of {@link type.Table} entities for the
+   * {@link QueryConfig.IdentityScope} of the specified {@link QueryConfig}, or
+   * {@code null} if entities are not to be deduplicated. If the scope is not
+   * specified, the entities of an iterator that retains all rows are
+   * deduplicated across the whole result, and otherwise among the entities of
+   * the rows of its look-back, so that the identity map does not retain the
+   * entities of rows the iterator has released.
+   *
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @param lookBack The look-back of the {@link RowIterator}.
+   * @param width The number of entities of each row.
+   * @return A new identity map of {@link type.Table} entities, or
+   *         {@code null} if entities are not to be deduplicated.
+   */
+  @SuppressWarnings("serial")
+  static HashMap<type.Table,type.Table> newIdentityMap(final QueryConfig config, final int lookBack, final int width) {
+    final QueryConfig.IdentityScope scope = config != null ? config.getIdentityScope() : null;
+    if (scope == QueryConfig.IdentityScope.NONE)
+      return null;
+
+    if (scope == QueryConfig.IdentityScope.ROW || scope == QueryConfig.IdentityScope.RESULT || scope == null && lookBack == Integer.MAX_VALUE)
+      return new HashMap<>();
+
+    final int capacity = scope != null ? config.getIdentityCapacity() : (int)Math.min(Integer.MAX_VALUE, (lookBack + 1L) * Math.max(1, width));
+    return new LinkedHashMap<type.Table,type.Table>(16, .75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<type.Table,type.Table> eldest) {
+        return size() > capacity;
+      }
+    };
   }
 
   public static class untyped {
@@ -160,6 +256,8 @@ final class SelectImpl {
       private boolean whereMutex;
       private Condition<?> where;
 
+      private volatile ReaderPlan readerPlan;
+
       SELECT(final boolean distinct, final kind.Entity<?>[] entities) {
         if (entities.length < 1)
           throw new IllegalArgumentException("entities.length < 1");
@@ -362,120 +460,85 @@ final class SelectImpl {
         return Arrays.stream(entities).filter(entitiesWithOwnerPredicate).toArray(kind.Entity<?>[]::new);
       }
 
-      @SuppressWarnings("unchecked")
       private RowIterator<T> execute(final Transaction transaction, final String dataSourceId, final QueryConfig config) throws IOException, SQLException {
         Connection connection = null;
         Statement statement = null;
         try {
-          final Connection finalConnection = connection = transaction != null ? transaction.getConnection() : Schema.getConnection(schema(), dataSourceId, true);
-          try (final Compilation compilation = new Compilation(this, DBVendor.valueOf(connection.getMetaData()), Registry.isPrepared(schema(), dataSourceId))) {
-            compile(compilation, false);
-
-            final Object[][] dataTypes = SelectImpl.compile(entities, 0, 0);
-
-            final int columnOffset = compilation.skipFirstColumn() ? 2 : 1;
-            final ResultSet resultSet = compilation.executeQuery(connection, config);
-            final Statement finalStatement = statement = resultSet.getStatement();
-            final int noColumns = resultSet.getMetaData().getColumnCount() + 1 - columnOffset;
-            return new RowIterator<T>(resultSet, config) {
-              private final HashMap<Class<? extends type.Table>,type.Table> prototypes = new HashMap<>();
-              private final HashMap<type.Table,type.Table> cache = new HashMap<>();
-              private type.Table currentTable;
-
-              @Override
-              @SuppressWarnings({"null", "rawtypes"})
-              public boolean nextRow() throws SQLException {
-                if (super.nextRow())
-                  return true;
-
-                if (endReached)
-                  return false;
-
-                final type.Entity<?>[] row;
-                int index = 0;
-                type.Table table;
-                try {
-                  if (endReached = !resultSet.next()) {
-                    suppressed = Throwables.addSuppressed(suppressed, ResultSets.close(resultSet));
-                    return false;
-                  }
-
-                  row = new type.Entity[entities.length];
-                  table = null;
-                  for (int i = 0; i < noColumns; ++i) {
-                    final Object[] dataTypePrototype = dataTypes[i];
-                    final type.DataType<?> prototypeDataType = (type.DataType<?>)dataTypePrototype[0];
-                    final Integer prototypeIndex = (Integer)dataTypePrototype[1];
-                    final type.DataType dataType;
-                    if (currentTable != null && (currentTable != prototypeDataType.table || prototypeIndex == -1)) {
-                      final type.Table cached = cache.get(table);
-                      if (cached != null) {
-                        row[index++] = cached;
-                      }
-                      else {
-                        row[index++] = table;
-                        cache.put(table, table);
-                        prototypes.put(table.getClass(), table.newInstance());
-                      }
-                    }
-
-                    if (prototypeIndex != -1) {
-                      currentTable = prototypeDataType.table;
-                      table = prototypes.get(currentTable.getClass());
-                      if (table == null)
-                        prototypes.put(currentTable.getClass(), table = currentTable.newInstance());
-
-                      dataType = table._column$[prototypeIndex];
-                    }
-                    else {
-                      table = null;
-                      currentTable = null;
-                      dataType = prototypeDataType.clone();
-                      row[index++] = dataType;
-                    }
-
-                    dataType.set(resultSet, i + columnOffset);
-                  }
-                }
-                catch (SQLException e) {
-                  e = Throwables.addSuppressed(e, suppressed);
-                  suppressed = null;
-                  throw SQLExceptions.toStrongType(e);
-                }
-
-                if (table != null) {
-                  final type.Table cached = cache.get(table);
-                  row[index++] = cached != null ? cached : table;
-                }
+          final Registry.Registration registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(schema(), dataSourceId);
+          final HashMap<type.Table,type.Table> identityMap = transaction == null || config != null && config.getIdentityScope() == QueryConfig.IdentityScope.NONE ? null : transaction.getIdentityMap();
+          final EntityCache entityCache = registration == null ? null : registration.entityCache;
+          EntityCache.Key entityKey = null;
+          long entityVersion = 0;
+          final type.Table table;
+          if ((identityMap != null || entityCache != null) && (config == null || config.getConcurrency() == RowIterator.Concurrency.READ_ONLY) && (table = primaryKeyTable()) != null) {
+            // A lookup by primary key returns the entity that was already loaded in the transaction
+            final type.Table loaded = identityMap == null ? null : identityMap.get(table);
+            if (loaded != null)
+              return SelectImpl.newRowIterator(loaded, config);
+
+            if (entityCache != null && (transaction == null || !transaction.hasWritten(table.getClass())) && (entityKey = entityCache.newKey(table)) != null) {
+              final RowIterator<T> rows = entityCache.get(entityKey, config, identityMap);
+              if (rows != null)
+                return rows;
+
+              // An entity is only cached from a lookup outside of a transaction, which cannot read from a snapshot that predates a committed modification
+              if (transaction == null)
+                entityVersion = entityCache.getVersion(table.getClass());
+              else
+                entityKey = null;
+            }
+          }
 
-                rows.add((T[])row);
-                ++rowIndex;
-                resetEntities();
-                prototypes.clear();
-                currentTable = null;
-                return true;
+          final Metrics metrics = registration == null ? null : registration.metrics;
+          final ResultCache resultCache = registration == null || entityKey != null ? null : registration.resultCache;
+          Compilation compilation = null;
+          ResultCache.Key key = null;
+          long version = 0;
+          // A cached result is looked up before a connection is acquired, once the DBVendor of the registration is known
+          if (resultCache != null && registration.getVendor() != null) {
+            compilation = compile(transaction, dataSourceId, registration.getVendor(), registration.isPrepared, metrics);
+            key = resultCache.newKey(this, compilation, transaction, config);
+            if (key != null) {
+              version = resultCache.getVersion(key);
+              final RowIterator<T> rows = resultCache.get(key, config);
+              if (rows != null) {
+                compilation.close();
+                return rows;
               }
+            }
+          }
 
-              @Override
-              public void close() throws SQLException {
-                SQLException e = Throwables.addSuppressed(suppressed, ResultSets.close(resultSet));
-                e = Throwables.addSuppressed(e, AuditStatement.close(finalStatement));
-                if (transaction == null)
-                  e = Throwables.addSuppressed(e, AuditConnection.close(finalConnection));
-
-                prototypes.clear();
-                cache.clear();
-                currentTable = null;
-                rows.clear();
-                if (e != null)
-                  throw SQLExceptions.toStrongType(e);
-              }
-            };
+          try {
+            connection = transaction != null ? transaction.getConnection() : forLockStrength == null ? Schema.getReadConnection(registration, schema()) : Schema.getConnection(registration, schema(), true);
+            if (compilation == null) {
+              compilation = compile(transaction, dataSourceId, registration.getVendor(connection), registration.isPrepared, metrics);
+              if (resultCache != null && (key = resultCache.newKey(this, compilation, transaction, config)) != null)
+                version = resultCache.getVersion(key);
+            }
+
+            final String sql = compilation.toString();
+            if (transaction != null && transaction.isWriteBehind())
+              transaction.flushBefore(sql);
+
+            final Object event = FlightRecorder.beginExecute();
+            final ResultSet resultSet = compilation.executeQuery(transaction, connection, config, metrics, sql);
+            FlightRecorder.commit(event, sql, compilation.vendor, dataSourceId, transaction, -1);
+            statement = resultSet.getStatement();
+            final RowIterator<T> rows = newRowIterator(transaction, connection, resultSet, config, getReaderPlan(compilation.cacheEntry), compilation.skipFirstColumn(), registration, dataSourceId, sql);
+            // Rows that are read from a replica are not cached, since the replica may not yet have applied a write whose invalidation the version of the cache already reflects
+            if (Routing.isReplica(connection))
+              return rows;
+
+            return entityKey != null ? entityCache.cache(entityKey, entityVersion, rows, config) : key != null ? resultCache.cache(key, version, rows, config) : rows;
+          }
+          finally {
+            if (compilation != null)
+              compilation.close();
           }
         }
         catch (SQLException e) {
           if (statement != null)
-            e = Throwables.addSuppressed(e, AuditStatement.close(statement));
+            e = Throwables.addSuppressed(e, Compilation.discard(transaction, statement));
 
           if (transaction == null && connection != null)
             e = Throwables.addSuppressed(e, AuditConnection.close(connection));
@@ -484,6 +547,232 @@ final class SelectImpl {
         }
       }
 
+      private Compilation compile(final Transaction transaction, final String dataSourceId, final DBVendor vendor, final boolean isPrepared, final Metrics metrics) throws IOException, SQLException {
+        final Object event = FlightRecorder.beginCompile();
+        final long start = metrics == null ? 0 : System.nanoTime();
+        final Compilation compilation;
+        // A SELECT that is executed concurrently (i.e. across the shards of a Sharding) is compiled by one thread at a time, since compilation assigns the aliases of its tables
+        synchronized (this) {
+          compilation = Compilation.compile(this, vendor, isPrepared);
+        }
+
+        if (metrics != null)
+          metrics.record(Metrics.Phase.COMPILE, compilation.toString(), System.nanoTime() - start);
+
+        if (event != null)
+          FlightRecorder.commit(event, compilation.toString(), vendor, dataSourceId, transaction, -1);
+
+        return compilation;
+      }
+
+      /**
+       * Returns the {@link ReaderPlan} of the entities of this {@code SELECT}.
+       * If this {@code SELECT} has a {@link CompilationCache.Shape}, the plan is
+       * shared by all {@code SELECT}s of the shape via the specified
+       * {@link CompilationCache.Entry}, and is otherwise built on first use,
+       * and is reused for all executions of this {@code SELECT}.
+       *
+       * @param entry The {@link CompilationCache.Entry} of the shape of this
+       *          {@code SELECT}, or {@code null} if this {@code SELECT} has no
+       *          shape.
+       * @return The {@link ReaderPlan} of the entities of this {@code SELECT}.
+       */
+      final ReaderPlan getReaderPlan(final CompilationCache.Entry entry) {
+        if (entry != null) {
+          ReaderPlan readerPlan = entry.readerPlan;
+          if (readerPlan == null)
+            entry.readerPlan = readerPlan = new ReaderPlan(entities);
+
+          return readerPlan;
+        }
+
+        ReaderPlan readerPlan = this.readerPlan;
+        if (readerPlan == null)
+          this.readerPlan = readerPlan = new ReaderPlan(entities);
+
+        return readerPlan;
+      }
+
+      /**
+       * Returns a new {@link RowIterator} that materializes the rows of the
+       * specified {@link ResultSet} into the entities of this {@code SELECT}.
+       * The state of this {@code SELECT} is only read, and is not modified.
+       *
+       * @param transaction The {@link Transaction}, or {@code null} if the
+       *          provided {@link Connection} is to be closed with the returned
+       *          {@link RowIterator}.
+       * @param connection The {@link Connection}.
+       * @param resultSet The {@link ResultSet}.
+       * @param config The {@link QueryConfig}.
+       * @param skipFirstColumn Whether the first column of the
+       *          {@link ResultSet} is to be skipped.
+       * @param registration The {@link Registry.Registration}, whose
+       *          {@link Metrics} are recorded.
+       * @param dataSourceId The data source id, or {@code null}.
+       * @param sql The SQL of the query, for the {@link Metrics} and the
+       *          {@link FlightRecorder} events.
+       * @return A new {@link RowIterator} of the rows of the specified
+       *         {@link ResultSet}.
+       * @throws SQLException If a SQL error has occurred.
+       */
+      @SuppressWarnings("unchecked")
+      RowIterator<T> newRowIterator(final Transaction transaction, final Connection connection, final ResultSet resultSet, final QueryConfig config, final ReaderPlan plan, final boolean skipFirstColumn, final Registry.Registration registration, final String dataSourceId, final String sql) throws SQLException {
+        final type.Table[] tables = plan.tables;
+        final type.DataType<?>[] dataTypes = plan.dataTypes;
+        final boolean tablesOnly = plan.tablesOnly;
+        final int noSlots = tables.length;
+
+        final int columnOffset = skipFirstColumn ? 2 : 1;
+        final Statement finalStatement = resultSet.getStatement();
+        return new RowIterator<T>(resultSet, config) {
+          // The instance of the table of each slot that was not retained by the previous row, and is thus reused
+          private final type.Table[] spares = new type.Table[noSlots];
+          // The rows of a transaction with an identity map are registered in the identity map of the transaction, which outlives this iterator
+          private final HashMap<type.Table,type.Table> identityMap = transaction == null || config != null && config.getIdentityScope() == QueryConfig.IdentityScope.NONE ? null : transaction.getIdentityMap();
+          private final HashMap<type.Table,type.Table> cache = identityMap != null ? identityMap : newIdentityMap(config, getLookBack(), noSlots);
+          private final boolean clearCachePerRow = identityMap == null && config != null && config.getIdentityScope() == QueryConfig.IdentityScope.ROW;
+          private final Metrics metrics = registration.metrics;
+          // The durations of the FETCH and MATERIALIZE phases of all rows, and the FlightRecorder event of the fetch, which are recorded once
+          private long fetchNanos;
+          private long materializeNanos;
+          private long count;
+          private boolean fetching;
+          private Object event;
+
+          private void record() {
+            if (count < 0)
+              return;
+
+            if (metrics != null) {
+              metrics.record(Metrics.Phase.FETCH, sql, fetchNanos);
+              metrics.record(Metrics.Phase.MATERIALIZE, sql, materializeNanos);
+              metrics.recordRows(sql, count);
+            }
+
+            FlightRecorder.commit(event, sql, registration.getVendor(), dataSourceId, transaction, count);
+            event = null;
+            count = -1;
+          }
+
+          private type.Table identity(final type.Table table) {
+            if (cache == null || identityMap != null && !hasPrimaryKey(table))
+              return table;
+
+            final type.Table cached = cache.putIfAbsent(table, table);
+            return cached != null ? cached : table;
+          }
+
+          /**
+           * Reads the columns of the {@link type.Table} of the specified slot
+           * into the specified row, reusing the spare instance of the slot if
+           * there is one.
+           *
+           * @param row The row.
+           * @param s The index of the slot.
+           * @param columnIndex The index of the first column of the slot.
+           * @return The index of the first column of the next slot.
+           * @throws SQLException If a SQL error has occurred.
+           */
+          private int readTable(final type.Entity<?>[] row, final int s, int columnIndex) throws SQLException {
+            type.Table table = spares[s];
+            if (table == null)
+              table = tables[s].newInstance();
+
+            final type.DataType<?>[] columns = table._column$;
+            for (int c = 0; c < columns.length; ++c)
+              columns[c].set(resultSet, columnIndex++);
+
+            final type.Table cached = identity(table);
+            row[s] = cached;
+            spares[s] = cached != table ? table : null;
+            return columnIndex;
+          }
+
+          @Override
+          @SuppressWarnings("rawtypes")
+          public boolean nextRow() throws SQLException {
+            if (super.nextRow())
+              return true;
+
+            if (endReached)
+              return false;
+
+            if (!fetching) {
+              fetching = true;
+              event = FlightRecorder.beginFetch();
+            }
+
+            final type.Entity<?>[] row;
+            final long start = metrics == null ? 0 : System.nanoTime();
+            final long fetched;
+            try {
+              if (endReached = !resultSet.next()) {
+                if (metrics != null)
+                  fetchNanos += System.nanoTime() - start;
+
+                record();
+                suppressed = Throwables.addSuppressed(suppressed, ResultSets.close(resultSet));
+                return false;
+              }
+
+              fetched = metrics == null ? 0 : System.nanoTime();
+
+              row = new type.Entity[noSlots];
+              if (tablesOnly) {
+                for (int s = 0, columnIndex = columnOffset; s < noSlots; ++s)
+                  columnIndex = readTable(row, s, columnIndex);
+              }
+              else {
+                for (int s = 0, columnIndex = columnOffset; s < noSlots; ++s) {
+                  if (tables[s] != null) {
+                    columnIndex = readTable(row, s, columnIndex);
+                  }
+                  else {
+                    final type.DataType dataType = dataTypes[s].clone();
+                    dataType.set(resultSet, columnIndex++);
+                    row[s] = dataType;
+                  }
+                }
+              }
+            }
+            catch (SQLException e) {
+              e = Throwables.addSuppressed(e, suppressed);
+              suppressed = null;
+              throw SQLExceptions.toStrongType(e);
+            }
+
+            addRow((T[])row);
+            if (clearCachePerRow)
+              cache.clear();
+
+            if (metrics != null) {
+              fetchNanos += fetched - start;
+              materializeNanos += System.nanoTime() - fetched;
+            }
+
+            ++count;
+            return true;
+          }
+
+          @Override
+          public void close() throws SQLException {
+            record();
+            SQLException e = Throwables.addSuppressed(suppressed, ResultSets.close(resultSet));
+            e = Throwables.addSuppressed(e, Compilation.close(transaction, finalStatement));
+            if (transaction == null)
+              e = Throwables.addSuppressed(e, AuditConnection.close(connection));
+
+            Arrays.fill(spares, null);
+            if (cache != null && identityMap == null)
+              cache.clear();
+
+            clearRows();
+            if (e != null)
+              throw SQLExceptions.toStrongType(e);
+          }
+        };
+      }
+
       @Override
       public final RowIterator<T> execute(final String dataSourceId) throws IOException, SQLException {
         return execute(null, dataSourceId, null);
@@ -527,6 +816,32 @@ final class SelectImpl {
         return from() != null ? table = from().get(0) : null;
       }
 
+      @Override
+      type.Table keyTable() {
+        return from() != null && isObjectQuery && entities.length == 1 && joins == null && unions == null ? (type.Table)entities[0] : null;
+      }
+
+      /**
+       * Returns the entity of this {@code SELECT} if it is a lookup of a
+       * single entity by its primary key, whereby the set columns of the
+       * entity are its primary columns, and are not null. Otherwise, returns
+       * {@code null}.
+       *
+       * @return The entity of this {@code SELECT} if it is a lookup of a
+       *         single entity by its primary key, otherwise {@code null}.
+       */
+      type.Table primaryKeyTable() {
+        final type.Table table = keyTable();
+        if (table == null || table._primary$.length == 0 || table.wrapper() != null || groupBy != null || having != null || orderBy != null || orderByIndexes != null || limit != -1 || offset != -1 || forLockStrength != null || translateTypes != null)
+          return null;
+
+        for (final type.DataType<?> column : table._column$)
+          if (column.wasSet() != column.primary || column.primary && column.isNull())
+            return null;
+
+        return table;
+      }
+
       // FIXME: What is translateTypes for? Looks unlinked to me!
       Map<Integer,type.ENUM<?>> translateTypes;
 
@@ -604,6 +919,40 @@ final class SelectImpl {
         return cinditions;
       }
 
+      @Override
+      type.Table[] shapeTables() {
+        // Only object queries that have not yet been compiled can be shaped, because where() memoizes the values of the condition
+        if (whereMutex || from() == null || !isObjectQuery || joins != null || groupBy != null || having != null || unions != null || orderBy != null || orderByIndexes != null || limit != -1 || offset != -1 || forLockStrength != null || translateTypes != null)
+          return null;
+
+        final type.Table[] tables = new type.Table[entities.length];
+        for (int i = 0; i < entities.length; ++i) {
+          final type.Table table = (type.Table)entities[i];
+          if (table.wrapper() != null)
+            return null;
+
+          tables[i] = table;
+        }
+
+        return tables;
+      }
+
+      @Override
+      int shapeFlags() {
+        return distinct ? 1 : 0;
+      }
+
+      @Override
+      type.DataType<?>[] shapeParameters() {
+        final ArrayList<type.DataType<?>> parameters = new ArrayList<>();
+        for (final kind.Entity<?> entity : entities)
+          for (final type.DataType<?> column : ((type.Table)entity)._column$)
+            if (column.wasSet())
+              parameters.add(column);
+
+        return parameters.toArray(new type.DataType<?>[parameters.size()]);
+      }
+
       @Override
       void compile(final Compilation compilation, final boolean isExpression) throws IOException, SQLException {
         final Compiler compiler = compilation.compiler;
@@ -0,0 +1,729 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
+import org.libj.sql.exception.SQLExceptions;
+
+/**
+ * A set of shards, each of which is a data source id of a registration of the
+ * {@link Registry}, across which the rows of tables are partitioned by a
+ * {@link ShardFunction} of their key columns.
+ * <p>
+ * An {@code INSERT}, {@code UPDATE} or {@code DELETE} of an entity is executed
+ * on the shard that owns the entity. A statement that is not bound to the row
+ * of a single entity (i.e. a statement with a {@code WHERE} condition) is
+ * executed on each shard in turn, and the update counts are summed. A
+ * {@link Batch} is partitioned into a {@link Batch} per shard.
+ * <p>
+ * A {@code SELECT} of an entity whose shard key is set is executed on the
+ * shard that owns the entity. Any other {@code SELECT} is executed on all
+ * shards in parallel, and the rows are merged into a single
+ * {@link RowIterator}: rows are merged in the order of the {@code ORDER BY}
+ * of the {@code SELECT}, if any, and the {@code LIMIT} and {@code OFFSET} of
+ * the {@code SELECT} are applied to the merged rows. A {@code SELECT} of only
+ * the aggregates {@code COUNT}, {@code SUM}, {@code MIN} and {@code MAX}
+ * results in a single row of the aggregates of the rows of all shards.
+ * <p>
+ * Statements are executed outside of a {@link Transaction}, and a statement
+ * that is executed on more than one shard is not atomic across the shards.
+ */
+public final class Sharding {
+  /**
+   * A function of the key columns of an entity to the index of the shard that
+   * owns the entity.
+   */
+  @FunctionalInterface
+  public interface ShardFunction {
+    /**
+     * Returns the index of the shard that owns the specified entity, or
+     * {@code -1} if the key columns of the entity are not set.
+     *
+     * @param table The entity.
+     * @param shards The number of shards.
+     * @return The index of the shard that owns the specified entity, in the
+     *         range {@code [0, shards)}, or {@code -1} if the key columns of
+     *         the entity are not set.
+     */
+    int shard(type.Table table, int shards);
+  }
+
+  /**
+   * A {@link ShardFunction} of the hash of the values of the primary key
+   * columns of an entity, which is stable across JVMs.
+   */
+  public static final ShardFunction PRIMARY_KEY_HASH = (table, shards) -> {
+    final type.DataType<?>[] primaries = table._primary$;
+    if (primaries.length == 0)
+      return -1;
+
+    int hashCode = 1;
+    for (final type.DataType<?> primary : primaries) {
+      if (primary.isNull())
+        return -1;
+
+      final Object value = primary.get();
+      hashCode = 31 * hashCode + (value instanceof byte[] ? Arrays.hashCode((byte[])value) : value instanceof Enum ? ((Enum<?>)value).name().hashCode() : value.hashCode());
+    }
+
+    return Math.floorMod(hashCode, shards);
+  };
+
+  public static final class Builder {
+    private final ShardFunction shardFunction;
+    private final ArrayList<String> shards = new ArrayList<>();
+    private final HashMap<Class<? extends type.Table>,ShardFunction> shardFunctions = new HashMap<>();
+
+    /**
+     * Creates a new {@link Builder} with the specified default
+     * {@link ShardFunction}.
+     *
+     * @param shardFunction The {@link ShardFunction} of the tables for which a
+     *          {@link ShardFunction} is not specified.
+     * @throws NullPointerException If {@code shardFunction} is null.
+     */
+    public Builder(final ShardFunction shardFunction) {
+      if (shardFunction == null)
+        throw new NullPointerException("shardFunction is null");
+
+      this.shardFunction = shardFunction;
+    }
+
+    /**
+     * Adds a shard, at the next index.
+     *
+     * @param dataSourceId The data source id of the registration of the shard.
+     * @return {@code this} {@link Builder}.
+     */
+    public Builder withShard(final String dataSourceId) {
+      shards.add(dataSourceId);
+      return this;
+    }
+
+    /**
+     * Sets the {@link ShardFunction} of the specified table.
+     *
+     * @param table The class of the table.
+     * @param shardFunction The {@link ShardFunction} of the table.
+     * @return {@code this} {@link Builder}.
+     * @throws NullPointerException If {@code table} or {@code shardFunction}
+     *           is null.
+     */
+    public Builder withShardFunction(final Class<? extends type.Table> table, final ShardFunction shardFunction) {
+      if (table == null)
+        throw new NullPointerException("table is null");
+
+      if (shardFunction == null)
+        throw new NullPointerException("shardFunction is null");
+
+      shardFunctions.put(table, shardFunction);
+      return this;
+    }
+
+    /**
+     * Returns a new {@link Sharding} of the shards of this {@link Builder}.
+     *
+     * @return A new {@link Sharding} of the shards of this {@link Builder}.
+     * @throws IllegalStateException If no shard was added.
+     */
+    public Sharding build() {
+      if (shards.size() == 0)
+        throw new IllegalStateException("No shards were added");
+
+      return new Sharding(shards.toArray(new String[shards.size()]), shardFunction, new HashMap<>(shardFunctions));
+    }
+  }
+
+  private static final int COUNT = 1;
+  private static final int SUM = 2;
+  private static final int MIN = 3;
+  private static final int MAX = 4;
+
+  /**
+   * A {@link Comparator} of rows by the {@code ORDER BY} of a {@code SELECT},
+   * with {@code NULL}s ordered as by the vendor of the shards.
+   */
+  private static final class RowComparator implements Comparator<type.Entity<?>[]> {
+    private final int[] slots;
+    private final int[] columns;
+    private final boolean[] descending;
+    private boolean nullsHigh;
+
+    private RowComparator(final SelectImpl.untyped.SELECT<?> select) {
+      final kind.Entity<?>[] entities = select.entities;
+      final type.DataType<?>[] orderBy = select.orderBy;
+      this.slots = new int[orderBy.length];
+      this.columns = new int[orderBy.length];
+      this.descending = new boolean[orderBy.length];
+      for (int i = 0; i < orderBy.length; ++i) {
+        type.DataType<?> column = orderBy[i];
+        final Evaluable wrapper = column.wrapper();
+        if (wrapper instanceof OrderingSpec) {
+          descending[i] = ((OrderingSpec)wrapper).operator == operator.Ordering.DESC;
+          column = ((OrderingSpec)wrapper).dataType;
+        }
+
+        slots[i] = -1;
+        for (int s = 0; s < entities.length && slots[i] == -1; ++s) {
+          if (entities[s] == column) {
+            slots[i] = s;
+            columns[i] = -1;
+          }
+          else if (entities[s] instanceof type.Table && column.table == entities[s]) {
+            final type.DataType<?>[] tableColumns = ((type.Table)entities[s])._column$;
+            for (int c = 0; c < tableColumns.length; ++c) {
+              if (tableColumns[c] == column) {
+                slots[i] = s;
+                columns[i] = c;
+                break;
+              }
+            }
+          }
+        }
+
+        if (slots[i] == -1)
+          throw new UnsupportedOperationException("ORDER BY " + column.name + " cannot be merged across shards, because it is not selected");
+      }
+    }
+
+    private Object get(final type.Entity<?>[] row, final int i) {
+      final int column = columns[i];
+      return column == -1 ? ((type.DataType<?>)row[slots[i]]).get() : ((type.Table)row[slots[i]])._column$[column].get();
+    }
+
+    @Override
+    public int compare(final type.Entity<?>[] a, final type.Entity<?>[] b) {
+      for (int i = 0; i < slots.length; ++i) {
+        final Object x = get(a, i);
+        final Object y = get(b, i);
+        final int c;
+        if (x == null)
+          c = y == null ? 0 : nullsHigh ? 1 : -1;
+        else if (y == null)
+          c = nullsHigh ? -1 : 1;
+        else
+          c = Sharding.compare(x, y);
+
+        if (c != 0)
+          return descending[i] ? -c : c;
+      }
+
+      return 0;
+    }
+  }
+
+  /**
+   * A {@link RowIterator} of the rows of the {@link RowIterator}s of the
+   * shards, which are merged in the order of a {@link RowComparator}, or are
+   * concatenated if there is no {@link RowComparator}.
+   */
+  private static final class MergedRowIterator<T extends type.Entity<?>> extends RowIterator<T> {
+    private final RowIterator<T>[] iterators;
+    private RowComparator comparator;
+    private T[][] heads;
+    private T[] aggregate;
+    private int current;
+    private int offset;
+    private int limit;
+
+    private MergedRowIterator(final QueryConfig config, final RowIterator<T>[] iterators, final int offset, final int limit) {
+      super(null, config);
+      this.iterators = iterators;
+      this.offset = offset;
+      this.limit = limit;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] next() throws SQLException {
+      if (aggregate != null) {
+        final T[] row = aggregate;
+        aggregate = null;
+        return row;
+      }
+
+      if (comparator == null) {
+        for (; current < iterators.length; ++current)
+          if (iterators[current].nextRow())
+            return iterators[current].getRow();
+
+        return null;
+      }
+
+      if (heads == null) {
+        heads = (T[][])new type.Entity<?>[iterators.length][];
+        for (int i = 0; i < iterators.length; ++i)
+          heads[i] = iterators[i].nextRow() ? iterators[i].getRow() : null;
+      }
+
+      // The number of shards is small, so the head with the least row is found by a linear scan
+      int least = -1;
+      for (int i = 0; i < heads.length; ++i)
+        if (heads[i] != null && (least == -1 || comparator.compare(heads[i], heads[least]) < 0))
+          least = i;
+
+      if (least == -1)
+        return null;
+
+      final T[] row = heads[least];
+      heads[least] = iterators[least].nextRow() ? iterators[least].getRow() : null;
+      return row;
+    }
+
+    @Override
+    public boolean nextRow() throws SQLException {
+      if (super.nextRow())
+        return true;
+
+      if (endReached)
+        return false;
+
+      for (; offset > 0; --offset) {
+        if (next() == null) {
+          endReached = true;
+          return false;
+        }
+      }
+
+      final T[] row;
+      if (limit == 0 || (row = next()) == null) {
+        endReached = true;
+        return false;
+      }
+
+      if (limit > 0)
+        --limit;
+
+      addRow(row);
+      return true;
+    }
+
+    @Override
+    public void close() throws SQLException {
+      SQLException e = null;
+      for (final RowIterator<T> iterator : iterators) {
+        try {
+          iterator.close();
+        }
+        catch (final SQLException se) {
+          e = Throwables.addSuppressed(e, se);
+        }
+      }
+
+      heads = null;
+      aggregate = null;
+      clearRows();
+      if (e != null)
+        throw SQLExceptions.toStrongType(e);
+    }
+  }
+
+  private final String[] shards;
+  private final ShardFunction shardFunction;
+  private final HashMap<Class<? extends type.Table>,ShardFunction> shardFunctions;
+
+  private Sharding(final String[] shards, final ShardFunction shardFunction, final HashMap<Class<? extends type.Table>,ShardFunction> shardFunctions) {
+    this.shards = shards;
+    this.shardFunction = shardFunction;
+    this.shardFunctions = shardFunctions;
+  }
+
+  /**
+   * Returns the number of shards.
+   *
+   * @return The number of shards.
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Returns the data source id of the shard at the specified index.
+   *
+   * @param index The index of the shard.
+   * @return The data source id of the shard at the specified index.
+   * @throws ArrayIndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public String getShard(final int index) {
+    return shards[index];
+  }
+
+  /**
+   * Returns the index of the shard that owns the specified entity, or
+   * {@code -1} if the key columns of the entity are not set.
+   *
+   * @param table The entity.
+   * @return The index of the shard that owns the specified entity, or
+   *         {@code -1} if the key columns of the entity are not set.
+   * @throws IllegalStateException If the {@link ShardFunction} returns an
+   *           index that is out of range.
+   */
+  public int shard(final type.Table table) {
+    final ShardFunction shardFunction = shardFunctions.getOrDefault(table.getClass(), this.shardFunction);
+    final int shard = shardFunction.shard(table, shards.length);
+    if (shard < -1 || shard >= shards.length)
+      throw new IllegalStateException("Shard index (" + shard + ") of " + table.name() + " is out of range [-1, " + shards.length + ")");
+
+    return shard;
+  }
+
+  private int shardOfInsert(final type.Table table) {
+    final int shard = shard(table);
+    if (shard == -1)
+      throw new IllegalArgumentException("The shard key of the INSERT of " + table.name() + " is not set");
+
+    return shard;
+  }
+
+  private int shardOf(final Executable.Modify statement) {
+    if (statement instanceof BulkInsertImpl) {
+      final BulkInsertImpl<?>[] partitioned = ((BulkInsertImpl<?>)statement).partition(shards.length, this::shardOfInsert);
+      int shard = -1;
+      for (int i = 0; i < partitioned.length; ++i) {
+        if (partitioned[i] != null) {
+          if (shard != -1)
+            throw new IllegalArgumentException("The entities of an INSERT in a Batch must belong to a single shard");
+
+          shard = i;
+        }
+      }
+
+      return shard;
+    }
+
+    // A Template.ModifyBinding is not bound to the row of a single entity
+    if (!(statement instanceof Command))
+      return -1;
+
+    final Command<?> command = (Command<?>)statement;
+    final type.Table table = command.keyTable();
+    if (table == null)
+      return -1;
+
+    return command instanceof InsertImpl ? shardOfInsert(table) : shard(table);
+  }
+
+  /**
+   * Executes the specified statement on the shard that owns its entity, or on
+   * each shard in turn if the statement is not bound to the row of a single
+   * entity. The entities of an {@code INSERT} of multiple entities are inserted
+   * on the shards that own them, and the statements of a {@link Batch} are
+   * executed in a {@link Batch} per shard.
+   *
+   * @param statement The statement.
+   * @return The sum of the update counts of the shards.
+   * @throws IllegalArgumentException If the shard key of an entity of an
+   *           {@code INSERT} is not set.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  public int execute(final Executable.Modify statement) throws IOException, SQLException {
+    final Executable.Modify[] partitioned;
+    if (statement instanceof Batch) {
+      partitioned = ((Batch)statement).partition(shards.length, this::shardOf);
+    }
+    else if (statement instanceof BulkInsertImpl) {
+      partitioned = ((BulkInsertImpl<?>)statement).partition(shards.length, this::shardOfInsert);
+    }
+    else {
+      final int shard = shardOf(statement);
+      if (shard != -1)
+        return statement.execute(shards[shard]);
+
+      partitioned = null;
+    }
+
+    int count = 0;
+    for (int i = 0; i < shards.length; ++i)
+      if (partitioned == null || partitioned[i] != null)
+        count += (partitioned == null ? statement : partitioned[i]).execute(shards[i]);
+
+    return count;
+  }
+
+  /**
+   * Executes the specified {@code SELECT} on the shard that owns its entity,
+   * or on all shards in parallel, with the rows of the shards merged into the
+   * returned {@link RowIterator}.
+   *
+   * @param <T> The type of the entities of the {@code SELECT}.
+   * @param select The {@code SELECT}.
+   * @return A {@link RowIterator} of the rows of the {@code SELECT}.
+   * @throws UnsupportedOperationException If the rows of the {@code SELECT}
+   *           cannot be merged across shards.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  public <T extends type.Entity<?>>RowIterator<T> execute(final Select.untyped.SELECT<T> select) throws IOException, SQLException {
+    return execute(select, null);
+  }
+
+  /**
+   * Executes the specified {@code SELECT} with the provided
+   * {@link QueryConfig} on the shard that owns its entity, or on all shards in
+   * parallel, with the rows of the shards merged into the returned
+   * {@link RowIterator}. The rows of the shards are merged in the order of the
+   * {@code ORDER BY} of the {@code SELECT}, which must only be of selected
+   * columns, and are compared by the natural order of their values.
+   *
+   * @param <T> The type of the entities of the {@code SELECT}.
+   * @param select The {@code SELECT}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @return A {@link RowIterator} of the rows of the {@code SELECT}.
+   * @throws UnsupportedOperationException If the rows of the {@code SELECT}
+   *           cannot be merged across shards (i.e. the {@code SELECT} is
+   *           {@code DISTINCT}, has a {@code GROUP BY}, {@code HAVING} or
+   *           {@code UNION}, or selects an aggregate other than
+   *           {@code COUNT}, {@code SUM}, {@code MIN} and {@code MAX}).
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  public <T extends type.Entity<?>>RowIterator<T> execute(final Select.untyped.SELECT<T> select, final QueryConfig config) throws IOException, SQLException {
+    final SelectImpl.untyped.SELECT<T> impl = (SelectImpl.untyped.SELECT<T>)select;
+    final type.Table table = impl.keyTable();
+    final int shard = table == null ? -1 : shard(table);
+    if (shard != -1)
+      return impl.execute(shards[shard], config);
+
+    if (impl.distinct || impl.groupBy != null || impl.having != null || impl.unions != null || impl.orderByIndexes != null)
+      throw new UnsupportedOperationException("SELECT with DISTINCT, GROUP BY, HAVING or UNION cannot be merged across shards");
+
+    final int[] aggregates = getAggregates(impl.entities);
+    final RowComparator comparator = aggregates == null && impl.orderBy != null ? new RowComparator(impl) : null;
+
+    // The rows of the OFFSET may be on any shard, so each shard is queried for the rows up to OFFSET + LIMIT, and the OFFSET and LIMIT are applied to the merged rows
+    final int limit = impl.limit;
+    final int offset = impl.offset;
+    final RowIterator<T>[] iterators;
+    impl.limit = aggregates != null || limit == -1 ? -1 : limit + Math.max(offset, 0);
+    impl.offset = -1;
+    try {
+      iterators = executeAll(impl, config);
+    }
+    finally {
+      impl.limit = limit;
+      impl.offset = offset;
+    }
+
+    final MergedRowIterator<T> merged = new MergedRowIterator<>(config, iterators, offset, limit);
+    try {
+      if (aggregates != null) {
+        merged.aggregate = aggregate(iterators, aggregates);
+        merged.current = iterators.length;
+      }
+      else if (comparator != null) {
+        comparator.nullsHigh = isNullsHigh(Schema.getRegistration(impl.schema(), shards[0]).getVendor(null));
+        merged.comparator = comparator;
+      }
+
+      return merged;
+    }
+    catch (SQLException e) {
+      try {
+        merged.close();
+      }
+      catch (final SQLException se) {
+        e.addSuppressed(se);
+      }
+
+      throw SQLExceptions.toStrongType(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends type.Entity<?>>RowIterator<T>[] executeAll(final SelectImpl.untyped.SELECT<T> select, final QueryConfig config) throws IOException, SQLException {
+    final CompletableFuture<RowIterator<T>>[] futures = new CompletableFuture[shards.length];
+    for (int i = 0; i < shards.length; ++i) {
+      final String shard = shards[i];
+      futures[i] = AsyncExecution.submit(() -> select.execute(shard, config));
+    }
+
+    final RowIterator<T>[] iterators = new RowIterator[shards.length];
+    Throwable t = null;
+    for (int i = 0; i < shards.length; ++i) {
+      try {
+        iterators[i] = futures[i].join();
+      }
+      catch (final CompletionException e) {
+        t = Throwables.addSuppressed(t, e.getCause());
+      }
+      catch (final CancellationException e) {
+        t = Throwables.addSuppressed(t, e);
+      }
+    }
+
+    if (t == null)
+      return iterators;
+
+    for (final RowIterator<T> iterator : iterators) {
+      if (iterator != null) {
+        try {
+          iterator.close();
+        }
+        catch (final SQLException e) {
+          t.addSuppressed(e);
+        }
+      }
+    }
+
+    if (t instanceof SQLException)
+      throw SQLExceptions.toStrongType((SQLException)t);
+
+    if (t instanceof IOException)
+      throw (IOException)t;
+
+    if (t instanceof RuntimeException)
+      throw (RuntimeException)t;
+
+    if (t instanceof Error)
+      throw (Error)t;
+
+    throw new SQLException(t);
+  }
+
+  private static boolean isNullsHigh(final DBVendor vendor) {
+    return vendor != DBVendor.MY_SQL && vendor != DBVendor.MARIA_DB && vendor != DBVendor.SQLITE;
+  }
+
+  private static int getAggregate(final kind.Entity<?> entity) {
+    final Evaluable wrapper = entity instanceof type.DataType ? ((type.DataType<?>)entity).wrapper() : null;
+    if (wrapper instanceof expression.Count)
+      return ((expression.Count)wrapper).distinct ? -1 : COUNT;
+
+    if (!(wrapper instanceof expression.Set))
+      return 0;
+
+    final expression.Set set = (expression.Set)wrapper;
+    if ("MIN".equals(set.function))
+      return MIN;
+
+    if ("MAX".equals(set.function))
+      return MAX;
+
+    return "SUM".equals(set.function) && !set.distinct ? SUM : -1;
+  }
+
+  private static int[] getAggregates(final kind.Entity<?>[] entities) {
+    int[] aggregates = null;
+    for (int i = 0; i < entities.length; ++i) {
+      final int aggregate = getAggregate(entities[i]);
+      if (aggregate == -1)
+        throw new UnsupportedOperationException("Aggregate of " + entities[i].getClass().getSimpleName() + " cannot be combined across shards");
+
+      if (aggregate != 0) {
+        if (aggregates == null) {
+          if (i > 0)
+            throw new UnsupportedOperationException("SELECT of aggregates and columns cannot be merged across shards");
+
+          aggregates = new int[entities.length];
+        }
+
+        aggregates[i] = aggregate;
+      }
+      else if (aggregates != null) {
+        throw new UnsupportedOperationException("SELECT of aggregates and columns cannot be merged across shards");
+      }
+    }
+
+    return aggregates;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static <T extends type.Entity<?>>T[] aggregate(final RowIterator<T>[] iterators, final int[] aggregates) throws SQLException {
+    T[] aggregate = null;
+    for (final RowIterator<T> iterator : iterators) {
+      if (!iterator.nextRow())
+        continue;
+
+      final T[] row = iterator.getRow();
+      if (aggregate == null) {
+        aggregate = row;
+        continue;
+      }
+
+      for (int i = 0; i < aggregates.length; ++i) {
+        final type.DataType dataType = (type.DataType)aggregate[i];
+        final Object value = combine(aggregates[i], dataType.get(), ((type.DataType<?>)row[i]).get());
+        if (value != null)
+          dataType.set(value);
+      }
+    }
+
+    return aggregate;
+  }
+
+  private static Object combine(final int aggregate, final Object a, final Object b) {
+    if (a == null)
+      return b;
+
+    if (b == null)
+      return a;
+
+    if (aggregate == MIN)
+      return compare(a, b) <= 0 ? a : b;
+
+    if (aggregate == MAX)
+      return compare(a, b) >= 0 ? a : b;
+
+    return add((Number)a, (Number)b);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compare(final Object a, final Object b) {
+    return ((Comparable<Object>)a).compareTo(b);
+  }
+
+  private static Number add(final Number a, final Number b) {
+    if (a instanceof BigDecimal)
+      return ((BigDecimal)a).add((BigDecimal)b);
+
+    if (a instanceof BigInteger)
+      return ((BigInteger)a).add((BigInteger)b);
+
+    if (a instanceof Double)
+      return a.doubleValue() + b.doubleValue();
+
+    if (a instanceof Float)
+      return a.floatValue() + b.floatValue();
+
+    if (a instanceof Long)
+      return a.longValue() + b.longValue();
+
+    if (a instanceof Integer)
+      return a.intValue() + b.intValue();
+
+    if (a instanceof Short)
+      return (short)(a.shortValue() + b.shortValue());
+
+    if (a instanceof Byte)
+      return (byte)(a.byteValue() + b.byteValue());
+
+    throw new UnsupportedOperationException("Unsupported type: " + a.getClass().getName());
+  }
+}
@@ -0,0 +1,297 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.libj.lang.Throwables;
+import org.libj.sql.AuditStatement;
+
+/**
+ * A bounded LRU cache of {@link PreparedStatement}s of the {@link Connection}
+ * of a {@link Transaction}, keyed by the SQL of the statement and the
+ * settings of the {@link QueryConfig} with which it was prepared that apply to
+ * the statement (i.e. not the settings of the {@link RowIterator}). Statements are held open
+ * between executions, and are closed when evicted, or when the
+ * {@link Transaction} is closed.
+ * <p>
+ * A statement is removed from the cache while it is in use, so that a SQL
+ * that is executed again while its previous {@link RowIterator} is open is
+ * prepared as a separate statement.
+ */
+public final class StatementCache {
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private static final class Key {
+    private final String sql;
+    private final QueryConfig config;
+    private final int hashCode;
+
+    private Key(final String sql, final QueryConfig config) {
+      this.sql = sql;
+      this.config = config;
+      this.hashCode = 31 * sql.hashCode() + (config == null ? 0 : config.hashCodeStatement());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof Key))
+        return false;
+
+      final Key that = (Key)obj;
+      return hashCode == that.hashCode && sql.equals(that.sql) && (config == null ? that.config == null : that.config != null && config.equalsStatement(that.config));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final LinkedHashMap<Key,PreparedStatement> idle = new LinkedHashMap<>(16, .75f, true);
+  private final IdentityHashMap<Statement,Key> inUse = new IdentityHashMap<>();
+
+  private int capacity = DEFAULT_CAPACITY;
+  private boolean closed;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  StatementCache() {
+  }
+
+  /**
+   * Returns a {@link PreparedStatement} for the specified SQL and
+   * {@link QueryConfig}, either from this cache, or newly prepared on the
+   * provided {@link Connection}. The returned statement must be given back
+   * with {@link #release(Statement)} or {@link #discard(Statement)}.
+   *
+   * @param connection The {@link Connection}.
+   * @param config The {@link QueryConfig}, or {@code null}.
+   * @param sql The SQL.
+   * @return A {@link PreparedStatement} for the specified SQL and
+   *         {@link QueryConfig}.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  PreparedStatement prepareStatement(final Connection connection, final QueryConfig config, final String sql) throws SQLException {
+    final Key key = new Key(sql, config);
+    PreparedStatement statement;
+    synchronized (this) {
+      if (closed || capacity == 0)
+        return Compilation.configure(connection, config, sql);
+
+      statement = idle.remove(key);
+      if (statement != null)
+        ++hitCount;
+      else
+        ++missCount;
+    }
+
+    if (statement == null)
+      statement = Compilation.configure(connection, config, sql);
+
+    synchronized (this) {
+      inUse.put(statement, key);
+    }
+
+    return statement;
+  }
+
+  /**
+   * Gives back the specified {@link Statement} to this cache with its
+   * parameters cleared, or closes it if it was not obtained from this cache.
+   *
+   * @param statement The {@link Statement}.
+   * @return The {@link SQLException} thrown while closing statements, or
+   *         {@code null} if no exception was thrown.
+   */
+  SQLException release(final Statement statement) {
+    // The values of the parameters are not retained by an idle statement
+    if (statement instanceof PreparedStatement) {
+      try {
+        ((PreparedStatement)statement).clearParameters();
+      }
+      catch (final SQLException e) {
+        return Throwables.addSuppressed(e, discard(statement));
+      }
+    }
+
+    final ArrayList<PreparedStatement> evicted;
+    synchronized (this) {
+      final Key key = inUse.remove(statement);
+      if (key == null || closed || capacity == 0)
+        return AuditStatement.close(statement);
+
+      final PreparedStatement previous = idle.put(key, (PreparedStatement)statement);
+      if (previous == null && idle.size() <= capacity)
+        return null;
+
+      evicted = new ArrayList<>();
+      if (previous != null)
+        evicted.add(previous);
+
+      for (final Iterator<PreparedStatement> iterator = idle.values().iterator(); idle.size() > capacity && iterator.hasNext(); ++evictionCount) {
+        evicted.add(iterator.next());
+        iterator.remove();
+      }
+    }
+
+    return close(evicted, null);
+  }
+
+  /**
+   * Closes the specified {@link Statement} without giving it back to this
+   * cache. This method is used when the state of the statement is unknown
+   * (i.e. after a failed execution).
+   *
+   * @param statement The {@link Statement}.
+   * @return The {@link SQLException} thrown while closing the statement, or
+   *         {@code null} if no exception was thrown.
+   */
+  SQLException discard(final Statement statement) {
+    synchronized (this) {
+      inUse.remove(statement);
+    }
+
+    return AuditStatement.close(statement);
+  }
+
+  private static SQLException close(final Iterable<? extends Statement> statements, SQLException e) {
+    for (final Statement statement : statements)
+      e = Throwables.addSuppressed(e, AuditStatement.close(statement));
+
+    return e;
+  }
+
+  /**
+   * Closes all statements of this cache, including the statements that are in
+   * use. After this method is called, statements are no longer cached.
+   *
+   * @return The {@link SQLException} thrown while closing statements, or
+   *         {@code null} if no exception was thrown.
+   */
+  SQLException close() {
+    final ArrayList<Statement> statements;
+    synchronized (this) {
+      closed = true;
+      statements = new ArrayList<>(idle.size() + inUse.size());
+      statements.addAll(idle.values());
+      statements.addAll(inUse.keySet());
+      idle.clear();
+      inUse.clear();
+    }
+
+    return close(statements, null);
+  }
+
+  /**
+   * Returns the maximum number of idle statements in this cache.
+   *
+   * @return The maximum number of idle statements in this cache.
+   */
+  public synchronized int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Sets the maximum number of idle statements in this cache. If the cache
+   * holds more statements than the new capacity, the least recently used
+   * statements are evicted and closed. A capacity of {@code 0} disables the
+   * cache.
+   *
+   * @param capacity The maximum number of idle statements in this cache.
+   * @throws IllegalArgumentException If {@code capacity} is negative.
+   * @throws SQLException If a SQL error has occurred while closing an evicted
+   *           statement.
+   */
+  public void setCapacity(final int capacity) throws SQLException {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity (" + capacity + ") must be non-negative");
+
+    final ArrayList<PreparedStatement> evicted = new ArrayList<>();
+    synchronized (this) {
+      this.capacity = capacity;
+      for (final Iterator<PreparedStatement> iterator = idle.values().iterator(); idle.size() > capacity && iterator.hasNext(); ++evictionCount) {
+        evicted.add(iterator.next());
+        iterator.remove();
+      }
+    }
+
+    final SQLException e = close(evicted, null);
+    if (e != null)
+      throw e;
+  }
+
+  /**
+   * Returns the number of idle statements in this cache.
+   *
+   * @return The number of idle statements in this cache.
+   */
+  public synchronized int size() {
+    return idle.size();
+  }
+
+  /**
+   * Returns the number of statements that were served from this cache.
+   *
+   * @return The number of statements that were served from this cache.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of statements that were prepared because they were not
+   * in this cache.
+   *
+   * @return The number of statements that were prepared because they were
+   *         not in this cache.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the ratio of hits to lookups of this cache, or {@code 0} if no
+   * lookups have occurred.
+   *
+   * @return The ratio of hits to lookups of this cache.
+   */
+  public synchronized double getHitRate() {
+    final long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double)hitCount / lookups;
+  }
+
+  /**
+   * Returns the number of statements that were evicted from this cache.
+   *
+   * @return The number of statements that were evicted from this cache.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+}
@@ -0,0 +1,477 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
+import org.libj.sql.AuditConnection;
+import org.libj.sql.exception.SQLExceptions;
+
+/**
+ * A reusable, parameterized command that is declared once, compiled once per
+ * {@link DBVendor}, and executed any number of times (concurrently from many
+ * threads), with each execution binding its own parameter values.
+ * <p>
+ * The parameters of a {@link Template} are {@link type.DataType}s that are
+ * used in the declaration of the command, either as unowned values (i.e.
+ * {@code new type.INT()}), or as columns of an entity whose values are
+ * compiled as parameters (i.e. the primary key of {@code SELECT(entity)}).
+ * All other values of the command are bound with the values they hold when
+ * the {@link Template} is first compiled for a {@link DBVendor}, which are
+ * copied at that time, so that subsequent modifications of the entities and
+ * values of the declaration do not affect the executions of the
+ * {@link Template}. A {@link Template} is always executed with a
+ * {@link PreparedStatement}.
+ * <p>
+ * The executions of a {@link Template} are recorded in the {@link Metrics} of
+ * the registration and as Java Flight Recorder events, other than the
+ * {@link Metrics.Phase#COMPILE COMPILE} phase, since a {@link Template} is
+ * compiled once per {@link DBVendor}. A {@link QueryBinding} bypasses the
+ * {@link ResultCache} and {@link EntityCache} of the registration, and is
+ * always executed against the database. A {@link ModifyBinding} invalidates
+ * its table in the caches, as any other modification.
+ * <p>
+ * <blockquote>
+ *
+ * <pre>
+ * final type.INT code = new type.INT();
+ * final classicmodels.Office o = classicmodels.Office();
+ * final Template.Query&lt;classicmodels.Office&gt; query = Template.of(
+ *   SELECT(o).
+ *   FROM(o).
+ *   WHERE(EQ(o.officeCode, code)), code);
+ *
+ * try (final RowIterator&lt;classicmodels.Office&gt; rows = query.bind().set(code, 1).execute(transaction)) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * </blockquote>
+ * <p>
+ * The command of a {@link Template} must not be modified after the
+ * {@link Template} is created.
+ */
+public abstract class Template {
+  /**
+   * Returns a new {@link Template.Query} for the specified query and
+   * parameters.
+   *
+   * @param <T> The type parameter of the query.
+   * @param query The query.
+   * @param parameters The parameters of the query.
+   * @return A new {@link Template.Query} for the specified query and
+   *         parameters.
+   * @throws IllegalArgumentException If {@code query} or a parameter is null,
+   *           or if a parameter is specified more than once.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends type.Entity<?>>Query<T> of(final Executable.Query<T> query, final type.DataType<?> ... parameters) {
+    if (query == null)
+      throw new IllegalArgumentException("query == null");
+
+    return new Query<>((SelectImpl.untyped.SELECT<T>)query, parameters);
+  }
+
+  /**
+   * Returns a new {@link Template.Modify} for the specified modification and
+   * parameters.
+   *
+   * @param modify The {@code INSERT}, {@code UPDATE} or {@code DELETE}
+   *          command.
+   * @param parameters The parameters of the command.
+   * @return A new {@link Template.Modify} for the specified modification and
+   *         parameters.
+   * @throws IllegalArgumentException If {@code modify} or a parameter is null,
+   *           or if a parameter is specified more than once.
+   */
+  public static Modify of(final Executable.Modify modify, final type.DataType<?> ... parameters) {
+    if (modify == null)
+      throw new IllegalArgumentException("modify == null");
+
+    return new Modify((Command<?>)modify, parameters);
+  }
+
+  static final class Compiled {
+    final String sql;
+    final type.DataType<?>[] parameters;
+    final int[] slots;
+    final boolean skipFirstColumn;
+
+    private Compiled(final String sql, final type.DataType<?>[] parameters, final int[] slots, final boolean skipFirstColumn) {
+      this.sql = sql;
+      this.parameters = parameters;
+      this.slots = slots;
+      this.skipFirstColumn = skipFirstColumn;
+    }
+
+    void bind(final PreparedStatement statement, final type.DataType<?>[] values) throws IOException, SQLException {
+      for (int i = 0; i < slots.length;) {
+        final int slot = slots[i];
+        final type.DataType<?> parameter = slot == -1 ? parameters[i] : values[slot];
+        parameter.get(statement, ++i);
+      }
+    }
+  }
+
+  final Command<?> command;
+  private final type.DataType<?>[] parameters;
+  private final Compiled[] compiled = new Compiled[DBVendor.values().length];
+
+  private Template(final Command<?> command, final type.DataType<?>[] parameters) {
+    for (int i = 0; i < parameters.length; ++i) {
+      if (parameters[i] == null)
+        throw new IllegalArgumentException("parameters[" + i + "] == null");
+
+      for (int j = 0; j < i; ++j)
+        if (parameters[j] == parameters[i])
+          throw new IllegalArgumentException("parameters[" + i + "] is specified more than once");
+    }
+
+    this.command = command;
+    this.parameters = parameters;
+  }
+
+  private int indexOf(final type.DataType<?> parameter) {
+    for (int i = 0; i < parameters.length; ++i)
+      if (parameters[i] == parameter)
+        return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns the {@link Compiled} form of this {@link Template} for the
+   * specified {@link DBVendor}, compiling the command on first use.
+   *
+   * @param vendor The {@link DBVendor}.
+   * @return The {@link Compiled} form of this {@link Template} for the
+   *         specified {@link DBVendor}.
+   * @throws IllegalArgumentException If the command has post-execution side
+   *           effects, if a parameter is not compiled as a parameter of the
+   *           command, or if a column with a generated value is not declared
+   *           as a parameter.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  final Compiled compile(final DBVendor vendor) throws IOException, SQLException {
+    final Compiled compiled = this.compiled[vendor.ordinal()];
+    if (compiled != null)
+      return compiled;
+
+    synchronized (this) {
+      if (this.compiled[vendor.ordinal()] == null)
+        this.compiled[vendor.ordinal()] = newCompiled(vendor);
+
+      return this.compiled[vendor.ordinal()];
+    }
+  }
+
+  private Compiled newCompiled(final DBVendor vendor) throws IOException, SQLException {
+    try (final Compilation compilation = new Compilation(command, vendor, true)) {
+      command.compile(compilation, false);
+      if (compilation.hasAfterExecute())
+        throw new IllegalArgumentException("Command has post-execution side effects, and cannot be used as a Template");
+
+      final List<type.DataType<?>> list = compilation.getParameters();
+      final type.DataType<?>[] parameters = list == null ? new type.DataType<?>[0] : list.toArray(new type.DataType<?>[list.size()]);
+      final int[] slots = new int[parameters.length];
+      final boolean[] used = new boolean[this.parameters.length];
+      for (int i = 0; i < parameters.length; ++i) {
+        final type.DataType<?> parameter = parameters[i];
+        final int slot = slots[i] = indexOf(parameter);
+        if (slot != -1) {
+          used[slot] = true;
+        }
+        else if (parameter.table != null && !parameter.wasSet()) {
+          throw new IllegalArgumentException("Column " + parameter.table.name() + "." + parameter.name + " has a generated value, and must be declared as a parameter of the Template");
+        }
+        else {
+          // The value is copied, so that it is not affected by modifications of the declaration, and is only read by concurrent executions
+          parameters[i] = parameter.clone();
+        }
+      }
+
+      for (int i = 0; i < used.length; ++i)
+        if (!used[i])
+          throw new IllegalArgumentException("parameters[" + i + "] is not a parameter of the compiled command");
+
+      return new Compiled(compilation.toString(), parameters, slots, compilation.skipFirstColumn());
+    }
+  }
+
+  /**
+   * A set of parameter values for one execution of a {@link Template}. A
+   * {@link Binding} is not thread-safe, and is meant to be used by a single
+   * thread.
+   *
+   * @param <B> The type of the {@link Binding} subclass.
+   */
+  public abstract static class Binding<B extends Binding<B>> {
+    final Template template;
+    final type.DataType<?>[] values;
+
+    private Binding(final Template template) {
+      this.template = template;
+      this.values = new type.DataType<?>[template.parameters.length];
+    }
+
+    /**
+     * Binds the specified value to the provided parameter.
+     *
+     * @param <T> The type parameter of the parameter.
+     * @param parameter The parameter.
+     * @param value The value.
+     * @return {@code this} {@link Binding}.
+     * @throws IllegalArgumentException If {@code parameter} is not a
+     *           parameter of the {@link Template}.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T>B set(final type.DataType<T> parameter, final T value) {
+      final int index = template.indexOf(parameter);
+      if (index == -1)
+        throw new IllegalArgumentException("Not a parameter of this Template");
+
+      final type.DataType<T> dataType = parameter.clone();
+      dataType.set(value);
+      values[index] = dataType;
+      return (B)this;
+    }
+
+    final void assertBound() {
+      for (int i = 0; i < values.length; ++i)
+        if (values[i] == null)
+          throw new IllegalStateException("parameters[" + i + "] is not bound");
+    }
+  }
+
+  /**
+   * A {@link Template} of a {@code SELECT} query.
+   *
+   * @param <T> The type parameter of the query.
+   */
+  public static final class Query<T extends type.Entity<?>> extends Template {
+    private Query(final SelectImpl.untyped.SELECT<T> select, final type.DataType<?>[] parameters) {
+      super(select, parameters);
+    }
+
+    /**
+     * Returns a new {@link QueryBinding} for one execution of this
+     * {@link Query}.
+     *
+     * @return A new {@link QueryBinding} for one execution of this
+     *         {@link Query}.
+     */
+    public QueryBinding<T> bind() {
+      return new QueryBinding<>(this);
+    }
+  }
+
+  /**
+   * A {@link Binding} of a {@link Query}.
+   *
+   * @param <T> The type parameter of the query.
+   */
+  public static final class QueryBinding<T extends type.Entity<?>> extends Binding<QueryBinding<T>> implements Executable.Query<T> {
+    private QueryBinding(final Query<T> template) {
+      super(template);
+    }
+
+    @SuppressWarnings({"resource", "unchecked"})
+    private RowIterator<T> execute(final Transaction transaction, final String dataSourceId, final QueryConfig config) throws IOException, SQLException {
+      assertBound();
+      final SelectImpl.untyped.SELECT<T> select = (SelectImpl.untyped.SELECT<T>)template.command;
+      Connection connection = null;
+      PreparedStatement statement = null;
+      try {
+        final Registry.Registration registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(select.schema(), dataSourceId);
+        connection = transaction != null ? transaction.getConnection() : select.forLockStrength == null ? Schema.getReadConnection(registration, select.schema()) : Schema.getConnection(registration, select.schema(), true);
+        final DBVendor vendor = registration.getVendor(connection);
+        final Compiled compiled = template.compile(vendor);
+        if (transaction != null)
+          transaction.flushBefore(compiled.sql);
+
+        final Metrics metrics = registration.metrics;
+        final Object event = FlightRecorder.beginExecute();
+        long start = metrics == null ? 0 : System.nanoTime();
+        statement = Compilation.prepareStatement(transaction, connection, config, compiled.sql);
+        if (metrics != null)
+          start = Compilation.record(metrics, Metrics.Phase.PREPARE, compiled.sql, start);
+
+        compiled.bind(statement, values);
+        if (metrics != null)
+          start = Compilation.record(metrics, Metrics.Phase.BIND, compiled.sql, start);
+
+        final ResultSet resultSet = statement.executeQuery();
+        if (metrics != null)
+          Compilation.record(metrics, Metrics.Phase.EXECUTE, compiled.sql, start);
+
+        FlightRecorder.commit(event, compiled.sql, vendor, dataSourceId, transaction, -1);
+        return select.newRowIterator(transaction, connection, resultSet, config, select.getReaderPlan(null), compiled.skipFirstColumn, registration, dataSourceId, compiled.sql);
+      }
+      catch (SQLException e) {
+        if (statement != null)
+          e = Throwables.addSuppressed(e, Compilation.discard(transaction, statement));
+
+        if (transaction == null && connection != null)
+          e = Throwables.addSuppressed(e, AuditConnection.close(connection));
+
+        throw SQLExceptions.toStrongType(e);
+      }
+    }
+
+    @Override
+    public RowIterator<T> execute(final String dataSourceId) throws IOException, SQLException {
+      return execute(null, dataSourceId, null);
+    }
+
+    @Override
+    public RowIterator<T> execute(final Transaction transaction) throws IOException, SQLException {
+      return execute(transaction, transaction != null ? transaction.getDataSourceId() : null, null);
+    }
+
+    @Override
+    public RowIterator<T> execute() throws IOException, SQLException {
+      return execute(null, null, null);
+    }
+
+    @Override
+    public RowIterator<T> execute(final String dataSourceId, final QueryConfig config) throws IOException, SQLException {
+      return execute(null, dataSourceId, config);
+    }
+
+    @Override
+    public RowIterator<T> execute(final Transaction transaction, final QueryConfig config) throws IOException, SQLException {
+      return execute(transaction, transaction != null ? transaction.getDataSourceId() : null, config);
+    }
+
+    @Override
+    public RowIterator<T> execute(final QueryConfig config) throws IOException, SQLException {
+      return execute(null, null, config);
+    }
+  }
+
+  /**
+   * A {@link Template} of an {@code INSERT}, {@code UPDATE} or {@code DELETE}
+   * command. Keys generated by the database are not retrieved.
+   */
+  public static final class Modify extends Template {
+    private Modify(final Command<?> command, final type.DataType<?>[] parameters) {
+      super(command, parameters);
+    }
+
+    /**
+     * Returns a new {@link ModifyBinding} for one execution of this
+     * {@link Modify}.
+     *
+     * @return A new {@link ModifyBinding} for one execution of this
+     *         {@link Modify}.
+     */
+    public ModifyBinding bind() {
+      return new ModifyBinding(this);
+    }
+  }
+
+  /**
+   * A {@link Binding} of a {@link Modify}.
+   */
+  public static final class ModifyBinding extends Binding<ModifyBinding> implements Executable.Modify {
+    private ModifyBinding(final Modify template) {
+      super(template);
+    }
+
+    private int execute(final Transaction transaction, final String dataSourceId) throws IOException, SQLException {
+      assertBound();
+      Connection connection = null;
+      PreparedStatement statement = null;
+      SQLException suppressed = null;
+      try {
+        final Registry.Registration registration = transaction != null ? transaction.getRegistration() : Schema.getRegistration(template.command.schema(), dataSourceId);
+        connection = transaction != null ? transaction.getConnection() : Schema.getConnection(registration, template.command.schema(), true);
+        try {
+          if (transaction != null)
+            transaction.flush();
+
+          final DBVendor vendor = registration.getVendor(connection);
+          final Compiled compiled = template.compile(vendor);
+          final Metrics metrics = registration.metrics;
+          final Object event = FlightRecorder.beginExecute();
+          long start = metrics == null ? 0 : System.nanoTime();
+          statement = Compilation.prepareStatement(transaction, connection, null, compiled.sql);
+          if (metrics != null)
+            start = Compilation.record(metrics, Metrics.Phase.PREPARE, compiled.sql, start);
+
+          compiled.bind(statement, values);
+          if (metrics != null)
+            start = Compilation.record(metrics, Metrics.Phase.BIND, compiled.sql, start);
+
+          final int count = statement.executeUpdate();
+          if (metrics != null) {
+            Compilation.record(metrics, Metrics.Phase.EXECUTE, compiled.sql, start);
+            metrics.recordRows(compiled.sql, count);
+          }
+
+          FlightRecorder.commit(event, compiled.sql, vendor, dataSourceId, transaction, count);
+          if (transaction == null)
+            registration.onWrite(template.command.table(), false);
+          else
+            transaction.onWrite(template.command.table(), false);
+
+          return count;
+        }
+        finally {
+          if (statement != null)
+            suppressed = Throwables.addSuppressed(suppressed, Compilation.close(transaction, statement));
+
+          if (transaction == null && connection != null)
+            suppressed = Throwables.addSuppressed(suppressed, AuditConnection.close(connection));
+        }
+      }
+      catch (final SQLException e) {
+        Throwables.addSuppressed(e, suppressed);
+        throw SQLExceptions.toStrongType(e);
+      }
+    }
+
+    @Override
+    public int execute(final String dataSourceId) throws IOException, SQLException {
+      return execute(null, dataSourceId);
+    }
+
+    @Override
+    public int execute(final Transaction transaction) throws IOException, SQLException {
+      return execute(transaction, transaction == null ? null : transaction.getDataSourceId());
+    }
+
+    @Override
+    public int execute() throws IOException, SQLException {
+      return execute(null, null);
+    }
+
+    @Override
+    public void close() {
+      Arrays.fill(values, null);
+    }
+  }
+}
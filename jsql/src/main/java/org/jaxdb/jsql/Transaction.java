@@ -17,12 +17,19 @@
 package org.jaxdb.jsql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import org.jaxdb.vendor.DBVendor;
+import org.libj.lang.Throwables;
 import org.libj.sql.exception.SQLExceptions;
 
 public class Transaction implements AutoCloseable {
@@ -35,10 +42,18 @@ public class Transaction implements AutoCloseable {
   private final Class<? extends Schema> schema;
   private final String dataSourceId;
   private DBVendor vendor;
+  private Registry.Registration registration;
   private boolean closed;
 
   private Connection connection;
   private ArrayList<Consumer<Event>> listeners;
+  private final StatementCache statementCache = new StatementCache();
+  private WriteBehind writeBehind;
+  private HashSet<Class<? extends type.Table>> written;
+  // Whether this transaction has executed a modification since its last commit or rollback
+  private boolean wrote;
+  private EntityCache.Pending pending;
+  private HashMap<type.Table,type.Table> identityMap;
 
   public Transaction(final Class<? extends Schema> schema, final String dataSourceId) {
     this.schema = schema;
@@ -50,7 +65,11 @@ public class Transaction implements AutoCloseable {
   }
 
   public DBVendor getVendor() throws SQLException {
-    return vendor == null ? vendor = DBVendor.valueOf(getConnection().getMetaData()) : vendor;
+    return vendor == null ? vendor = getRegistration().getVendor(getConnection()) : vendor;
+  }
+
+  Registry.Registration getRegistration() throws SQLException {
+    return registration == null ? registration = Schema.getRegistration(schema, dataSourceId) : registration;
   }
 
   public Connection getConnection() throws SQLException {
@@ -58,13 +77,266 @@ public class Transaction implements AutoCloseable {
       return connection;
 
     try {
-      return this.connection = Objects.requireNonNull(Schema.getConnection(schema, dataSourceId, false));
+      return this.connection = Objects.requireNonNull(Schema.getConnection(getRegistration(), schema, false));
     }
     catch (final SQLException e) {
       throw SQLExceptions.toStrongType(e);
     }
   }
 
+  /**
+   * Returns the {@link StatementCache} of the {@link PreparedStatement}s of
+   * this {@link Transaction}.
+   *
+   * @return The {@link StatementCache} of the {@link PreparedStatement}s of
+   *         this {@link Transaction}.
+   */
+  public StatementCache getStatementCache() {
+    return this.statementCache;
+  }
+
+  /**
+   * Returns whether this {@link Transaction} is in write-behind mode.
+   *
+   * @return Whether this {@link Transaction} is in write-behind mode.
+   * @see #setWriteBehind(boolean)
+   */
+  public boolean isWriteBehind() {
+    return writeBehind != null;
+  }
+
+  /**
+   * Sets the write-behind mode of this {@link Transaction}. In write-behind
+   * mode, the {@code INSERT}, {@code UPDATE} and {@code DELETE} commands that
+   * are executed in this transaction are buffered, and consecutive commands
+   * with identical SQL are executed together in a JDBC batch. The
+   * {@code execute} method of a buffered command returns
+   * {@link java.sql.Statement#SUCCESS_NO_INFO}, the count of the command is
+   * reported to the listener of {@link #setWriteBehind(boolean,ObjIntConsumer)}
+   * when the buffer is flushed, and an error of the command is thrown when the
+   * buffer is flushed.
+   * <p>
+   * The buffer is flushed before a {@code SELECT} that may read a modified
+   * table, before a command or {@link Batch} that is not buffered, by
+   * {@link #flush()}, and by {@link #commit()}. The buffer is discarded by
+   * {@link #rollback()} and {@link #close()}. Commands that generate keys, or
+   * that evaluate an indirection after execution, are not buffered.
+   * <p>
+   * Disabling write-behind mode flushes the buffer.
+   *
+   * @param writeBehind Whether this {@link Transaction} is to be in
+   *          write-behind mode.
+   * @throws SQLException If a SQL error has occurred while flushing the
+   *           buffer.
+   * @see #setWriteBehind(boolean,ObjIntConsumer)
+   */
+  public void setWriteBehind(final boolean writeBehind) throws SQLException {
+    setWriteBehind(writeBehind, null);
+  }
+
+  /**
+   * Sets the write-behind mode of this {@link Transaction}, with a listener
+   * that is called with each buffered command and its count (as returned by
+   * {@link java.sql.Statement#executeBatch()}) when the batch of the command is
+   * executed, including when the buffer is flushed by {@link #commit()}.
+   *
+   * @param writeBehind Whether this {@link Transaction} is to be in
+   *          write-behind mode.
+   * @param onExecute The listener of the counts of the buffered commands, or
+   *          {@code null}.
+   * @throws SQLException If a SQL error has occurred while flushing the
+   *           buffer.
+   * @see #setWriteBehind(boolean)
+   */
+  public void setWriteBehind(final boolean writeBehind, final ObjIntConsumer<Executable.Modify> onExecute) throws SQLException {
+    if (writeBehind) {
+      if (this.writeBehind == null)
+        this.writeBehind = new WriteBehind(this, onExecute);
+      else if (this.writeBehind.getListener() != onExecute) {
+        this.writeBehind.flush();
+        this.writeBehind = new WriteBehind(this, onExecute);
+      }
+    }
+    else if (this.writeBehind != null) {
+      try {
+        this.writeBehind.flush();
+      }
+      finally {
+        this.writeBehind = null;
+      }
+    }
+  }
+
+  /**
+   * Executes the commands in the write-behind buffer of this
+   * {@link Transaction}.
+   *
+   * @return The number of rows modified by the commands that were buffered
+   *         since the last flush, or
+   *         {@link java.sql.Statement#SUCCESS_NO_INFO} if the driver did not
+   *         provide the counts.
+   * @throws SQLException If a SQL error has occurred.
+   * @see #setWriteBehind(boolean)
+   */
+  public int flush() throws SQLException {
+    return writeBehind == null ? 0 : writeBehind.flush();
+  }
+
+  /**
+   * Returns whether this {@link Transaction} has an identity map.
+   *
+   * @return Whether this {@link Transaction} has an identity map.
+   */
+  public boolean hasIdentityMap() {
+    return identityMap != null;
+  }
+
+  /**
+   * Sets whether this {@link Transaction} has an identity map of the entities
+   * that are loaded in the transaction. With an identity map, the entities of
+   * the rows of a {@code SELECT} are registered by their primary key, and a
+   * row of an entity that is already registered is materialized as the
+   * registered instance. A lookup of a single entity by its primary key (i.e.
+   * {@code SELECT(entity)}) of a registered entity returns the registered
+   * instance without a round trip to the database.
+   * <p>
+   * An entity that is modified in this {@link Transaction} is evicted from the
+   * identity map, and the identity map is cleared on {@link #commit()} and
+   * {@link #rollback()}. A {@code SELECT} with a {@link QueryConfig} of
+   * {@link QueryConfig.IdentityScope#NONE} bypasses the identity map.
+   *
+   * @param identityMap Whether this {@link Transaction} is to have an identity
+   *          map.
+   */
+  public void setIdentityMap(final boolean identityMap) {
+    if (!identityMap)
+      this.identityMap = null;
+    else if (this.identityMap == null)
+      this.identityMap = new HashMap<>();
+  }
+
+  HashMap<type.Table,type.Table> getIdentityMap() {
+    return identityMap;
+  }
+
+  WriteBehind getWriteBehind() {
+    return writeBehind;
+  }
+
+  /**
+   * Flushes the write-behind buffer of this {@link Transaction} if the
+   * specified SQL of a query may read a table that is modified by a buffered
+   * command.
+   *
+   * @param sql The SQL of the query.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  void flushBefore(final String sql) throws SQLException {
+    if (writeBehind != null && writeBehind.affects(sql))
+      writeBehind.flush();
+  }
+
+  /**
+   * Returns whether this {@link Transaction} has a write that is not yet
+   * committed, including the commands in its write-behind buffer.
+   *
+   * @return Whether this {@link Transaction} has a write that is not yet
+   *         committed.
+   */
+  boolean hasPendingWrites() {
+    return wrote;
+  }
+
+  /**
+   * Records a write of this {@link Transaction} by the specified
+   * {@link Command}, of which the modified tables and entities in the
+   * {@link ResultCache} and {@link EntityCache} of the registration are
+   * invalidated on {@link #commit()}.
+   *
+   * @param command The {@link Command}.
+   */
+  void onWrite(final Command<?> command) {
+    wrote = true;
+    if (command instanceof BulkInsertImpl) {
+      for (final type.Table table : ((BulkInsertImpl<?>)command).inserts())
+        onWrite(table, true);
+    }
+    else {
+      onWrite(command.table(), command.keyTable() != null);
+    }
+  }
+
+  /**
+   * Records a write of this {@link Transaction} to the specified entity, of
+   * which the table in the {@link ResultCache}, and the entity in the
+   * {@link EntityCache} of the registration are invalidated on
+   * {@link #commit()}. The modified entities are evicted from the identity
+   * map of this {@link Transaction}, if any.
+   *
+   * @param table The entity.
+   * @param keyed Whether the entity is modified by its primary key, and
+   *          otherwise all entities of its table are invalidated.
+   */
+  void onWrite(final type.Table table, final boolean keyed) {
+    wrote = true;
+    if (table == null)
+      return;
+
+    if (identityMap != null) {
+      if (keyed)
+        identityMap.remove(table);
+      else
+        identityMap.keySet().removeIf(t -> t.getClass() == table.getClass());
+    }
+
+    if (registration == null)
+      return;
+
+    final EntityCache entityCache = registration.entityCache;
+    if (registration.resultCache == null && entityCache == null)
+      return;
+
+    if (written == null)
+      written = new HashSet<>();
+
+    written.add(table.getClass());
+    if (entityCache != null) {
+      if (pending == null)
+        addListener(pending = entityCache.newPending());
+
+      pending.add(table, keyed);
+    }
+  }
+
+  /**
+   * Returns whether this {@link Transaction} has uncommitted writes to any of
+   * the specified tables.
+   *
+   * @param tables The classes of the tables.
+   * @return Whether this {@link Transaction} has uncommitted writes to any of
+   *         the specified tables.
+   */
+  boolean hasWritten(final Set<Class<? extends type.Table>> tables) {
+    if (written != null)
+      for (final Class<? extends type.Table> table : tables)
+        if (written.contains(table))
+          return true;
+
+    return false;
+  }
+
+  /**
+   * Returns whether this {@link Transaction} has uncommitted writes to the
+   * specified table.
+   *
+   * @param table The class of the table.
+   * @return Whether this {@link Transaction} has uncommitted writes to the
+   *         specified table.
+   */
+  boolean hasWritten(final Class<? extends type.Table> table) {
+    return written != null && written.contains(table);
+  }
+
   public Class<? extends Schema> getSchemaClass() {
     return this.schema;
   }
@@ -95,7 +367,29 @@ public class Transaction implements AutoCloseable {
       return false;
 
     try {
+      if (writeBehind != null)
+        writeBehind.flush();
+
       connection.commit();
+      // Only a commit of a modification opens the read-your-writes window of the Routing, so that a read-only transaction does not route later reads to the primary
+      if (wrote) {
+        wrote = false;
+        registration.onWrite();
+      }
+
+      if (written != null) {
+        final ResultCache resultCache = registration.resultCache;
+        if (resultCache != null)
+          for (final Class<? extends type.Table> table : written)
+            resultCache.invalidate(table);
+
+        written = null;
+      }
+
+      pending = null;
+      if (identityMap != null)
+        identityMap.clear();
+
       notifyListeners(Event.COMMIT);
       return true;
     }
@@ -104,24 +398,71 @@ public class Transaction implements AutoCloseable {
     }
   }
 
+  /**
+   * Commits this {@link Transaction} asynchronously on the
+   * {@link Registry#getExecutor() Executor} of the {@link Registry}. This
+   * {@link Transaction} is not to be used until the returned
+   * {@link CompletableFuture} completes.
+   *
+   * @return A {@link CompletableFuture} of the result of {@link #commit()}.
+   */
+  public CompletableFuture<Boolean> commitAsync() {
+    return AsyncExecution.submit(this::commit);
+  }
+
   public boolean rollback() throws SQLException {
     if (connection == null)
       return false;
 
+    final SQLException suppressed = writeBehind == null ? null : writeBehind.discard();
+    written = null;
+    wrote = false;
+    pending = null;
+    if (identityMap != null)
+      identityMap.clear();
+
     try {
       connection.rollback();
       notifyListeners(Event.ROLLBACK);
-      return true;
     }
     catch (final SQLException e) {
-      throw SQLExceptions.toStrongType(e);
+      throw SQLExceptions.toStrongType(Throwables.addSuppressed(e, suppressed));
     }
+
+    if (suppressed != null)
+      throw SQLExceptions.toStrongType(suppressed);
+
+    return true;
+  }
+
+  /**
+   * Rolls back this {@link Transaction} asynchronously on the
+   * {@link Registry#getExecutor() Executor} of the {@link Registry}. This
+   * {@link Transaction} is not to be used until the returned
+   * {@link CompletableFuture} completes.
+   *
+   * @return A {@link CompletableFuture} of the result of {@link #rollback()}.
+   */
+  public CompletableFuture<Boolean> rollbackAsync() {
+    return AsyncExecution.submit(this::rollback);
   }
 
   public boolean rollback(final Throwable t) {
     if (connection == null)
       return false;
 
+    if (writeBehind != null) {
+      final SQLException e = writeBehind.discard();
+      if (e != null)
+        t.addSuppressed(e);
+    }
+
+    written = null;
+    wrote = false;
+    pending = null;
+    if (identityMap != null)
+      identityMap.clear();
+
     try {
       connection.rollback();
       notifyListeners(Event.ROLLBACK);
@@ -139,14 +480,20 @@ public class Transaction implements AutoCloseable {
       return;
 
     closed = true;
+    identityMap = null;
     if (connection == null)
       return;
 
+    SQLException suppressed = writeBehind == null ? null : writeBehind.discard();
+    suppressed = Throwables.addSuppressed(suppressed, statementCache.close());
     try {
       connection.close();
     }
     catch (final SQLException e) {
-      throw SQLExceptions.toStrongType(e);
+      throw SQLExceptions.toStrongType(Throwables.addSuppressed(e, suppressed));
     }
+
+    if (suppressed != null)
+      throw SQLExceptions.toStrongType(suppressed);
   }
 }
\ No newline at end of file
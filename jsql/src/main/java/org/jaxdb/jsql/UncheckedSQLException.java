@@ -0,0 +1,61 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.jaxdb.jsql;
+
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Wraps a {@link SQLException} with an unchecked exception, for the APIs that
+ * cannot throw checked exceptions, such as {@link java.util.stream.Stream}.
+ */
+public class UncheckedSQLException extends RuntimeException {
+  private static final long serialVersionUID = -7416386327372429837L;
+
+  /**
+   * Creates a new {@link UncheckedSQLException} with the specified detail
+   * message and cause.
+   *
+   * @param message The detail message.
+   * @param cause The {@link SQLException}.
+   * @throws NullPointerException If {@code cause} is null.
+   */
+  public UncheckedSQLException(final String message, final SQLException cause) {
+    super(message, Objects.requireNonNull(cause));
+  }
+
+  /**
+   * Creates a new {@link UncheckedSQLException} with the specified cause.
+   *
+   * @param cause The {@link SQLException}.
+   * @throws NullPointerException If {@code cause} is null.
+   */
+  public UncheckedSQLException(final SQLException cause) {
+    super(Objects.requireNonNull(cause));
+  }
+
+  /**
+   * Returns the {@link SQLException} wrapped by this exception.
+   *
+   * @return The {@link SQLException} wrapped by this exception.
+   */
+  @Override
+  public synchronized SQLException getCause() {
+    return (SQLException)super.getCause();
+  }
+}
@@ -84,6 +84,38 @@ final class UpdateImpl extends Command<type.DataType<?>> implements SET {
     return table;
   }
 
+  @Override
+  type.Table keyTable() {
+    return sets == null && where == null ? table : null;
+  }
+
+  @Override
+  type.Table[] shapeTables() {
+    return sets == null ? new type.Table[] {table} : null;
+  }
+
+  @Override
+  type.DataType<?>[] shapeParameters() {
+    final ArrayList<type.DataType<?>> parameters = new ArrayList<>();
+    for (final type.DataType<?> column : table._column$)
+      if (!column.primary && (column.wasSet() || column.generateOnUpdate != null))
+        parameters.add(column);
+
+    // No changes were found, so the WHERE clause is not compiled
+    if (parameters.size() > 0)
+      for (final type.DataType<?> column : table._column$)
+        if ((column.primary || column.keyForUpdate) && !column.isNull())
+          parameters.add(column);
+
+    return parameters.toArray(new type.DataType<?>[parameters.size()]);
+  }
+
+  @Override
+  void onShapeHit(final Compilation compilation) {
+    for (final type.DataType<?> column : table._column$)
+      Compiler.shouldUpdate(column, compilation);
+  }
+
   @Override
   void compile(final Compilation compilation, final boolean isExpression) throws IOException, SQLException {
     final Compiler compiler = compilation.compiler;
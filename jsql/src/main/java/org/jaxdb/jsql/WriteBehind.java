@@ -0,0 +1,251 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import org.libj.lang.Throwables;
+import org.libj.sql.exception.SQLExceptions;
+
+/**
+ * The write-behind buffer of a {@link Transaction}, which adds the
+ * {@code INSERT}, {@code UPDATE} and {@code DELETE} commands that are executed
+ * in the transaction to a JDBC batch, instead of executing each command in its
+ * own round trip. Consecutive commands with identical SQL are added to the
+ * same {@link PreparedStatement}, and the batch is executed when a command
+ * with different SQL is added, or when the buffer is flushed.
+ * <p>
+ * The parameters of a command are bound to the batch when the command is
+ * added, and thus the entities of a command can be modified once it is
+ * executed.
+ * <p>
+ * The count of each command is reported to the listener of the buffer, if
+ * any, when the batch of the command is executed.
+ */
+final class WriteBehind {
+  private final Transaction transaction;
+  private final ObjIntConsumer<Executable.Modify> onExecute;
+  private final ArrayList<Executable.Modify> commands;
+  private final HashSet<String> tables = new HashSet<>();
+  private Statement statement;
+  private String sql;
+  private int size;
+  private int total;
+  private boolean noInfo;
+
+  WriteBehind(final Transaction transaction, final ObjIntConsumer<Executable.Modify> onExecute) {
+    this.transaction = transaction;
+    this.onExecute = onExecute;
+    this.commands = onExecute == null ? null : new ArrayList<>();
+  }
+
+  /**
+   * Returns the listener of this buffer, or {@code null} if there is none.
+   *
+   * @return The listener of this buffer, or {@code null} if there is none.
+   */
+  ObjIntConsumer<Executable.Modify> getListener() {
+    return onExecute;
+  }
+
+  /**
+   * Adds the specified {@link Command} to the batch of this buffer, if the
+   * command can be deferred. A command cannot be deferred if it has effects
+   * after its execution (i.e. the evaluation of an indirection in an
+   * {@code UPDATE}), or if the vendor does not support prepared statement
+   * batch execution.
+   *
+   * @param command The {@link Command}.
+   * @param compilation The {@link Compilation} of the command.
+   * @return {@code true} if the command was added to the batch of this
+   *         buffer, otherwise {@code false}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  boolean add(final Command<?> command, final Compilation compilation) throws IOException, SQLException {
+    if (compilation.hasAfterExecute() || compilation.isPrepared() && !compilation.compiler.supportsPreparedBatch())
+      return false;
+
+    final Connection connection = transaction.getConnection();
+    final String sql = compilation.toString();
+    if (compilation.isPrepared()) {
+      if (!(statement instanceof PreparedStatement) || !sql.equals(this.sql)) {
+        executeBatch();
+        statement = Compilation.prepareStatement(transaction, connection, null, sql);
+        this.sql = sql;
+      }
+
+      final PreparedStatement preparedStatement = (PreparedStatement)statement;
+      final List<type.DataType<?>> parameters = compilation.getParameters();
+      if (parameters != null)
+        for (int i = 0, len = parameters.size(); i < len;)
+          parameters.get(i).get(preparedStatement, ++i);
+
+      preparedStatement.addBatch();
+    }
+    else {
+      if (statement instanceof PreparedStatement)
+        executeBatch();
+
+      if (statement == null)
+        statement = AsyncExecution.track(connection.createStatement());
+
+      statement.addBatch(sql);
+    }
+
+    tables.add(command.table().name());
+    if (commands != null)
+      commands.add((Executable.Modify)command);
+
+    ++size;
+    return true;
+  }
+
+  /**
+   * Returns whether the specified SQL may read a table that is modified by a
+   * command in the batch of this buffer. The test is conservative, and
+   * matches the name of the table as a whole identifier (regardless of case
+   * and quotation) anywhere in the SQL, such that the name of a table does not
+   * match a table or column of which it is a part.
+   *
+   * @param sql The SQL.
+   * @return Whether the specified SQL may read a table that is modified by a
+   *         command in the batch of this buffer.
+   */
+  boolean affects(final String sql) {
+    if (size == 0)
+      return false;
+
+    for (final String table : tables)
+      if (containsIdentifier(sql, table))
+        return true;
+
+    return false;
+  }
+
+  private static boolean isIdentifierPart(final char ch) {
+    return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+  }
+
+  /**
+   * Returns whether the specified SQL contains the specified identifier,
+   * delimited by characters that are not part of an identifier.
+   *
+   * @param sql The SQL.
+   * @param identifier The identifier.
+   * @return Whether the specified SQL contains the specified identifier.
+   */
+  static boolean containsIdentifier(final String sql, final String identifier) {
+    final int len = identifier.length();
+    for (int i = 0, end = sql.length() - len; i <= end; ++i)
+      if (sql.regionMatches(true, i, identifier, 0, len) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1))) && (i == end || !isIdentifierPart(sql.charAt(i + len))))
+        return true;
+
+    return false;
+  }
+
+  private void executeBatch() throws SQLException {
+    if (statement == null)
+      return;
+
+    final Statement statement = this.statement;
+    this.statement = null;
+    this.sql = null;
+    this.size = 0;
+    tables.clear();
+    final int[] counts;
+    try {
+      counts = statement.executeBatch();
+    }
+    catch (final SQLException e) {
+      if (commands != null)
+        commands.clear();
+
+      throw SQLExceptions.toStrongType(Throwables.addSuppressed(e, Compilation.discard(transaction, statement)));
+    }
+
+    final SQLException e = Compilation.close(transaction, statement);
+    if (e != null)
+      throw SQLExceptions.toStrongType(e);
+
+    for (final int count : counts) {
+      if (count >= 0)
+        total += count;
+      else
+        noInfo = true;
+    }
+
+    if (commands != null) {
+      // Each command of the batch was added in order, and the counts of the batch are in the same order
+      try {
+        for (int i = 0, len = Math.min(counts.length, commands.size()); i < len; ++i)
+          onExecute.accept(commands.get(i), counts[i]);
+      }
+      finally {
+        commands.clear();
+      }
+    }
+  }
+
+  /**
+   * Executes the batch of this buffer.
+   *
+   * @return The number of rows modified by the commands that were added to
+   *         this buffer since the last flush, or
+   *         {@link Statement#SUCCESS_NO_INFO} if the driver did not provide
+   *         the counts.
+   * @throws SQLException If a SQL error has occurred.
+   */
+  int flush() throws SQLException {
+    try {
+      executeBatch();
+      return noInfo && total == 0 ? Statement.SUCCESS_NO_INFO : total;
+    }
+    finally {
+      total = 0;
+      noInfo = false;
+    }
+  }
+
+  /**
+   * Discards the batch of this buffer without executing it.
+   *
+   * @return The {@link SQLException} thrown while closing the statement of the
+   *         batch, or {@code null} if no exception was thrown.
+   */
+  SQLException discard() {
+    final Statement statement = this.statement;
+    this.statement = null;
+    this.sql = null;
+    this.size = 0;
+    this.total = 0;
+    this.noInfo = false;
+    tables.clear();
+    if (commands != null)
+      commands.clear();
+
+    return statement == null ? null : Compilation.discard(transaction, statement);
+  }
+}
@@ -23,10 +23,13 @@ import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Generated;
 
@@ -52,6 +55,7 @@ import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Documented;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Double;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Enum;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Float;
+import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$ForeignKeyComposite;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Int;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Integer;
 import org.jaxdb.www.ddlx_0_4.xLygluGCXAA.$Smallint;
@@ -81,6 +85,7 @@ public class Generator {
   }
 
   private final JSqlAudit audit;
+  private final Map<String,Integer> tableNameToRank = new HashMap<>();
 
   public Generator(final URL url) throws IOException, SAXException {
     this.audit = new JSqlAudit(new DDLxAudit((xLygluGCXAA.Schema)Bindings.parse(url)));
@@ -580,6 +585,54 @@ public class Generator {
     return count;
   }
 
+  /**
+   * Returns the rank of the specified table in the graph of the foreign keys
+   * of the schema, which is {@code 0} for a table that does not refer to
+   * another table, and otherwise 1 more than the greatest rank of the tables
+   * to which it refers. A reference of a table to itself is not counted.
+   *
+   * @param table The table.
+   * @param visiting The names of the tables whose rank is being determined.
+   * @return The rank of the specified table.
+   * @throws GeneratorExecutionException If the foreign keys of the table form
+   *           a cycle.
+   */
+  private int getRank(final xLygluGCXAA.$Table table, final Set<String> visiting) throws GeneratorExecutionException {
+    final String tableName = table.getName$().text();
+    Integer rank = tableNameToRank.get(tableName);
+    if (rank != null)
+      return rank;
+
+    if (!visiting.add(tableName))
+      throw new GeneratorExecutionException("Circular table dependency detected: " + tableName);
+
+    int max = -1;
+    xLygluGCXAA.$Table t = table;
+    do {
+      if (t.getColumn() != null)
+        for (final $Column column : t.getColumn())
+          if (column.getForeignKey() != null)
+            max = Math.max(max, getRank(tableName, column.getForeignKey().getReferences$().text(), visiting));
+
+      if (t.getConstraints() != null && t.getConstraints().getForeignKey() != null)
+        for (final $ForeignKeyComposite foreignKey : t.getConstraints().getForeignKey())
+          max = Math.max(max, getRank(tableName, foreignKey.getReferences$().text(), visiting));
+    }
+    while (t.getExtends$() != null && (t = audit.tableNameToTable.get(t.getExtends$().text())) != null);
+
+    visiting.remove(tableName);
+    tableNameToRank.put(tableName, rank = max + 1);
+    return rank;
+  }
+
+  private int getRank(final String tableName, final String references, final Set<String> visiting) throws GeneratorExecutionException {
+    if (tableName.equals(references))
+      return -1;
+
+    final xLygluGCXAA.$Table table = audit.tableNameToTable.get(references);
+    return table == null ? -1 : getRank(table, visiting);
+  }
+
   public String makeTable(final $Table table) throws GeneratorExecutionException {
     final String ext = table.getExtends$() != null ? Identifiers.toClassCase(table.getExtends$().text()) : type.Table.class.getCanonicalName();
     final StringBuilder out = new StringBuilder();
@@ -625,6 +678,10 @@ public class Generator {
       out.append("    ").append(entityName).append(" newInstance() {\n");
       out.append("      return new ").append(entityName).append("(true, true);\n");
       out.append("    }\n\n");
+      out.append("    @").append(Override.class.getName()).append('\n');
+      out.append("    int rank() {\n");
+      out.append("      return ").append(getRank(table, new HashSet<>())).append(";\n");
+      out.append("    }\n\n");
       out.append("    /** Creates a new {@code ").append(entityName).append("}. */\n");
       out.append("    public ").append(entityName).append("() {\n");
       out.append("      this(true, false, new ").append(type.DataType.class.getCanonicalName()).append("[").append(totalColumnCount).append("], new ").append(type.DataType.class.getCanonicalName()).append("[").append(totalPrimaryCount).append("], new ").append(type.DataType.class.getCanonicalName()).append("[").append(totalAutoCount).append("]);\n");
@@ -2763,6 +2763,17 @@ public final class type {
     abstract String name();
     abstract Table newInstance();
 
+    /**
+     * Returns the rank of this table in the graph of the foreign keys of its
+     * {@link Schema}, which is {@code 0} for a table that does not refer to
+     * another table, and otherwise 1 more than the greatest rank of the tables
+     * to which it refers. The rank is generated from the DDLx schema.
+     *
+     * @return The rank of this table in the graph of the foreign keys of its
+     *         {@link Schema}.
+     */
+    abstract int rank();
+
     @Override
     protected abstract Table clone();
 
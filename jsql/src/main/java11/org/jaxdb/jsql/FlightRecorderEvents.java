@@ -0,0 +1,121 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import org.jaxdb.vendor.DBVendor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@code jdk.jfr} implementation of {@link FlightRecorder.Recorder}. This
+ * class is compiled from the {@code src/main/java11} source set with
+ * {@code --release 11}, and is only loaded by {@link FlightRecorder} if the
+ * {@code jdk.jfr} API is available in the runtime.
+ */
+final class FlightRecorderEvents implements FlightRecorder.Recorder {
+  @Category({"JAX-DB", "jSQL"})
+  @Enabled(false)
+  @StackTrace(false)
+  abstract static class StatementEvent extends Event {
+    @Label("SQL Fingerprint")
+    @Description("The SQL of the statement, with literals and parameters replaced with ?")
+    String fingerprint;
+
+    @Label("Vendor")
+    String vendor;
+
+    @Label("Data Source Id")
+    String dataSourceId;
+
+    @Label("Transaction")
+    @Description("The identity hash code of the Transaction of the statement, or 0 if the statement is not executed in a Transaction")
+    int transaction;
+  }
+
+  @Name(FlightRecorder.COMPILE)
+  @Label("jSQL Compile")
+  @Description("The compilation of a statement")
+  static final class CompileEvent extends StatementEvent {
+  }
+
+  @Name(FlightRecorder.EXECUTE)
+  @Label("jSQL Execute")
+  @Description("The execution of a statement, or of a batch of statements")
+  static final class ExecuteEvent extends StatementEvent {
+    @Label("Count")
+    @Description("The number of rows that were modified, or the number of statements of a batch, or -1 for a query")
+    long count;
+  }
+
+  @Name(FlightRecorder.FETCH)
+  @Label("jSQL Fetch")
+  @Description("The fetch of the rows of a query, from the first call to RowIterator.nextRow() until the rows are exhausted or the RowIterator is closed")
+  static final class FetchEvent extends StatementEvent {
+    @Label("Row Count")
+    long rowCount;
+  }
+
+  private static StatementEvent begin(final StatementEvent event) {
+    event.begin();
+    return event;
+  }
+
+  private final EventType compileType = EventType.getEventType(CompileEvent.class);
+  private final EventType executeType = EventType.getEventType(ExecuteEvent.class);
+  private final EventType fetchType = EventType.getEventType(FetchEvent.class);
+
+  @Override
+  public Object beginCompile() {
+    return compileType.isEnabled() ? begin(new CompileEvent()) : null;
+  }
+
+  @Override
+  public Object beginExecute() {
+    return executeType.isEnabled() ? begin(new ExecuteEvent()) : null;
+  }
+
+  @Override
+  public Object beginFetch() {
+    return fetchType.isEnabled() ? begin(new FetchEvent()) : null;
+  }
+
+  @Override
+  public void commit(final Object object, final String sql, final DBVendor vendor, final String dataSourceId, final Transaction transaction, final long count) {
+    final StatementEvent event = (StatementEvent)object;
+    event.end();
+    if (!event.shouldCommit())
+      return;
+
+    event.fingerprint = QueryMetrics.fingerprint(sql);
+    event.vendor = vendor == null ? null : vendor.toString();
+    event.dataSourceId = dataSourceId;
+    event.transaction = transaction == null ? 0 : System.identityHashCode(transaction);
+    if (event instanceof ExecuteEvent)
+      ((ExecuteEvent)event).count = count;
+    else if (event instanceof FetchEvent)
+      ((FetchEvent)event).rowCount = count;
+
+    event.commit();
+  }
+}
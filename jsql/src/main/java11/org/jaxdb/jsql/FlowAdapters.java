@@ -0,0 +1,82 @@
+/* Copyright (c) 2021 JAX-DB
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.jaxdb.jsql;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * Adapters of {@link RowPublisher} to {@link java.util.concurrent.Flow}.
+ * {@link RowPublisher} is the Java 8 baseline API of jSQL. This class is
+ * compiled from the {@code src/main/java11} source set with
+ * {@code --release 11}, and is therefore only present in builds on JDK 11+.
+ */
+public final class FlowAdapters {
+  /**
+   * Returns a {@link Flow.Publisher} of the rows of the specified
+   * {@link RowPublisher}. The signals of the {@link RowPublisher} are relayed
+   * as they are, with the same demand, ordering and threading.
+   *
+   * @param <T> The type of the entities of the rows.
+   * @param publisher The {@link RowPublisher}.
+   * @return A {@link Flow.Publisher} of the rows of the specified
+   *         {@link RowPublisher}.
+   * @throws NullPointerException If {@code publisher} is null.
+   */
+  public static <T extends type.Entity<?>>Flow.Publisher<T[]> toFlowPublisher(final RowPublisher<T> publisher) {
+    Objects.requireNonNull(publisher);
+    return (final Flow.Subscriber<? super T[]> subscriber) -> publisher.subscribe(toRowSubscriber(subscriber));
+  }
+
+  private static <T>RowPublisher.Subscriber<T> toRowSubscriber(final Flow.Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber);
+    return new RowPublisher.Subscriber<T>() {
+      @Override
+      public void onSubscribe(final RowPublisher.Subscription subscription) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+          @Override
+          public void request(final long n) {
+            subscription.request(n);
+          }
+
+          @Override
+          public void cancel() {
+            subscription.cancel();
+          }
+        });
+      }
+
+      @Override
+      public void onNext(final T item) {
+        subscriber.onNext(item);
+      }
+
+      @Override
+      public void onError(final Throwable throwable) {
+        subscriber.onError(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        subscriber.onComplete();
+      }
+    };
+  }
+
+  private FlowAdapters() {
+  }
+}